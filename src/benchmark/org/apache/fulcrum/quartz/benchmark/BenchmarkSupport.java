@@ -0,0 +1,149 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avalon.framework.configuration.DefaultConfiguration;
+import org.apache.avalon.framework.logger.NullLogger;
+import org.apache.avalon.framework.service.DefaultServiceManager;
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+
+/**
+ * Creates scheduler services and scheduling data files for the benchmarks.
+ */
+final class BenchmarkSupport
+{
+    /** A cron expression not firing while a benchmark runs */
+    static final String NEVER = "0 0 0 1 1 ? 2099";
+
+    /** Makes the scheduler instance names unique */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private BenchmarkSupport()
+    {
+        // utility class
+    }
+
+    /**
+     * Quartz properties for an in-memory scheduler.
+     *
+     * @param jobStore the class name of the job store
+     * @param threadPool the class name of the thread pool
+     * @return the properties
+     */
+    static Properties quartzProperties(String jobStore, String threadPool)
+    {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "Benchmark" + INSTANCES.incrementAndGet());
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.jobStore.class", jobStore);
+        properties.setProperty("org.quartz.threadPool.class", threadPool);
+        properties.setProperty("org.quartz.threadPool.threadCount", "10");
+        return properties;
+    }
+
+    /**
+     * Create a scheduler service the way the container does, without starting it.
+     *
+     * @param properties the Quartz properties
+     * @param schedulingDataFile the scheduling data file to load incrementally or null
+     * @return the initialized service
+     * @throws Exception creating the service failed
+     */
+    static QuartzSchedulerImpl createService(Properties properties, Path schedulingDataFile) throws Exception
+    {
+        DefaultConfiguration conf = new DefaultConfiguration("quartz");
+        DefaultConfiguration quartzConf = new DefaultConfiguration("configuration");
+        DefaultConfiguration propertiesConf = new DefaultConfiguration("properties");
+        for (Map.Entry<Object, Object> entry : properties.entrySet())
+        {
+            DefaultConfiguration parameter = new DefaultConfiguration("parameter");
+            parameter.setAttribute("name", entry.getKey().toString());
+            parameter.setAttribute("value", entry.getValue().toString());
+            propertiesConf.addChild(parameter);
+        }
+        quartzConf.addChild(propertiesConf);
+        conf.addChild(quartzConf);
+
+        if (schedulingDataFile != null)
+        {
+            DefaultConfiguration schedulingDataConf = new DefaultConfiguration("schedulingData");
+            DefaultConfiguration file = new DefaultConfiguration("file");
+            file.setValue(schedulingDataFile.toString());
+            DefaultConfiguration watch = new DefaultConfiguration("watch");
+            watch.setValue(false);
+            schedulingDataConf.addChild(file);
+            schedulingDataConf.addChild(watch);
+            conf.addChild(schedulingDataConf);
+        }
+
+        DefaultServiceManager serviceManager = new DefaultServiceManager();
+        serviceManager.makeReadOnly();
+
+        QuartzSchedulerImpl service = new QuartzSchedulerImpl();
+        service.enableLogging(new NullLogger());
+        service.configure(conf);
+        service.service(serviceManager);
+        service.initialize();
+        return service;
+    }
+
+    /**
+     * Write a scheduling data file defining jobs with one cron trigger each.
+     *
+     * @param file the file
+     * @param jobs the number of jobs
+     * @throws IOException writing the file failed
+     */
+    static void writeSchedulingData(Path file, int jobs) throws IOException
+    {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<job-scheduling-data xmlns=\"http://www.quartz-scheduler.org/xml/JobSchedulingData\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://www.quartz-scheduler.org/xml/JobSchedulingData"
+                + " http://www.quartz-scheduler.org/xml/job_scheduling_data_2_0.xsd\" version=\"2.0\">\n"
+                + "<processing-directives><overwrite-existing-data>true</overwrite-existing-data></processing-directives>\n"
+                + "<schedule>\n");
+
+            for (int i = 0; i < jobs; i++)
+            {
+                String group = "GROUP" + (i % 10);
+                writer.write("<job><name>job" + i + "</name><group>" + group + "</group>"
+                    + "<job-class>" + NoopJob.class.getName() + "</job-class>"
+                    + "<job-data-map><entry><key>index</key><value>" + i + "</value></entry></job-data-map></job>\n"
+                    + "<trigger><cron><name>trigger" + i + "</name><group>" + group + "</group>"
+                    + "<job-name>job" + i + "</job-name><job-group>" + group + "</job-group>"
+                    + "<cron-expression>" + NEVER + "</cron-expression></cron></trigger>\n");
+            }
+
+            writer.write("</schedule>\n</job-scheduling-data>\n");
+        }
+    }
+}
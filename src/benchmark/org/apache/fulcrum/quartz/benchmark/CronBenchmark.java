@@ -0,0 +1,108 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.CompiledCronScheduleBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Next fire time computation of Quartz's cron triggers compared with the
+ * compiled cron triggers, for the cron expression samples. 'random' starts
+ * every computation at a random time, 'shared' lets 1000 triggers with the
+ * same expression compute the same next fire time in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CronBenchmark
+{
+    /** Number of triggers sharing an expression */
+    private static final int TRIGGERS = 1000;
+
+    @Param({"0 0/5 * * * ?", "0 0 23 ? * MON-FRI", "0 15 10 ? * 6L"})
+    String cronExpression;
+
+    @Param({"quartz", "compiled"})
+    String evaluator;
+
+    private CronTrigger[] triggers;
+
+    private Date afterTime;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+        ScheduleBuilder<CronTrigger> schedule = "compiled".equals(evaluator)
+            ? CompiledCronScheduleBuilder.cronSchedule(cronExpression).inTimeZone(timeZone)
+            : CronScheduleBuilder.cronSchedule(cronExpression).inTimeZone(timeZone);
+
+        triggers = new CronTrigger[TRIGGERS];
+        for (int i = 0; i < TRIGGERS; i++)
+        {
+            triggers[i] = TriggerBuilder.newTrigger().withIdentity("trigger" + i).withSchedule(schedule).build();
+        }
+        afterTime = new Date();
+    }
+
+    @Benchmark
+    public Date random()
+    {
+        long offset = ThreadLocalRandom.current().nextLong(TimeUnit.DAYS.toMillis(365));
+        return triggers[0].getFireTimeAfter(new Date(afterTime.getTime() + offset));
+    }
+
+    @Benchmark
+    public Date shared()
+    {
+        // every trigger advances once per round, like triggers firing together
+        if (next == TRIGGERS)
+        {
+            next = 0;
+            afterTime = triggers[0].getFireTimeAfter(afterTime);
+        }
+        return triggers[next++].getFireTimeAfter(afterTime);
+    }
+}
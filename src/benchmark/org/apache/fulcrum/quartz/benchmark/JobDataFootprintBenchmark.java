@@ -0,0 +1,153 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore;
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.Scheduler;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Heap retained by {@value #JOBS} jobs in the ConcurrentRAMJobStore with and
+ * without compact job data, reported as the 'heapBytes' counter. 'shared'
+ * gives every job the same data, 'tenant' uses 100 distinct maps. The data
+ * of every job is created from new strings as when reading a file.
+ * A single iteration is measured as JMH sums the counter over all
+ * iterations and forks.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JobDataFootprintBenchmark
+{
+    /** Number of stored jobs */
+    private static final int JOBS = 100000;
+
+    /** Number of distinct tenants */
+    private static final int TENANTS = 100;
+
+    /**
+     * The scheduler service with the job store under test.
+     */
+    @State(Scope.Benchmark)
+    public static class Service
+    {
+        @Param({"false", "true"})
+        boolean compactJobData;
+
+        @Param({"shared", "tenant"})
+        String data;
+
+        QuartzSchedulerImpl service;
+
+        long usedBefore;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception
+        {
+            Properties properties = BenchmarkSupport.quartzProperties(ConcurrentRAMJobStore.class.getName(),
+                SimpleThreadPool.class.getName());
+            properties.setProperty("org.quartz.jobStore.compactJobData", String.valueOf(compactJobData));
+            service = BenchmarkSupport.createService(properties, null);
+        }
+
+        @Setup(Level.Iteration)
+        public void clear() throws Exception
+        {
+            service.getScheduler().clear();
+            usedBefore = usedHeap();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            service.dispose();
+        }
+    }
+
+    /**
+     * The heap retained by the stored jobs.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint
+    {
+        public long heapBytes;
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            heapBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void storeJobs(Service service, Footprint footprint) throws Exception
+    {
+        Scheduler scheduler = service.service.getScheduler();
+        boolean tenant = "tenant".equals(service.data);
+
+        for (int i = 0; i < JOBS; i++)
+        {
+            JobDataMap data = new JobDataMap();
+            data.put(new String("burgerType"), new String("cheeseburger"));
+            data.put(new String("dressings"), new String("ketchup,mustard,mayonnaise"));
+            data.put(new String("region"), new String("eu-central"));
+            data.put(new String("retries"), 3);
+            data.put(new String("tenant"), tenant ? "tenant-" + (i % TENANTS) : new String("default"));
+
+            scheduler.addJob(JobBuilder.newJob(NoopJob.class).withIdentity("job" + i, "GROUP" + (i % 10))
+                .usingJobData(data).storeDurably().build(), false);
+        }
+
+        footprint.heapBytes = usedHeap() - service.usedBefore;
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
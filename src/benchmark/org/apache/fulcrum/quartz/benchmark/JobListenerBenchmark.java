@@ -0,0 +1,115 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Overhead of the service acting as <code>JobListener</code>, i.e. the
+ * work done in <code>jobToBeExecuted()</code> and <code>jobWasExecuted()</code>
+ * around every job execution, for a few or many distinct jobs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JobListenerBenchmark
+{
+    @Param({"1", "1000"})
+    int jobs;
+
+    private QuartzSchedulerImpl service;
+
+    private JobExecutionContext[] contexts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        service = BenchmarkSupport.createService(
+            BenchmarkSupport.quartzProperties(RAMJobStore.class.getName(), SimpleThreadPool.class.getName()), null);
+
+        contexts = new JobExecutionContext[jobs];
+        for (int i = 0; i < jobs; i++)
+        {
+            JobDetail jobDetail = JobBuilder.newJob(NoopJob.class).withIdentity("job" + i, "GROUP" + (i % 10)).build();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(jobDetail).startNow().build();
+            Date now = new Date();
+            TriggerFiredBundle bundle = new TriggerFiredBundle(jobDetail, trigger, null, false, now, now, null, null);
+            JobExecutionContextImpl context = new JobExecutionContextImpl(service.getScheduler(), bundle, new NoopJob());
+            context.setJobRunTime(i % 100);
+            contexts[i] = context;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        service.dispose();
+    }
+
+    @Benchmark
+    public void listener()
+    {
+        notifyListener();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void listenerContended()
+    {
+        notifyListener();
+    }
+
+    private void notifyListener()
+    {
+        JobExecutionContext context = contexts[ThreadLocalRandom.current().nextInt(contexts.length)];
+        service.jobToBeExecuted(context);
+        service.jobWasExecuted(context, null);
+    }
+}
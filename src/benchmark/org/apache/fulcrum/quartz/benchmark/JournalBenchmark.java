@@ -0,0 +1,194 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore;
+import org.apache.fulcrum.quartz.impl.JournalingJobStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerBuilder;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+
+/**
+ * Schedules, fires and completes jobs directly on a job store, comparing
+ * the {@link ConcurrentRAMJobStore} with the {@link JournalingJobStore}
+ * forcing every group commit to disk and writing every
+ * <code>flushInterval</code>.
+ *
+ * <p>An invocation of <code>cycle</code> stores a job with a trigger due
+ * immediately, acquires and fires a due trigger and completes it, which
+ * removes the trigger and its job.</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class JournalBenchmark
+{
+    @Param({"ConcurrentRAMJobStore", "JournalingJobStore", "JournalingJobStore-noForce"})
+    String jobStore;
+
+    ConcurrentRAMJobStore store;
+
+    Path directory;
+
+    final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        if (jobStore.startsWith("JournalingJobStore"))
+        {
+            directory = Files.createTempDirectory("journal");
+            JournalingJobStore journaling = new JournalingJobStore();
+            journaling.setJournalDirectory(directory.toString());
+            journaling.setForceWrites(!jobStore.endsWith("noForce"));
+            store = journaling;
+        }
+        else
+        {
+            store = new ConcurrentRAMJobStore();
+        }
+
+        CascadingClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        store.initialize(loadHelper, new NoopSignaler());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        store.shutdown();
+        if (directory != null)
+        {
+            try (Stream<Path> files = Files.walk(directory))
+            {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * The jobs scheduled by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Worker
+    {
+        String group;
+
+        int count;
+
+        @Setup(Level.Trial)
+        public void setUp(JournalBenchmark benchmark)
+        {
+            group = "WORKER" + benchmark.threads.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public int cycle(Worker worker) throws Exception
+    {
+        String name = "job" + worker.count++;
+        JobDetail jobDetail = JobBuilder.newJob(NoopJob.class).withIdentity(name, worker.group)
+            .usingJobData("tenant", worker.group).build();
+        Trigger trigger = TriggerBuilder.newTrigger().withIdentity(name, worker.group).forJob(jobDetail).startNow().build();
+        store.storeJobAndTrigger(jobDetail, (OperableTrigger) trigger);
+
+        List<OperableTrigger> acquired = store.acquireNextTriggers(System.currentTimeMillis() + 1000, 1, 0);
+        for (TriggerFiredResult result : store.triggersFired(acquired))
+        {
+            store.triggeredJobComplete(result.getTriggerFiredBundle().getTrigger(),
+                result.getTriggerFiredBundle().getJobDetail(), CompletedExecutionInstruction.DELETE_TRIGGER);
+        }
+        return acquired.size();
+    }
+
+    /**
+     * Ignores all notifications of the job store.
+     */
+    static final class NoopSignaler implements SchedulerSignaler
+    {
+        @Override
+        public void notifyTriggerListenersMisfired(Trigger trigger)
+        {
+            // ignored
+        }
+
+        @Override
+        public void notifySchedulerListenersFinalized(Trigger trigger)
+        {
+            // ignored
+        }
+
+        @Override
+        public void notifySchedulerListenersJobDeleted(JobKey jobKey)
+        {
+            // ignored
+        }
+
+        @Override
+        public void signalSchedulingChange(long candidateNewNextFireTime)
+        {
+            // ignored
+        }
+
+        @Override
+        public void notifySchedulerListenersError(String message, SchedulerException jpe)
+        {
+            // ignored
+        }
+    }
+}
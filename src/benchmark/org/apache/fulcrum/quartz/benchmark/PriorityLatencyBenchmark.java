@@ -0,0 +1,180 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.PriorityThreadPool;
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Start latency of a high-priority job fired while {@value #THREADS}
+ * threads are saturated by a burst of {@value #BURST} low-priority jobs
+ * running {@value #BURST_JOB_TIME} ms each, comparing the FIFO
+ * SimpleThreadPool with the PriorityThreadPool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PriorityLatencyBenchmark
+{
+    /** Number of threads */
+    private static final int THREADS = 4;
+
+    /** Number of low-priority jobs fired before the measured job */
+    private static final int BURST = 200;
+
+    /** Run time of a low-priority job in ms */
+    private static final long BURST_JOB_TIME = 2L;
+
+    private static volatile CountDownLatch started;
+
+    @Param({"SimpleThreadPool", "PriorityThreadPool"})
+    String threadPool;
+
+    private QuartzSchedulerImpl service;
+
+    private long jobs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        boolean priority = "PriorityThreadPool".equals(threadPool);
+        Properties properties = BenchmarkSupport.quartzProperties(RAMJobStore.class.getName(),
+            priority ? PriorityThreadPool.class.getName() : SimpleThreadPool.class.getName());
+        properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(THREADS));
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "60000");
+        if (priority)
+        {
+            properties.setProperty("org.quartz.threadPool.queueSize", String.valueOf(2 * BURST));
+        }
+
+        service = BenchmarkSupport.createService(properties, null);
+        service.start();
+    }
+
+    /**
+     * Saturate the threads with a new burst once the previous one completed.
+     */
+    @Setup(Level.Invocation)
+    public void fireBurst() throws Exception
+    {
+        Scheduler scheduler = service.getScheduler();
+        while (!scheduler.getJobKeys(GroupMatcher.jobGroupEquals("BURST")).isEmpty()
+            || !scheduler.getCurrentlyExecutingJobs().isEmpty())
+        {
+            Thread.sleep(1);
+        }
+
+        Map<JobDetail, Set<? extends Trigger>> burst = new HashMap<>();
+        for (int i = 0; i < BURST; i++)
+        {
+            JobDetail job = JobBuilder.newJob(BurstJob.class).withIdentity("burst" + jobs++, "BURST").build();
+            burst.put(job, Set.of(TriggerBuilder.newTrigger().forJob(job).withPriority(1).startNow().build()));
+        }
+        service.scheduleJobs(burst, false);
+
+        while (scheduler.getCurrentlyExecutingJobs().size() < THREADS)
+        {
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        service.dispose();
+    }
+
+    @Benchmark
+    public void urgentJobLatency() throws Exception
+    {
+        started = new CountDownLatch(1);
+        JobDetail job = JobBuilder.newJob(UrgentJob.class).withIdentity("urgent" + jobs++, "URGENT").build();
+        service.getScheduler().scheduleJob(job, TriggerBuilder.newTrigger().forJob(job).withPriority(10).startNow().build());
+
+        if (!started.await(1, TimeUnit.MINUTES))
+        {
+            throw new IllegalStateException("The urgent job did not start");
+        }
+    }
+
+    /**
+     * A low-priority job keeping a thread busy.
+     */
+    public static class BurstJob implements Job
+    {
+        @Override
+        public void execute(JobExecutionContext context)
+        {
+            try
+            {
+                Thread.sleep(BURST_JOB_TIME);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Signals that the measured job started.
+     */
+    public static class UrgentJob implements Job
+    {
+        @Override
+        public void execute(JobExecutionContext context)
+        {
+            started.countDown();
+        }
+    }
+}
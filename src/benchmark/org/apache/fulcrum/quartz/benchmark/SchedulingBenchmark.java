@@ -0,0 +1,179 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore;
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Stores jobs and triggers in a scheduler which is not started, comparing
+ * the job stores and single against batch scheduling.
+ *
+ * <p><code>scheduleEach</code> and <code>scheduleBatch</code> store
+ * {@value #JOBS} jobs with one trigger each into an empty scheduler.
+ * <code>scheduleContended</code> adds and deletes jobs from several threads
+ * while {@value #JOBS} other jobs are stored.</p>
+ */
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class SchedulingBenchmark
+{
+    /** Number of jobs stored by one invocation and stored in the background */
+    private static final int JOBS = 10000;
+
+    /**
+     * The scheduler service with the job store under test.
+     */
+    @State(Scope.Benchmark)
+    public static class Service
+    {
+        @Param({"RAMJobStore", "ConcurrentRAMJobStore"})
+        String jobStore;
+
+        QuartzSchedulerImpl service;
+
+        Map<JobDetail, Set<? extends Trigger>> definitions;
+
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception
+        {
+            service = BenchmarkSupport.createService(BenchmarkSupport.quartzProperties(
+                "RAMJobStore".equals(jobStore) ? RAMJobStore.class.getName() : ConcurrentRAMJobStore.class.getName(),
+                SimpleThreadPool.class.getName()), null);
+        }
+
+        @Setup(Level.Iteration)
+        public void clear() throws Exception
+        {
+            service.getScheduler().clear();
+
+            definitions = new LinkedHashMap<>();
+            for (int i = 0; i < JOBS; i++)
+            {
+                JobDetail jobDetail = JobBuilder.newJob(NoopJob.class).withIdentity("job" + i, "GROUP" + (i % 10)).build();
+                definitions.put(jobDetail, Collections.singleton(TriggerBuilder.newTrigger()
+                    .withIdentity("trigger" + i, "GROUP" + (i % 10)).forJob(jobDetail)
+                    .withSchedule(CronScheduleBuilder.cronSchedule(BenchmarkSupport.NEVER)).build()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            service.dispose();
+        }
+    }
+
+    /**
+     * Stores the background jobs of scheduleContended.
+     */
+    @State(Scope.Benchmark)
+    public static class Filled
+    {
+        @Setup(Level.Iteration)
+        public void fill(Service service) throws Exception
+        {
+            service.service.scheduleJobs(service.definitions, true);
+        }
+    }
+
+    /**
+     * The jobs scheduled by one thread of scheduleContended.
+     */
+    @State(Scope.Thread)
+    public static class Worker
+    {
+        String group;
+
+        int count;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service)
+        {
+            group = "WORKER" + service.threads.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void scheduleEach(Service service) throws Exception
+    {
+        Scheduler scheduler = service.service.getScheduler();
+        for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : service.definitions.entrySet())
+        {
+            scheduler.scheduleJob(entry.getKey(), entry.getValue().iterator().next());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void scheduleBatch(Service service) throws Exception
+    {
+        service.service.scheduleJobs(service.definitions, true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public boolean scheduleContended(Service service, Filled filled, Worker worker) throws Exception
+    {
+        Scheduler scheduler = service.service.getScheduler();
+        String name = "job" + worker.count++;
+        JobDetail jobDetail = JobBuilder.newJob(NoopJob.class).withIdentity(name, worker.group).build();
+        scheduler.scheduleJob(jobDetail, TriggerBuilder.newTrigger().withIdentity(name, worker.group).forJob(jobDetail)
+            .withSchedule(CronScheduleBuilder.cronSchedule(BenchmarkSupport.NEVER)).build());
+        return scheduler.deleteJob(jobDetail.getKey());
+    }
+}
@@ -0,0 +1,159 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Time to initialize and start the scheduler service for scheduling data
+ * files of different sizes, loaded either by the XMLSchedulingDataProcessorPlugin
+ * while starting or incrementally by the service while initializing.
+ *
+ * <p><code>retainedHeap</code> reports the heap retained by the started
+ * service as the 'heapBytes' counter. A single iteration is measured as JMH
+ * sums the counter over all iterations and forks. The memory allocated while
+ * starting is reported by running with '-prof gc' as 'gc.alloc.rate.norm'.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class StartupBenchmark
+{
+    @Param({"10", "1000", "10000", "50000"})
+    int jobs;
+
+    @Param({"plugin", "schedulingData"})
+    String loader;
+
+    private Path file;
+
+    private QuartzSchedulerImpl service;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws Exception
+    {
+        file = Files.createTempFile("quartz-benchmark", ".xml");
+        BenchmarkSupport.writeSchedulingData(file, jobs);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws Exception
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dispose()
+    {
+        if (service != null)
+        {
+            service.dispose();
+            service = null;
+        }
+    }
+
+    @Benchmark
+    public QuartzSchedulerImpl initializeAndStart() throws Exception
+    {
+        return start();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 1)
+    public QuartzSchedulerImpl retainedHeap(Footprint footprint) throws Exception
+    {
+        start();
+        footprint.heapBytes = usedHeap() - footprint.usedBefore;
+        return service;
+    }
+
+    private QuartzSchedulerImpl start() throws Exception
+    {
+        Properties properties = BenchmarkSupport.quartzProperties(RAMJobStore.class.getName(), SimpleThreadPool.class.getName());
+        if ("plugin".equals(loader))
+        {
+            properties.setProperty("org.quartz.plugin.jobInitializer.class", "org.quartz.plugins.xml.XMLSchedulingDataProcessorPlugin");
+            properties.setProperty("org.quartz.plugin.jobInitializer.fileNames", file.toString());
+            properties.setProperty("org.quartz.plugin.jobInitializer.failOnFileNotFound", "true");
+            service = BenchmarkSupport.createService(properties, null);
+        }
+        else
+        {
+            service = BenchmarkSupport.createService(properties, file);
+        }
+
+        service.start();
+        return service;
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The heap retained by the started service.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint
+    {
+        public long heapBytes;
+
+        long usedBefore;
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            heapBytes = 0;
+            usedBefore = usedHeap();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.apache.fulcrum.quartz.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore;
+import org.apache.fulcrum.quartz.impl.QuartzSchedulerImpl;
+import org.apache.fulcrum.quartz.impl.VirtualThreadPool;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Fires triggers through a started scheduler service for the combinations
+ * of job stores and thread pools, while the job store holds a number of
+ * pending triggers due in one to two hours.
+ *
+ * <p><code>fireThroughput</code> schedules {@value #FIRES} triggers due
+ * immediately and waits until all of them have fired. Their jobs either
+ * return immediately or block for {@value #BLOCKING_TIME} ms like a job
+ * waiting for I/O. With a <code>threadCount</code> of {@value #FIRES} all
+ * blocking jobs may wait concurrently, which the VirtualThreadPool allows
+ * without a platform thread per job. <code>fireTimeAccuracy</code> schedules a single trigger
+ * {@value #FIRE_DELAY} ms ahead and waits until its job runs, so the sampled
+ * time minus {@value #FIRE_DELAY} ms is how late the job started and the
+ * spread of the samples is the jitter of the trigger queue.
+ * <code>idleCpu</code> reports the CPU time used by the process per second
+ * while no trigger is due as the 'cpuNanos' counter, the cost of keeping
+ * the pending triggers, e.g. advancing the timing wheel.</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TriggerFireBenchmark
+{
+    /** Number of triggers fired by one invocation of fireThroughput */
+    private static final int FIRES = 10000;
+
+    /** Time in ms a blocking job waits */
+    private static final long BLOCKING_TIME = 10L;
+
+    /** Time in ms between scheduling and firing in fireTimeAccuracy */
+    private static final long FIRE_DELAY = 20L;
+
+    /** Time in ms the scheduler is observed by one invocation of idleCpu */
+    private static final long IDLE_TIME = 100L;
+
+    /** Counted down by every fired job */
+    static volatile CountDownLatch fired;
+
+    @Param({"RAMJobStore", "ConcurrentRAMJobStore/skipList", "ConcurrentRAMJobStore/timingWheel"})
+    String jobStore;
+
+    @Param({"SimpleThreadPool", "VirtualThreadPool"})
+    String threadPool;
+
+    @Param({"1000", "10000", "100000"})
+    int pendingTriggers;
+
+    /** Maximum number of concurrently running jobs, up to all fired blocking jobs */
+    @Param({"100", "10000"})
+    int threadCount;
+
+    private QuartzSchedulerImpl service;
+
+    private JobDetail jobDetail;
+
+    private JobDetail blockingJobDetail;
+
+    private long triggers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        Properties properties = BenchmarkSupport.quartzProperties(
+            jobStore.startsWith("RAMJobStore") ? RAMJobStore.class.getName() : ConcurrentRAMJobStore.class.getName(),
+            "VirtualThreadPool".equals(threadPool) ? VirtualThreadPool.class.getName() : SimpleThreadPool.class.getName());
+        properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(threadCount));
+        if (jobStore.endsWith("timingWheel"))
+        {
+            properties.setProperty("org.quartz.jobStore.triggerQueue", ConcurrentRAMJobStore.TRIGGER_QUEUE_TIMING_WHEEL);
+        }
+
+        service = BenchmarkSupport.createService(properties, null);
+        jobDetail = JobBuilder.newJob(FiredJob.class).withIdentity("fired", "BENCHMARK")
+            .usingJobData("sleep", 0L).storeDurably().build();
+        blockingJobDetail = JobBuilder.newJob(FiredJob.class).withIdentity("blocking", "BENCHMARK")
+            .usingJobData("sleep", BLOCKING_TIME).storeDurably().build();
+        service.getScheduler().addJob(jobDetail, true);
+        service.getScheduler().addJob(blockingJobDetail, true);
+
+        long hour = TimeUnit.HOURS.toMillis(1);
+        long start = System.currentTimeMillis() + hour;
+        Set<Trigger> pending = new HashSet<>();
+        for (int i = 0; i < pendingTriggers; i++)
+        {
+            pending.add(TriggerBuilder.newTrigger().withIdentity("pending" + i, "BENCHMARK").forJob(jobDetail)
+                .startAt(new Date(start + i * hour / pendingTriggers)).build());
+        }
+        service.scheduleJobs(Collections.singletonMap(jobDetail, pending), true);
+
+        service.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        service.dispose();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(FIRES)
+    public void fireThroughput(Work work) throws Exception
+    {
+        fired = new CountDownLatch(FIRES);
+
+        JobDetail firedJobDetail = "blocking".equals(work.work) ? blockingJobDetail : jobDetail;
+        Set<Trigger> batch = new HashSet<>();
+        for (int i = 0; i < FIRES; i++)
+        {
+            batch.add(TriggerBuilder.newTrigger().withIdentity("trigger" + triggers++, "BENCHMARK")
+                .forJob(firedJobDetail).startNow().build());
+        }
+        service.scheduleJobs(Collections.singletonMap(firedJobDetail, batch), true);
+
+        await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void fireTimeAccuracy() throws Exception
+    {
+        fired = new CountDownLatch(1);
+
+        service.getScheduler().scheduleJob(TriggerBuilder.newTrigger().withIdentity("trigger" + triggers++, "BENCHMARK")
+            .forJob(jobDetail).startAt(new Date(System.currentTimeMillis() + FIRE_DELAY)).build());
+
+        await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void idleCpu(CpuTime cpuTime) throws Exception
+    {
+        long cpuBefore = CpuTime.processCpuTime();
+        Thread.sleep(IDLE_TIME);
+        cpuTime.cpuNanos += CpuTime.processCpuTime() - cpuBefore;
+    }
+
+    private static void await() throws InterruptedException
+    {
+        if (!fired.await(1, TimeUnit.MINUTES))
+        {
+            throw new IllegalStateException(fired.getCount() + " triggers did not fire");
+        }
+    }
+
+    /**
+     * The jobs fired by fireThroughput.
+     */
+    @State(Scope.Benchmark)
+    public static class Work
+    {
+        @Param({"noop", "blocking"})
+        String work;
+    }
+
+    /**
+     * The CPU time used by the process, normalized by JMH to nanoseconds per
+     * second of the measurement.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CpuTime
+    {
+        public long cpuNanos;
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            cpuNanos = 0;
+        }
+
+        static long processCpuTime()
+        {
+            return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+        }
+    }
+
+    /**
+     * Counts down the latch of the running benchmark after blocking for the
+     * time given by its job data.
+     */
+    public static class FiredJob implements Job
+    {
+        @Override
+        public void execute(JobExecutionContext context)
+        {
+            long sleep = context.getMergedJobDataMap().getLong("sleep");
+            if (sleep > 0)
+            {
+                try
+                {
+                    Thread.sleep(sleep);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            fired.countDown();
+        }
+    }
+}
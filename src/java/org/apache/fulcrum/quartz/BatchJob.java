@@ -0,0 +1,67 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Job executing many fires at once. If batching is configured, fires of
+ * batch jobs of the same class and group occurring within a short window
+ * are coalesced and a single job instance executes all of them together.
+ * Each fire keeps its own execution context to read its job data from and
+ * to set its result on, and the outcome of every fire is reported to the
+ * job metrics of the service as if it had been executed on its own.
+ *
+ * <p>Without batching, and for jobs submitted for immediate execution,
+ * every fire is executed as a batch of one.</p>
+ */
+public interface BatchJob extends Job
+{
+    /**
+     * Execute the coalesced fires of the job.
+     *
+     * @param contexts the execution contexts of the fires in the order they fired
+     * @return the failures of individual fires, null or empty if all succeeded
+     * @throws JobExecutionException the whole batch failed
+     */
+    Map<JobExecutionContext, JobExecutionException> executeBatch(List<JobExecutionContext> contexts)
+        throws JobExecutionException;
+
+    /**
+     * Execute a single fire as a batch of one.
+     *
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    @Override
+    default void execute(JobExecutionContext context) throws JobExecutionException
+    {
+        Map<JobExecutionContext, JobExecutionException> failures = executeBatch(Collections.singletonList(context));
+        if (failures != null && failures.get(context) != null)
+        {
+            throw failures.get(context);
+        }
+    }
+}
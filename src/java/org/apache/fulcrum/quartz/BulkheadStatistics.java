@@ -0,0 +1,145 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the saturation of a bulkhead, i.e. a bounded
+ * executor running the jobs of some job groups.
+ */
+public final class BulkheadStatistics
+{
+    private final String name;
+    private final Set<String> groups;
+    private final int maxConcurrency;
+    private final int queueSize;
+    private final int active;
+    private final int queued;
+    private final long executed;
+    private final long overflows;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the bulkhead
+     * @param groups the job groups routed to the bulkhead, empty for the default bulkhead
+     * @param maxConcurrency the maximum number of concurrently running jobs
+     * @param queueSize the number of waiting jobs the bulkhead absorbs before it is full
+     * @param active the number of jobs currently running
+     * @param queued the number of jobs currently waiting for a thread, including overflowing jobs
+     * @param executed the number of jobs executed so far
+     * @param overflows the number of jobs queued while the bulkhead was full
+     */
+    public BulkheadStatistics(String name, Set<String> groups, int maxConcurrency, int queueSize,
+        int active, int queued, long executed, long overflows)
+    {
+        this.name = name;
+        this.groups = Collections.unmodifiableSet(new LinkedHashSet<>(groups));
+        this.maxConcurrency = maxConcurrency;
+        this.queueSize = queueSize;
+        this.active = active;
+        this.queued = queued;
+        this.executed = executed;
+        this.overflows = overflows;
+    }
+
+    /**
+     * @return the name of the bulkhead
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the job groups routed to the bulkhead, empty for the default bulkhead
+     */
+    public Set<String> getGroups()
+    {
+        return groups;
+    }
+
+    /**
+     * @return the maximum number of concurrently running jobs
+     */
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the number of waiting jobs the bulkhead absorbs before it is full
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    /**
+     * @return the number of jobs currently running
+     */
+    public int getActive()
+    {
+        return active;
+    }
+
+    /**
+     * @return the number of jobs currently waiting for a thread, including overflowing jobs
+     */
+    public int getQueued()
+    {
+        return queued;
+    }
+
+    /**
+     * @return the number of jobs executed so far
+     */
+    public long getExecuted()
+    {
+        return executed;
+    }
+
+    /**
+     * @return the number of jobs queued while the bulkhead was full
+     */
+    public long getOverflows()
+    {
+        return overflows;
+    }
+
+    /**
+     * @return the running and queued jobs relative to the capacity, above 1.0 while jobs overflow
+     */
+    public double getSaturation()
+    {
+        return (double) (active + queued) / (maxConcurrency + queueSize);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BulkheadStatistics [name=" + name + ", groups=" + groups + ", maxConcurrency=" + maxConcurrency
+            + ", queueSize=" + queueSize + ", active=" + active + ", queued=" + queued
+            + ", executed=" + executed + ", overflows=" + overflows + "]";
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.quartz.JobKey;
+
+/**
+ * Immutable snapshot of the execution statistics collected by the
+ * scheduler service, per job and per job group. The statistics of a deleted
+ * job, including a job removed together with its last trigger, are only
+ * kept as part of its group.
+ */
+public final class JobMetrics
+{
+    private final long timestamp;
+    private final Map<JobKey, JobStatistics> jobs;
+    private final Map<String, JobStatistics> groups;
+
+    /**
+     * Constructor.
+     *
+     * @param timestamp the time the snapshot was taken
+     * @param jobs the statistics per job
+     * @param groups the statistics per job group
+     */
+    public JobMetrics(long timestamp, Map<JobKey, JobStatistics> jobs, Map<String, JobStatistics> groups)
+    {
+        this.timestamp = timestamp;
+        this.jobs = Collections.unmodifiableMap(new LinkedHashMap<>(jobs));
+        this.groups = Collections.unmodifiableMap(new LinkedHashMap<>(groups));
+    }
+
+    /**
+     * @return the time the snapshot was taken in ms since the epoch
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @return the statistics of all jobs executed so far and not deleted
+     */
+    public Map<JobKey, JobStatistics> getJobStatistics()
+    {
+        return jobs;
+    }
+
+    /**
+     * @param jobKey the job
+     * @return the statistics of the job or null if it was never executed or deleted
+     */
+    public JobStatistics getJobStatistics(JobKey jobKey)
+    {
+        return jobs.get(jobKey);
+    }
+
+    /**
+     * @return the statistics of all job groups executed so far
+     */
+    public Map<String, JobStatistics> getGroupStatistics()
+    {
+        return groups;
+    }
+
+    /**
+     * @param group the job group
+     * @return the statistics of the job group or null if none of its jobs was executed
+     */
+    public JobStatistics getGroupStatistics(String group)
+    {
+        return groups.get(group);
+    }
+}
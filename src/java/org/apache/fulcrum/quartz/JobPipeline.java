@@ -0,0 +1,220 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+
+/**
+ * Immutable definition of a pipeline of stored jobs, each step running as
+ * soon as all of the steps it depends on completed successfully. Steps are
+ * declared after the steps they depend on, so the graph is free of cycles.
+ *
+ * <pre>
+ * JobPipeline pipeline = JobPipeline.newPipeline("etl")
+ *     .step(extract)
+ *     .step(transformOrders, extract)
+ *     .step(transformCustomers, extract)
+ *     .step(load, transformOrders, transformCustomers)
+ *     .build();
+ * </pre>
+ *
+ * A step receives the results of the steps it depends on in its job data,
+ * see {@link #getResults(JobExecutionContext)}.
+ */
+public final class JobPipeline
+{
+    /** The job data key of the results of the upstream steps by job key */
+    public static final String RESULTS_KEY = "org.apache.fulcrum.quartz.pipeline.results";
+
+    private final String name;
+
+    /** the dependencies by step in declaration order */
+    private final Map<JobKey, Set<JobKey>> dependencies;
+
+    /** the steps depending on a step */
+    private final Map<JobKey, Set<JobKey>> dependents;
+
+    private final Set<JobKey> roots;
+
+    private JobPipeline(String name, Map<JobKey, Set<JobKey>> dependencies)
+    {
+        this.name = name;
+        this.dependencies = Collections.unmodifiableMap(new LinkedHashMap<>(dependencies));
+
+        Map<JobKey, Set<JobKey>> dependentsByStep = new LinkedHashMap<>();
+        Set<JobKey> rootSteps = new LinkedHashSet<>();
+        for (Map.Entry<JobKey, Set<JobKey>> entry : dependencies.entrySet())
+        {
+            dependentsByStep.put(entry.getKey(), new LinkedHashSet<>());
+            if (entry.getValue().isEmpty())
+            {
+                rootSteps.add(entry.getKey());
+            }
+            for (JobKey dependency : entry.getValue())
+            {
+                dependentsByStep.get(dependency).add(entry.getKey());
+            }
+        }
+        dependentsByStep.replaceAll((step, steps) -> Collections.unmodifiableSet(steps));
+        this.dependents = Collections.unmodifiableMap(dependentsByStep);
+        this.roots = Collections.unmodifiableSet(rootSteps);
+    }
+
+    /**
+     * Start defining a pipeline.
+     *
+     * @param name the name of the pipeline
+     * @return the builder
+     */
+    public static Builder newPipeline(String name)
+    {
+        return new Builder(name);
+    }
+
+    /**
+     * @return the name of the pipeline
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the jobs of the pipeline in declaration order
+     */
+    public Set<JobKey> getSteps()
+    {
+        return dependencies.keySet();
+    }
+
+    /**
+     * @param step a job of the pipeline
+     * @return the jobs which have to complete before the job runs
+     */
+    public Set<JobKey> getDependencies(JobKey step)
+    {
+        Set<JobKey> result = dependencies.get(step);
+        return result != null ? result : Collections.<JobKey>emptySet();
+    }
+
+    /**
+     * @param step a job of the pipeline
+     * @return the jobs waiting for the job to complete
+     */
+    public Set<JobKey> getDependents(JobKey step)
+    {
+        Set<JobKey> result = dependents.get(step);
+        return result != null ? result : Collections.<JobKey>emptySet();
+    }
+
+    /**
+     * @return the jobs without dependencies, which start a run of the pipeline
+     */
+    public Set<JobKey> getRoots()
+    {
+        return roots;
+    }
+
+    /**
+     * Get the results of the upstream steps passed to a step of a pipeline.
+     *
+     * @param context the execution context of the step
+     * @return the results by job key of the steps it depends on, empty outside of a pipeline
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<JobKey, Object> getResults(JobExecutionContext context)
+    {
+        Object results = context.getMergedJobDataMap().get(RESULTS_KEY);
+        return results instanceof Map ? (Map<JobKey, Object>) results : Collections.<JobKey, Object>emptyMap();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JobPipeline [name=" + name + ", dependencies=" + dependencies + "]";
+    }
+
+    /**
+     * Builds a {@link JobPipeline}.
+     */
+    public static final class Builder
+    {
+        private final String name;
+
+        private final Map<JobKey, Set<JobKey>> dependencies = new LinkedHashMap<>();
+
+        private Builder(String name)
+        {
+            if (name == null || name.isEmpty())
+            {
+                throw new IllegalArgumentException("A pipeline requires a name");
+            }
+            this.name = name;
+        }
+
+        /**
+         * Add a step.
+         *
+         * @param step the stored job to run
+         * @param dependsOn the steps which have to complete before, all declared already
+         * @return this builder
+         */
+        public Builder step(JobKey step, JobKey... dependsOn)
+        {
+            if (dependencies.containsKey(step))
+            {
+                throw new IllegalArgumentException("The job " + step + " is already a step of pipeline '" + name + "'");
+            }
+
+            Set<JobKey> stepDependencies = new LinkedHashSet<>();
+            for (JobKey dependency : dependsOn)
+            {
+                if (!dependencies.containsKey(dependency))
+                {
+                    throw new IllegalArgumentException("The step " + dependency + " has to be declared before the step "
+                        + step + " of pipeline '" + name + "'");
+                }
+                stepDependencies.add(dependency);
+            }
+
+            dependencies.put(step, Collections.unmodifiableSet(stepDependencies));
+            return this;
+        }
+
+        /**
+         * @return the pipeline
+         */
+        public JobPipeline build()
+        {
+            if (dependencies.isEmpty())
+            {
+                throw new IllegalStateException("The pipeline '" + name + "' has no steps");
+            }
+            return new JobPipeline(name, dependencies);
+        }
+    }
+}
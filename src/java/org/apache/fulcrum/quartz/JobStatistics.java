@@ -0,0 +1,279 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Immutable execution statistics of a single job or a job group.
+ *
+ * <p>Run times are kept in a histogram of exponentially growing buckets:
+ * bucket 0 counts run times of 0 ms, bucket <i>i</i> counts run times
+ * between 2<sup>i-1</sup> and 2<sup>i</sup>-1 ms and the last bucket
+ * counts everything above.</p>
+ *
+ * <p>The lag of an execution is the time between its scheduled fire time
+ * and the time the scheduler actually fired it, e.g. because no thread was
+ * available. Lags are kept in a histogram using the same buckets.</p>
+ */
+public final class JobStatistics
+{
+    /** Number of histogram buckets */
+    public static final int BUCKETS = 32;
+
+    private final long count;
+    private final long failures;
+    private final long vetoes;
+    private final long totalRunTime;
+    private final long minRunTime;
+    private final long maxRunTime;
+    private final long[] histogram;
+    private final long totalLag;
+    private final long maxLag;
+    private final long[] lagHistogram;
+
+    /**
+     * Constructor.
+     *
+     * @param count the number of executions including failed ones
+     * @param failures the number of failed executions
+     * @param vetoes the number of vetoed executions
+     * @param totalRunTime the summed run time of all executions in ms
+     * @param minRunTime the shortest run time in ms
+     * @param maxRunTime the longest run time in ms
+     * @param histogram the run time histogram with {@link #BUCKETS} entries
+     * @param totalLag the summed lag of all executions in ms
+     * @param maxLag the longest lag in ms
+     * @param lagHistogram the lag histogram with {@link #BUCKETS} entries
+     */
+    public JobStatistics(long count, long failures, long vetoes, long totalRunTime,
+        long minRunTime, long maxRunTime, long[] histogram, long totalLag, long maxLag, long[] lagHistogram)
+    {
+        if (histogram.length != BUCKETS || lagHistogram.length != BUCKETS)
+        {
+            throw new IllegalArgumentException("Expected a histogram of " + BUCKETS + " buckets");
+        }
+
+        this.count = count;
+        this.failures = failures;
+        this.vetoes = vetoes;
+        this.totalRunTime = totalRunTime;
+        this.minRunTime = count > 0 ? minRunTime : 0;
+        this.maxRunTime = count > 0 ? maxRunTime : 0;
+        this.histogram = histogram.clone();
+        this.totalLag = totalLag;
+        this.maxLag = count > 0 ? maxLag : 0;
+        this.lagHistogram = lagHistogram.clone();
+    }
+
+    /**
+     * @return the number of executions including failed ones
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the number of failed executions
+     */
+    public long getFailures()
+    {
+        return failures;
+    }
+
+    /**
+     * @return the number of executions vetoed by a trigger listener
+     */
+    public long getVetoes()
+    {
+        return vetoes;
+    }
+
+    /**
+     * @return the summed run time of all executions in ms
+     */
+    public long getTotalRunTime()
+    {
+        return totalRunTime;
+    }
+
+    /**
+     * @return the shortest run time in ms
+     */
+    public long getMinRunTime()
+    {
+        return minRunTime;
+    }
+
+    /**
+     * @return the longest run time in ms
+     */
+    public long getMaxRunTime()
+    {
+        return maxRunTime;
+    }
+
+    /**
+     * @return the mean run time in ms
+     */
+    public double getMeanRunTime()
+    {
+        return count > 0 ? (double) totalRunTime / count : 0.0;
+    }
+
+    /**
+     * @return a copy of the run time histogram
+     */
+    public long[] getHistogram()
+    {
+        return histogram.clone();
+    }
+
+    /**
+     * Estimates a run time percentile from the histogram. The result is the
+     * upper bound of the bucket containing the percentile, limited by the
+     * longest run time seen.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the estimated run time in ms
+     */
+    public long getPercentile(double percentile)
+    {
+        return getPercentile(histogram, percentile, minRunTime, maxRunTime);
+    }
+
+    /**
+     * @return the summed lag of all executions in ms
+     */
+    public long getTotalLag()
+    {
+        return totalLag;
+    }
+
+    /**
+     * @return the longest lag in ms
+     */
+    public long getMaxLag()
+    {
+        return maxLag;
+    }
+
+    /**
+     * @return the mean lag in ms
+     */
+    public double getMeanLag()
+    {
+        return count > 0 ? (double) totalLag / count : 0.0;
+    }
+
+    /**
+     * @return a copy of the lag histogram
+     */
+    public long[] getLagHistogram()
+    {
+        return lagHistogram.clone();
+    }
+
+    /**
+     * Estimates a lag percentile from the histogram like {@link #getPercentile(double)}.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the estimated lag in ms
+     */
+    public long getLagPercentile(double percentile)
+    {
+        return getPercentile(lagHistogram, percentile, 0, maxLag);
+    }
+
+    private static long getPercentile(long[] histogram, double percentile, long min, long max)
+    {
+        if (percentile < 0.0 || percentile > 100.0)
+        {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+
+        long total = 0;
+        for (long bucket : histogram)
+        {
+            total += bucket;
+        }
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += histogram[i];
+            if (seen >= rank)
+            {
+                return Math.max(min, Math.min(max, getBucketUpperBound(i)));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Get the histogram bucket a run time belongs to.
+     *
+     * @param runTime the run time in ms
+     * @return the bucket index
+     */
+    public static int getBucket(long runTime)
+    {
+        if (runTime <= 0)
+        {
+            return 0;
+        }
+
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(runTime), BUCKETS - 1);
+    }
+
+    /**
+     * Get the largest run time counted by a histogram bucket.
+     *
+     * @param bucket the bucket index
+     * @return the run time in ms
+     */
+    public static long getBucketUpperBound(int bucket)
+    {
+        if (bucket == BUCKETS - 1)
+        {
+            return Long.MAX_VALUE;
+        }
+
+        return (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JobStatistics [count=" + count + ", failures=" + failures + ", vetoes=" + vetoes
+            + ", min=" + minRunTime + ", max=" + maxRunTime + ", mean=" + getMeanRunTime()
+            + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+            + ", histogram=" + Arrays.toString(histogram) + ", meanLag=" + getMeanLag()
+            + ", maxLag=" + maxLag + ", lagP99=" + getLagPercentile(99) + "]";
+    }
+}
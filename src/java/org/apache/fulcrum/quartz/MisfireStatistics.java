@@ -0,0 +1,78 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Immutable snapshot of the catch-up of misfired triggers, which spreads
+ * the fires of triggers misfired during a pause of the scheduler instead of
+ * firing all of them at once.
+ */
+public final class MisfireStatistics
+{
+    private final long catchUpFires;
+    private final long coalescedFires;
+    private final long throttledFires;
+
+    /**
+     * Constructor.
+     *
+     * @param catchUpFires the number of misfired triggers moved into the catch-up window
+     * @param coalescedFires the number of missed fire times merged into the catch-up fires
+     * @param throttledFires the number of catch-up fires moved to a later second by the rate limit
+     */
+    public MisfireStatistics(long catchUpFires, long coalescedFires, long throttledFires)
+    {
+        this.catchUpFires = catchUpFires;
+        this.coalescedFires = coalescedFires;
+        this.throttledFires = throttledFires;
+    }
+
+    /**
+     * @return the number of misfired triggers moved into the catch-up window
+     */
+    public long getCatchUpFires()
+    {
+        return catchUpFires;
+    }
+
+    /**
+     * @return the number of missed fire times merged into the catch-up fires,
+     *         i.e. the executions saved by firing each misfired trigger once
+     */
+    public long getCoalescedFires()
+    {
+        return coalescedFires;
+    }
+
+    /**
+     * @return the number of catch-up fires moved to a later second by the rate limit
+     */
+    public long getThrottledFires()
+    {
+        return throttledFires;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MisfireStatistics [catchUpFires=" + catchUpFires + ", coalescedFires=" + coalescedFires
+            + ", throttledFires=" + throttledFires + "]";
+    }
+}
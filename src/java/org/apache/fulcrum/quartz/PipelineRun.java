@@ -0,0 +1,150 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.JobKey;
+
+/**
+ * Immutable record of a completed run of a {@link JobPipeline}, including
+ * the results of its steps and its critical path, i.e. the chain of steps
+ * each of which was the last input of the next one and which therefore
+ * determined the duration of the run.
+ */
+public final class PipelineRun
+{
+    private final String pipelineName;
+    private final long runId;
+    private final long startTime;
+    private final long endTime;
+    private final Map<JobKey, Object> results;
+    private final Map<JobKey, Long> runTimes;
+    private final Map<JobKey, Long> waitTimes;
+    private final List<JobKey> criticalPath;
+
+    /**
+     * Constructor.
+     *
+     * @param pipelineName the name of the pipeline
+     * @param runId the id of the run
+     * @param startTime the time in ms the first step started
+     * @param endTime the time in ms the last step completed
+     * @param results the results of the steps
+     * @param runTimes the run time of the steps in ms
+     * @param waitTimes the time in ms between the completion of the inputs of the steps and their start
+     * @param criticalPath the steps determining the duration of the run in execution order
+     */
+    public PipelineRun(String pipelineName, long runId, long startTime, long endTime, Map<JobKey, Object> results,
+        Map<JobKey, Long> runTimes, Map<JobKey, Long> waitTimes, List<JobKey> criticalPath)
+    {
+        this.pipelineName = pipelineName;
+        this.runId = runId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.results = Collections.unmodifiableMap(new LinkedHashMap<>(results));
+        this.runTimes = Collections.unmodifiableMap(new LinkedHashMap<>(runTimes));
+        this.waitTimes = Collections.unmodifiableMap(new LinkedHashMap<>(waitTimes));
+        this.criticalPath = Collections.unmodifiableList(new ArrayList<>(criticalPath));
+    }
+
+    /**
+     * @return the name of the pipeline
+     */
+    public String getPipelineName()
+    {
+        return pipelineName;
+    }
+
+    /**
+     * @return the id of the run
+     */
+    public long getRunId()
+    {
+        return runId;
+    }
+
+    /**
+     * @return the time in ms the first step started
+     */
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * @return the time in ms the last step completed
+     */
+    public long getEndTime()
+    {
+        return endTime;
+    }
+
+    /**
+     * @return the duration of the run in ms, which is the length of the critical path
+     */
+    public long getDuration()
+    {
+        return endTime - startTime;
+    }
+
+    /**
+     * @return the results of the steps by job key, null for steps without a result
+     */
+    public Map<JobKey, Object> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * @return the run time of the steps in ms by job key
+     */
+    public Map<JobKey, Long> getRunTimes()
+    {
+        return runTimes;
+    }
+
+    /**
+     * @return the time in ms between the completion of the inputs of the steps and their start by job key
+     */
+    public Map<JobKey, Long> getWaitTimes()
+    {
+        return waitTimes;
+    }
+
+    /**
+     * @return the steps determining the duration of the run in execution order
+     */
+    public List<JobKey> getCriticalPath()
+    {
+        return criticalPath;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PipelineRun [pipelineName=" + pipelineName + ", runId=" + runId + ", duration=" + getDuration()
+            + ", criticalPath=" + criticalPath + ", runTimes=" + runTimes + ", waitTimes=" + waitTimes + "]";
+    }
+}
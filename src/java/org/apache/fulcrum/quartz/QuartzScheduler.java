@@ -19,7 +19,20 @@ package org.apache.fulcrum.quartz;
  * under the License.
  */
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
 import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
 
 /**
  *
@@ -29,6 +42,21 @@ public interface QuartzScheduler
 {
 	/** Avalon role - used to id the component within the manager */
 	String ROLE = QuartzScheduler.class.getName();
+
+	/** Startup phase initializing the Quartz scheduler factory */
+	String STARTUP_PHASE_FACTORY_INIT = "factoryInit";
+
+	/** Startup phase creating the scheduler, its thread pool, job store and plugins */
+	String STARTUP_PHASE_SCHEDULER_CREATE = "schedulerCreate";
+
+	/** Startup phase loading the configured scheduling data file */
+	String STARTUP_PHASE_SCHEDULING_DATA_LOAD = "schedulingDataLoad";
+
+	/** Startup phase starting the job store and the plugins, e.g. loading files by the XMLSchedulingDataProcessorPlugin */
+	String STARTUP_PHASE_PLUGIN_START = "pluginStart";
+
+	/** Startup phase starting the scheduler, including the plugins */
+	String STARTUP_PHASE_SCHEDULER_START = "schedulerStart";
 		
     /**
      * Get the underlying Quartz scheduler.
@@ -36,4 +64,194 @@ public interface QuartzScheduler
      * @return the Quartz scheduler
      */
 	Scheduler getScheduler();
+
+    /**
+     * Get the default scheduler or one of the named schedulers configured
+     * in addition to it. All schedulers share the thread pool, the job
+     * factory and the job metrics of the service but keep their jobs and
+     * triggers in their own job stores.
+     *
+     * @param name the name of the scheduler
+     * @return the Quartz scheduler or null if no scheduler has this name
+     */
+	Scheduler getScheduler(String name);
+
+    /**
+     * Get the names of all schedulers of the service.
+     *
+     * @return the name of the default scheduler followed by the configured names
+     */
+	Set<String> getSchedulerNames();
+
+    /**
+     * Get the node firing the triggers of a job in partitioned mode. Jobs
+     * are assigned to the member nodes by consistent hashing of their keys,
+     * every node stores all triggers but only fires those of its own jobs.
+     *
+     * @param jobKey the job
+     * @return the id of the owning node or null if the scheduler is not partitioned
+     */
+	String getPartitionOwner(JobKey jobKey);
+
+    /**
+     * Get a snapshot of the execution statistics collected for all jobs
+     * executed so far.
+     *
+     * @return the immutable execution statistics per job and job group
+     */
+	JobMetrics getJobMetrics();
+
+    /**
+     * Get the time spent in each phase of initializing and starting the
+     * scheduler, see the <code>STARTUP_PHASE</code> constants.
+     *
+     * @return the duration in ms by phase in execution order
+     */
+	Map<String, Long> getStartupTimings();
+
+    /**
+     * Get the saturation of the bulkheads isolating job groups from each
+     * other, which requires the <code>BulkheadThreadPool</code>.
+     *
+     * @return the statistics by bulkhead name or an empty map if no bulkheads are used
+     */
+	Map<String, BulkheadStatistics> getBulkheadStatistics();
+
+    /**
+     * Get the statistics of spreading the fires of misfired triggers over
+     * the configured catch-up window, which requires the
+     * <code>ConcurrentRAMJobStore</code>.
+     *
+     * @return the statistics, all zero if no misfire catch-up is configured
+     */
+	MisfireStatistics getMisfireStatistics();
+
+    /**
+     * Get the clock the triggers are evaluated against, which is the wall
+     * clock unless the simulation mode is configured.
+     *
+     * @return the clock
+     */
+	SchedulerClock getClock();
+
+    /**
+     * Advance the simulated clock, firing all triggers due in between in the
+     * order of their fire times. The jobs are executed one after the other
+     * on the calling thread and recorded by the job metrics, their scheduling
+     * lag is measured in simulated time. Requires the simulation mode.
+     *
+     * @param duration the time in ms to advance the simulated clock by
+     * @return the number of fired triggers
+     * @throws SchedulerException not in simulation mode or firing a trigger failed
+     */
+	long advanceClock(long duration) throws SchedulerException;
+
+    /**
+     * Stop firing triggers of the default and the named schedulers and wait
+     * for their running jobs and the submitted jobs already handed to a
+     * thread to finish. Jobs still running after the timeout
+     * are interrupted if they implement <code>InterruptableJob</code>, jobs
+     * still running after the configured interrupt timeout are logged and
+     * returned. The schedulers stay in standby mode until they are started
+     * again.
+     *
+     * @param timeout the time in ms to wait before interrupting jobs, negative to wait without limit
+     * @return the jobs still running
+     * @throws SchedulerException putting the scheduler into standby mode failed
+     */
+	List<JobExecutionContext> drain(long timeout) throws SchedulerException;
+
+    /**
+     * Add a batch of jobs together with their triggers using a single job
+     * store operation.
+     *
+     * @param triggersAndJobs the triggers of each job
+     * @param replace replace existing jobs and triggers with the same keys
+     * @throws SchedulerException storing the batch failed, nothing was stored
+     */
+	void scheduleJobs(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace) throws SchedulerException;
+
+    /**
+     * Remove a batch of triggers using a single job store operation. Jobs
+     * which are not durable are removed together with their last trigger.
+     *
+     * @param triggerKeys the triggers to remove
+     * @return true if all triggers were found and removed
+     * @throws SchedulerException removing the batch failed
+     */
+	boolean unscheduleJobs(Collection<TriggerKey> triggerKeys) throws SchedulerException;
+
+    /**
+     * Replace a batch of triggers by new ones for the same jobs without
+     * storing the jobs again, so job data persisted in between is kept and
+     * no job is ever left without triggers. The <code>ConcurrentRAMJobStore</code>
+     * replaces the whole batch in a single job store operation, other job
+     * stores replace the triggers one by one. Triggers not found are skipped.
+     *
+     * @param triggers the new trigger by the key of the trigger it replaces
+     * @return true if all replaced triggers were found
+     * @throws SchedulerException rescheduling the batch failed
+     */
+	boolean rescheduleJobs(Map<TriggerKey, ? extends Trigger> triggers) throws SchedulerException;
+
+    /**
+     * Execute a job immediately on the thread pool of the scheduler without
+     * storing the job or a trigger in the job store. Submitted jobs wait in a
+     * bounded queue until a thread is available and are executed even if the
+     * scheduler is in standby mode. They receive the Avalon infrastructure
+     * and are recorded by the job metrics like fired jobs, but job listeners
+     * registered with the scheduler are not notified, concurrent execution
+     * is not prevented and a job is never re-fired.
+     *
+     * @param jobDetail the job to execute, which does not need to be stored
+     * @return the result set by the job on its <code>JobExecutionContext</code>,
+     *         completed exceptionally with the <code>JobExecutionException</code>
+     *         of a failed job
+     * @throws SchedulerException the submission queue is full or stopped, or
+     *         the scheduler was not created by the service
+     */
+	CompletableFuture<Object> submitJob(JobDetail jobDetail) throws SchedulerException;
+
+    /**
+     * Add a pipeline of stored jobs or replace the pipeline with the same
+     * name. A run of the pipeline starts whenever one of its root steps
+     * completed successfully after being fired by one of its triggers, or
+     * when started explicitly. The further steps are submitted for immediate
+     * execution like by {@link #submitJob(JobDetail)} as soon as the steps
+     * they depend on completed, receiving their results in the job data.
+     *
+     * @param pipeline the pipeline
+     * @throws SchedulerException a job of the pipeline does not exist
+     */
+	void addPipeline(JobPipeline pipeline) throws SchedulerException;
+
+    /**
+     * Remove a pipeline, active runs are completed.
+     *
+     * @param name the name of the pipeline
+     * @return true if the pipeline was found and removed
+     * @throws SchedulerException the service is not initialized
+     */
+	boolean removePipeline(String name) throws SchedulerException;
+
+    /**
+     * Start a run of a pipeline by submitting its root steps.
+     *
+     * @param name the name of the pipeline
+     * @param data the job data passed to every step in addition to its own, may be null
+     * @return completed with the run once all steps completed, completed
+     *         exceptionally with a <code>SchedulerException</code> once a step failed
+     * @throws SchedulerException the pipeline does not exist
+     */
+	CompletableFuture<PipelineRun> startPipeline(String name, JobDataMap data) throws SchedulerException;
+
+    /**
+     * Get the last successful run of a pipeline, including runs started by
+     * a trigger of a root step.
+     *
+     * @param name the name of the pipeline
+     * @return the run including its critical path or null if the pipeline did not complete yet
+     * @throws SchedulerException the service is not initialized
+     */
+	PipelineRun getLastPipelineRun(String name) throws SchedulerException;
 }
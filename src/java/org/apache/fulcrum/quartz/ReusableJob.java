@@ -0,0 +1,36 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.Job;
+
+/**
+ * Marker interface for jobs whose instances may be reused for subsequent
+ * executions. An instance is never used by two executions at the same time,
+ * but it is only created, logged and serviced once and afterwards kept in a
+ * bounded pool of idle instances.
+ *
+ * <p>Jobs implementing <code>org.apache.avalon.framework.thread.ThreadSafe</code>
+ * go one step further and share a single instance between all executions.</p>
+ */
+public interface ReusableJob extends Job
+{
+    // marker interface
+}
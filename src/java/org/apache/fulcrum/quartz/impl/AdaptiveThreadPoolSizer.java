@@ -0,0 +1,191 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.avalon.framework.logger.Logger;
+
+/**
+ * Grows and shrinks a {@link ResizableThreadPool} within bounds based on
+ * the scheduling lag, i.e. how late jobs start compared to their scheduled
+ * fire time, and on the utilization of the pool. The pool grows while jobs
+ * start late although almost all threads are busy, and shrinks again after
+ * several samples without lag and with mostly idle threads.
+ */
+final class AdaptiveThreadPoolSizer implements Runnable
+{
+    /** Minimum share of busy threads before growing the pool */
+    private static final double GROW_UTILIZATION = 0.9;
+
+    /** Maximum share of busy threads before shrinking the pool */
+    private static final double SHRINK_UTILIZATION = 0.5;
+
+    /** Number of consecutive idle samples before shrinking the pool */
+    private static final int SHRINK_SAMPLES = 3;
+
+    private final Logger logger;
+
+    private final ResizableThreadPool threadPool;
+
+    private final int minThreads;
+
+    private final int maxThreads;
+
+    private final long lagThreshold;
+
+    private final long interval;
+
+    /** The lag of the jobs started since the last sample */
+    private final LongAdder lagSum = new LongAdder();
+
+    private final LongAdder lagCount = new LongAdder();
+
+    private final LongAccumulator maxLag = new LongAccumulator(Math::max, 0L);
+
+    /** Consecutive idle samples, only used by the sampling thread */
+    private int idleSamples;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param logger the logger
+     * @param threadPool the pool to resize
+     * @param minThreads the minimum number of threads
+     * @param maxThreads the maximum number of threads
+     * @param lagThreshold the mean lag in ms of a sample to grow the pool
+     * @param interval the time in ms between samples
+     */
+    AdaptiveThreadPoolSizer(Logger logger, ResizableThreadPool threadPool, int minThreads, int maxThreads,
+        long lagThreshold, long interval)
+    {
+        this.logger = logger;
+        this.threadPool = threadPool;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.lagThreshold = lagThreshold;
+        this.interval = interval;
+    }
+
+    /**
+     * Record the lag of a started job.
+     *
+     * @param lag the time in ms between the scheduled and the actual fire time
+     */
+    void recordLag(long lag)
+    {
+        lagSum.add(lag);
+        lagCount.increment();
+        maxLag.accumulate(lag);
+    }
+
+    /**
+     * Start sampling, after moving the size of the pool within the bounds.
+     */
+    synchronized void start()
+    {
+        int threadCount = threadPool.getThreadCount();
+        int bounded = Math.max(minThreads, Math.min(maxThreads, threadCount));
+        if (bounded != threadCount)
+        {
+            threadPool.setThreadCount(bounded);
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Quartz-Adaptive-Sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sampling, the pool keeps its current size.
+     */
+    synchronized void stop()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            adjust();
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Adjusting the size of the thread pool failed", e);
+        }
+    }
+
+    /**
+     * Take a sample and resize the pool if required.
+     *
+     * @return the new size of the pool
+     */
+    int adjust()
+    {
+        long count = lagCount.sumThenReset();
+        long meanLag = count > 0 ? lagSum.sumThenReset() / count : 0L;
+        long sampleMaxLag = maxLag.getThenReset();
+
+        int threadCount = threadPool.getThreadCount();
+        double utilization = threadPool.getActiveCount() / (double) threadCount;
+        int step = Math.max(1, threadCount / 4);
+        int newThreadCount = threadCount;
+
+        if (meanLag > lagThreshold && utilization >= GROW_UTILIZATION)
+        {
+            idleSamples = 0;
+            newThreadCount = Math.min(maxThreads, threadCount + step);
+        }
+        else if (sampleMaxLag <= lagThreshold && utilization < SHRINK_UTILIZATION)
+        {
+            if (++idleSamples >= SHRINK_SAMPLES)
+            {
+                idleSamples = 0;
+                newThreadCount = Math.max(minThreads, threadCount - step);
+            }
+        }
+        else
+        {
+            idleSamples = 0;
+        }
+
+        if (newThreadCount != threadCount)
+        {
+            threadPool.setThreadCount(newThreadCount);
+            logger.info("Resized the thread pool from " + threadCount + " to " + newThreadCount
+                + " threads, mean scheduling lag " + meanLag + " ms, utilization " + Math.round(utilization * 100) + "%");
+        }
+
+        return newThreadCount;
+    }
+}
@@ -0,0 +1,240 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avalon.framework.logger.LogEnabled;
+import org.apache.avalon.framework.logger.Logger;
+import org.apache.avalon.framework.service.ServiceException;
+import org.apache.avalon.framework.service.ServiceManager;
+import org.apache.avalon.framework.service.Serviceable;
+import org.apache.avalon.framework.thread.ThreadSafe;
+import org.apache.fulcrum.quartz.BatchJob;
+import org.apache.fulcrum.quartz.ReusableJob;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.simpl.PropertySettingJobFactory;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Job factory injecting the Avalon logger and service manager when a job
+ * instance is created instead of every time the job is executed.
+ *
+ * <ul>
+ *   <li>jobs implementing <code>ThreadSafe</code> are created once and the
+ *   instance is shared by all executions - the job data map is not applied
+ *   to the shared instance</li>
+ *   <li>jobs implementing {@link ReusableJob} are taken from a bounded pool
+ *   of idle instances and returned after their execution</li>
+ *   <li>jobs implementing {@link BatchJob} are handed to the {@link JobBatcher}
+ *   if batching is configured, unless they disallow concurrent execution</li>
+ *   <li>all other jobs are created for every execution as Quartz does</li>
+ * </ul>
+ *
+ * Like the Quartz default factory, the job data map is applied to the bean
+ * properties of the job instances unless they are shared.
+ */
+final class AvalonJobFactory extends PropertySettingJobFactory
+{
+    /** the logger injected into LogEnabled jobs */
+    private final Logger logger;
+
+    /** the service manager injected into Serviceable jobs */
+    private final ServiceManager serviceManager;
+
+    /** the maximum number of idle instances kept per reusable job class */
+    private final int maxPooledInstances;
+
+    /** the shared instances of thread-safe jobs */
+    private final Map<Class<? extends Job>, Job> sharedInstances = new ConcurrentHashMap<>();
+
+    /** the idle instances of reusable jobs */
+    private final Map<Class<? extends Job>, Queue<Job>> pooledInstances = new ConcurrentHashMap<>();
+
+    /** coalesces the fires of batch jobs, null if batching is not configured */
+    private volatile JobBatcher batcher;
+
+    /**
+     * Constructor.
+     *
+     * @param logger the logger injected into LogEnabled jobs
+     * @param serviceManager the service manager injected into Serviceable jobs
+     * @param maxPooledInstances the maximum number of idle instances per reusable job class
+     */
+    AvalonJobFactory(Logger logger, ServiceManager serviceManager, int maxPooledInstances)
+    {
+        this.logger = logger;
+        this.serviceManager = serviceManager;
+        this.maxPooledInstances = maxPooledInstances;
+    }
+
+    /**
+     * @see org.quartz.simpl.PropertySettingJobFactory#newJob(org.quartz.spi.TriggerFiredBundle, org.quartz.Scheduler)
+     */
+    @Override
+    public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException
+    {
+        JobBatcher jobBatcher = batcher;
+        if (jobBatcher != null && BatchJob.class.isAssignableFrom(bundle.getJobDetail().getJobClass())
+            && !bundle.getJobDetail().isConcurrentExecutionDisallowed())
+        {
+            return jobBatcher;
+        }
+
+        return createJob(bundle, scheduler);
+    }
+
+    /**
+     * Create or reuse a job instance without batching its execution.
+     *
+     * @param bundle the fired trigger
+     * @param scheduler the scheduler
+     * @return the job instance
+     * @throws SchedulerException the job could not be instantiated
+     */
+    Job createJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException
+    {
+        Class<? extends Job> jobClass = bundle.getJobDetail().getJobClass();
+
+        if (ThreadSafe.class.isAssignableFrom(jobClass))
+        {
+            Job job = sharedInstances.get(jobClass);
+            if (job == null)
+            {
+                synchronized (sharedInstances)
+                {
+                    job = sharedInstances.get(jobClass);
+                    if (job == null)
+                    {
+                        job = instantiate(jobClass);
+                        enableAvalon(job);
+                        sharedInstances.put(jobClass, job);
+                    }
+                }
+            }
+            return job;
+        }
+
+        if (ReusableJob.class.isAssignableFrom(jobClass) && maxPooledInstances > 0)
+        {
+            Job job = getPool(jobClass).poll();
+            if (job != null)
+            {
+                applyJobData(bundle, job);
+                return job;
+            }
+        }
+
+        Job job = super.newJob(bundle, scheduler);
+        enableAvalon(job);
+        return job;
+    }
+
+    /**
+     * Return a job instance after its execution to make it available for
+     * the next execution. Only reusable jobs are kept, up to the configured
+     * number of idle instances per class.
+     *
+     * @param job the job instance
+     */
+    void release(Job job)
+    {
+        if (job instanceof ReusableJob && !(job instanceof ThreadSafe) && maxPooledInstances > 0)
+        {
+            getPool(job.getClass()).offer(job);
+        }
+    }
+
+    /**
+     * Coalesce the fires of batch jobs.
+     *
+     * @param batcher the batcher, null to execute every fire on its own
+     */
+    void setBatcher(JobBatcher batcher)
+    {
+        this.batcher = batcher;
+    }
+
+    /**
+     * Discard all cached job instances.
+     */
+    void clear()
+    {
+        sharedInstances.clear();
+        pooledInstances.clear();
+    }
+
+    /**
+     * Inject the Avalon logger and service manager.
+     *
+     * @param job the job instance
+     */
+    void enableAvalon(Job job)
+    {
+        if (job instanceof LogEnabled)
+        {
+            ((LogEnabled) job).enableLogging(logger);
+        }
+
+        if (job instanceof Serviceable)
+        {
+            try
+            {
+                ((Serviceable) job).service(serviceManager);
+            }
+            catch (ServiceException e)
+            {
+                logger.error("Error servicing Job[" + job + "]", e);
+            }
+        }
+    }
+
+    private Queue<Job> getPool(Class<? extends Job> jobClass)
+    {
+        Queue<Job> pool = pooledInstances.get(jobClass);
+        return pool != null ? pool : pooledInstances.computeIfAbsent(jobClass, key -> new ArrayBlockingQueue<>(maxPooledInstances));
+    }
+
+    private void applyJobData(TriggerFiredBundle bundle, Job job) throws SchedulerException
+    {
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.putAll(bundle.getJobDetail().getJobDataMap());
+        jobDataMap.putAll(bundle.getTrigger().getJobDataMap());
+        setBeanProps(job, jobDataMap);
+    }
+
+    private Job instantiate(Class<? extends Job> jobClass) throws SchedulerException
+    {
+        try
+        {
+            return jobClass.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new SchedulerException("Problem instantiating class '" + jobClass.getName() + "'", e);
+        }
+    }
+}
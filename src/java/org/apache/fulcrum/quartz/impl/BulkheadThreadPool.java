@@ -0,0 +1,630 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.fulcrum.quartz.BulkheadStatistics;
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Quartz <code>ThreadPool</code> isolating job groups from each other.
+ * Job groups are assigned to named bulkheads, each being a bounded executor
+ * with its own maximum concurrency and queue; all other jobs run on the
+ * default bulkhead sized by <code>threadCount</code>. A burst of jobs in one
+ * group therefore can no longer occupy the threads of the other groups.
+ *
+ * <p>The scheduler keeps acquiring triggers as long as any bulkhead has room.
+ * Handing a job to a full bulkhead never blocks the scheduler thread, the
+ * job overflows into the queue of its bulkhead instead and is counted in
+ * the statistics, so a burst in one group delays neither the triggers of
+ * the other groups nor their jobs. The fired job is determined from the
+ * <code>JobRunShell</code> handed over by the scheduler; if this is not
+ * possible the job runs on the default bulkhead.</p>
+ *
+ * <p>Selected with <code>org.quartz.threadPool.class</code>; the properties
+ * understood by <code>SimpleThreadPool</code> for thread count, priority,
+ * name prefix and daemon threads are accepted as well. Bulkheads are added
+ * with {@link #addBulkhead(String, int, int, Collection)}, which the
+ * scheduler service does for the bulkheads of its configuration. Resizing
+ * the pool at runtime resizes the default bulkhead.</p>
+ */
+public class BulkheadThreadPool implements ResizableThreadPool
+{
+    /** Name of the bulkhead running the jobs of unassigned groups */
+    public static final String DEFAULT_BULKHEAD = "default";
+
+    /** Default thread name prefix */
+    private static final String DEFAULT_THREAD_NAME_PREFIX = "QuartzBulkheadWorker";
+
+    /** Keep-alive of idle threads in seconds */
+    private static final long KEEP_ALIVE = 60L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /** Guards the bulkhead counters */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled whenever a job completes or the pool is shut down */
+    private final Condition available = lock.newCondition();
+
+    /** The bulkheads by name, replaced on modification */
+    private volatile Map<String, Bulkhead> bulkheads = Collections.emptyMap();
+
+    /** The bulkheads by job group, replaced on modification */
+    private volatile Map<String, Bulkhead> routes = Collections.emptyMap();
+
+    /** Maximum number of concurrently running jobs of unassigned groups */
+    private volatile int threadCount = 10;
+
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    private boolean makeThreadsDaemons;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private boolean shutdown;
+
+    /**
+     * @return the maximum number of concurrently running jobs of unassigned groups
+     */
+    @Override
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount the maximum number of concurrently running jobs of unassigned groups
+     */
+    @Override
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount <= 0)
+        {
+            throw new IllegalArgumentException("Thread count must be > 0");
+        }
+
+        lock.lock();
+        try
+        {
+            Bulkhead bulkhead = bulkheads.get(DEFAULT_BULKHEAD);
+            if (bulkhead != null)
+            {
+                bulkhead.resize(threadCount);
+                available.signalAll();
+            }
+
+            this.threadCount = threadCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of running jobs of unassigned groups
+     */
+    @Override
+    public int getActiveCount()
+    {
+        Bulkhead bulkhead = bulkheads.get(DEFAULT_BULKHEAD);
+        return bulkhead != null ? bulkhead.active.get() : 0;
+    }
+
+    /**
+     * @return the priority of the threads
+     */
+    public int getThreadPriority()
+    {
+        return threadPriority;
+    }
+
+    /**
+     * @param threadPriority the priority of the threads
+     */
+    public void setThreadPriority(int threadPriority)
+    {
+        this.threadPriority = threadPriority;
+    }
+
+    /**
+     * @return true if the threads are daemon threads
+     */
+    public boolean isMakeThreadsDaemons()
+    {
+        return makeThreadsDaemons;
+    }
+
+    /**
+     * @param makeThreadsDaemons make the threads daemon threads
+     */
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons)
+    {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    /**
+     * @return the thread name prefix, followed by the name of the bulkhead
+     */
+    public String getThreadNamePrefix()
+    {
+        if (threadNamePrefix == null)
+        {
+            return schedulerInstanceName != null
+                ? schedulerInstanceName + "_" + DEFAULT_THREAD_NAME_PREFIX
+                : DEFAULT_THREAD_NAME_PREFIX;
+        }
+
+        return threadNamePrefix;
+    }
+
+    /**
+     * @param threadNamePrefix the thread name prefix
+     */
+    public void setThreadNamePrefix(String threadNamePrefix)
+    {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * Add a bulkhead running the jobs of the given groups.
+     *
+     * @param name the name of the bulkhead
+     * @param maxConcurrency the maximum number of concurrently running jobs
+     * @param queueSize the number of waiting jobs the bulkhead absorbs before it is full
+     * @param groups the job groups routed to the bulkhead
+     * @throws SchedulerConfigException the bulkhead is invalid or a group is already assigned
+     */
+    public void addBulkhead(String name, int maxConcurrency, int queueSize, Collection<String> groups)
+        throws SchedulerConfigException
+    {
+        if (maxConcurrency <= 0)
+        {
+            throw new SchedulerConfigException("Max concurrency of bulkhead '" + name + "' must be > 0");
+        }
+
+        if (queueSize < 0)
+        {
+            throw new SchedulerConfigException("Queue size of bulkhead '" + name + "' must be >= 0");
+        }
+
+        lock.lock();
+        try
+        {
+            if (bulkheads.containsKey(name))
+            {
+                throw new SchedulerConfigException("Bulkhead '" + name + "' already exists");
+            }
+
+            Map<String, Bulkhead> newRoutes = new HashMap<>(routes);
+            Bulkhead bulkhead = new Bulkhead(name, maxConcurrency, queueSize, new LinkedHashSet<>(groups));
+            for (String group : bulkhead.groups)
+            {
+                Bulkhead assigned = newRoutes.put(group, bulkhead);
+                if (assigned != null)
+                {
+                    throw new SchedulerConfigException("Job group '" + group + "' is already assigned to bulkhead '" + assigned.name + "'");
+                }
+            }
+
+            Map<String, Bulkhead> newBulkheads = new LinkedHashMap<>(bulkheads);
+            newBulkheads.put(name, bulkhead);
+            this.bulkheads = newBulkheads;
+            this.routes = newRoutes;
+            available.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        log.info("Jobs of groups {} will use at most {} threads and {} queued jobs of bulkhead '{}'",
+            groups, maxConcurrency, queueSize, name);
+    }
+
+    /**
+     * @return the saturation of all bulkheads by name, starting with the default bulkhead
+     */
+    public Map<String, BulkheadStatistics> getStatistics()
+    {
+        Map<String, BulkheadStatistics> result = new LinkedHashMap<>();
+
+        lock.lock();
+        try
+        {
+            for (Bulkhead bulkhead : bulkheads.values())
+            {
+                result.put(bulkhead.name, bulkhead.snapshot());
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#getPoolSize()
+     */
+    @Override
+    public int getPoolSize()
+    {
+        int poolSize = 0;
+        for (Bulkhead bulkhead : bulkheads.values())
+        {
+            poolSize += bulkhead.maxConcurrency;
+        }
+
+        return bulkheads.isEmpty() ? threadCount : poolSize;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceId(java.lang.String)
+     */
+    @Override
+    public void setInstanceId(String schedInstId)
+    {
+        // not used
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceName(java.lang.String)
+     */
+    @Override
+    public void setInstanceName(String schedName)
+    {
+        this.schedulerInstanceName = schedName;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#initialize()
+     */
+    @Override
+    public void initialize() throws SchedulerConfigException
+    {
+        if (threadCount <= 0)
+        {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY)
+        {
+            throw new SchedulerConfigException("Thread priority must be > 0 and <= 10");
+        }
+
+        if (!JobRunShells.isContextAccessible())
+        {
+            log.warn("The fired jobs can not be determined, all jobs will run on the default bulkhead");
+        }
+
+        addBulkhead(DEFAULT_BULKHEAD, threadCount, 0, Collections.<String>emptySet());
+    }
+
+    /**
+     * Hands the runnable to the executor of the bulkhead of the job, where it
+     * overflows into the queue if the bulkhead is full. Once the pool is shut
+     * down the runnable is still executed on a new thread to let the
+     * scheduler complete its shutdown.
+     *
+     * @see org.quartz.spi.ThreadPool#runInThread(java.lang.Runnable)
+     */
+    @Override
+    public boolean runInThread(Runnable runnable)
+    {
+        if (runnable == null)
+        {
+            return false;
+        }
+
+        Bulkhead bulkhead = route(runnable);
+
+        lock.lock();
+        try
+        {
+            if (shutdown)
+            {
+                bulkhead.threadFactory.newThread(runnable).start();
+                return true;
+            }
+
+            if (bulkhead.admitted >= bulkhead.capacity)
+            {
+                bulkhead.overflows++;
+                log.debug("Bulkhead '{}' is full, queueing the job beyond its queue size", bulkhead.name);
+            }
+
+            bulkhead.admitted++;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        try
+        {
+            bulkhead.executor.execute(() -> {
+                bulkhead.active.incrementAndGet();
+                try
+                {
+                    runnable.run();
+                }
+                finally
+                {
+                    bulkhead.active.decrementAndGet();
+                    release(bulkhead, true);
+                }
+            });
+        }
+        catch (RejectedExecutionException | OutOfMemoryError e)
+        {
+            log.error("Unable to start a thread for the job", e);
+            release(bulkhead, false);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Blocks until any bulkhead has room, a full bulkhead alone never
+     * blocks the scheduler as long as another one has room.
+     *
+     * @see org.quartz.spi.ThreadPool#blockForAvailableThreads()
+     */
+    @Override
+    public int blockForAvailableThreads()
+    {
+        lock.lock();
+        try
+        {
+            int free = getFree();
+            while (free == 0 && !shutdown)
+            {
+                available.awaitUninterruptibly();
+                free = getFree();
+            }
+
+            return free;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#shutdown(boolean)
+     */
+    @Override
+    public void shutdown(boolean waitForJobsToComplete)
+    {
+        lock.lock();
+        try
+        {
+            if (shutdown)
+            {
+                return;
+            }
+
+            shutdown = true;
+            available.signalAll();
+
+            if (waitForJobsToComplete)
+            {
+                while (getAdmitted() > 0)
+                {
+                    log.debug("Waiting for {} jobs to complete", getAdmitted());
+                    available.awaitUninterruptibly();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        for (Bulkhead bulkhead : bulkheads.values())
+        {
+            bulkhead.executor.shutdown();
+        }
+
+        log.debug("Shutdown of thread pool complete");
+    }
+
+    /**
+     * Find the bulkhead of the job run by a <code>JobRunShell</code>.
+     *
+     * @param runnable the runnable passed by the scheduler
+     * @return the bulkhead
+     */
+    private Bulkhead route(Runnable runnable)
+    {
+        Bulkhead bulkhead = null;
+
+        JobExecutionContext context = JobRunShells.getContext(runnable);
+        if (context != null)
+        {
+            bulkhead = routes.get(context.getJobDetail().getKey().getGroup());
+        }
+
+        return bulkhead != null ? bulkhead : bulkheads.get(DEFAULT_BULKHEAD);
+    }
+
+    /**
+     * Frees the slot of a completed job.
+     *
+     * @param bulkhead the bulkhead of the job
+     * @param executed whether the job was executed
+     */
+    private void release(Bulkhead bulkhead, boolean executed)
+    {
+        lock.lock();
+        try
+        {
+            bulkhead.admitted--;
+            bulkhead.executed += executed ? 1 : 0;
+            available.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of jobs all bulkheads have room for, requires the lock
+     */
+    private int getFree()
+    {
+        int free = 0;
+        for (Bulkhead bulkhead : bulkheads.values())
+        {
+            free += Math.max(0, bulkhead.capacity - bulkhead.admitted);
+        }
+
+        return free;
+    }
+
+    /**
+     * @return the number of running and queued jobs of all bulkheads, requires the lock
+     */
+    private int getAdmitted()
+    {
+        int admitted = 0;
+        for (Bulkhead bulkhead : bulkheads.values())
+        {
+            admitted += bulkhead.admitted;
+        }
+
+        return admitted;
+    }
+
+    /**
+     * A bounded executor of some job groups. The counters except the
+     * number of running jobs and the sizes are guarded by the lock of the
+     * pool, the sizes are only modified while holding it.
+     */
+    private final class Bulkhead
+    {
+        final String name;
+        final int queueSize;
+        volatile int maxConcurrency;
+        volatile int capacity;
+        final Set<String> groups;
+        final ThreadFactory threadFactory;
+        final ThreadPoolExecutor executor;
+        final AtomicInteger active = new AtomicInteger();
+
+        /** Running and queued jobs, exceeding the capacity while jobs overflow */
+        int admitted;
+        long executed;
+        long overflows;
+
+        Bulkhead(String name, int maxConcurrency, int queueSize, Set<String> groups)
+        {
+            this.name = name;
+            this.maxConcurrency = maxConcurrency;
+            this.queueSize = queueSize;
+            this.capacity = maxConcurrency + queueSize;
+            this.groups = groups;
+            this.threadFactory = new BulkheadThreadFactory(getThreadNamePrefix() + "-" + name, threadPriority, makeThreadsDaemons);
+
+            // the unbounded queue takes the overflow of a full bulkhead, so the executor never rejects a job
+            this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        void resize(int newMaxConcurrency)
+        {
+            // the maximum pool size must never drop below the core pool size
+            if (newMaxConcurrency > executor.getMaximumPoolSize())
+            {
+                executor.setMaximumPoolSize(newMaxConcurrency);
+                executor.setCorePoolSize(newMaxConcurrency);
+            }
+            else
+            {
+                executor.setCorePoolSize(newMaxConcurrency);
+                executor.setMaximumPoolSize(newMaxConcurrency);
+            }
+
+            this.maxConcurrency = newMaxConcurrency;
+            this.capacity = newMaxConcurrency + queueSize;
+        }
+
+        BulkheadStatistics snapshot()
+        {
+            int running = active.get();
+            return new BulkheadStatistics(name, groups, maxConcurrency, queueSize,
+                running, Math.max(0, admitted - running), executed, overflows);
+        }
+    }
+
+    /**
+     * Creates the named threads of a bulkhead.
+     */
+    private static final class BulkheadThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+        private final int priority;
+        private final boolean daemon;
+
+        BulkheadThreadFactory(String prefix, int priority, boolean daemon)
+        {
+            this.prefix = prefix;
+            this.priority = priority;
+            this.daemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setPriority(priority);
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.quartz.JobDataMap;
+
+/**
+ * An immutable job data map stored as sorted arrays of keys and values.
+ * Keys and string values are interned, the key arrays of maps with the same
+ * keys are shared and maps with the same immutable content are shared as a
+ * whole, so jobs with identical data hold one instance only. Shared
+ * instances are released by the garbage collector once no job uses them.
+ */
+final class CompactJobData implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /** The map without entries */
+    static final CompactJobData EMPTY = new CompactJobData(new String[0], new Object[0]);
+
+    /** The shared maps, weakly referenced */
+    private static final Map<CompactJobData, WeakReference<CompactJobData>> INSTANCES =
+        Collections.synchronizedMap(new WeakHashMap<CompactJobData, WeakReference<CompactJobData>>());
+
+    /** The shared key arrays, weakly referenced */
+    private static final Map<List<String>, WeakReference<String[]>> KEYS =
+        Collections.synchronizedMap(new WeakHashMap<List<String>, WeakReference<String[]>>());
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final int hash;
+
+    private CompactJobData(String[] keys, Object[] values)
+    {
+        this.keys = keys;
+        this.values = values;
+        this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    /**
+     * Get the compact form of a job data map.
+     *
+     * @param data the job data map, may be null
+     * @return the shared compact map if all values are immutable, a new one otherwise
+     */
+    static CompactJobData of(Map<String, ?> data)
+    {
+        if (data == null || data.isEmpty())
+        {
+            return EMPTY;
+        }
+
+        String[] keys = data.keySet().toArray(new String[data.size()]);
+        Arrays.sort(keys);
+        Object[] values = new Object[keys.length];
+        boolean immutable = true;
+
+        for (int i = 0; i < keys.length; i++)
+        {
+            Object value = data.get(keys[i]);
+            keys[i] = keys[i].intern();
+            values[i] = value instanceof String ? ((String) value).intern() : value;
+            immutable &= value == null || value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Character;
+        }
+
+        CompactJobData compact = new CompactJobData(internKeys(keys), values);
+
+        // mutable values must not be shared with other jobs
+        return immutable ? compact.intern() : compact;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size()
+    {
+        return keys.length;
+    }
+
+    /**
+     * @return a new mutable job data map with the entries, not marked dirty
+     */
+    JobDataMap toJobDataMap()
+    {
+        JobDataMap jobDataMap = new JobDataMap();
+        for (int i = 0; i < keys.length; i++)
+        {
+            jobDataMap.put(keys[i], values[i]);
+        }
+        jobDataMap.clearDirtyFlag();
+        return jobDataMap;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof CompactJobData))
+        {
+            return false;
+        }
+
+        CompactJobData other = (CompactJobData) obj;
+        return hash == other.hash && Arrays.equals(keys, other.keys) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++)
+        {
+            result.append(i > 0 ? ", " : "").append(keys[i]).append('=').append(values[i]);
+        }
+        return result.append('}').toString();
+    }
+
+    private CompactJobData intern()
+    {
+        synchronized (INSTANCES)
+        {
+            WeakReference<CompactJobData> reference = INSTANCES.get(this);
+            CompactJobData shared = reference != null ? reference.get() : null;
+            if (shared == null)
+            {
+                INSTANCES.put(this, new WeakReference<>(this));
+                shared = this;
+            }
+            return shared;
+        }
+    }
+
+    private static String[] internKeys(String[] keys)
+    {
+        List<String> list = Arrays.asList(keys);
+        synchronized (KEYS)
+        {
+            WeakReference<String[]> reference = KEYS.get(list);
+            String[] shared = reference != null ? reference.get() : null;
+            if (shared == null)
+            {
+                // the list is only weakly reachable through the array it wraps
+                KEYS.put(list, new WeakReference<>(keys));
+                shared = keys;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Share the deserialized map like any other.
+     */
+    private Object readResolve()
+    {
+        return keys.length == 0 ? EMPTY : intern();
+    }
+}
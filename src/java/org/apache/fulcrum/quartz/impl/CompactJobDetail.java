@@ -0,0 +1,95 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Map;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.impl.JobDetailImpl;
+
+/**
+ * A job detail keeping its job data as {@link CompactJobData} until the data
+ * is accessed. Copies share the compact data and each one creates its own
+ * mutable <code>JobDataMap</code> on first access, so changing the data of a
+ * copy never affects the stored job or other copies.
+ */
+final class CompactJobDetail extends JobDetailImpl
+{
+    private static final long serialVersionUID = 1L;
+
+    /** The job data until it is accessed, null afterwards */
+    private CompactJobData data;
+
+    private CompactJobDetail(JobDetail jobDetail, CompactJobData data)
+    {
+        setKey(jobDetail.getKey());
+        setDescription(jobDetail.getDescription());
+        setJobClass(jobDetail.getJobClass());
+        setDurability(jobDetail.isDurable());
+        setRequestsRecovery(jobDetail.requestsRecovery());
+        this.data = data;
+    }
+
+    /**
+     * @param jobDetail the job to copy
+     * @return a copy of the job with compact job data
+     */
+    static CompactJobDetail of(JobDetail jobDetail)
+    {
+        return of(jobDetail, jobDetail.getJobDataMap());
+    }
+
+    /**
+     * @param jobDetail the job to copy
+     * @param data the job data of the copy, may be null
+     * @return a copy of the job with the given data in compact form
+     */
+    static CompactJobDetail of(JobDetail jobDetail, Map<String, ?> data)
+    {
+        return new CompactJobDetail(jobDetail, CompactJobData.of(data));
+    }
+
+    /**
+     * @return true if the job data was not accessed yet
+     */
+    boolean isCompact()
+    {
+        return data != null;
+    }
+
+    @Override
+    public JobDataMap getJobDataMap()
+    {
+        if (data != null)
+        {
+            super.setJobDataMap(data.toJobDataMap());
+            data = null;
+        }
+        return super.getJobDataMap();
+    }
+
+    @Override
+    public void setJobDataMap(JobDataMap jobDataMap)
+    {
+        data = null;
+        super.setJobDataMap(jobDataMap);
+    }
+}
@@ -0,0 +1,498 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.text.ParseException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.quartz.CronExpression;
+
+/**
+ * A Quartz cron expression compiled into one bit set per field, computing
+ * the next fire time with <code>java.time</code> arithmetic instead of the
+ * <code>TreeSet</code> and <code>Calendar</code> walks of
+ * <code>CronExpression.getTimeAfter()</code>.
+ *
+ * <p>Instances are immutable and shared by all triggers using the same
+ * expression and time zone, see {@link #compile(String, TimeZone)}. Every
+ * instance remembers the last computed fire time together with the time it
+ * was computed for: any later request up to that fire time has the same
+ * answer, so triggers with identical expressions firing together compute
+ * their next fire time once.</p>
+ *
+ * <p>Expressions using the special day characters 'L', 'W' and '#' are
+ * evaluated by a Quartz <code>CronExpression</code> instead, but still
+ * benefit from the shared next fire time.</p>
+ */
+public final class CompiledCronExpression
+{
+    /** Maximum number of shared instances before the cache is cleared */
+    private static final int MAX_CACHED = 10000;
+
+    /** The shared instances by expression and time zone */
+    private static final ConcurrentMap<String, CompiledCronExpression> CACHE = new ConcurrentHashMap<>();
+
+    private final String cronExpression;
+
+    private final TimeZone timeZone;
+
+    private final ZoneRules rules;
+
+    /** Evaluates the expression if it could not be compiled, null otherwise */
+    private final CronExpression fallback;
+
+    private final long seconds;
+
+    private final long minutes;
+
+    private final long hours;
+
+    private final long daysOfMonth;
+
+    private final long months;
+
+    /** Quartz numbering, Sunday is 1 */
+    private final long daysOfWeek;
+
+    /** True if the days are selected by the day of the week */
+    private final boolean byDayOfWeek;
+
+    /** The selected years, null for every year */
+    private final BitSet years;
+
+    /** The last computed fire time, replaced on every miss */
+    private volatile Span lastSpan;
+
+    private CompiledCronExpression(CronExpression expression)
+    {
+        this.cronExpression = expression.getCronExpression();
+        this.timeZone = expression.getTimeZone();
+        this.rules = timeZone.toZoneId().getRules();
+
+        // the summary lists the values parsed by Quartz for every field
+        Map<String, String> summary = new HashMap<>();
+        for (String line : expression.getExpressionSummary().split("\n"))
+        {
+            int colon = line.indexOf(':');
+            if (colon > 0)
+            {
+                summary.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+
+        this.seconds = parseValues(summary.get("seconds"), 0, 59);
+        this.minutes = parseValues(summary.get("minutes"), 0, 59);
+        this.hours = parseValues(summary.get("hours"), 0, 23);
+        this.daysOfMonth = parseValues(summary.get("daysOfMonth"), 1, 31);
+        this.months = parseValues(summary.get("months"), 1, 12);
+        this.daysOfWeek = parseValues(summary.get("daysOfWeek"), 1, 7);
+        this.byDayOfWeek = "?".equals(summary.get("daysOfMonth"));
+        this.years = parseYears(summary.get("years"));
+
+        // 'L', 'W' and '#' are not compiled, 'L' is parsed into days beyond 31
+        boolean compiled = seconds != 0 && minutes != 0 && hours != 0 && daysOfMonth != 0 && months != 0
+            && daysOfWeek != 0 && (years == null || !years.isEmpty())
+            && "".equals(summary.get("nearestWeekdays"))
+            && "false".equals(summary.get("lastDayOfWeek"))
+            && "0".equals(summary.get("NthDayOfWeek"));
+        this.fallback = compiled ? null : expression;
+    }
+
+    /**
+     * Get the shared compiled instance of an expression.
+     *
+     * @param cronExpression the Quartz cron expression
+     * @param timeZone the time zone the expression is evaluated in, null for the default time zone
+     * @return the compiled expression
+     * @throws ParseException the expression is invalid
+     */
+    public static CompiledCronExpression compile(String cronExpression, TimeZone timeZone) throws ParseException
+    {
+        TimeZone zone = timeZone != null ? timeZone : TimeZone.getDefault();
+        String key = zone.getID() + ' ' + cronExpression;
+
+        CompiledCronExpression compiled = CACHE.get(key);
+        if (compiled == null)
+        {
+            // validates the expression the same way a CronTrigger does
+            CronExpression expression = new CronExpression(cronExpression);
+            expression.setTimeZone(zone);
+            compiled = new CompiledCronExpression(expression);
+
+            if (CACHE.size() >= MAX_CACHED)
+            {
+                CACHE.clear();
+            }
+            CompiledCronExpression existing = CACHE.putIfAbsent(key, compiled);
+            compiled = existing != null ? existing : compiled;
+        }
+
+        return compiled;
+    }
+
+    /**
+     * @return the cron expression
+     */
+    public String getCronExpression()
+    {
+        return cronExpression;
+    }
+
+    /**
+     * @return a copy of the time zone the expression is evaluated in
+     */
+    public TimeZone getTimeZone()
+    {
+        return (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * @return false if the expression is evaluated by a Quartz <code>CronExpression</code>
+     */
+    public boolean isCompiled()
+    {
+        return fallback == null;
+    }
+
+    /**
+     * Compute the next time the expression is satisfied, with the same
+     * result as <code>CronExpression.getTimeAfter()</code>.
+     *
+     * @param afterTime the time to start searching from
+     * @return the next time strictly after the given time, null if there is none
+     */
+    public Date getTimeAfter(Date afterTime)
+    {
+        // the next full second, as done by CronExpression
+        long start = Math.floorDiv(afterTime.getTime(), 1000L) + 1;
+
+        Span span = lastSpan;
+        if (span != null && start >= span.from && start <= span.next)
+        {
+            return new Date(span.next * 1000L);
+        }
+
+        long next;
+        if (fallback != null)
+        {
+            Date time = fallback.getTimeAfter(afterTime);
+            next = time != null ? Math.floorDiv(time.getTime(), 1000L) : -1L;
+        }
+        else
+        {
+            next = computeTimeAfter(start);
+        }
+
+        if (next < 0)
+        {
+            return null;
+        }
+
+        lastSpan = new Span(start, next);
+        return new Date(next * 1000L);
+    }
+
+    @Override
+    public String toString()
+    {
+        return cronExpression;
+    }
+
+    /**
+     * @param start the first epoch second to consider
+     * @return the first matching epoch second, -1 if there is none
+     */
+    private long computeTimeAfter(long start)
+    {
+        LocalDateTime local = LocalDateTime.ofEpochSecond(start, 0, rules.getOffset(Instant.ofEpochSecond(start)));
+        int year = local.getYear();
+        int month = local.getMonthValue();
+        int day = local.getDayOfMonth();
+        int hour = local.getHour();
+        int minute = local.getMinute();
+        int second = local.getSecond();
+
+        while (year <= CronExpression.MAX_YEAR)
+        {
+            if (years != null && !years.get(year))
+            {
+                year = years.nextSetBit(year);
+                if (year < 0)
+                {
+                    return -1L;
+                }
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+
+            int next = nextBit(months, month);
+            if (next < 0)
+            {
+                year++;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (next != month)
+            {
+                month = next;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+            }
+
+            next = nextDay(year, month, day);
+            if (next < 0)
+            {
+                month++;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                if (month > 12)
+                {
+                    year++;
+                    month = 1;
+                }
+                continue;
+            }
+            if (next != day)
+            {
+                day = next;
+                hour = 0;
+                minute = 0;
+                second = 0;
+            }
+
+            next = nextBit(hours, hour);
+            if (next < 0)
+            {
+                day++;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (next != hour)
+            {
+                hour = next;
+                minute = 0;
+                second = 0;
+            }
+
+            next = nextBit(minutes, minute);
+            if (next < 0)
+            {
+                hour++;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (next != minute)
+            {
+                minute = next;
+                second = 0;
+            }
+
+            next = nextBit(seconds, second);
+            if (next < 0)
+            {
+                minute++;
+                second = 0;
+                continue;
+            }
+            second = next;
+
+            LocalDateTime candidate = LocalDateTime.of(year, month, day, hour, minute, second);
+            List<ZoneOffset> offsets = rules.getValidOffsets(candidate);
+            if (offsets.isEmpty())
+            {
+                // skipped by a daylight saving transition, continue after the gap
+                LocalDateTime after = rules.getTransition(candidate).getDateTimeAfter();
+                year = after.getYear();
+                month = after.getMonthValue();
+                day = after.getDayOfMonth();
+                hour = after.getHour();
+                minute = after.getMinute();
+                second = after.getSecond();
+                continue;
+            }
+
+            // a repeated local time is taken as standard time like Calendar does, i.e. the later one
+            long time = candidate.toEpochSecond(offsets.get(offsets.size() - 1));
+            if (time >= start)
+            {
+                return time;
+            }
+
+            // the start is within the first occurrence of a repeated local time
+            second++;
+        }
+
+        return -1L;
+    }
+
+    /**
+     * @return the first selected day of the month not before the given day, -1 if there is none
+     */
+    private int nextDay(int year, int month, int day)
+    {
+        int length = Month.of(month).length(Year.isLeap(year));
+        if (day > length)
+        {
+            return -1;
+        }
+
+        if (!byDayOfWeek)
+        {
+            int next = nextBit(daysOfMonth, day);
+            return next <= length ? next : -1;
+        }
+
+        DayOfWeek dayOfWeek = LocalDate.of(year, month, day).getDayOfWeek();
+        // Quartz numbers the days from Sunday = 1 to Saturday = 7
+        int quartzDay = dayOfWeek.getValue() % 7 + 1;
+        for (int candidate = day; candidate <= length; candidate++)
+        {
+            if ((daysOfWeek & (1L << quartzDay)) != 0)
+            {
+                return candidate;
+            }
+            quartzDay = quartzDay % 7 + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the first set bit not below the given index, -1 if there is none
+     */
+    private static int nextBit(long bits, int from)
+    {
+        if (from > 63)
+        {
+            return -1;
+        }
+
+        long remaining = bits & (-1L << from);
+        return remaining != 0 ? Long.numberOfTrailingZeros(remaining) : -1;
+    }
+
+    /**
+     * Parse the values of a field listed by the expression summary.
+     *
+     * @return the selected values, 0 if the field can not be compiled
+     */
+    private static long parseValues(String values, int min, int max)
+    {
+        if ("*".equals(values) || "?".equals(values))
+        {
+            return (-1L >>> (63 - max)) & (-1L << min);
+        }
+
+        long bits = 0;
+        try
+        {
+            for (String value : values.split(","))
+            {
+                int number = Integer.parseInt(value.trim());
+                if (number < min || number > max)
+                {
+                    return 0;
+                }
+                bits |= 1L << number;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            return 0;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Parse the years listed by the expression summary.
+     *
+     * @return the selected years, null for every year, empty if the field can not be compiled
+     */
+    private static BitSet parseYears(String values)
+    {
+        if ("*".equals(values))
+        {
+            return null;
+        }
+
+        BitSet bits = new BitSet();
+        try
+        {
+            for (String value : values.split(","))
+            {
+                bits.set(Integer.parseInt(value.trim()));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            bits.clear();
+        }
+
+        return bits;
+    }
+
+    /**
+     * The next fire time computed for the start of a search, which is also
+     * the next fire time for any later start up to and including it.
+     */
+    private static final class Span
+    {
+        final long from;
+
+        final long next;
+
+        Span(long from, long next)
+        {
+            this.from = from;
+            this.next = next;
+        }
+    }
+}
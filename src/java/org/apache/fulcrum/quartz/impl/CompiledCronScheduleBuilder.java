@@ -0,0 +1,145 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.text.ParseException;
+import java.util.TimeZone;
+
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.spi.MutableTrigger;
+
+/**
+ * Builds {@link CompiledCronTriggerImpl} triggers, a drop-in replacement
+ * of Quartz's <code>CronScheduleBuilder</code>.
+ *
+ * <pre>
+ * TriggerBuilder.newTrigger()
+ *     .withIdentity("trigger", "group")
+ *     .withSchedule(CompiledCronScheduleBuilder.cronSchedule("0 0/5 * * * ?"))
+ *     .build();
+ * </pre>
+ */
+public class CompiledCronScheduleBuilder extends ScheduleBuilder<CronTrigger>
+{
+    private final CronExpression cronExpression;
+
+    private int misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_SMART_POLICY;
+
+    /**
+     * @param cronExpression the expression, owned by the builder
+     */
+    protected CompiledCronScheduleBuilder(CronExpression cronExpression)
+    {
+        if (cronExpression == null)
+        {
+            throw new NullPointerException("cronExpression cannot be null");
+        }
+        this.cronExpression = cronExpression;
+    }
+
+    /**
+     * Create a schedule firing according to the given cron expression.
+     *
+     * @param cronExpression the cron expression
+     * @return the builder
+     * @throws RuntimeException the expression is invalid
+     */
+    public static CompiledCronScheduleBuilder cronSchedule(String cronExpression)
+    {
+        try
+        {
+            return new CompiledCronScheduleBuilder(new CronExpression(cronExpression));
+        }
+        catch (ParseException e)
+        {
+            // all methods of construction ensure the expression is valid by this point
+            throw new RuntimeException("CronExpression '" + cronExpression + "' is invalid.", e);
+        }
+    }
+
+    /**
+     * Create a schedule with the expression, time zone and misfire
+     * instruction of an existing cron trigger.
+     *
+     * @param trigger the trigger
+     * @return the builder
+     */
+    public static CompiledCronScheduleBuilder from(CronTrigger trigger)
+    {
+        CompiledCronScheduleBuilder builder = cronSchedule(trigger.getCronExpression()).inTimeZone(trigger.getTimeZone());
+        builder.misfireInstruction = trigger.getMisfireInstruction();
+        return builder;
+    }
+
+    /**
+     * @param timeZone the time zone the expression is evaluated in
+     * @return the builder
+     */
+    public CompiledCronScheduleBuilder inTimeZone(TimeZone timeZone)
+    {
+        cronExpression.setTimeZone(timeZone);
+        return this;
+    }
+
+    /**
+     * @return the builder
+     * @see org.quartz.Trigger#MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY
+     */
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionIgnoreMisfires()
+    {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY;
+        return this;
+    }
+
+    /**
+     * @return the builder
+     * @see org.quartz.CronTrigger#MISFIRE_INSTRUCTION_DO_NOTHING
+     */
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionDoNothing()
+    {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING;
+        return this;
+    }
+
+    /**
+     * @return the builder
+     * @see org.quartz.CronTrigger#MISFIRE_INSTRUCTION_FIRE_ONCE_NOW
+     */
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionFireAndProceed()
+    {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_FIRE_ONCE_NOW;
+        return this;
+    }
+
+    /**
+     * @see org.quartz.ScheduleBuilder#build()
+     */
+    @Override
+    public MutableTrigger build()
+    {
+        CompiledCronTriggerImpl trigger = new CompiledCronTriggerImpl();
+        trigger.setCronExpression(new CronExpression(cronExpression));
+        trigger.setTimeZone(cronExpression.getTimeZone());
+        trigger.setMisfireInstruction(misfireInstruction);
+        return trigger;
+    }
+}
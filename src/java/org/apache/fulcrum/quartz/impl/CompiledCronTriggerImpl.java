@@ -0,0 +1,115 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.impl.triggers.CronTriggerImpl;
+
+/**
+ * A <code>CronTrigger</code> computing its fire times with a shared
+ * {@link CompiledCronExpression}. Everything else, including misfire
+ * handling, behaves like Quartz's <code>CronTriggerImpl</code>.
+ *
+ * <p>Created with {@link CompiledCronScheduleBuilder}. JDBC job stores
+ * persist the trigger like any other cron trigger, so it is loaded again
+ * as a plain <code>CronTriggerImpl</code>.</p>
+ */
+public class CompiledCronTriggerImpl extends CronTriggerImpl
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Looked up lazily after every change of the expression or time zone */
+    private transient volatile CompiledCronExpression compiledExpression;
+
+    /**
+     * @see org.quartz.impl.triggers.CronTriggerImpl#setCronExpression(java.lang.String)
+     */
+    @Override
+    public void setCronExpression(String cronExpression) throws ParseException
+    {
+        // the superclass sets the parsed expression without calling setCronExpression(CronExpression)
+        super.setCronExpression(cronExpression);
+        this.compiledExpression = null;
+    }
+
+    /**
+     * @see org.quartz.impl.triggers.CronTriggerImpl#setCronExpression(org.quartz.CronExpression)
+     */
+    @Override
+    public void setCronExpression(CronExpression cronExpression)
+    {
+        super.setCronExpression(cronExpression);
+        this.compiledExpression = null;
+    }
+
+    /**
+     * @see org.quartz.impl.triggers.CronTriggerImpl#setTimeZone(java.util.TimeZone)
+     */
+    @Override
+    public void setTimeZone(TimeZone timeZone)
+    {
+        super.setTimeZone(timeZone);
+        this.compiledExpression = null;
+    }
+
+    /**
+     * @see org.quartz.impl.triggers.CronTriggerImpl#getScheduleBuilder()
+     */
+    @Override
+    public ScheduleBuilder<CronTrigger> getScheduleBuilder()
+    {
+        return CompiledCronScheduleBuilder.from(this);
+    }
+
+    /**
+     * @see org.quartz.impl.triggers.CronTriggerImpl#getTimeAfter(java.util.Date)
+     */
+    @Override
+    protected Date getTimeAfter(Date afterTime)
+    {
+        CompiledCronExpression compiled = this.compiledExpression;
+        if (compiled == null)
+        {
+            if (getCronExpression() == null)
+            {
+                return null;
+            }
+
+            try
+            {
+                compiled = CompiledCronExpression.compile(getCronExpression(), getTimeZone());
+            }
+            catch (ParseException e)
+            {
+                // the expression was already parsed when it was set
+                throw new IllegalStateException("Invalid cron expression '" + getCronExpression() + "'", e);
+            }
+            this.compiledExpression = compiled;
+        }
+
+        return compiled.getTimeAfter(afterTime);
+    }
+}
@@ -0,0 +1,2324 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.fulcrum.quartz.SchedulerClock;
+import org.quartz.Calendar;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.StringMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory <code>JobStore</code> for large numbers of jobs and triggers,
+ * behaving like Quartz's <code>RAMJobStore</code> but without its global lock.
+ *
+ * <ul>
+ *   <li>a job and all of its triggers are guarded by one of a fixed number of
+ *   lock stripes chosen by the hash of the job key, so operations on unrelated
+ *   jobs proceed in parallel</li>
+ *   <li>jobs, triggers and groups are kept in concurrent hash maps, looking up
+ *   the members of a group is O(1)</li>
+ *   <li>waiting triggers are indexed by their next fire time in a concurrent
+ *   {@link TriggerQueue}, acquiring due triggers does not scan or lock the
+ *   whole store</li>
+ * </ul>
+ *
+ * Operations on many jobs at once such as <code>storeJobsAndTriggers</code>
+ * hold all affected stripes while being applied.
+ *
+ * <p>Selected with <code>org.quartz.jobStore.class</code>; supports the
+ * properties <code>misfireThreshold</code>, <code>lockStripes</code>,
+ * <code>triggerQueue</code>, <code>timingWheelTick</code> and
+ * <code>compactJobData</code>.</p>
+ *
+ * <p>In partitioned mode only the triggers of the jobs assigned to this node
+ * are queued for firing while all other triggers are merely stored.</p>
+ */
+public class ConcurrentRAMJobStore implements JobStore
+{
+    /** Default number of lock stripes */
+    private static final int DEFAULT_LOCK_STRIPES = 64;
+
+    /** Trigger queue based on a skip list */
+    public static final String TRIGGER_QUEUE_SKIP_LIST = "skipList";
+
+    /** Trigger queue based on a hierarchical timing wheel */
+    public static final String TRIGGER_QUEUE_TIMING_WHEEL = "timingWheel";
+
+    /** Default tick of the timing wheel in ms */
+    private static final long DEFAULT_TIMING_WHEEL_TICK = 10L;
+
+    /** Orders triggers by next fire time, triggers which never fire again last */
+    static final Comparator<Trigger> NEXT_FIRE_TIME_ORDER =
+        Comparator.comparing(Trigger::getNextFireTime, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /** Counter for fired trigger record ids */
+    private static final AtomicLong FIRED_TRIGGER_COUNTER = new AtomicLong(System.currentTimeMillis());
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /** the jobs by key */
+    private final ConcurrentHashMap<JobKey, JobEntry> jobsByKey = new ConcurrentHashMap<>(1000);
+
+    /** the triggers by key */
+    private final ConcurrentHashMap<TriggerKey, TriggerEntry> triggersByKey = new ConcurrentHashMap<>(1000);
+
+    /** the job keys by group */
+    private final ConcurrentHashMap<String, Set<JobKey>> jobsByGroup = new ConcurrentHashMap<>();
+
+    /** the trigger keys by group */
+    private final ConcurrentHashMap<String, Set<TriggerKey>> triggersByGroup = new ConcurrentHashMap<>();
+
+    /** the calendars by name */
+    private final ConcurrentHashMap<String, Calendar> calendarsByName = new ConcurrentHashMap<>();
+
+    /** the paused trigger groups */
+    private final Set<String> pausedTriggerGroups = ConcurrentHashMap.newKeySet();
+
+    /** the paused job groups */
+    private final Set<String> pausedJobGroups = ConcurrentHashMap.newKeySet();
+
+    /** guards storing and removing calendars */
+    private final Object calendarLock = new Object();
+
+    /** the waiting triggers ordered by their next fire time */
+    private TriggerQueue triggerQueue;
+
+    /** the lock stripes */
+    private ReentrantLock[] stripes;
+
+    private int lockStripes = DEFAULT_LOCK_STRIPES;
+
+    private String triggerQueueType = TRIGGER_QUEUE_SKIP_LIST;
+
+    private long timingWheelTick = DEFAULT_TIMING_WHEEL_TICK;
+
+    private volatile long misfireThreshold = 5000L;
+
+    private boolean compactJobData;
+
+    /** spreads the fires of misfired triggers, null to fire them immediately */
+    private volatile MisfireCatchUp misfireCatchUp;
+
+    /** the source of the current time for evaluating triggers */
+    private volatile SchedulerClock clock = SchedulerClock.SYSTEM;
+
+    /** the jobs whose triggers are fired by this node, null to fire all */
+    private volatile Predicate<JobKey> partition;
+
+    private SchedulerSignaler signaler;
+
+    // === Configuration =====================================================
+
+    /**
+     * @return the time in ms a trigger may be late before it is considered misfired
+     */
+    public long getMisfireThreshold()
+    {
+        return misfireThreshold;
+    }
+
+    /**
+     * @param misfireThreshold the time in ms a trigger may be late before it
+     *        is considered misfired
+     */
+    public void setMisfireThreshold(long misfireThreshold)
+    {
+        if (misfireThreshold < 1)
+        {
+            throw new IllegalArgumentException("Misfire threshold must be larger than 0");
+        }
+        this.misfireThreshold = misfireThreshold;
+    }
+
+    /**
+     * @return the number of lock stripes
+     */
+    public int getLockStripes()
+    {
+        return lockStripes;
+    }
+
+    /**
+     * @param lockStripes the number of lock stripes, rounded up to a power of two
+     */
+    public void setLockStripes(int lockStripes)
+    {
+        this.lockStripes = lockStripes;
+    }
+
+    /**
+     * @return the kind of index of waiting triggers
+     */
+    public String getTriggerQueue()
+    {
+        return triggerQueueType;
+    }
+
+    /**
+     * @param triggerQueue the kind of index of waiting triggers, either
+     *        {@value #TRIGGER_QUEUE_SKIP_LIST} or {@value #TRIGGER_QUEUE_TIMING_WHEEL}
+     */
+    public void setTriggerQueue(String triggerQueue)
+    {
+        this.triggerQueueType = triggerQueue;
+    }
+
+    /**
+     * @return the duration of a tick of the timing wheel in ms
+     */
+    public long getTimingWheelTick()
+    {
+        return timingWheelTick;
+    }
+
+    /**
+     * @param timingWheelTick the duration of a tick of the timing wheel in ms
+     */
+    public void setTimingWheelTick(long timingWheelTick)
+    {
+        this.timingWheelTick = timingWheelTick;
+    }
+
+    /**
+     * @return true if the data of stored jobs is kept as shared immutable maps
+     */
+    public boolean isCompactJobData()
+    {
+        return compactJobData;
+    }
+
+    /**
+     * @param compactJobData keep the data of stored jobs as shared immutable
+     *        maps, jobs with the same data use the same map
+     */
+    public void setCompactJobData(boolean compactJobData)
+    {
+        this.compactJobData = compactJobData;
+    }
+
+    /**
+     * @return the catch-up of misfired triggers or null if they fire immediately
+     */
+    MisfireCatchUp getMisfireCatchUp()
+    {
+        return misfireCatchUp;
+    }
+
+    /**
+     * @param misfireCatchUp spreads the fires of misfired triggers, null to fire them immediately
+     */
+    void setMisfireCatchUp(MisfireCatchUp misfireCatchUp)
+    {
+        this.misfireCatchUp = misfireCatchUp;
+    }
+
+    /**
+     * @return the source of the current time for evaluating triggers
+     */
+    public SchedulerClock getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * @param clock the source of the current time for detecting misfires,
+     *        acquiring due triggers and the fire time of fired triggers
+     */
+    public void setClock(SchedulerClock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the jobs whose triggers are fired by this node, null if all are fired
+     */
+    Predicate<JobKey> getPartition()
+    {
+        return partition;
+    }
+
+    /**
+     * Only fire the triggers of the jobs of a partition. The triggers of all
+     * other jobs are kept but not queued for firing. Triggers moving into
+     * the partition skip the fire times which passed while another node
+     * owned them, triggers leaving it are dequeued.
+     *
+     * @param partition the jobs whose triggers are fired by this node, null to fire all
+     */
+    void setPartition(Predicate<JobKey> partition)
+    {
+        Predicate<JobKey> previous = this.partition;
+        this.partition = partition;
+
+        int moved = 0;
+        for (TriggerEntry entry : triggersByKey.values())
+        {
+            boolean owned = partition == null || partition.test(entry.jobKey);
+            if (owned == (previous == null || previous.test(entry.jobKey)))
+            {
+                continue;
+            }
+
+            ReentrantLock lock = stripeOf(entry.jobKey);
+            lock.lock();
+            try
+            {
+                if (triggersByKey.get(entry.key) != entry || entry.state != TriggerEntry.STATE_WAITING)
+                {
+                    continue;
+                }
+
+                if (owned)
+                {
+                    skipPassedFireTimes(entry);
+                }
+                enqueue(entry);
+                moved++;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        log.info("Partition changed, {} waiting triggers moved in or out", moved);
+        if (signaler != null)
+        {
+            signaler.signalSchedulingChange(0L);
+        }
+    }
+
+    // === JobStore lifecycle ===============================================
+
+    /**
+     * @see org.quartz.spi.JobStore#initialize(org.quartz.spi.ClassLoadHelper, org.quartz.spi.SchedulerSignaler)
+     */
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) throws SchedulerConfigException
+    {
+        if (lockStripes < 1)
+        {
+            throw new SchedulerConfigException("Number of lock stripes must be > 0");
+        }
+
+        int size = 1;
+        while (size < lockStripes)
+        {
+            size <<= 1;
+        }
+
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+        {
+            stripes[i] = new ReentrantLock();
+        }
+
+        if (TRIGGER_QUEUE_TIMING_WHEEL.equals(triggerQueueType))
+        {
+            if (timingWheelTick < 1)
+            {
+                throw new SchedulerConfigException("Tick of the timing wheel must be > 0");
+            }
+            this.triggerQueue = new TimingWheelTriggerQueue(timingWheelTick);
+        }
+        else if (TRIGGER_QUEUE_SKIP_LIST.equals(triggerQueueType))
+        {
+            this.triggerQueue = new SkipListTriggerQueue();
+        }
+        else
+        {
+            throw new SchedulerConfigException("Unknown trigger queue: " + triggerQueueType);
+        }
+
+        this.signaler = schedSignaler;
+        log.info("ConcurrentRAMJobStore initialized using {} lock stripes and a {} trigger queue", size, triggerQueueType);
+    }
+
+    @Override
+    public void schedulerStarted()
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void schedulerPaused()
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void schedulerResumed()
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void shutdown()
+    {
+        // nothing to do
+    }
+
+    @Override
+    public boolean supportsPersistence()
+    {
+        return false;
+    }
+
+    @Override
+    public long getEstimatedTimeToReleaseAndAcquireTrigger()
+    {
+        return 5;
+    }
+
+    @Override
+    public boolean isClustered()
+    {
+        return false;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId)
+    {
+        // not used
+    }
+
+    @Override
+    public void setInstanceName(String schedName)
+    {
+        // not used
+    }
+
+    @Override
+    public void setThreadPoolSize(int poolSize)
+    {
+        // not used
+    }
+
+    @Override
+    public long getAcquireRetryDelay(int failureCount)
+    {
+        return 20;
+    }
+
+    // === Jobs and triggers ================================================
+
+    /**
+     * @see org.quartz.spi.JobStore#clearAllSchedulingData()
+     */
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException
+    {
+        removeTriggers(new ArrayList<>(triggersByKey.keySet()));
+        removeJobs(new ArrayList<>(jobsByKey.keySet()));
+
+        synchronized (calendarLock)
+        {
+            for (String name : new ArrayList<>(calendarsByName.keySet()))
+            {
+                calendarsByName.remove(name);
+                calendarRemoved(name);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#storeJobAndTrigger(org.quartz.JobDetail, org.quartz.spi.OperableTrigger)
+     */
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger) throws JobPersistenceException
+    {
+        ReentrantLock lock = stripeOf(newJob.getKey());
+        lock.lock();
+        try
+        {
+            storeJob(newJob, false);
+            storeTrigger(newTrigger, false);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#storeJob(org.quartz.JobDetail, boolean)
+     */
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting) throws JobPersistenceException
+    {
+        JobDetail jobDetail = copyForStorage(newJob);
+        ReentrantLock lock = stripeOf(jobDetail.getKey());
+        lock.lock();
+        try
+        {
+            storeJobLocked(jobDetail, replaceExisting);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#storeJobsAndTriggers(java.util.Map, boolean)
+     */
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+        throws JobPersistenceException
+    {
+        while (true)
+        {
+            Set<JobKey> jobKeys = new HashSet<>();
+            for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet())
+            {
+                jobKeys.add(entry.getKey().getKey());
+                for (Trigger trigger : entry.getValue())
+                {
+                    jobKeys.add(trigger.getJobKey());
+                    TriggerEntry existing = triggersByKey.get(trigger.getKey());
+                    if (existing != null)
+                    {
+                        jobKeys.add(existing.jobKey);
+                    }
+                }
+            }
+
+            int[] locked = lockStripes(jobKeys);
+            try
+            {
+                if (!holdsStripesOfTriggers(triggersAndJobs, locked))
+                {
+                    // a trigger was replaced concurrently, retry with its new job
+                    continue;
+                }
+
+                if (!replace)
+                {
+                    for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet())
+                    {
+                        if (jobsByKey.containsKey(entry.getKey().getKey()))
+                        {
+                            throw new ObjectAlreadyExistsException(entry.getKey());
+                        }
+                        for (Trigger trigger : entry.getValue())
+                        {
+                            if (triggersByKey.containsKey(trigger.getKey()))
+                            {
+                                throw new ObjectAlreadyExistsException(trigger);
+                            }
+                        }
+                    }
+                }
+
+                for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet())
+                {
+                    storeJobLocked(copyForStorage(entry.getKey()), true);
+                    for (Trigger trigger : entry.getValue())
+                    {
+                        TriggerEntry triggerEntry = new TriggerEntry((OperableTrigger) ((OperableTrigger) trigger).clone());
+                        storeTriggerLocked(triggerEntry, triggersByKey.get(trigger.getKey()), true);
+                    }
+                }
+
+                return;
+            }
+            finally
+            {
+                unlockStripes(locked);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#removeJob(org.quartz.JobKey)
+     */
+    @Override
+    public boolean removeJob(JobKey jobKey) throws JobPersistenceException
+    {
+        ReentrantLock lock = stripeOf(jobKey);
+        lock.lock();
+        try
+        {
+            JobEntry job = jobsByKey.get(jobKey);
+            if (job == null)
+            {
+                return false;
+            }
+
+            removeJobLocked(job);
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#removeJobs(java.util.List)
+     */
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException
+    {
+        int[] locked = lockStripes(jobKeys);
+        try
+        {
+            boolean allFound = true;
+            for (JobKey jobKey : jobKeys)
+            {
+                allFound = removeJob(jobKey) && allFound;
+            }
+            return allFound;
+        }
+        finally
+        {
+            unlockStripes(locked);
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#retrieveJob(org.quartz.JobKey)
+     */
+    @Override
+    public JobDetail retrieveJob(JobKey jobKey)
+    {
+        JobEntry job = jobsByKey.get(jobKey);
+        return job != null ? (JobDetail) job.jobDetail.clone() : null;
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#storeTrigger(org.quartz.spi.OperableTrigger, boolean)
+     */
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting) throws JobPersistenceException
+    {
+        TriggerEntry entry = new TriggerEntry((OperableTrigger) newTrigger.clone());
+
+        if (!replaceExisting)
+        {
+            if (triggersByKey.containsKey(entry.key))
+            {
+                throw new ObjectAlreadyExistsException(newTrigger);
+            }
+
+            ReentrantLock lock = stripeOf(entry.jobKey);
+            lock.lock();
+            try
+            {
+                storeTriggerLocked(entry, null, false);
+                return;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        while (true)
+        {
+            TriggerEntry existing = triggersByKey.get(entry.key);
+            int[] locked = existing != null
+                ? lockStripes(Arrays.asList(entry.jobKey, existing.jobKey))
+                : lockStripes(Collections.singleton(entry.jobKey));
+            try
+            {
+                if (triggersByKey.get(entry.key) != existing)
+                {
+                    continue;
+                }
+
+                storeTriggerLocked(entry, existing, true);
+                return;
+            }
+            finally
+            {
+                unlockStripes(locked);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#removeTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            removeTriggerLocked(entry, true);
+            return true;
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#removeTriggers(java.util.List)
+     */
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException
+    {
+        while (true)
+        {
+            Set<JobKey> jobKeys = new HashSet<>();
+            for (TriggerKey triggerKey : triggerKeys)
+            {
+                TriggerEntry entry = triggersByKey.get(triggerKey);
+                if (entry != null)
+                {
+                    jobKeys.add(entry.jobKey);
+                }
+            }
+
+            int[] locked = lockStripes(jobKeys);
+            try
+            {
+                if (!holdsStripesOfTriggerKeys(triggerKeys, locked))
+                {
+                    // a trigger was replaced concurrently, retry with its new job
+                    continue;
+                }
+
+                boolean allFound = true;
+                for (TriggerKey triggerKey : triggerKeys)
+                {
+                    TriggerEntry entry = triggersByKey.get(triggerKey);
+                    if (entry == null)
+                    {
+                        allFound = false;
+                    }
+                    else
+                    {
+                        removeTriggerLocked(entry, true);
+                    }
+                }
+                return allFound;
+            }
+            finally
+            {
+                unlockStripes(locked);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#replaceTrigger(org.quartz.TriggerKey, org.quartz.spi.OperableTrigger)
+     */
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            if (!entry.jobKey.equals(newTrigger.getJobKey()))
+            {
+                throw new JobPersistenceException("New trigger is not related to the same job as the old trigger.");
+            }
+
+            removeTriggerLocked(entry, false);
+            try
+            {
+                storeTriggerLocked(new TriggerEntry((OperableTrigger) newTrigger.clone()), null, false);
+            }
+            catch (JobPersistenceException e)
+            {
+                // put the previous trigger back
+                storeTriggerLocked(new TriggerEntry(entry.trigger), null, false);
+                throw e;
+            }
+
+            return true;
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * Replace a batch of triggers by new triggers of the same jobs while
+     * holding the lock stripes of all their jobs. Unlike storing the jobs
+     * again together with their triggers the jobs and their data are left
+     * untouched. Triggers not found are skipped, the scheduler thread is
+     * signalled once if any trigger was replaced.
+     *
+     * @param triggers the new trigger by the key of the trigger it replaces
+     * @return the keys of the replaced triggers
+     * @throws JobPersistenceException a new trigger is not related to the job
+     *         of the trigger it replaces or its key is used by another trigger,
+     *         nothing was replaced in this case
+     */
+    public Set<TriggerKey> replaceTriggers(Map<TriggerKey, ? extends OperableTrigger> triggers) throws JobPersistenceException
+    {
+        while (true)
+        {
+            Set<JobKey> jobKeys = new HashSet<>();
+            Set<TriggerKey> triggerKeys = new HashSet<>(triggers.keySet());
+            for (Map.Entry<TriggerKey, ? extends OperableTrigger> entry : triggers.entrySet())
+            {
+                jobKeys.add(entry.getValue().getJobKey());
+                triggerKeys.add(entry.getValue().getKey());
+            }
+            for (TriggerKey triggerKey : triggerKeys)
+            {
+                TriggerEntry existing = triggersByKey.get(triggerKey);
+                if (existing != null)
+                {
+                    jobKeys.add(existing.jobKey);
+                }
+            }
+
+            int[] locked = lockStripes(jobKeys);
+            try
+            {
+                if (!holdsStripesOfTriggerKeys(triggerKeys, locked))
+                {
+                    // a trigger was replaced concurrently, retry with its new job
+                    continue;
+                }
+
+                // validate the whole batch before changing anything
+                Map<TriggerKey, TriggerEntry> replaced = new HashMap<>();
+                Set<TriggerKey> newKeys = new HashSet<>();
+                for (Map.Entry<TriggerKey, ? extends OperableTrigger> entry : triggers.entrySet())
+                {
+                    TriggerEntry existing = triggersByKey.get(entry.getKey());
+                    if (existing == null)
+                    {
+                        continue;
+                    }
+
+                    OperableTrigger newTrigger = entry.getValue();
+                    if (!existing.jobKey.equals(newTrigger.getJobKey()))
+                    {
+                        throw new JobPersistenceException("New trigger is not related to the same job as the old trigger.");
+                    }
+                    if (!newKeys.add(newTrigger.getKey())
+                        || triggersByKey.containsKey(newTrigger.getKey()) && !triggers.containsKey(newTrigger.getKey()))
+                    {
+                        throw new ObjectAlreadyExistsException(newTrigger);
+                    }
+                    replaced.put(entry.getKey(), existing);
+                }
+
+                for (TriggerEntry existing : replaced.values())
+                {
+                    removeTriggerLocked(existing, false);
+                }
+                for (TriggerKey triggerKey : replaced.keySet())
+                {
+                    storeTriggerLocked(new TriggerEntry((OperableTrigger) triggers.get(triggerKey).clone()), null, false);
+                }
+
+                if (!replaced.isEmpty() && signaler != null)
+                {
+                    signaler.signalSchedulingChange(0L);
+                }
+
+                return replaced.keySet();
+            }
+            finally
+            {
+                unlockStripes(locked);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#retrieveTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public OperableTrigger retrieveTrigger(TriggerKey triggerKey)
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return (OperableTrigger) entry.trigger.clone();
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    @Override
+    public boolean checkExists(JobKey jobKey)
+    {
+        return jobsByKey.containsKey(jobKey);
+    }
+
+    @Override
+    public boolean checkExists(TriggerKey triggerKey)
+    {
+        return triggersByKey.containsKey(triggerKey);
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#getTriggerState(org.quartz.TriggerKey)
+     */
+    @Override
+    public TriggerState getTriggerState(TriggerKey triggerKey)
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return TriggerState.NONE;
+        }
+
+        try
+        {
+            return entry.triggerState();
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#resetTriggerFromErrorState(org.quartz.TriggerKey)
+     */
+    @Override
+    public void resetTriggerFromErrorState(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (entry.state != TriggerEntry.STATE_ERROR)
+            {
+                return;
+            }
+
+            if (pausedTriggerGroups.contains(triggerKey.getGroup()))
+            {
+                entry.state = TriggerEntry.STATE_PAUSED;
+            }
+            else
+            {
+                entry.state = TriggerEntry.STATE_WAITING;
+                enqueue(entry);
+            }
+            triggerStored(entry);
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    // === Calendars =========================================================
+
+    /**
+     * @see org.quartz.spi.JobStore#storeCalendar(java.lang.String, org.quartz.Calendar, boolean, boolean)
+     */
+    @Override
+    public void storeCalendar(String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+        throws JobPersistenceException
+    {
+        Calendar copy = (Calendar) calendar.clone();
+
+        synchronized (calendarLock)
+        {
+            Calendar existing = calendarsByName.get(name);
+            if (existing != null && !replaceExisting)
+            {
+                throw new ObjectAlreadyExistsException("Calendar with name '" + name + "' already exists.");
+            }
+
+            calendarsByName.put(name, copy);
+            calendarStored(name, copy);
+
+            if (existing != null && updateTriggers)
+            {
+                for (TriggerEntry candidate : triggersByKey.values())
+                {
+                    if (!name.equals(candidate.trigger.getCalendarName()))
+                    {
+                        continue;
+                    }
+
+                    TriggerEntry entry = lockTrigger(candidate.key);
+                    if (entry == null)
+                    {
+                        continue;
+                    }
+
+                    try
+                    {
+                        boolean removed = triggerQueue.remove(entry);
+                        entry.trigger.updateWithNewCalendar(copy, getMisfireThreshold());
+                        if (removed)
+                        {
+                            enqueue(entry);
+                        }
+                        triggerStored(entry);
+                    }
+                    finally
+                    {
+                        stripeOf(entry.jobKey).unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#removeCalendar(java.lang.String)
+     */
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException
+    {
+        synchronized (calendarLock)
+        {
+            for (TriggerEntry entry : triggersByKey.values())
+            {
+                if (calName.equals(entry.trigger.getCalendarName()))
+                {
+                    throw new JobPersistenceException("Calender cannot be removed if it referenced by a Trigger!");
+                }
+            }
+
+            if (calendarsByName.remove(calName) == null)
+            {
+                return false;
+            }
+
+            calendarRemoved(calName);
+            return true;
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#retrieveCalendar(java.lang.String)
+     */
+    @Override
+    public Calendar retrieveCalendar(String calName)
+    {
+        Calendar calendar = calendarsByName.get(calName);
+        return calendar != null ? (Calendar) calendar.clone() : null;
+    }
+
+    // === Queries ==========================================================
+
+    @Override
+    public int getNumberOfJobs()
+    {
+        return jobsByKey.size();
+    }
+
+    @Override
+    public int getNumberOfTriggers()
+    {
+        return triggersByKey.size();
+    }
+
+    @Override
+    public int getNumberOfCalendars()
+    {
+        return calendarsByName.size();
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#getJobKeys(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher)
+    {
+        return collectGroupMembers(jobsByGroup, matcher.getCompareWithOperator(), matcher.getCompareToValue());
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#getTriggerKeys(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher)
+    {
+        return collectGroupMembers(triggersByGroup, matcher.getCompareWithOperator(), matcher.getCompareToValue());
+    }
+
+    @Override
+    public List<String> getJobGroupNames()
+    {
+        return new ArrayList<>(jobsByGroup.keySet());
+    }
+
+    @Override
+    public List<String> getTriggerGroupNames()
+    {
+        return new ArrayList<>(triggersByGroup.keySet());
+    }
+
+    @Override
+    public List<String> getCalendarNames()
+    {
+        return new ArrayList<>(calendarsByName.keySet());
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#getTriggersForJob(org.quartz.JobKey)
+     */
+    @Override
+    public List<OperableTrigger> getTriggersForJob(JobKey jobKey)
+    {
+        ReentrantLock lock = stripeOf(jobKey);
+        lock.lock();
+        try
+        {
+            JobEntry job = jobsByKey.get(jobKey);
+            List<OperableTrigger> result = new ArrayList<>();
+            if (job != null)
+            {
+                for (TriggerEntry entry : job.triggers)
+                {
+                    result.add((OperableTrigger) entry.trigger.clone());
+                }
+            }
+            return result;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getPausedTriggerGroups()
+    {
+        return new HashSet<>(pausedTriggerGroups);
+    }
+
+    // === Pause and resume =================================================
+
+    /**
+     * @see org.quartz.spi.JobStore#pauseTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return;
+        }
+
+        try
+        {
+            pauseTriggerLocked(entry);
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#pauseTriggers(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Collection<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException
+    {
+        List<String> pausedGroups = new ArrayList<>();
+        for (String group : matchingGroups(triggersByGroup.keySet(), matcher.getCompareWithOperator(), matcher.getCompareToValue()))
+        {
+            if (pausedTriggerGroups.add(group))
+            {
+                pausedGroups.add(group);
+            }
+        }
+
+        if (!pausedGroups.isEmpty())
+        {
+            pausedGroupsChanged();
+        }
+
+        for (String group : pausedGroups)
+        {
+            for (TriggerKey triggerKey : getTriggerKeys(GroupMatcher.triggerGroupEquals(group)))
+            {
+                pauseTrigger(triggerKey);
+            }
+        }
+
+        return pausedGroups;
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#pauseJob(org.quartz.JobKey)
+     */
+    @Override
+    public void pauseJob(JobKey jobKey) throws JobPersistenceException
+    {
+        ReentrantLock lock = stripeOf(jobKey);
+        lock.lock();
+        try
+        {
+            JobEntry job = jobsByKey.get(jobKey);
+            if (job != null)
+            {
+                for (TriggerEntry entry : job.triggers)
+                {
+                    pauseTriggerLocked(entry);
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#pauseJobs(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Collection<String> pauseJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException
+    {
+        List<String> pausedGroups = new ArrayList<>();
+        for (String group : matchingGroups(jobsByGroup.keySet(), matcher.getCompareWithOperator(), matcher.getCompareToValue()))
+        {
+            if (pausedJobGroups.add(group))
+            {
+                pausedGroups.add(group);
+            }
+        }
+
+        if (!pausedGroups.isEmpty())
+        {
+            pausedGroupsChanged();
+        }
+
+        for (String group : pausedGroups)
+        {
+            for (JobKey jobKey : getJobKeys(GroupMatcher.jobGroupEquals(group)))
+            {
+                pauseJob(jobKey);
+            }
+        }
+
+        return pausedGroups;
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#resumeTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        TriggerEntry entry = lockTrigger(triggerKey);
+        if (entry == null)
+        {
+            return;
+        }
+
+        try
+        {
+            resumeTriggerLocked(entry);
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#resumeTriggers(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Collection<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException
+    {
+        Set<String> groups = new HashSet<>();
+        for (TriggerKey triggerKey : getTriggerKeys(matcher))
+        {
+            groups.add(triggerKey.getGroup());
+            TriggerEntry entry = triggersByKey.get(triggerKey);
+            if (entry != null && pausedJobGroups.contains(entry.jobKey.getGroup()))
+            {
+                continue;
+            }
+            resumeTrigger(triggerKey);
+        }
+
+        if (pausedTriggerGroups.removeAll(
+            matchingGroups(pausedTriggerGroups, matcher.getCompareWithOperator(), matcher.getCompareToValue())))
+        {
+            pausedGroupsChanged();
+        }
+
+        return new ArrayList<>(groups);
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#resumeJob(org.quartz.JobKey)
+     */
+    @Override
+    public void resumeJob(JobKey jobKey) throws JobPersistenceException
+    {
+        ReentrantLock lock = stripeOf(jobKey);
+        lock.lock();
+        try
+        {
+            JobEntry job = jobsByKey.get(jobKey);
+            if (job != null)
+            {
+                for (TriggerEntry entry : new ArrayList<>(job.triggers))
+                {
+                    resumeTriggerLocked(entry);
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#resumeJobs(org.quartz.impl.matchers.GroupMatcher)
+     */
+    @Override
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException
+    {
+        Set<String> resumedGroups = new HashSet<>(
+            matchingGroups(pausedJobGroups, matcher.getCompareWithOperator(), matcher.getCompareToValue()));
+        if (pausedJobGroups.removeAll(resumedGroups))
+        {
+            pausedGroupsChanged();
+        }
+
+        for (JobKey jobKey : getJobKeys(matcher))
+        {
+            resumeJob(jobKey);
+        }
+
+        return resumedGroups;
+    }
+
+    @Override
+    public void pauseAll() throws JobPersistenceException
+    {
+        for (String group : getTriggerGroupNames())
+        {
+            pauseTriggers(GroupMatcher.triggerGroupEquals(group));
+        }
+    }
+
+    @Override
+    public void resumeAll() throws JobPersistenceException
+    {
+        if (!pausedJobGroups.isEmpty())
+        {
+            pausedJobGroups.clear();
+            pausedGroupsChanged();
+        }
+        resumeTriggers(GroupMatcher.anyTriggerGroup());
+    }
+
+    // === Firing ===========================================================
+
+    /**
+     * @see org.quartz.spi.JobStore#acquireNextTriggers(long, int, long)
+     */
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow)
+    {
+        TriggerAcquisitionEvent event = new TriggerAcquisitionEvent();
+        event.begin();
+
+        List<OperableTrigger> result = new ArrayList<>();
+        Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<>();
+        List<TriggerEntry> excludedTriggers = new ArrayList<>();
+        long batchEnd = noLaterThan;
+
+        while (result.size() < maxCount)
+        {
+            TriggerEntry entry = triggerQueue.pollFirst(batchEnd);
+            if (entry == null)
+            {
+                break;
+            }
+
+            ReentrantLock lock = stripeOf(entry.jobKey);
+            lock.lock();
+            try
+            {
+                // removed, paused or replaced since it was polled
+                if (triggersByKey.get(entry.key) != entry || entry.state != TriggerEntry.STATE_WAITING)
+                {
+                    continue;
+                }
+
+                // it might have been put back concurrently
+                triggerQueue.remove(entry);
+
+                if (entry.trigger.getNextFireTime() == null)
+                {
+                    continue;
+                }
+
+                if (applyMisfire(entry))
+                {
+                    if (entry.trigger.getNextFireTime() != null && entry.state == TriggerEntry.STATE_WAITING)
+                    {
+                        enqueue(entry);
+                    }
+                    continue;
+                }
+
+                if (entry.trigger.getNextFireTime().getTime() > batchEnd)
+                {
+                    enqueue(entry);
+                    break;
+                }
+
+                JobEntry job = jobsByKey.get(entry.jobKey);
+                if (job != null && job.jobDetail.isConcurrentExecutionDisallowed()
+                    && !acquiredJobKeysForNoConcurrentExec.add(entry.jobKey))
+                {
+                    excludedTriggers.add(entry);
+                    continue;
+                }
+
+                entry.state = TriggerEntry.STATE_ACQUIRED;
+                entry.trigger.setFireInstanceId(getFiredTriggerRecordId());
+                if (result.isEmpty())
+                {
+                    batchEnd = Math.max(entry.trigger.getNextFireTime().getTime(), clock.currentTimeMillis()) + timeWindow;
+                }
+                result.add((OperableTrigger) entry.trigger.clone());
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        for (TriggerEntry entry : excludedTriggers)
+        {
+            ReentrantLock lock = stripeOf(entry.jobKey);
+            lock.lock();
+            try
+            {
+                if (triggersByKey.get(entry.key) == entry && entry.state == TriggerEntry.STATE_WAITING)
+                {
+                    enqueue(entry);
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.noLaterThan = noLaterThan;
+            event.maxCount = maxCount;
+            event.timeWindow = timeWindow;
+            event.acquired = result.size();
+            if (!result.isEmpty())
+            {
+                event.firstTriggerKey = result.get(0).getKey().toString();
+                event.firstFireTime = result.get(0).getNextFireTime().getTime();
+            }
+            event.commit();
+        }
+
+        return result;
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#releaseAcquiredTrigger(org.quartz.spi.OperableTrigger)
+     */
+    @Override
+    public void releaseAcquiredTrigger(OperableTrigger trigger)
+    {
+        TriggerEntry entry = lockTrigger(trigger.getKey());
+        if (entry == null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (entry.state == TriggerEntry.STATE_ACQUIRED)
+            {
+                entry.state = TriggerEntry.STATE_WAITING;
+                enqueue(entry);
+            }
+        }
+        finally
+        {
+            stripeOf(entry.jobKey).unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#triggersFired(java.util.List)
+     */
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) throws JobPersistenceException
+    {
+        List<TriggerFiredResult> results = new ArrayList<>();
+
+        for (OperableTrigger trigger : firedTriggers)
+        {
+            TriggerEntry entry = lockTrigger(trigger.getKey());
+            if (entry == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                if (entry.state != TriggerEntry.STATE_ACQUIRED)
+                {
+                    continue;
+                }
+
+                Calendar calendar = null;
+                if (entry.trigger.getCalendarName() != null)
+                {
+                    calendar = retrieveCalendar(entry.trigger.getCalendarName());
+                    if (calendar == null)
+                    {
+                        continue;
+                    }
+                }
+
+                Date prevFireTime = trigger.getPreviousFireTime();
+                triggerQueue.remove(entry);
+                entry.trigger.triggered(calendar);
+                trigger.triggered(calendar);
+                entry.state = TriggerEntry.STATE_WAITING;
+
+                JobEntry job = jobsByKey.get(entry.jobKey);
+                TriggerFiredBundle bundle = new TriggerFiredBundle((JobDetail) job.jobDetail.clone(), trigger, calendar,
+                    false, new Date(clock.currentTimeMillis()), trigger.getPreviousFireTime(), prevFireTime, trigger.getNextFireTime());
+
+                if (job.jobDetail.isConcurrentExecutionDisallowed())
+                {
+                    for (TriggerEntry jobTrigger : job.triggers)
+                    {
+                        if (jobTrigger.state == TriggerEntry.STATE_WAITING)
+                        {
+                            jobTrigger.state = TriggerEntry.STATE_BLOCKED;
+                        }
+                        else if (jobTrigger.state == TriggerEntry.STATE_PAUSED)
+                        {
+                            jobTrigger.state = TriggerEntry.STATE_PAUSED_BLOCKED;
+                        }
+                        triggerQueue.remove(jobTrigger);
+                    }
+                    job.blocked = true;
+                }
+                else if (entry.trigger.getNextFireTime() != null)
+                {
+                    enqueue(entry);
+                }
+                triggerStored(entry);
+
+                results.add(new TriggerFiredResult(bundle));
+            }
+            finally
+            {
+                stripeOf(entry.jobKey).unlock();
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * @see org.quartz.spi.JobStore#triggeredJobComplete(org.quartz.spi.OperableTrigger, org.quartz.JobDetail, org.quartz.Trigger.CompletedExecutionInstruction)
+     */
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail, CompletedExecutionInstruction triggerInstCode)
+    {
+        ReentrantLock lock = stripeOf(jobDetail.getKey());
+        lock.lock();
+        try
+        {
+            JobEntry job = jobsByKey.get(jobDetail.getKey());
+            if (job != null)
+            {
+                JobDetail storedJob = job.jobDetail;
+
+                if (storedJob.isPersistJobDataAfterExecution())
+                {
+                    JobDataMap newData = jobDetail.getJobDataMap();
+                    if (storedJob instanceof CompactJobDetail)
+                    {
+                        storedJob = CompactJobDetail.of(storedJob, newData);
+                    }
+                    else
+                    {
+                        if (newData != null)
+                        {
+                            newData = (JobDataMap) newData.clone();
+                            newData.clearDirtyFlag();
+                        }
+                        storedJob = storedJob.getJobBuilder().setJobData(newData).build();
+                    }
+                    job.jobDetail = storedJob;
+                    jobStored(storedJob);
+                }
+
+                if (storedJob.isConcurrentExecutionDisallowed())
+                {
+                    job.blocked = false;
+                    for (TriggerEntry jobTrigger : job.triggers)
+                    {
+                        if (jobTrigger.state == TriggerEntry.STATE_BLOCKED)
+                        {
+                            jobTrigger.state = TriggerEntry.STATE_WAITING;
+                            enqueue(jobTrigger);
+                        }
+                        else if (jobTrigger.state == TriggerEntry.STATE_PAUSED_BLOCKED)
+                        {
+                            jobTrigger.state = TriggerEntry.STATE_PAUSED;
+                        }
+                    }
+                    signaler.signalSchedulingChange(0L);
+                }
+            }
+
+            TriggerEntry entry = triggersByKey.get(trigger.getKey());
+            if (entry == null || !entry.jobKey.equals(jobDetail.getKey()))
+            {
+                return;
+            }
+
+            switch (triggerInstCode)
+            {
+                case DELETE_TRIGGER:
+                    if (trigger.getNextFireTime() == null)
+                    {
+                        // the trigger may have been rescheduled in the meantime
+                        if (entry.trigger.getNextFireTime() == null)
+                        {
+                            removeTriggerLocked(entry, true);
+                        }
+                    }
+                    else
+                    {
+                        removeTriggerLocked(entry, true);
+                        signaler.signalSchedulingChange(0L);
+                    }
+                    break;
+                case SET_TRIGGER_COMPLETE:
+                    entry.state = TriggerEntry.STATE_COMPLETE;
+                    triggerQueue.remove(entry);
+                    triggerStored(entry);
+                    signaler.signalSchedulingChange(0L);
+                    break;
+                case SET_TRIGGER_ERROR:
+                    log.info("Trigger {} set to ERROR state.", trigger.getKey());
+                    entry.state = TriggerEntry.STATE_ERROR;
+                    triggerQueue.remove(entry);
+                    triggerStored(entry);
+                    signaler.signalSchedulingChange(0L);
+                    break;
+                case SET_ALL_JOB_TRIGGERS_ERROR:
+                    log.info("All triggers of Job {} set to ERROR state.", trigger.getJobKey());
+                    setAllTriggersOfJobToState(job, TriggerEntry.STATE_ERROR);
+                    signaler.signalSchedulingChange(0L);
+                    break;
+                case SET_ALL_JOB_TRIGGERS_COMPLETE:
+                    setAllTriggersOfJobToState(job, TriggerEntry.STATE_COMPLETE);
+                    signaler.signalSchedulingChange(0L);
+                    break;
+                default:
+                    break;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // === Persistence ======================================================
+
+    /**
+     * Restore a trigger with the state it was persisted with. The job of
+     * the trigger has to be restored before.
+     *
+     * @param trigger the trigger, stored without copying it
+     * @param state the persisted state
+     * @throws JobPersistenceException the trigger or its job could not be stored
+     */
+    void restoreTrigger(OperableTrigger trigger, TriggerState state) throws JobPersistenceException
+    {
+        TriggerEntry entry = new TriggerEntry(trigger);
+        ReentrantLock lock = stripeOf(entry.jobKey);
+        lock.lock();
+        try
+        {
+            storeTriggerLocked(entry, triggersByKey.get(entry.key), true);
+            switch (state)
+            {
+                case PAUSED:
+                    pauseTriggerLocked(entry);
+                    break;
+                case COMPLETE:
+                    entry.state = TriggerEntry.STATE_COMPLETE;
+                    triggerQueue.remove(entry);
+                    break;
+                case ERROR:
+                    entry.state = TriggerEntry.STATE_ERROR;
+                    triggerQueue.remove(entry);
+                    break;
+                default:
+                    break;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restore the paused groups without changing the state of the triggers
+     * already stored.
+     *
+     * @param triggerGroups the paused trigger groups
+     * @param jobGroups the paused job groups
+     */
+    void restorePausedGroups(Collection<String> triggerGroups, Collection<String> jobGroups)
+    {
+        pausedTriggerGroups.addAll(triggerGroups);
+        pausedJobGroups.addAll(jobGroups);
+    }
+
+    /**
+     * @return the paused job groups
+     */
+    Set<String> getPausedJobGroups()
+    {
+        return new HashSet<>(pausedJobGroups);
+    }
+
+    /**
+     * Take a snapshot of the trigger firing next for each of the given jobs,
+     * only copying these triggers.
+     *
+     * @param jobKeys the jobs
+     * @return a copy of the trigger with the earliest next fire time per job,
+     *         jobs without triggers are missing
+     */
+    Map<JobKey, Trigger> getNextTriggerPerJob(Collection<JobKey> jobKeys)
+    {
+        Map<JobKey, Trigger> nextTriggers = new HashMap<>();
+        for (JobKey jobKey : jobKeys)
+        {
+            ReentrantLock lock = stripeOf(jobKey);
+            lock.lock();
+            try
+            {
+                JobEntry job = jobsByKey.get(jobKey);
+                if (job != null && !job.triggers.isEmpty())
+                {
+                    TriggerEntry next = Collections.min(job.triggers,
+                        (e1, e2) -> NEXT_FIRE_TIME_ORDER.compare(e1.trigger, e2.trigger));
+                    nextTriggers.put(jobKey, (Trigger) next.trigger.clone());
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+        return nextTriggers;
+    }
+
+    /**
+     * Called after a job was stored or its job data changed, while holding
+     * the lock stripe of the job. Does nothing unless persisting changes.
+     *
+     * @param jobDetail the stored job
+     */
+    void jobStored(JobDetail jobDetail)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after a job was removed while holding its lock stripe.
+     *
+     * @param jobKey the removed job
+     */
+    void jobRemoved(JobKey jobKey)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after a trigger was stored, fired or changed its state while
+     * holding the lock stripe of its job.
+     *
+     * @param entry the trigger
+     */
+    void triggerStored(TriggerEntry entry)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after a trigger was removed while holding the lock stripe of
+     * its job.
+     *
+     * @param triggerKey the removed trigger
+     */
+    void triggerRemoved(TriggerKey triggerKey)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after a calendar was stored while holding the calendar lock.
+     *
+     * @param name the name of the calendar
+     * @param calendar the stored calendar
+     */
+    void calendarStored(String name, Calendar calendar)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after a calendar was removed while holding the calendar lock.
+     *
+     * @param name the name of the calendar
+     */
+    void calendarRemoved(String name)
+    {
+        // not persisted
+    }
+
+    /**
+     * Called after trigger or job groups were paused or resumed.
+     */
+    void pausedGroupsChanged()
+    {
+        // not persisted
+    }
+
+    // === Implementation ===================================================
+
+    /**
+     * @return a new id for a fired trigger
+     */
+    protected String getFiredTriggerRecordId()
+    {
+        return String.valueOf(FIRED_TRIGGER_COUNTER.incrementAndGet());
+    }
+
+    /**
+     * Copy a job to be stored, using compact job data if enabled and the
+     * job is a plain <code>JobDetailImpl</code>.
+     */
+    private JobDetail copyForStorage(JobDetail jobDetail)
+    {
+        if (compactJobData && jobDetail.getClass() == JobDetailImpl.class)
+        {
+            return CompactJobDetail.of(jobDetail);
+        }
+        return (JobDetail) jobDetail.clone();
+    }
+
+    /**
+     * Store a job while holding its lock stripe.
+     */
+    private void storeJobLocked(JobDetail jobDetail, boolean replaceExisting) throws ObjectAlreadyExistsException
+    {
+        JobEntry existing = jobsByKey.get(jobDetail.getKey());
+        if (existing != null)
+        {
+            if (!replaceExisting)
+            {
+                throw new ObjectAlreadyExistsException(jobDetail);
+            }
+            existing.jobDetail = jobDetail;
+            jobStored(jobDetail);
+            return;
+        }
+
+        jobsByKey.put(jobDetail.getKey(), new JobEntry(jobDetail));
+        addToGroup(jobsByGroup, jobDetail.getKey().getGroup(), jobDetail.getKey());
+        jobStored(jobDetail);
+    }
+
+    /**
+     * Remove a job and its triggers while holding its lock stripe.
+     */
+    private void removeJobLocked(JobEntry job)
+    {
+        for (TriggerEntry entry : new ArrayList<>(job.triggers))
+        {
+            removeTriggerLocked(entry, false);
+        }
+
+        if (jobsByKey.remove(job.key, job))
+        {
+            removeFromGroup(jobsByGroup, job.key.getGroup(), job.key);
+            jobRemoved(job.key);
+        }
+    }
+
+    /**
+     * Store a trigger while holding the lock stripes of its job and of the
+     * job of the trigger it replaces.
+     *
+     * @param entry the new trigger
+     * @param existing the trigger to be replaced or null
+     * @param replaceExisting true if an existing trigger may be replaced
+     */
+    private void storeTriggerLocked(TriggerEntry entry, TriggerEntry existing, boolean replaceExisting)
+        throws JobPersistenceException
+    {
+        if (existing != null)
+        {
+            if (!replaceExisting)
+            {
+                throw new ObjectAlreadyExistsException(entry.trigger);
+            }
+            removeTriggerLocked(existing, false);
+        }
+
+        JobEntry job = jobsByKey.get(entry.jobKey);
+        if (job == null)
+        {
+            throw new JobPersistenceException("The job (" + entry.jobKey + ") referenced by the trigger does not exist.");
+        }
+
+        if (triggersByKey.putIfAbsent(entry.key, entry) != null)
+        {
+            throw new ObjectAlreadyExistsException(entry.trigger);
+        }
+
+        job.triggers.add(entry);
+        addToGroup(triggersByGroup, entry.key.getGroup(), entry.key);
+
+        if (pausedTriggerGroups.contains(entry.key.getGroup()) || pausedJobGroups.contains(entry.jobKey.getGroup()))
+        {
+            entry.state = job.blocked ? TriggerEntry.STATE_PAUSED_BLOCKED : TriggerEntry.STATE_PAUSED;
+        }
+        else if (job.blocked)
+        {
+            entry.state = TriggerEntry.STATE_BLOCKED;
+        }
+        else
+        {
+            entry.state = TriggerEntry.STATE_WAITING;
+            enqueue(entry);
+        }
+        triggerStored(entry);
+    }
+
+    /**
+     * Remove a trigger while holding the lock stripe of its job.
+     *
+     * @param entry the trigger
+     * @param removeOrphanedJob remove the job if it is not durable and has no triggers left
+     */
+    private void removeTriggerLocked(TriggerEntry entry, boolean removeOrphanedJob)
+    {
+        if (!triggersByKey.remove(entry.key, entry))
+        {
+            return;
+        }
+
+        removeFromGroup(triggersByGroup, entry.key.getGroup(), entry.key);
+        triggerQueue.remove(entry);
+        triggerRemoved(entry.key);
+
+        JobEntry job = jobsByKey.get(entry.jobKey);
+        if (job != null)
+        {
+            job.triggers.remove(entry);
+
+            if (removeOrphanedJob && job.triggers.isEmpty() && !job.jobDetail.isDurable())
+            {
+                removeJobLocked(job);
+                signaler.notifySchedulerListenersJobDeleted(job.key);
+            }
+        }
+    }
+
+    private void pauseTriggerLocked(TriggerEntry entry)
+    {
+        if (entry.state == TriggerEntry.STATE_COMPLETE)
+        {
+            return;
+        }
+
+        entry.state = entry.state == TriggerEntry.STATE_BLOCKED
+            ? TriggerEntry.STATE_PAUSED_BLOCKED
+            : TriggerEntry.STATE_PAUSED;
+        triggerQueue.remove(entry);
+        triggerStored(entry);
+    }
+
+    private void resumeTriggerLocked(TriggerEntry entry)
+    {
+        if (entry.state != TriggerEntry.STATE_PAUSED && entry.state != TriggerEntry.STATE_PAUSED_BLOCKED)
+        {
+            return;
+        }
+
+        JobEntry job = jobsByKey.get(entry.jobKey);
+        entry.state = job != null && job.blocked ? TriggerEntry.STATE_BLOCKED : TriggerEntry.STATE_WAITING;
+
+        applyMisfire(entry);
+
+        if (entry.state == TriggerEntry.STATE_WAITING)
+        {
+            enqueue(entry);
+        }
+        triggerStored(entry);
+    }
+
+    private void setAllTriggersOfJobToState(JobEntry job, int state)
+    {
+        if (job == null)
+        {
+            return;
+        }
+
+        for (TriggerEntry entry : job.triggers)
+        {
+            entry.state = state;
+            if (state != TriggerEntry.STATE_WAITING)
+            {
+                triggerQueue.remove(entry);
+            }
+            triggerStored(entry);
+        }
+    }
+
+    /**
+     * Apply the misfire instruction of a trigger while holding its lock
+     * stripe. The trigger must not be part of the trigger queue.
+     *
+     * @param entry the trigger
+     * @return true if the trigger misfired and its next fire time changed
+     */
+    private boolean applyMisfire(TriggerEntry entry)
+    {
+        long misfireTime = clock.currentTimeMillis();
+        if (getMisfireThreshold() > 0)
+        {
+            misfireTime -= getMisfireThreshold();
+        }
+
+        Date nextFireTime = entry.trigger.getNextFireTime();
+        if (nextFireTime == null || nextFireTime.getTime() > misfireTime
+            || entry.trigger.getMisfireInstruction() == Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY)
+        {
+            return false;
+        }
+
+        Calendar calendar = null;
+        if (entry.trigger.getCalendarName() != null)
+        {
+            calendar = retrieveCalendar(entry.trigger.getCalendarName());
+        }
+
+        MisfireCatchUp catchUp = misfireCatchUp;
+        Trigger misfired = catchUp != null ? (Trigger) entry.trigger.clone() : null;
+
+        signaler.notifyTriggerListenersMisfired((OperableTrigger) entry.trigger.clone());
+        entry.trigger.updateAfterMisfire(calendar);
+
+        if (catchUp != null && catchUp.reschedule(entry.trigger, misfired, calendar, clock.currentTimeMillis()))
+        {
+            log.debug("Trigger {} misfired at {}, catching up at {}", entry.key, nextFireTime, entry.trigger.getNextFireTime());
+        }
+
+        if (entry.trigger.getNextFireTime() == null)
+        {
+            entry.state = TriggerEntry.STATE_COMPLETE;
+            signaler.notifySchedulerListenersFinalized(entry.trigger);
+            triggerQueue.remove(entry);
+            triggerStored(entry);
+            return true;
+        }
+
+        triggerStored(entry);
+
+        return !nextFireTime.equals(entry.trigger.getNextFireTime());
+    }
+
+    /**
+     * Index a waiting trigger by its current next fire time unless it is
+     * fired by another node.
+     */
+    private void enqueue(TriggerEntry entry)
+    {
+        triggerQueue.remove(entry);
+        entry.updateIndex();
+        Predicate<JobKey> owned = partition;
+        if (entry.trigger.getNextFireTime() != null && (owned == null || owned.test(entry.jobKey)))
+        {
+            triggerQueue.add(entry);
+        }
+    }
+
+    /**
+     * Advance a trigger taken over from another node to its first fire time
+     * which did not pass yet, the fire times before were the business of
+     * the previous owner.
+     */
+    private void skipPassedFireTimes(TriggerEntry entry)
+    {
+        Date now = new Date(clock.currentTimeMillis());
+        Date nextFireTime = entry.trigger.getNextFireTime();
+        if (nextFireTime == null || !nextFireTime.before(now))
+        {
+            return;
+        }
+
+        Calendar calendar = entry.trigger.getCalendarName() != null ? retrieveCalendar(entry.trigger.getCalendarName()) : null;
+        nextFireTime = entry.trigger.getFireTimeAfter(new Date(now.getTime() - 1));
+        while (nextFireTime != null && calendar != null && !calendar.isTimeIncluded(nextFireTime.getTime()))
+        {
+            nextFireTime = entry.trigger.getFireTimeAfter(nextFireTime);
+        }
+
+        entry.trigger.setNextFireTime(nextFireTime);
+        if (nextFireTime == null)
+        {
+            entry.state = TriggerEntry.STATE_COMPLETE;
+            signaler.notifySchedulerListenersFinalized(entry.trigger);
+        }
+        triggerStored(entry);
+    }
+
+    /**
+     * Look up a trigger and lock the stripe of its job. The caller has to
+     * unlock the stripe unless null is returned.
+     *
+     * @param triggerKey the trigger
+     * @return the locked trigger or null if it does not exist
+     */
+    private TriggerEntry lockTrigger(TriggerKey triggerKey)
+    {
+        while (true)
+        {
+            TriggerEntry entry = triggersByKey.get(triggerKey);
+            if (entry == null)
+            {
+                return null;
+            }
+
+            ReentrantLock lock = stripeOf(entry.jobKey);
+            lock.lock();
+            if (triggersByKey.get(triggerKey) == entry)
+            {
+                return entry;
+            }
+            lock.unlock();
+        }
+    }
+
+    private int stripeIndex(JobKey jobKey)
+    {
+        int hash = jobKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private ReentrantLock stripeOf(JobKey jobKey)
+    {
+        return stripes[stripeIndex(jobKey)];
+    }
+
+    /**
+     * Lock the stripes of several jobs in ascending order to avoid deadlocks.
+     *
+     * @param jobKeys the jobs
+     * @return the sorted indexes of the locked stripes
+     */
+    private int[] lockStripes(Collection<JobKey> jobKeys)
+    {
+        int[] indexes = jobKeys.stream().mapToInt(this::stripeIndex).distinct().sorted().toArray();
+        for (int index : indexes)
+        {
+            stripes[index].lock();
+        }
+        return indexes;
+    }
+
+    private void unlockStripes(int[] indexes)
+    {
+        for (int i = indexes.length - 1; i >= 0; i--)
+        {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private boolean holdsStripesOfTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, int[] locked)
+    {
+        for (Set<? extends Trigger> triggers : triggersAndJobs.values())
+        {
+            for (Trigger trigger : triggers)
+            {
+                if (!holdsStripeOfTrigger(trigger.getKey(), locked))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean holdsStripesOfTriggerKeys(Collection<TriggerKey> triggerKeys, int[] locked)
+    {
+        for (TriggerKey triggerKey : triggerKeys)
+        {
+            if (!holdsStripeOfTrigger(triggerKey, locked))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean holdsStripeOfTrigger(TriggerKey triggerKey, int[] locked)
+    {
+        TriggerEntry existing = triggersByKey.get(triggerKey);
+        return existing == null || Arrays.binarySearch(locked, stripeIndex(existing.jobKey)) >= 0;
+    }
+
+    private static <K> void addToGroup(ConcurrentHashMap<String, Set<K>> groups, String group, K key)
+    {
+        groups.compute(group, (name, members) -> {
+            Set<K> result = members != null ? members : ConcurrentHashMap.newKeySet();
+            result.add(key);
+            return result;
+        });
+    }
+
+    private static <K> void removeFromGroup(ConcurrentHashMap<String, Set<K>> groups, String group, K key)
+    {
+        groups.computeIfPresent(group, (name, members) -> {
+            members.remove(key);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private static <K> Set<K> collectGroupMembers(Map<String, Set<K>> groups,
+        StringMatcher.StringOperatorName operator, String compareToValue)
+    {
+        if (operator == StringMatcher.StringOperatorName.EQUALS)
+        {
+            Set<K> members = groups.get(compareToValue);
+            return members != null ? new HashSet<>(members) : Collections.emptySet();
+        }
+
+        Set<K> result = new HashSet<>();
+        for (Map.Entry<String, Set<K>> entry : groups.entrySet())
+        {
+            if (operator.evaluate(entry.getKey(), compareToValue))
+            {
+                result.addAll(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> matchingGroups(Collection<String> groups,
+        StringMatcher.StringOperatorName operator, String compareToValue)
+    {
+        if (operator == StringMatcher.StringOperatorName.EQUALS)
+        {
+            return Collections.singletonList(compareToValue);
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String group : groups)
+        {
+            if (operator.evaluate(group, compareToValue))
+            {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+}
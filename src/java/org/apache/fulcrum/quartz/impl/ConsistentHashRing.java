@@ -0,0 +1,125 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.quartz.JobKey;
+
+/**
+ * Assigns job keys to nodes by consistent hashing. Every node is placed on
+ * a hash ring at a number of virtual points, a job key belongs to the node
+ * of the first point following the hash of the key. When a node joins or
+ * leaves only the keys between its points and their predecessors move, on
+ * average the share of a single node.
+ *
+ * <p>The hash is computed from the names of the nodes and keys only, so all
+ * nodes agree on the assignment for the same set of members.</p>
+ */
+final class ConsistentHashRing
+{
+    /** the nodes by the hashes of their virtual points */
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    private final Set<String> nodes;
+
+    /**
+     * Constructor.
+     *
+     * @param nodes the ids of the member nodes
+     * @param virtualNodes the number of points per node on the ring
+     */
+    ConsistentHashRing(Collection<String> nodes, int virtualNodes)
+    {
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        for (String node : this.nodes)
+        {
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                // on a collision the smaller node id wins on every node
+                ring.merge(hash(node + "#" + i), node, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the member nodes
+     */
+    Set<String> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Get the node firing the triggers of a job.
+     *
+     * @param jobKey the job
+     * @return the id of the owning node, null if the ring has no nodes
+     */
+    String getOwner(JobKey jobKey)
+    {
+        if (ring.isEmpty())
+        {
+            return null;
+        }
+
+        Map.Entry<Long, String> point = ring.ceilingEntry(hash(jobKey.getGroup() + "." + jobKey.getName()));
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Get the partition of a node.
+     *
+     * @param node the id of the node
+     * @return tests whether a job belongs to the node
+     */
+    Predicate<JobKey> partitionOf(String node)
+    {
+        return jobKey -> node.equals(getOwner(jobKey));
+    }
+
+    /**
+     * 64 bit FNV-1a of the UTF-8 bytes, finished by the MurmurHash3 mixer
+     * to spread similar names over the whole ring.
+     */
+    static long hash(String value)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,214 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.avalon.framework.logger.Logger;
+
+/**
+ * Tracks the member nodes of a partitioned scheduler through heartbeat
+ * files in a shared directory, a stand-in for a real membership service
+ * which works for several nodes on one host or a shared file system.
+ *
+ * <p>Every node writes the current time into the file
+ * <code>&lt;nodeId&gt;.member</code> at every heartbeat, a node whose file
+ * was not written within the expiry time is no longer a member. A node
+ * leaving in an orderly way deletes its file.</p>
+ */
+final class FileMembership implements Runnable
+{
+    /** The suffix of the heartbeat files */
+    static final String SUFFIX = ".member";
+
+    private final Logger logger;
+
+    private final Path directory;
+
+    private final String nodeId;
+
+    private final long heartbeatInterval;
+
+    private final long expiry;
+
+    private final Consumer<Set<String>> listener;
+
+    /** the members seen by the last heartbeat */
+    private volatile Set<String> members = Collections.emptySet();
+
+    private volatile Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param logger the logger
+     * @param directory the directory shared by all nodes
+     * @param nodeId the id of this node
+     * @param heartbeatInterval the time in ms between heartbeats
+     * @param expiry the time in ms after which a node without heartbeat is no member
+     * @param listener notified with the new members whenever they changed
+     */
+    FileMembership(Logger logger, Path directory, String nodeId, long heartbeatInterval, long expiry,
+        Consumer<Set<String>> listener)
+    {
+        this.logger = logger;
+        this.directory = directory;
+        this.nodeId = nodeId;
+        this.heartbeatInterval = heartbeatInterval;
+        this.expiry = expiry;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the members seen by the last heartbeat
+     */
+    Set<String> getMembers()
+    {
+        return members;
+    }
+
+    /**
+     * Write the heartbeat of this node and determine the current members,
+     * notifying the listener if they changed.
+     *
+     * @return the current members including this node
+     * @throws IOException accessing the directory failed
+     */
+    synchronized Set<String> refresh() throws IOException
+    {
+        long now = System.currentTimeMillis();
+        Files.createDirectories(directory);
+
+        // readers never see a partially written heartbeat
+        Path file = directory.resolve(nodeId + SUFFIX);
+        Path temp = directory.resolve(nodeId + SUFFIX + ".tmp");
+        Files.write(temp, Long.toString(now).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Set<String> current = new TreeSet<>();
+        current.add(nodeId);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX))
+        {
+            for (Path member : files)
+            {
+                String name = member.getFileName().toString();
+                try
+                {
+                    long heartbeat = Long.parseLong(new String(Files.readAllBytes(member), StandardCharsets.UTF_8).trim());
+                    if (now - heartbeat <= expiry)
+                    {
+                        current.add(name.substring(0, name.length() - SUFFIX.length()));
+                    }
+                }
+                catch (IOException | NumberFormatException e)
+                {
+                    // deleted or replaced concurrently
+                }
+            }
+        }
+
+        if (!current.equals(members))
+        {
+            logger.info("Members of the partitioned scheduler changed from " + members + " to " + current);
+            members = Collections.unmodifiableSet(current);
+            listener.accept(members);
+        }
+        return members;
+    }
+
+    /**
+     * Start the heartbeats.
+     */
+    void start()
+    {
+        Thread heartbeat = new Thread(this, "Quartz-Membership-" + nodeId);
+        heartbeat.setDaemon(true);
+        this.thread = heartbeat;
+        heartbeat.start();
+    }
+
+    /**
+     * Stop the heartbeats and leave the membership.
+     */
+    void stop()
+    {
+        Thread heartbeat = this.thread;
+        this.thread = null;
+        if (heartbeat != null)
+        {
+            heartbeat.interrupt();
+            try
+            {
+                heartbeat.join(TimeUnit.SECONDS.toMillis(10));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try
+        {
+            Files.deleteIfExists(directory.resolve(nodeId + SUFFIX));
+        }
+        catch (IOException e)
+        {
+            logger.warn("Leaving the membership failed", e);
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (thread == Thread.currentThread())
+        {
+            try
+            {
+                refresh();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                if (thread == Thread.currentThread())
+                {
+                    logger.error("Refreshing the membership in " + directory + " failed", e);
+                }
+            }
+
+            try
+            {
+                Thread.sleep(heartbeatInterval);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+        }
+    }
+}
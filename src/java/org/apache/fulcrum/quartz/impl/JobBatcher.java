@@ -0,0 +1,281 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.apache.fulcrum.quartz.BatchJob;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Coalesces the fires of {@link BatchJob}s into batches executed by a
+ * single job instance. The job factory hands out this batcher instead of a
+ * job instance, so a fire only costs adding its context to the open batch
+ * of its job class and group in its scheduler.
+ *
+ * <p>The first fire of a batch leads it: it waits on its worker thread
+ * until the batch is full or the maximum wait elapsed, then executes the
+ * batch and completes with its own outcome. All other fires return at once
+ * and are marked as deferred, the service ignores their completion reported
+ * by Quartz and records the outcome passed to the reporter after the batch
+ * was executed instead.</p>
+ */
+final class JobBatcher implements Job
+{
+    /** The context key marking a fire whose outcome is reported with its batch */
+    static final String DEFERRED_KEY = "org.apache.fulcrum.quartz.batch.deferred";
+
+    private final Logger logger;
+
+    private final AvalonJobFactory jobFactory;
+
+    private final int maxBatchSize;
+
+    private final long maxWait;
+
+    private final boolean acrossGroups;
+
+    private final BiConsumer<JobExecutionContext, JobExecutionException> reporter;
+
+    /** the batches still accepting fires */
+    private final Map<List<Object>, Batch> openBatches = new HashMap<>();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong fires = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param logger the logger
+     * @param jobFactory creates the instances executing the batches
+     * @param maxBatchSize the maximum number of fires per batch
+     * @param maxWait the maximum time in ms the first fire of a batch waits for more fires
+     * @param acrossGroups whether fires of the same class are coalesced regardless of their group
+     * @param reporter records the outcome of the deferred fires
+     */
+    JobBatcher(Logger logger, AvalonJobFactory jobFactory, int maxBatchSize, long maxWait,
+        boolean acrossGroups, BiConsumer<JobExecutionContext, JobExecutionException> reporter)
+    {
+        this.logger = logger;
+        this.jobFactory = jobFactory;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+        this.acrossGroups = acrossGroups;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Whether the outcome of a fire is reported once its batch was executed.
+     *
+     * @param context the execution context of the fire
+     * @return true if Quartz completed the fire before its batch was executed
+     */
+    static boolean isDeferred(JobExecutionContext context)
+    {
+        return context.get(DEFERRED_KEY) != null;
+    }
+
+    /**
+     * Add a fire to the open batch of its job, executing the batch if the
+     * fire is the first one.
+     *
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException
+    {
+        // fires of different schedulers are never coalesced
+        List<Object> key = acrossGroups
+            ? List.of(context.getScheduler(), context.getJobDetail().getJobClass())
+            : List.of(context.getScheduler(), context.getJobDetail().getJobClass(), context.getJobDetail().getKey().getGroup());
+        fires.incrementAndGet();
+
+        Batch batch;
+        synchronized (openBatches)
+        {
+            batch = openBatches.get(key);
+            if (batch != null)
+            {
+                // the outcome is reported by the leading fire
+                context.put(DEFERRED_KEY, Boolean.TRUE);
+                batch.contexts.add(context);
+                if (batch.contexts.size() >= maxBatchSize)
+                {
+                    openBatches.remove(key);
+                    batch.closed = true;
+                    openBatches.notifyAll();
+                }
+                return;
+            }
+
+            batch = new Batch(context);
+            // a single fire is a full batch, there is nothing to wait for
+            batch.closed = maxBatchSize <= 1;
+            if (!batch.closed)
+            {
+                openBatches.put(key, batch);
+            }
+
+            long deadline = System.currentTimeMillis() + maxWait;
+            long remaining = maxWait;
+            try
+            {
+                while (!batch.closed && remaining > 0)
+                {
+                    openBatches.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                if (!batch.closed)
+                {
+                    openBatches.remove(key, batch);
+                    batch.closed = true;
+                }
+            }
+        }
+
+        JobExecutionException failure = executeBatch(context, batch.contexts);
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the number of executed batches
+     */
+    long getBatchCount()
+    {
+        return batches.get();
+    }
+
+    /**
+     * @return the number of fires added to batches
+     */
+    long getFireCount()
+    {
+        return fires.get();
+    }
+
+    /**
+     * Execute a closed batch on the thread of its leading fire.
+     *
+     * @param leader the execution context of the leading fire
+     * @param contexts the execution contexts of all fires
+     * @return the failure of the leading fire, null if it succeeded
+     */
+    private JobExecutionException executeBatch(JobExecutionContext leader, List<JobExecutionContext> contexts)
+    {
+        batches.incrementAndGet();
+        Map<JobExecutionContext, JobExecutionException> failures = null;
+        JobExecutionException batchFailure = null;
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            Job job = jobFactory.createJob(new TriggerFiredBundle(leader.getJobDetail(), (OperableTrigger) leader.getTrigger(),
+                leader.getCalendar(), leader.isRecovering(), leader.getFireTime(), leader.getScheduledFireTime(),
+                leader.getPreviousFireTime(), leader.getNextFireTime()), leader.getScheduler());
+            try
+            {
+                failures = ((BatchJob) job).executeBatch(Collections.unmodifiableList(contexts));
+            }
+            finally
+            {
+                jobFactory.release(job);
+            }
+        }
+        catch (JobExecutionException e)
+        {
+            batchFailure = e;
+        }
+        catch (SchedulerException | RuntimeException e)
+        {
+            batchFailure = new JobExecutionException(e);
+        }
+
+        long runTime = System.currentTimeMillis() - startTime;
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Executing a batch of " + contexts.size() + " fires of the job '" + leader.getJobDetail().getKey()
+                + "' took " + runTime + " ms");
+        }
+
+        JobExecutionException leaderFailure = null;
+        for (JobExecutionContext context : contexts)
+        {
+            JobExecutionException failure = batchFailure != null ? batchFailure : failures != null ? failures.get(context) : null;
+            if (failure != null)
+            {
+                // the fires were completed already, they cannot be re-fired
+                failure.setRefireImmediately(false);
+            }
+
+            if (context == leader)
+            {
+                leaderFailure = failure;
+            }
+            else
+            {
+                if (context instanceof JobExecutionContextImpl)
+                {
+                    ((JobExecutionContextImpl) context).setJobRunTime(runTime);
+                }
+                reporter.accept(context, failure);
+            }
+        }
+        return leaderFailure;
+    }
+
+    /**
+     * The fires coalesced into one execution.
+     */
+    private static final class Batch
+    {
+        final List<JobExecutionContext> contexts = new ArrayList<>();
+
+        boolean closed;
+
+        Batch(JobExecutionContext leader)
+        {
+            contexts.add(leader);
+        }
+    }
+}
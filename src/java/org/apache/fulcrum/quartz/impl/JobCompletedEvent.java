@@ -0,0 +1,85 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.JobExecutionContext;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning the execution of a job, including the job listeners
+ * notified in between.
+ */
+@Name("org.apache.fulcrum.quartz.JobCompleted")
+@Label("Job Completed")
+@Description("A job was executed, successfully or not")
+final class JobCompletedEvent extends JobEvent
+{
+    /** Key of the started event in the execution context */
+    private static final String CONTEXT_KEY = JobCompletedEvent.class.getName();
+
+    @Label("Run Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long runTime;
+
+    @Label("Successful")
+    boolean successful;
+
+    /**
+     * Start the event if it is enabled.
+     *
+     * @param context the execution keeping the started event
+     */
+    static void begin(JobExecutionContext context)
+    {
+        JobCompletedEvent event = new JobCompletedEvent();
+        if (event.isEnabled())
+        {
+            event.begin();
+            context.put(CONTEXT_KEY, event);
+        }
+    }
+
+    /**
+     * Commit the event started for the execution.
+     *
+     * @param context the execution
+     * @param successful whether the job completed without an exception
+     */
+    static void end(JobExecutionContext context, boolean successful)
+    {
+        Object started = context.get(CONTEXT_KEY);
+        if (started instanceof JobCompletedEvent)
+        {
+            JobCompletedEvent event = (JobCompletedEvent) started;
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.describe(context);
+                event.runTime = context.getJobRunTime();
+                event.successful = successful;
+                event.commit();
+            }
+        }
+    }
+}
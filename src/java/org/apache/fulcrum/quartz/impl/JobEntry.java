@@ -0,0 +1,51 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+
+/**
+ * A job kept by the {@link ConcurrentRAMJobStore} together with its triggers.
+ * Everything but reading the job detail is guarded by the lock stripe of the
+ * job key.
+ */
+final class JobEntry
+{
+    final JobKey key;
+
+    /** the stored job detail, replaced but never modified */
+    volatile JobDetail jobDetail;
+
+    /** the triggers of the job */
+    final List<TriggerEntry> triggers = new ArrayList<>(1);
+
+    /** true while a job disallowing concurrent execution is running */
+    boolean blocked;
+
+    JobEntry(JobDetail jobDetail)
+    {
+        this.key = jobDetail.getKey();
+        this.jobDetail = jobDetail;
+    }
+}
@@ -0,0 +1,72 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+
+import org.quartz.JobExecutionContext;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * Common fields of the Java Flight Recorder events describing the
+ * execution of a job. The events are only filled and committed while they
+ * are enabled in a recording, so they cost next to nothing otherwise.
+ */
+@Category({"Fulcrum", "Quartz"})
+@StackTrace(false)
+abstract class JobEvent extends Event
+{
+    @Label("Job")
+    String jobKey;
+
+    @Label("Trigger")
+    String triggerKey;
+
+    @Label("Scheduled Fire Time")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long scheduledFireTime;
+
+    @Label("Fire Time")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long fireTime;
+
+    /**
+     * Copy the job, trigger and fire times of an execution.
+     *
+     * @param context the execution
+     */
+    void describe(JobExecutionContext context)
+    {
+        jobKey = context.getJobDetail().getKey().toString();
+        triggerKey = context.getTrigger().getKey().toString();
+        scheduledFireTime = toMillis(context.getScheduledFireTime());
+        fireTime = toMillis(context.getFireTime());
+    }
+
+    static long toMillis(Date date)
+    {
+        return date != null ? date.getTime() : 0L;
+    }
+}
@@ -0,0 +1,73 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.JobExecutionContext;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted when a job threw an exception.
+ */
+@Name("org.apache.fulcrum.quartz.JobFailed")
+@Label("Job Failed")
+@Description("A job threw an exception")
+final class JobFailedEvent extends JobEvent
+{
+    @Label("Run Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long runTime;
+
+    @Label("Exception")
+    String exception;
+
+    @Label("Message")
+    String message;
+
+    @Label("Refire Immediately")
+    boolean refireImmediately;
+
+    /**
+     * Emit the event if it is enabled. The exception is described by plain
+     * strings computed by the caller, JFR instruments this class and cannot
+     * resolve Quartz types in its code.
+     *
+     * @param context the execution
+     * @param exception the class name of the cause of the failure
+     * @param message the message of the cause of the failure
+     * @param refireImmediately whether the job is re-fired immediately
+     */
+    static void emit(JobExecutionContext context, String exception, String message, boolean refireImmediately)
+    {
+        JobFailedEvent event = new JobFailedEvent();
+        if (event.isEnabled())
+        {
+            event.describe(context);
+            event.runTime = context.getJobRunTime();
+            event.exception = exception;
+            event.message = message;
+            event.refireImmediately = refireImmediately;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.fulcrum.quartz.JobMetrics;
+import org.apache.fulcrum.quartz.JobStatistics;
+import org.quartz.JobKey;
+
+/**
+ * Collects execution statistics per job. Recording only touches striped
+ * accumulators so it stays cheap when many jobs complete concurrently;
+ * the per group statistics are aggregated when a snapshot is taken.
+ * The statistics of removed jobs only remain part of their group.
+ */
+final class JobMetricsRegistry
+{
+    /** the recorders per job */
+    private final ConcurrentHashMap<JobKey, Recorder> recorders = new ConcurrentHashMap<>();
+
+    /** the statistics of removed jobs per group, guarded by itself */
+    private final Map<String, Aggregate> removedJobs = new TreeMap<>();
+
+    /**
+     * Record a completed job execution.
+     *
+     * @param jobKey the job
+     * @param runTime the run time in ms
+     * @param lag the time in ms between the scheduled and the actual fire time
+     * @param failed true if the job failed
+     */
+    void recordExecution(JobKey jobKey, long runTime, long lag, boolean failed)
+    {
+        getRecorder(jobKey).record(runTime, lag, failed);
+    }
+
+    /**
+     * Record a vetoed job execution.
+     *
+     * @param jobKey the job
+     */
+    void recordVeto(JobKey jobKey)
+    {
+        getRecorder(jobKey).vetoes.increment();
+    }
+
+    /**
+     * Take a snapshot of the statistics collected so far.
+     *
+     * @return the immutable snapshot
+     */
+    JobMetrics snapshot()
+    {
+        Map<JobKey, JobStatistics> jobs = new TreeMap<>();
+        Map<String, Aggregate> groups = new TreeMap<>();
+
+        synchronized (removedJobs)
+        {
+            for (Map.Entry<String, Aggregate> entry : removedJobs.entrySet())
+            {
+                groups.computeIfAbsent(entry.getKey(), group -> new Aggregate()).add(entry.getValue().toStatistics());
+            }
+        }
+
+        for (Map.Entry<JobKey, Recorder> entry : recorders.entrySet())
+        {
+            JobStatistics statistics = entry.getValue().snapshot();
+            jobs.put(entry.getKey(), statistics);
+            groups.computeIfAbsent(entry.getKey().getGroup(), group -> new Aggregate()).add(statistics);
+        }
+
+        Map<String, JobStatistics> groupStatistics = new TreeMap<>();
+        for (Map.Entry<String, Aggregate> entry : groups.entrySet())
+        {
+            groupStatistics.put(entry.getKey(), entry.getValue().toStatistics());
+        }
+
+        return new JobMetrics(System.currentTimeMillis(), jobs, groupStatistics);
+    }
+
+    /**
+     * Discard the statistics of a job, they are only kept as part of the
+     * statistics of its group.
+     *
+     * @param jobKey the removed job
+     */
+    void remove(JobKey jobKey)
+    {
+        Recorder recorder = recorders.remove(jobKey);
+        if (recorder != null)
+        {
+            synchronized (removedJobs)
+            {
+                removedJobs.computeIfAbsent(jobKey.getGroup(), group -> new Aggregate()).add(recorder.snapshot());
+            }
+        }
+    }
+
+    /**
+     * Discard all statistics.
+     */
+    void clear()
+    {
+        recorders.clear();
+        synchronized (removedJobs)
+        {
+            removedJobs.clear();
+        }
+    }
+
+    private Recorder getRecorder(JobKey jobKey)
+    {
+        Recorder recorder = recorders.get(jobKey);
+        return recorder != null ? recorder : recorders.computeIfAbsent(jobKey, key -> new Recorder());
+    }
+
+    /**
+     * Lock-free accumulators of a single job.
+     */
+    private static final class Recorder
+    {
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder vetoes = new LongAdder();
+        final LongAdder totalRunTime = new LongAdder();
+        final LongAccumulator minRunTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator maxRunTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        final LongAdder[] histogram = new LongAdder[JobStatistics.BUCKETS];
+        final LongAdder totalLag = new LongAdder();
+        final LongAccumulator maxLag = new LongAccumulator(Math::max, 0L);
+        final LongAdder[] lagHistogram = new LongAdder[JobStatistics.BUCKETS];
+
+        Recorder()
+        {
+            for (int i = 0; i < histogram.length; i++)
+            {
+                histogram[i] = new LongAdder();
+                lagHistogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long runTime, long lag, boolean failed)
+        {
+            count.increment();
+            if (failed)
+            {
+                failures.increment();
+            }
+            totalRunTime.add(runTime);
+            minRunTime.accumulate(runTime);
+            maxRunTime.accumulate(runTime);
+            histogram[JobStatistics.getBucket(runTime)].increment();
+            totalLag.add(lag);
+            maxLag.accumulate(lag);
+            lagHistogram[JobStatistics.getBucket(lag)].increment();
+        }
+
+        JobStatistics snapshot()
+        {
+            long[] buckets = new long[histogram.length];
+            long[] lagBuckets = new long[lagHistogram.length];
+            for (int i = 0; i < histogram.length; i++)
+            {
+                buckets[i] = histogram[i].sum();
+                lagBuckets[i] = lagHistogram[i].sum();
+            }
+
+            return new JobStatistics(count.sum(), failures.sum(), vetoes.sum(), totalRunTime.sum(),
+                minRunTime.get(), maxRunTime.get(), buckets, totalLag.sum(), maxLag.get(), lagBuckets);
+        }
+    }
+
+    /**
+     * Sums up the statistics of the jobs of a group.
+     */
+    private static final class Aggregate
+    {
+        long count;
+        long failures;
+        long vetoes;
+        long totalRunTime;
+        long minRunTime = Long.MAX_VALUE;
+        long maxRunTime = Long.MIN_VALUE;
+        final long[] histogram = new long[JobStatistics.BUCKETS];
+        long totalLag;
+        long maxLag;
+        final long[] lagHistogram = new long[JobStatistics.BUCKETS];
+
+        void add(JobStatistics statistics)
+        {
+            count += statistics.getCount();
+            failures += statistics.getFailures();
+            vetoes += statistics.getVetoes();
+            totalRunTime += statistics.getTotalRunTime();
+
+            if (statistics.getCount() > 0)
+            {
+                minRunTime = Math.min(minRunTime, statistics.getMinRunTime());
+                maxRunTime = Math.max(maxRunTime, statistics.getMaxRunTime());
+            }
+
+            long[] buckets = statistics.getHistogram();
+            long[] lagBuckets = statistics.getLagHistogram();
+            for (int i = 0; i < buckets.length; i++)
+            {
+                histogram[i] += buckets[i];
+                lagHistogram[i] += lagBuckets[i];
+            }
+
+            totalLag += statistics.getTotalLag();
+            maxLag = Math.max(maxLag, statistics.getMaxLag());
+        }
+
+        JobStatistics toStatistics()
+        {
+            return new JobStatistics(count, failures, vetoes, totalRunTime, minRunTime, maxRunTime, histogram,
+                totalLag, maxLag, lagHistogram);
+        }
+    }
+}
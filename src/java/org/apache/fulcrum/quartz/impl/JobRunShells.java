@@ -0,0 +1,84 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.Field;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.core.JobRunShell;
+
+/**
+ * Determines the fired job from the <code>JobRunShell</code> the scheduler
+ * hands over to its thread pool, which does not expose the execution
+ * context otherwise.
+ */
+final class JobRunShells
+{
+    /** The execution context of a JobRunShell, null if not accessible */
+    private static final Field JOB_CONTEXT_FIELD = findJobContextField();
+
+    private JobRunShells()
+    {
+        // utility class
+    }
+
+    /**
+     * @return true if the execution context of a JobRunShell is accessible
+     */
+    static boolean isContextAccessible()
+    {
+        return JOB_CONTEXT_FIELD != null;
+    }
+
+    /**
+     * @param runnable the runnable passed by the scheduler
+     * @return the execution context of the job or null if it can not be determined
+     */
+    static JobExecutionContext getContext(Runnable runnable)
+    {
+        if (JOB_CONTEXT_FIELD == null || !(runnable instanceof JobRunShell))
+        {
+            return null;
+        }
+
+        try
+        {
+            return (JobExecutionContext) JOB_CONTEXT_FIELD.get(runnable);
+        }
+        catch (IllegalAccessException e)
+        {
+            return null;
+        }
+    }
+
+    private static Field findJobContextField()
+    {
+        try
+        {
+            Field field = JobRunShell.class.getDeclaredField("jec");
+            field.setAccessible(true);
+            return field;
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.JobExecutionContext;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted when a job is about to be executed.
+ */
+@Name("org.apache.fulcrum.quartz.JobStarted")
+@Label("Job Started")
+@Description("A job is about to be executed")
+final class JobStartedEvent extends JobEvent
+{
+    /**
+     * Emit the event if it is enabled.
+     *
+     * @param context the execution
+     */
+    static void emit(JobExecutionContext context)
+    {
+        JobStartedEvent event = new JobStartedEvent();
+        if (event.isEnabled())
+        {
+            event.describe(context);
+            event.commit();
+        }
+    }
+}
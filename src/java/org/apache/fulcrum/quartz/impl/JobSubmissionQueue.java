@@ -0,0 +1,243 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ThreadPool;
+
+/**
+ * A bounded queue of jobs submitted for immediate execution, handed over to
+ * the scheduler's thread pool by a dispatcher thread as soon as a thread is
+ * available. Submitting to a full queue either fails at once or waits for
+ * free space up to a timeout. Jobs submitted before the dispatcher is
+ * started wait in the queue, jobs still waiting when it is stopped or when
+ * it fails fail as well.
+ */
+final class JobSubmissionQueue implements Runnable
+{
+    /** Fail submissions to a full queue */
+    static final String POLICY_REJECT = "reject";
+
+    /** Wait for free space in a full queue */
+    static final String POLICY_BLOCK = "block";
+
+    private final Logger logger;
+
+    private final ThreadPool threadPool;
+
+    private final BlockingQueue<Submission> queue;
+
+    private final boolean block;
+
+    private final long blockTimeout;
+
+    /** Set while the dispatcher is stopped after having been started */
+    private volatile boolean closed;
+
+    /** The current dispatcher thread, null if stopped */
+    private volatile Thread dispatcher;
+
+    /**
+     * @param logger the logger
+     * @param threadPool the pool executing the jobs, null to reject all submissions
+     * @param capacity the maximum number of waiting jobs
+     * @param policy {@value #POLICY_REJECT} or {@value #POLICY_BLOCK}
+     * @param blockTimeout the time in ms to wait for free space, negative to wait without limit
+     */
+    JobSubmissionQueue(Logger logger, ThreadPool threadPool, int capacity, String policy, long blockTimeout)
+    {
+        this.logger = logger;
+        this.threadPool = threadPool;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.block = POLICY_BLOCK.equals(policy);
+        this.blockTimeout = blockTimeout;
+    }
+
+    /**
+     * Queue a job for execution.
+     *
+     * @param task runs the job and completes the future
+     * @param future the result of the job, failed if the job cannot be dispatched
+     * @throws SchedulerException the queue is full or stopped or there is no thread pool
+     */
+    void submit(Runnable task, CompletableFuture<?> future) throws SchedulerException
+    {
+        if (threadPool == null)
+        {
+            throw new SchedulerException("Submitting jobs requires a thread pool created by the scheduler service");
+        }
+
+        if (closed)
+        {
+            throw new SchedulerException("The job submission queue is stopped");
+        }
+
+        Submission submission = new Submission(task, future);
+        boolean queued;
+        try
+        {
+            if (!block)
+            {
+                queued = queue.offer(submission);
+            }
+            else if (blockTimeout < 0)
+            {
+                queue.put(submission);
+                queued = true;
+            }
+            else
+            {
+                queued = queue.offer(submission, blockTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SchedulerException("Interrupted while waiting for space in the job submission queue", e);
+        }
+
+        if (!queued)
+        {
+            throw new SchedulerException("The job submission queue is full (" + (queue.size() + queue.remainingCapacity()) + " jobs)");
+        }
+
+        // stopped while queueing
+        if (closed)
+        {
+            failPending();
+        }
+    }
+
+    /**
+     * @return the number of jobs waiting for a thread
+     */
+    int size()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Start dispatching the queued jobs.
+     */
+    synchronized void start()
+    {
+        closed = false;
+        dispatcher = new Thread(this, "Quartz-Submission-Dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Stop dispatching, jobs already handed over keep running while the
+     * jobs still queued fail. A dispatcher waiting for a thread fails its
+     * job once it notices being stopped.
+     */
+    synchronized void stop()
+    {
+        closed = true;
+        Thread stopped = dispatcher;
+        dispatcher = null;
+        if (stopped != null)
+        {
+            stopped.interrupt();
+        }
+        failPending();
+    }
+
+    @Override
+    public void run()
+    {
+        Thread current = Thread.currentThread();
+        Submission submission = null;
+        try
+        {
+            while (dispatcher == current)
+            {
+                submission = queue.take();
+                if (threadPool.blockForAvailableThreads() < 1 || dispatcher != current || !threadPool.runInThread(submission))
+                {
+                    submission.future.completeExceptionally(new SchedulerException("The submitted job was not accepted by the thread pool"));
+                }
+                submission = null;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // stopped
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Dispatching submitted jobs failed", e);
+            if (submission != null)
+            {
+                submission.future.completeExceptionally(new SchedulerException("Dispatching the submitted job failed", e));
+            }
+        }
+        finally
+        {
+            // no further job would be dispatched after a failure
+            if (dispatcher == current)
+            {
+                closed = true;
+                failPending();
+            }
+        }
+    }
+
+    private void failPending()
+    {
+        List<Submission> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Submission submission : pending)
+        {
+            submission.future.completeExceptionally(new SchedulerException("The job submission queue was stopped"));
+        }
+    }
+
+    /**
+     * A queued job.
+     */
+    private static final class Submission implements Runnable
+    {
+        final Runnable task;
+
+        final CompletableFuture<?> future;
+
+        Submission(Runnable task, CompletableFuture<?> future)
+        {
+            this.task = task;
+            this.future = future;
+        }
+
+        @Override
+        public void run()
+        {
+            task.run();
+        }
+    }
+}
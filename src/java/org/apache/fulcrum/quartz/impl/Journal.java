@@ -0,0 +1,674 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.quartz.JobPersistenceException;
+import org.quartz.spi.ClassLoadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of serialized records kept in a directory as a
+ * sequence of generations. Generation <i>n</i> consists of the segment
+ * <code>journal-n.dat</code> holding the records appended since it was
+ * started and the snapshot <code>snapshot-n.dat</code> holding the complete
+ * state at some point after the segment was started.
+ *
+ * <ul>
+ *   <li>records are appended to a buffer in memory and written by a single
+ *   writer thread, all records appended while the previous batch was
+ *   written are written and forced to disk together (group commit)</li>
+ *   <li>once the current segment exceeds the compaction threshold the writer
+ *   starts a new generation and a background thread writes its snapshot,
+ *   after that the files of older generations are deleted</li>
+ *   <li>replaying reads the latest complete snapshot and all segments from
+ *   its generation on, a torn record at the end of a segment ends it</li>
+ * </ul>
+ *
+ * Records describe the complete state of one object, so replaying a segment
+ * on top of a snapshot taken concurrently to appending it gives the latest
+ * state.
+ */
+final class Journal implements Runnable
+{
+    /** Record holding a job */
+    static final byte JOB = 1;
+
+    /** Record holding the key of a removed job */
+    static final byte JOB_REMOVED = 2;
+
+    /** Record holding a trigger and its state */
+    static final byte TRIGGER = 3;
+
+    /** Record holding the key of a removed trigger */
+    static final byte TRIGGER_REMOVED = 4;
+
+    /** Record holding the name of a calendar and the calendar */
+    static final byte CALENDAR = 5;
+
+    /** Record holding the name of a removed calendar */
+    static final byte CALENDAR_REMOVED = 6;
+
+    /** Record holding the paused trigger groups and the paused job groups */
+    static final byte PAUSED_GROUPS = 7;
+
+    private static final String SEGMENT = "journal-";
+
+    private static final String SNAPSHOT = "snapshot-";
+
+    private static final String SUFFIX = ".dat";
+
+    /** Length and checksum preceding the content of a record */
+    private static final int HEADER_SIZE = 8;
+
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives the records read when replaying the journal.
+     */
+    interface Replayer
+    {
+        void replay(byte type, ObjectInputStream in) throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Writes the records of a snapshot.
+     */
+    interface Snapshotter
+    {
+        void writeSnapshot(RecordSink sink) throws IOException;
+    }
+
+    /**
+     * Receives the records of a snapshot.
+     */
+    interface RecordSink
+    {
+        void write(byte[] record) throws IOException;
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Path directory;
+
+    private final boolean force;
+
+    private final long flushInterval;
+
+    private final long compactionThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** signalled when records were appended to an empty buffer or the journal was closed */
+    private final Condition appended = lock.newCondition();
+
+    /** signalled when records were written or writing failed */
+    private final Condition committed = lock.newCondition();
+
+    /** the records not yet written, guarded by the lock */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    /** the records being written by the writer thread */
+    private ByteArrayOutputStream writing = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    /** the number of records appended, guarded by the lock */
+    private long appendedCount;
+
+    /** the number of records written, guarded by the lock */
+    private long committedCount;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private Snapshotter snapshotter;
+
+    /** the current generation, only changed by the writer thread once started */
+    private long generation;
+
+    private FileChannel segment;
+
+    private long segmentSize;
+
+    private Thread writer;
+
+    private volatile Thread compactor;
+
+    /**
+     * @param directory the directory holding the files
+     * @param force force written records to disk before they count as committed
+     * @param flushInterval the time in ms records are collected before writing them if not forcing them
+     * @param compactionThreshold the size in bytes of a segment starting a new generation
+     */
+    Journal(Path directory, boolean force, long flushInterval, long compactionThreshold)
+    {
+        this.directory = directory;
+        this.force = force;
+        this.flushInterval = flushInterval;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param type the type of the record
+     * @param values the serializable values of the record
+     * @return the record including its header
+     * @throws IOException a value could not be serialized
+     */
+    static byte[] record(byte type, Object... values) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        buffer.write(new byte[HEADER_SIZE]);
+        buffer.write(type);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer))
+        {
+            for (Object value : values)
+            {
+                out.writeObject(value);
+            }
+        }
+
+        byte[] record = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE);
+        ByteBuffer.wrap(record).putInt(record.length - HEADER_SIZE).putInt((int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Read the latest complete snapshot and the segments following it.
+     *
+     * @param loadHelper loads the classes of the records
+     * @param replayer receives the records
+     * @return the number of records read
+     * @throws IOException reading a file or decoding a record failed
+     */
+    long replay(ClassLoadHelper loadHelper, Replayer replayer) throws IOException
+    {
+        Files.createDirectories(directory);
+
+        long snapshot = -1;
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                long snapshotGeneration = generationOf(file, SNAPSHOT);
+                long segmentGeneration = generationOf(file, SEGMENT);
+                snapshot = Math.max(snapshot, snapshotGeneration);
+                if (segmentGeneration >= 0)
+                {
+                    segments.add(segmentGeneration);
+                }
+                generation = Math.max(generation, Math.max(snapshotGeneration, segmentGeneration));
+            }
+        }
+
+        long count = 0;
+        if (snapshot >= 0)
+        {
+            count += read(directory.resolve(SNAPSHOT + snapshot + SUFFIX), loadHelper, replayer);
+        }
+
+        Collections.sort(segments);
+        for (long segmentGeneration : segments)
+        {
+            if (segmentGeneration >= snapshot)
+            {
+                count += read(directory.resolve(SEGMENT + segmentGeneration + SUFFIX), loadHelper, replayer);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Start a new generation with a snapshot of the replayed state and start
+     * writing appended records.
+     *
+     * @param snapshotter writes the snapshots
+     * @throws IOException creating the files failed
+     */
+    void start(Snapshotter snapshotter) throws IOException
+    {
+        this.snapshotter = snapshotter;
+        startGeneration();
+        compact(generation);
+
+        writer = new Thread(this, "Quartz-Journal-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Append a record to be written by the writer thread. Records appended
+     * after the journal was closed are dropped.
+     *
+     * @param record the record
+     * @return the sequence number of the record
+     */
+    long append(byte[] record)
+    {
+        lock.lock();
+        try
+        {
+            if (!closed)
+            {
+                // the writer only waits for the first record of a batch
+                if (pending.size() == 0)
+                {
+                    appended.signal();
+                }
+                pending.write(record, 0, record.length);
+                appendedCount++;
+            }
+            return appendedCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until all records appended so far are committed. Returns at once
+     * if records are not forced to disk.
+     *
+     * @throws JobPersistenceException writing the journal failed
+     */
+    void awaitCommit() throws JobPersistenceException
+    {
+        lock.lock();
+        try
+        {
+            long sequence = appendedCount;
+            while (force && committedCount < sequence && failure == null && !closed)
+            {
+                committed.await();
+            }
+
+            if (failure != null)
+            {
+                throw new JobPersistenceException("Writing the journal in " + directory + " failed", failure);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new JobPersistenceException("Interrupted while waiting for the journal", e);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the pending records and close the files.
+     */
+    void close()
+    {
+        lock.lock();
+        try
+        {
+            closed = true;
+            appended.signalAll();
+            committed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        try
+        {
+            if (writer != null)
+            {
+                writer.join();
+            }
+            Thread running = compactor;
+            if (running != null)
+            {
+                running.join();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            if (segment != null)
+            {
+                segment.force(true);
+                segment.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("Closing the journal in {} failed", directory, e);
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        OutputStream out = Channels.newOutputStream(segment);
+
+        try
+        {
+            while (true)
+            {
+                long sequence;
+                lock.lock();
+                try
+                {
+                    while (pending.size() == 0 && !closed)
+                    {
+                        appended.await();
+                    }
+                    if (pending.size() == 0)
+                    {
+                        return;
+                    }
+
+                    if (!force)
+                    {
+                        // collect the records of the flush interval
+                        long nanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                        while (nanos > 0 && !closed)
+                        {
+                            nanos = appended.awaitNanos(nanos);
+                        }
+                    }
+
+                    ByteArrayOutputStream batch = pending;
+                    pending = writing;
+                    writing = batch;
+                    sequence = appendedCount;
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+
+                writing.writeTo(out);
+                segmentSize += writing.size();
+                writing.reset();
+                if (force)
+                {
+                    segment.force(false);
+                }
+
+                lock.lock();
+                try
+                {
+                    committedCount = sequence;
+                    committed.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+
+                if (segmentSize >= compactionThreshold && compactor == null)
+                {
+                    // records appended from now on belong to the new generation
+                    startGeneration();
+                    out = Channels.newOutputStream(segment);
+                    startCompaction(generation);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("Writing the journal in {} failed", directory, e);
+            fail(e);
+        }
+        catch (InterruptedException e)
+        {
+            fail(new InterruptedIOException("The journal writer was interrupted"));
+        }
+    }
+
+    /**
+     * Let the pending and all further commits fail.
+     */
+    private void fail(IOException e)
+    {
+        lock.lock();
+        try
+        {
+            failure = e;
+            committed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void startGeneration() throws IOException
+    {
+        if (segment != null)
+        {
+            segment.force(true);
+            segment.close();
+        }
+
+        generation++;
+        segment = FileChannel.open(directory.resolve(SEGMENT + generation + SUFFIX), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        segmentSize = 0;
+    }
+
+    private void startCompaction(long snapshotGeneration)
+    {
+        Thread thread = new Thread(() -> {
+            try
+            {
+                compact(snapshotGeneration);
+            }
+            catch (IOException e)
+            {
+                log.warn("Compacting the journal in {} failed", directory, e);
+            }
+            finally
+            {
+                compactor = null;
+            }
+        }, "Quartz-Journal-Compactor");
+        thread.setDaemon(true);
+        compactor = thread;
+        thread.start();
+    }
+
+    /**
+     * Write the snapshot of a generation and delete the files of the older
+     * generations.
+     */
+    private void compact(long snapshotGeneration) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        Path snapshot = directory.resolve(SNAPSHOT + snapshotGeneration + SUFFIX);
+        Path temporary = directory.resolve(SNAPSHOT + snapshotGeneration + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            snapshotter.writeSnapshot(record -> out.write(record));
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                long fileGeneration = Math.max(generationOf(file, SNAPSHOT), generationOf(file, SEGMENT));
+                if (fileGeneration >= 0 && fileGeneration < snapshotGeneration)
+                {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        log.info("Compacted the journal in {} to generation {} in {} ms", directory, snapshotGeneration,
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Read the records of a file up to its end or a torn record.
+     */
+    private long read(Path file, ClassLoadHelper loadHelper, Replayer replayer) throws IOException
+    {
+        long count = 0;
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)))
+        {
+            while (true)
+            {
+                byte[] content;
+                try
+                {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 1 || length > MAX_RECORD_SIZE)
+                    {
+                        log.warn("Ignoring the end of {} after {} records, invalid record length {}", file, count, length);
+                        return count;
+                    }
+
+                    content = new byte[length];
+                    in.readFully(content);
+                    crc.reset();
+                    crc.update(content);
+                    if ((int) crc.getValue() != checksum)
+                    {
+                        log.warn("Ignoring the end of {} after {} records, checksum mismatch", file, count);
+                        return count;
+                    }
+                }
+                catch (EOFException e)
+                {
+                    // the end of the file or a torn record
+                    return count;
+                }
+
+                try (ObjectInputStream objects = new RecordInputStream(
+                    new ByteArrayInputStream(content, 1, content.length - 1), loadHelper))
+                {
+                    replayer.replay(content[0], objects);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    log.warn("Skipping a record of {} referencing a missing class: {}", file, e.getMessage());
+                }
+                count++;
+            }
+        }
+    }
+
+    /**
+     * @return the generation of a file with the given prefix or -1
+     */
+    private static long generationOf(Path file, String prefix)
+    {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(SUFFIX))
+        {
+            return -1;
+        }
+
+        try
+        {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Resolves the classes of a record using the class load helper of the
+     * scheduler.
+     */
+    private static final class RecordInputStream extends ObjectInputStream
+    {
+        private final ClassLoadHelper loadHelper;
+
+        RecordInputStream(InputStream in, ClassLoadHelper loadHelper) throws IOException
+        {
+            super(in);
+            this.loadHelper = loadHelper;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            try
+            {
+                return loadHelper.loadClass(desc.getName());
+            }
+            catch (ClassNotFoundException e)
+            {
+                // primitive and array types
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
@@ -0,0 +1,726 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.quartz.Calendar;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ConcurrentRAMJobStore} keeping its jobs, triggers and calendars
+ * across restarts in a local {@link Journal}, without an external database.
+ *
+ * <ul>
+ *   <li>every change is serialized while holding the lock stripe of its job
+ *   and appended to the journal, operations return once the journal was
+ *   forced to disk and concurrent operations share a single write</li>
+ *   <li>the journal is compacted into a snapshot after growing beyond
+ *   <code>compactionThreshold</code> bytes</li>
+ *   <li>on initialization the snapshot and the journal are replayed into
+ *   memory, triggers which should have fired in the meantime are handled
+ *   according to their misfire instruction when they are acquired</li>
+ * </ul>
+ *
+ * Trigger acquisition is not persisted, jobs which were executing when the
+ * scheduler stopped are not recovered. Job data has to be serializable.
+ *
+ * <p>Selected with <code>org.quartz.jobStore.class</code>; supports the
+ * properties of the {@link ConcurrentRAMJobStore} and
+ * <code>journalDirectory</code>, <code>forceWrites</code>,
+ * <code>flushInterval</code> and <code>compactionThreshold</code>.</p>
+ */
+public class JournalingJobStore extends ConcurrentRAMJobStore
+{
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /** counts the nested operations of the current thread, commits when leaving the outermost */
+    private final ThreadLocal<int[]> nesting = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** serializes journaling the paused groups */
+    private final Object pausedGroupsLock = new Object();
+
+    private String journalDirectory = "quartz-journal";
+
+    private boolean forceWrites = true;
+
+    private long flushInterval = 10L;
+
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    /** null while restoring and after shutdown */
+    private volatile Journal journal;
+
+    /**
+     * An operation journaling its changes.
+     */
+    private interface Operation<T>
+    {
+        T run() throws JobPersistenceException;
+    }
+
+    /**
+     * @return the directory of the journal
+     */
+    public String getJournalDirectory()
+    {
+        return journalDirectory;
+    }
+
+    /**
+     * @param journalDirectory the directory of the journal, created if missing
+     */
+    public void setJournalDirectory(String journalDirectory)
+    {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * @return true if operations wait for their changes to be forced to disk
+     */
+    public boolean isForceWrites()
+    {
+        return forceWrites;
+    }
+
+    /**
+     * @param forceWrites wait for changes to be forced to disk, otherwise they
+     *            are written every <code>flushInterval</code> and survive
+     *            a crash of the process but not of the operating system
+     */
+    public void setForceWrites(boolean forceWrites)
+    {
+        this.forceWrites = forceWrites;
+    }
+
+    /**
+     * @return the time in ms changes are collected before writing them if not forcing writes
+     */
+    public long getFlushInterval()
+    {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval the time in ms changes are collected before writing them if not forcing writes
+     */
+    public void setFlushInterval(long flushInterval)
+    {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * @return the size in bytes of the journal triggering a compaction
+     */
+    public long getCompactionThreshold()
+    {
+        return compactionThreshold;
+    }
+
+    /**
+     * @param compactionThreshold the size in bytes of the journal triggering a compaction
+     */
+    public void setCompactionThreshold(long compactionThreshold)
+    {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    // === JobStore lifecycle ===============================================
+
+    /**
+     * Restores the journaled scheduling data.
+     *
+     * @see org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore#initialize(org.quartz.spi.ClassLoadHelper, org.quartz.spi.SchedulerSignaler)
+     */
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) throws SchedulerConfigException
+    {
+        super.initialize(loadHelper, schedSignaler);
+
+        if (journalDirectory == null || journalDirectory.isEmpty())
+        {
+            throw new SchedulerConfigException("No journal directory given");
+        }
+        if (flushInterval < 0)
+        {
+            throw new SchedulerConfigException("Flush interval of the journal must be >= 0");
+        }
+        if (compactionThreshold < 1)
+        {
+            throw new SchedulerConfigException("Compaction threshold of the journal must be > 0");
+        }
+
+        long start = System.currentTimeMillis();
+        Journal opened = new Journal(Paths.get(journalDirectory), forceWrites, flushInterval, compactionThreshold);
+        try
+        {
+            Replay replay = new Replay();
+            long records = opened.replay(loadHelper, replay);
+            replay.restore();
+            opened.start(this::writeSnapshot);
+
+            log.info("Restored {} jobs and {} triggers from {} journal records in {} in {} ms", getNumberOfJobs(),
+                getNumberOfTriggers(), records, journalDirectory, System.currentTimeMillis() - start);
+        }
+        catch (IOException | JobPersistenceException e)
+        {
+            opened.close();
+            throw new SchedulerConfigException("Restoring the journal in " + journalDirectory + " failed", e);
+        }
+
+        this.journal = opened;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        Journal closing = journal;
+        journal = null;
+        if (closing != null)
+        {
+            closing.close();
+        }
+        super.shutdown();
+    }
+
+    @Override
+    public boolean supportsPersistence()
+    {
+        return true;
+    }
+
+    // === Jobs and triggers ================================================
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.clearAllSchedulingData();
+            return null;
+        });
+    }
+
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger) throws JobPersistenceException
+    {
+        checkSerializable(newJob);
+        checkSerializable(newTrigger.getJobDataMap(), newTrigger.getKey());
+        journaled(() -> {
+            super.storeJobAndTrigger(newJob, newTrigger);
+            return null;
+        });
+    }
+
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting) throws JobPersistenceException
+    {
+        checkSerializable(newJob);
+        journaled(() -> {
+            super.storeJob(newJob, replaceExisting);
+            return null;
+        });
+    }
+
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+        throws JobPersistenceException
+    {
+        for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet())
+        {
+            checkSerializable(entry.getKey());
+            for (Trigger trigger : entry.getValue())
+            {
+                checkSerializable(trigger.getJobDataMap(), trigger.getKey());
+            }
+        }
+
+        journaled(() -> {
+            super.storeJobsAndTriggers(triggersAndJobs, replace);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean removeJob(JobKey jobKey) throws JobPersistenceException
+    {
+        return journaled(() -> super.removeJob(jobKey));
+    }
+
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException
+    {
+        return journaled(() -> super.removeJobs(jobKeys));
+    }
+
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting) throws JobPersistenceException
+    {
+        checkSerializable(newTrigger.getJobDataMap(), newTrigger.getKey());
+        journaled(() -> {
+            super.storeTrigger(newTrigger, replaceExisting);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        return journaled(() -> super.removeTrigger(triggerKey));
+    }
+
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException
+    {
+        return journaled(() -> super.removeTriggers(triggerKeys));
+    }
+
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException
+    {
+        checkSerializable(newTrigger.getJobDataMap(), newTrigger.getKey());
+        return journaled(() -> super.replaceTrigger(triggerKey, newTrigger));
+    }
+
+    @Override
+    public Set<TriggerKey> replaceTriggers(Map<TriggerKey, ? extends OperableTrigger> triggers) throws JobPersistenceException
+    {
+        for (OperableTrigger newTrigger : triggers.values())
+        {
+            checkSerializable(newTrigger.getJobDataMap(), newTrigger.getKey());
+        }
+        return journaled(() -> super.replaceTriggers(triggers));
+    }
+
+    @Override
+    public void resetTriggerFromErrorState(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.resetTriggerFromErrorState(triggerKey);
+            return null;
+        });
+    }
+
+    // === Calendars =========================================================
+
+    @Override
+    public void storeCalendar(String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+        throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.storeCalendar(name, calendar, replaceExisting, updateTriggers);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException
+    {
+        return journaled(() -> super.removeCalendar(calName));
+    }
+
+    // === Pause and resume =================================================
+
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.pauseTrigger(triggerKey);
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException
+    {
+        return journaled(() -> super.pauseTriggers(matcher));
+    }
+
+    @Override
+    public void pauseJob(JobKey jobKey) throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.pauseJob(jobKey);
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<String> pauseJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException
+    {
+        return journaled(() -> super.pauseJobs(matcher));
+    }
+
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.resumeTrigger(triggerKey);
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException
+    {
+        return journaled(() -> super.resumeTriggers(matcher));
+    }
+
+    @Override
+    public void resumeJob(JobKey jobKey) throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.resumeJob(jobKey);
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException
+    {
+        return journaled(() -> super.resumeJobs(matcher));
+    }
+
+    @Override
+    public void pauseAll() throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.pauseAll();
+            return null;
+        });
+    }
+
+    @Override
+    public void resumeAll() throws JobPersistenceException
+    {
+        journaled(() -> {
+            super.resumeAll();
+            return null;
+        });
+    }
+
+    // === Firing ===========================================================
+
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) throws JobPersistenceException
+    {
+        return journaled(() -> super.triggersFired(firedTriggers));
+    }
+
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail, CompletedExecutionInstruction triggerInstCode)
+    {
+        try
+        {
+            journaled(() -> {
+                super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+                return null;
+            });
+        }
+        catch (JobPersistenceException e)
+        {
+            log.error("Journaling the completion of trigger {} failed", trigger.getKey(), e);
+        }
+    }
+
+    // === Journal ==========================================================
+
+    @Override
+    void jobStored(JobDetail jobDetail)
+    {
+        append(Journal.JOB, jobDetail);
+    }
+
+    @Override
+    void jobRemoved(JobKey jobKey)
+    {
+        append(Journal.JOB_REMOVED, jobKey);
+    }
+
+    @Override
+    void triggerStored(TriggerEntry entry)
+    {
+        append(Journal.TRIGGER, entry.trigger, persistentState(entry.triggerState()));
+    }
+
+    @Override
+    void triggerRemoved(TriggerKey triggerKey)
+    {
+        append(Journal.TRIGGER_REMOVED, triggerKey);
+    }
+
+    @Override
+    void calendarStored(String name, Calendar calendar)
+    {
+        append(Journal.CALENDAR, name, calendar);
+    }
+
+    @Override
+    void calendarRemoved(String name)
+    {
+        append(Journal.CALENDAR_REMOVED, name);
+    }
+
+    @Override
+    void pausedGroupsChanged()
+    {
+        // the last record has to reflect the latest change
+        synchronized (pausedGroupsLock)
+        {
+            append(Journal.PAUSED_GROUPS, getPausedTriggerGroups(), getPausedJobGroups());
+        }
+    }
+
+    /**
+     * Run an operation and wait for its changes to be committed unless it
+     * is nested in another operation.
+     */
+    private <T> T journaled(Operation<T> operation) throws JobPersistenceException
+    {
+        int[] depth = nesting.get();
+        T result;
+        depth[0]++;
+        try
+        {
+            result = operation.run();
+        }
+        finally
+        {
+            depth[0]--;
+        }
+
+        Journal current = journal;
+        if (depth[0] == 0 && current != null)
+        {
+            current.awaitCommit();
+        }
+        return result;
+    }
+
+    private void append(byte type, Object... values)
+    {
+        Journal current = journal;
+        if (current == null)
+        {
+            return;
+        }
+
+        try
+        {
+            current.append(Journal.record(type, values));
+        }
+        catch (IOException e)
+        {
+            log.error("Journaling a change failed, it is kept in memory only", e);
+        }
+    }
+
+    /**
+     * Write the current scheduling data as a snapshot of the journal.
+     */
+    private void writeSnapshot(Journal.RecordSink sink) throws IOException
+    {
+        for (String name : getCalendarNames())
+        {
+            Calendar calendar = retrieveCalendar(name);
+            if (calendar != null)
+            {
+                sink.write(Journal.record(Journal.CALENDAR, name, calendar));
+            }
+        }
+
+        for (String group : getJobGroupNames())
+        {
+            for (JobKey jobKey : getJobKeys(GroupMatcher.jobGroupEquals(group)))
+            {
+                JobDetail jobDetail = retrieveJob(jobKey);
+                if (jobDetail != null)
+                {
+                    sink.write(Journal.record(Journal.JOB, jobDetail));
+                }
+            }
+        }
+
+        for (String group : getTriggerGroupNames())
+        {
+            for (TriggerKey triggerKey : getTriggerKeys(GroupMatcher.triggerGroupEquals(group)))
+            {
+                OperableTrigger trigger = retrieveTrigger(triggerKey);
+                TriggerState state = getTriggerState(triggerKey);
+                if (trigger != null && state != TriggerState.NONE)
+                {
+                    sink.write(Journal.record(Journal.TRIGGER, trigger, persistentState(state)));
+                }
+            }
+        }
+
+        synchronized (pausedGroupsLock)
+        {
+            sink.write(Journal.record(Journal.PAUSED_GROUPS, getPausedTriggerGroups(), getPausedJobGroups()));
+        }
+    }
+
+    /**
+     * Blocking a trigger only lasts until its job completes.
+     */
+    private static TriggerState persistentState(TriggerState state)
+    {
+        return state == TriggerState.BLOCKED ? TriggerState.NORMAL : state;
+    }
+
+    private static void checkSerializable(JobDetail jobDetail) throws JobPersistenceException
+    {
+        // compact job data was checked when it was stored
+        if (!(jobDetail instanceof CompactJobDetail) || !((CompactJobDetail) jobDetail).isCompact())
+        {
+            checkSerializable(jobDetail.getJobDataMap(), jobDetail.getKey());
+        }
+    }
+
+    private static void checkSerializable(JobDataMap jobDataMap, Object owner) throws JobPersistenceException
+    {
+        if (jobDataMap == null)
+        {
+            return;
+        }
+
+        for (Map.Entry<String, Object> entry : jobDataMap.entrySet())
+        {
+            if (entry.getValue() != null && !(entry.getValue() instanceof Serializable))
+            {
+                throw new JobPersistenceException("The job data of " + owner + " contains the value of '"
+                    + entry.getKey() + "' which is not serializable");
+            }
+        }
+    }
+
+    /**
+     * Collects the latest state of every object while replaying the journal.
+     */
+    private final class Replay implements Journal.Replayer
+    {
+        private final Map<String, Calendar> calendars = new LinkedHashMap<>();
+
+        private final Map<JobKey, JobDetail> jobs = new LinkedHashMap<>();
+
+        private final Map<TriggerKey, Map.Entry<OperableTrigger, TriggerState>> triggers = new LinkedHashMap<>();
+
+        private Set<String> pausedTriggerGroups = Collections.emptySet();
+
+        private Set<String> pausedJobGroups = Collections.emptySet();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void replay(byte type, ObjectInputStream in) throws IOException, ClassNotFoundException
+        {
+            switch (type)
+            {
+                case Journal.JOB:
+                {
+                    JobDetail jobDetail = (JobDetail) in.readObject();
+                    jobs.put(jobDetail.getKey(), jobDetail);
+                    break;
+                }
+                case Journal.JOB_REMOVED:
+                    jobs.remove(in.readObject());
+                    break;
+                case Journal.TRIGGER:
+                {
+                    OperableTrigger trigger = (OperableTrigger) in.readObject();
+                    triggers.put(trigger.getKey(), new SimpleImmutableEntry<>(trigger, (TriggerState) in.readObject()));
+                    break;
+                }
+                case Journal.TRIGGER_REMOVED:
+                    triggers.remove(in.readObject());
+                    break;
+                case Journal.CALENDAR:
+                    calendars.put((String) in.readObject(), (Calendar) in.readObject());
+                    break;
+                case Journal.CALENDAR_REMOVED:
+                    calendars.remove(in.readObject());
+                    break;
+                case Journal.PAUSED_GROUPS:
+                    pausedTriggerGroups = (Set<String>) in.readObject();
+                    pausedJobGroups = (Set<String>) in.readObject();
+                    break;
+                default:
+                    throw new IOException("Unknown journal record type " + type);
+            }
+        }
+
+        /**
+         * Store the collected objects.
+         */
+        void restore() throws JobPersistenceException
+        {
+            for (Map.Entry<String, Calendar> entry : calendars.entrySet())
+            {
+                storeCalendar(entry.getKey(), entry.getValue(), true, false);
+            }
+
+            for (JobDetail jobDetail : jobs.values())
+            {
+                storeJob(jobDetail, true);
+            }
+
+            for (Map.Entry<OperableTrigger, TriggerState> entry : triggers.values())
+            {
+                if (checkExists(entry.getKey().getJobKey()))
+                {
+                    restoreTrigger(entry.getKey(), entry.getValue());
+                }
+                else
+                {
+                    log.warn("Not restoring trigger {}, its job {} does not exist", entry.getKey().getKey(),
+                        entry.getKey().getJobKey());
+                }
+            }
+
+            restorePausedGroups(new HashSet<>(pausedTriggerGroups), new HashSet<>(pausedJobGroups));
+        }
+    }
+}
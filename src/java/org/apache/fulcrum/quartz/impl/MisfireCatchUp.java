@@ -0,0 +1,188 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Date;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.fulcrum.quartz.MisfireStatistics;
+import org.quartz.Calendar;
+import org.quartz.Trigger;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * Spreads the catch-up fires of misfired triggers instead of firing all of
+ * them at once after the scheduler was paused, stopped or restarted.
+ *
+ * <p>A trigger whose misfire instruction asks to fire immediately is moved to
+ * a random slot within the catch-up window. No more than a maximum number of
+ * catch-up fires are placed into any second, triggers not fitting are moved
+ * to the next second with room left even if it is beyond the window. All fire
+ * times missed by a trigger are coalesced into a single catch-up fire.</p>
+ *
+ * <p>Used by the {@link ConcurrentRAMJobStore} while holding the lock
+ * stripe of a trigger, so slots are assigned under a lock of its own.</p>
+ */
+final class MisfireCatchUp
+{
+    /** Maximum number of missed fire times counted per misfire */
+    static final int MAX_COUNTED_FIRES = 10000;
+
+    private final long window;
+
+    private final int maxFiresPerSecond;
+
+    /** the number of catch-up fires by second, seconds passed are pruned */
+    private final TreeMap<Long, Integer> firesBySecond = new TreeMap<>();
+
+    /** the next second to try by full second, forming chains towards a second with room */
+    private final TreeMap<Long, Long> nextSecond = new TreeMap<>();
+
+    private final AtomicLong catchUpFires = new AtomicLong();
+
+    private final AtomicLong coalescedFires = new AtomicLong();
+
+    private final AtomicLong throttledFires = new AtomicLong();
+
+    /**
+     * @param window the time in ms the catch-up fires are spread over, 0 to fire immediately
+     * @param maxFiresPerSecond the maximum number of catch-up fires per second, 0 for no limit
+     */
+    MisfireCatchUp(long window, int maxFiresPerSecond)
+    {
+        if (window < 0 || maxFiresPerSecond < 0)
+        {
+            throw new IllegalArgumentException("The catch-up window and the maximum fires per second must be >= 0");
+        }
+        this.window = window;
+        this.maxFiresPerSecond = maxFiresPerSecond;
+    }
+
+    /**
+     * Move the next fire time of a trigger which misfired into the catch-up
+     * window if its misfire instruction made it fire immediately.
+     *
+     * @param trigger the trigger after its misfire instruction was applied
+     * @param misfired a copy of the trigger before its misfire instruction was applied
+     * @param calendar the calendar of the trigger or null
+     * @param now the current time in ms
+     * @return true if the trigger was moved
+     */
+    boolean reschedule(OperableTrigger trigger, Trigger misfired, Calendar calendar, long now)
+    {
+        Date nextFireTime = trigger.getNextFireTime();
+        if (nextFireTime == null || nextFireTime.getTime() > now)
+        {
+            // skipped to its regular schedule
+            return false;
+        }
+
+        long slot = nextSlot(now);
+        if (trigger.getEndTime() != null)
+        {
+            slot = Math.max(now, Math.min(slot, trigger.getEndTime().getTime()));
+        }
+        trigger.setNextFireTime(new Date(slot));
+
+        catchUpFires.incrementAndGet();
+        coalescedFires.addAndGet(countMissedFires(misfired, calendar, now) - 1);
+        return true;
+    }
+
+    /**
+     * @return the statistics collected so far
+     */
+    MisfireStatistics getStatistics()
+    {
+        return new MisfireStatistics(catchUpFires.get(), coalescedFires.get(), throttledFires.get());
+    }
+
+    /**
+     * Assign a fire time within the window, or after it if the seconds
+     * within the window have no room left.
+     */
+    private synchronized long nextSlot(long now)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long slot = window > 0 ? now + random.nextLong(window) : now;
+        if (maxFiresPerSecond == 0)
+        {
+            return slot;
+        }
+
+        long currentSecond = now / 1000;
+        firesBySecond.headMap(currentSecond).clear();
+        nextSecond.headMap(currentSecond).clear();
+
+        long second = findSecondWithRoom(slot / 1000);
+        int fires = firesBySecond.merge(second, 1, Integer::sum);
+        if (fires >= maxFiresPerSecond)
+        {
+            nextSecond.put(second, second + 1);
+        }
+
+        if (second != slot / 1000)
+        {
+            throttledFires.incrementAndGet();
+            slot = Math.max(now, second * 1000 + random.nextLong(1000));
+        }
+        return slot;
+    }
+
+    private long findSecondWithRoom(long second)
+    {
+        long found = second;
+        Long next;
+        while ((next = nextSecond.get(found)) != null)
+        {
+            found = next;
+        }
+
+        // shorten the chain for the following triggers
+        long skipped = second;
+        while (skipped != found)
+        {
+            skipped = nextSecond.put(skipped, found);
+        }
+        return found;
+    }
+
+    /**
+     * Count the fire times of a trigger from its next fire time up to now,
+     * excluding the times excluded by its calendar.
+     */
+    private static long countMissedFires(Trigger misfired, Calendar calendar, long now)
+    {
+        long missed = 0;
+        int counted = 0;
+        Date fireTime = misfired.getNextFireTime();
+        while (fireTime != null && fireTime.getTime() <= now && counted++ < MAX_COUNTED_FIRES)
+        {
+            if (calendar == null || calendar.isTimeIncluded(fireTime.getTime()))
+            {
+                missed++;
+            }
+            fireTime = misfired.getFireTimeAfter(fireTime);
+        }
+        return Math.max(1, missed);
+    }
+}
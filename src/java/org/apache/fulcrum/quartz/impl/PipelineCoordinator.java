@@ -0,0 +1,421 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.apache.fulcrum.quartz.JobPipeline;
+import org.apache.fulcrum.quartz.PipelineRun;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+
+/**
+ * Runs the steps of {@link JobPipeline}s as soon as their inputs completed.
+ *
+ * <p>Completed jobs are reported by the job listener of the service. A run
+ * starts when a root step of a pipeline was executed by one of its triggers
+ * or when it is started explicitly. Every further step is submitted for
+ * immediate execution once all of its dependencies completed, together with
+ * their results, without storing a trigger. A failed step fails the run and
+ * no further steps are submitted.</p>
+ */
+final class PipelineCoordinator
+{
+    /** The job data key of the id of the run a submitted step belongs to */
+    static final String RUN_ID_KEY = "org.apache.fulcrum.quartz.pipeline.runId";
+
+    /**
+     * Submits a job for immediate execution.
+     */
+    interface Submitter
+    {
+        CompletableFuture<Object> submit(JobDetail jobDetail) throws SchedulerException;
+    }
+
+    private static final AtomicLong RUN_COUNTER = new AtomicLong();
+
+    private final Logger logger;
+
+    private final Scheduler scheduler;
+
+    private final Submitter submitter;
+
+    private final Map<String, JobPipeline> pipelines = new ConcurrentHashMap<>();
+
+    /** the pipelines by root step */
+    private final Map<JobKey, List<JobPipeline>> pipelinesByRoot = new ConcurrentHashMap<>();
+
+    /** the active runs by id */
+    private final Map<Long, Run> runs = new ConcurrentHashMap<>();
+
+    /** the last completed run by pipeline name */
+    private final Map<String, PipelineRun> lastRuns = new ConcurrentHashMap<>();
+
+    /**
+     * @param logger the logger
+     * @param scheduler the scheduler storing the jobs of the pipelines
+     * @param submitter submits the steps for immediate execution
+     */
+    PipelineCoordinator(Logger logger, Scheduler scheduler, Submitter submitter)
+    {
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.submitter = submitter;
+    }
+
+    /**
+     * Add or replace a pipeline, active runs keep their definition.
+     *
+     * @param pipeline the pipeline
+     * @throws SchedulerException a job of the pipeline does not exist
+     */
+    synchronized void addPipeline(JobPipeline pipeline) throws SchedulerException
+    {
+        for (JobKey step : pipeline.getSteps())
+        {
+            if (!scheduler.checkExists(step))
+            {
+                throw new SchedulerException("The job " + step + " of pipeline '" + pipeline.getName() + "' does not exist");
+            }
+        }
+
+        removePipeline(pipeline.getName());
+        pipelines.put(pipeline.getName(), pipeline);
+        for (JobKey root : pipeline.getRoots())
+        {
+            pipelinesByRoot.computeIfAbsent(root, key -> new CopyOnWriteArrayList<>()).add(pipeline);
+        }
+    }
+
+    /**
+     * @param name the name of the pipeline
+     * @return true if the pipeline was found and removed
+     */
+    synchronized boolean removePipeline(String name)
+    {
+        JobPipeline pipeline = pipelines.remove(name);
+        if (pipeline == null)
+        {
+            return false;
+        }
+
+        for (JobKey root : pipeline.getRoots())
+        {
+            List<JobPipeline> rootPipelines = pipelinesByRoot.get(root);
+            rootPipelines.remove(pipeline);
+            if (rootPipelines.isEmpty())
+            {
+                pipelinesByRoot.remove(root);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start a run by submitting the root steps.
+     *
+     * @param name the name of the pipeline
+     * @param data the job data passed to every step, may be null
+     * @return completed with the run once all steps completed
+     * @throws SchedulerException the pipeline does not exist
+     */
+    CompletableFuture<PipelineRun> start(String name, JobDataMap data) throws SchedulerException
+    {
+        JobPipeline pipeline = pipelines.get(name);
+        if (pipeline == null)
+        {
+            throw new SchedulerException("The pipeline '" + name + "' does not exist");
+        }
+
+        Run run = new Run(pipeline, data, System.currentTimeMillis());
+        runs.put(run.id, run);
+        for (JobKey root : pipeline.getRoots())
+        {
+            submit(run, root);
+        }
+        return run.future;
+    }
+
+    /**
+     * @param name the name of the pipeline
+     * @return the last run completed successfully or null
+     */
+    PipelineRun getLastRun(String name)
+    {
+        return lastRuns.get(name);
+    }
+
+    /**
+     * Continue the run a completed job belongs to, or start runs of the
+     * pipelines the job is a root step of.
+     *
+     * @param context the context of the completed job
+     * @param failure the exception thrown by the job or null
+     */
+    void jobWasExecuted(JobExecutionContext context, JobExecutionException failure)
+    {
+        Object runId = context.getJobDetail().getJobDataMap().get(RUN_ID_KEY);
+        if (runId instanceof Long)
+        {
+            Run run = runs.get(runId);
+            if (run != null)
+            {
+                complete(run, context, failure);
+            }
+            return;
+        }
+
+        List<JobPipeline> rootPipelines = pipelinesByRoot.get(context.getJobDetail().getKey());
+        if (rootPipelines == null || failure != null)
+        {
+            return;
+        }
+
+        for (JobPipeline pipeline : rootPipelines)
+        {
+            Run run = new Run(pipeline, null, context.getFireTime().getTime());
+            runs.put(run.id, run);
+            for (JobKey root : pipeline.getRoots())
+            {
+                if (!root.equals(context.getJobDetail().getKey()))
+                {
+                    submit(run, root);
+                }
+            }
+            complete(run, context, null);
+        }
+    }
+
+    private void complete(Run run, JobExecutionContext context, JobExecutionException failure)
+    {
+        JobKey step = context.getJobDetail().getKey();
+        List<JobKey> ready = new ArrayList<>();
+        PipelineRun completed = null;
+
+        synchronized (run)
+        {
+            if (run.future.isDone())
+            {
+                return;
+            }
+
+            long startTime = context.getFireTime().getTime();
+            run.startTimes.put(step, startTime);
+            run.endTimes.put(step, startTime + context.getJobRunTime());
+
+            if (failure == null)
+            {
+                run.results.put(step, context.getResult());
+                for (JobKey dependent : run.pipeline.getDependents(step))
+                {
+                    if (run.pendingInputs.merge(dependent, -1, Integer::sum) == 0)
+                    {
+                        ready.add(dependent);
+                    }
+                }
+
+                if (run.endTimes.size() == run.pipeline.getSteps().size())
+                {
+                    completed = run.toPipelineRun();
+                }
+            }
+        }
+
+        if (failure != null)
+        {
+            fail(run, step, failure);
+            return;
+        }
+
+        for (JobKey dependent : ready)
+        {
+            submit(run, dependent);
+        }
+
+        if (completed != null)
+        {
+            runs.remove(run.id);
+            lastRuns.put(completed.getPipelineName(), completed);
+            if (logger.isInfoEnabled())
+            {
+                logger.info("Pipeline '" + completed.getPipelineName() + "' completed in " + completed.getDuration()
+                    + " ms, critical path " + completed.getCriticalPath());
+            }
+            run.future.complete(completed);
+        }
+    }
+
+    private void submit(Run run, JobKey step)
+    {
+        try
+        {
+            JobDetail jobDetail = scheduler.getJobDetail(step);
+            if (jobDetail == null)
+            {
+                throw new SchedulerException("The job " + step + " does not exist");
+            }
+
+            JobDataMap data = new JobDataMap(jobDetail.getJobDataMap());
+            if (run.data != null)
+            {
+                data.putAll(run.data);
+            }
+
+            Map<JobKey, Object> results = new LinkedHashMap<>();
+            synchronized (run)
+            {
+                for (JobKey dependency : run.pipeline.getDependencies(step))
+                {
+                    results.put(dependency, run.results.get(dependency));
+                }
+            }
+            data.put(JobPipeline.RESULTS_KEY, Collections.unmodifiableMap(results));
+            data.put(RUN_ID_KEY, Long.valueOf(run.id));
+
+            // failures of the job itself are reported to the listener as well
+            submitter.submit(jobDetail.getJobBuilder().setJobData(data).build())
+                .whenComplete((result, e) -> {
+                    if (e != null)
+                    {
+                        fail(run, step, e);
+                    }
+                });
+        }
+        catch (SchedulerException | RuntimeException e)
+        {
+            fail(run, step, e);
+        }
+    }
+
+    private void fail(Run run, JobKey step, Throwable cause)
+    {
+        if (run.future.completeExceptionally(new SchedulerException("Step " + step + " of pipeline '"
+            + run.pipeline.getName() + "' failed", cause)))
+        {
+            runs.remove(run.id);
+            logger.warn("Run " + run.id + " of pipeline '" + run.pipeline.getName() + "' failed at step " + step);
+        }
+    }
+
+    /**
+     * The state of an active run.
+     */
+    private static final class Run
+    {
+        final long id = RUN_COUNTER.incrementAndGet();
+
+        final JobPipeline pipeline;
+
+        final JobDataMap data;
+
+        final long startTime;
+
+        final CompletableFuture<PipelineRun> future = new CompletableFuture<>();
+
+        /** the number of incomplete dependencies by step */
+        final Map<JobKey, Integer> pendingInputs = new HashMap<>();
+
+        final Map<JobKey, Object> results = new LinkedHashMap<>();
+
+        final Map<JobKey, Long> startTimes = new HashMap<>();
+
+        final Map<JobKey, Long> endTimes = new LinkedHashMap<>();
+
+        Run(JobPipeline pipeline, JobDataMap data, long startTime)
+        {
+            this.pipeline = pipeline;
+            this.data = data;
+            this.startTime = startTime;
+            for (JobKey step : pipeline.getSteps())
+            {
+                pendingInputs.put(step, pipeline.getDependencies(step).size());
+            }
+        }
+
+        /**
+         * Create the record of the completed run, the critical path leads
+         * backwards from the step completed last through the dependency
+         * completed last.
+         */
+        PipelineRun toPipelineRun()
+        {
+            Map<JobKey, Long> runTimes = new LinkedHashMap<>();
+            Map<JobKey, Long> waitTimes = new LinkedHashMap<>();
+            JobKey last = null;
+            long endTime = startTime;
+
+            for (JobKey step : pipeline.getSteps())
+            {
+                long stepStart = startTimes.get(step);
+                long stepEnd = endTimes.get(step);
+                runTimes.put(step, stepEnd - stepStart);
+                waitTimes.put(step, Math.max(0, stepStart - lastInput(step, startTime)));
+                if (last == null || stepEnd >= endTime)
+                {
+                    last = step;
+                    endTime = stepEnd;
+                }
+            }
+
+            List<JobKey> criticalPath = new ArrayList<>();
+            for (JobKey step = last; step != null; step = lastDependency(step))
+            {
+                criticalPath.add(step);
+            }
+            Collections.reverse(criticalPath);
+
+            return new PipelineRun(pipeline.getName(), id, startTime, endTime, results, runTimes, waitTimes, criticalPath);
+        }
+
+        private long lastInput(JobKey step, long defaultTime)
+        {
+            JobKey dependency = lastDependency(step);
+            return dependency != null ? endTimes.get(dependency) : defaultTime;
+        }
+
+        private JobKey lastDependency(JobKey step)
+        {
+            JobKey last = null;
+            for (JobKey dependency : pipeline.getDependencies(step))
+            {
+                if (last == null || endTimes.get(dependency) > endTimes.get(last))
+                {
+                    last = dependency;
+                }
+            }
+            return last;
+        }
+    }
+}
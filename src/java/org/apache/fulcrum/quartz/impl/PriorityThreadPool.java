@@ -0,0 +1,685 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Quartz <code>ThreadPool</code> running queued jobs by priority. Quartz
+ * orders triggers by priority only when they are due at the same time, so
+ * once the threads are saturated an urgent job still waits behind every job
+ * fired before it. This pool accepts up to <code>queueSize</code> jobs
+ * beyond its threads and keeps them in lanes, numbered from 0 for the
+ * lowest priority; a free thread always takes the oldest job of the highest
+ * lane with work, so no thread is tied to a lane.
+ *
+ * <p>The lane of a job is assigned to its job group with
+ * {@link #setGroupLane(String, int)}, which the scheduler service does for
+ * the priority lanes of its configuration. Otherwise it is derived from the
+ * trigger priority: the default priority of 5 maps to the middle lane and
+ * each step above or below to the next lane. Waiting jobs age, every
+ * <code>agingInterval</code> ms of waiting counts like one lane higher, so
+ * low-priority jobs are delayed but never starved.</p>
+ *
+ * <p>Selected with <code>org.quartz.threadPool.class</code>; supports the
+ * properties <code>threadCount</code>, <code>threadPriority</code>,
+ * <code>threadNamePrefix</code>, <code>makeThreadsDaemons</code>,
+ * <code>lanes</code>, <code>queueSize</code> and
+ * <code>agingInterval</code>.</p>
+ */
+public class PriorityThreadPool implements ResizableThreadPool
+{
+    /** Default thread name prefix */
+    private static final String DEFAULT_THREAD_NAME_PREFIX = "QuartzPriorityWorker";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /** Guards the lanes and the counters */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled whenever a job completes or the pool is shut down */
+    private final Condition available = lock.newCondition();
+
+    /** Signalled whenever a job is queued or the workers have to check their number */
+    private final Condition queued = lock.newCondition();
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    /** The lanes by job group, replaced on modification */
+    private volatile Map<String, Integer> groupLanes = Collections.emptyMap();
+
+    private volatile int threadCount = 10;
+
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    private boolean makeThreadsDaemons;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private int laneCount = 3;
+
+    private int queueSize = 100;
+
+    private long agingInterval = 1000L;
+
+    /** The waiting jobs by lane */
+    private ArrayDeque<Task>[] lanes;
+
+    private int workers;
+
+    private int activeCount;
+
+    private int queuedCount;
+
+    private long executed;
+
+    private boolean shutdown;
+
+    /**
+     * @return the number of threads
+     */
+    @Override
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount the number of threads
+     */
+    @Override
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount <= 0)
+        {
+            throw new IllegalArgumentException("Thread count must be > 0");
+        }
+
+        lock.lock();
+        try
+        {
+            this.threadCount = threadCount;
+            if (lanes != null && !shutdown)
+            {
+                // surplus workers exit once idle
+                while (workers < threadCount)
+                {
+                    startWorker();
+                }
+                queued.signalAll();
+                available.signalAll();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of running jobs
+     */
+    @Override
+    public int getActiveCount()
+    {
+        lock.lock();
+        try
+        {
+            return activeCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of jobs waiting for a thread
+     */
+    public int getQueuedCount()
+    {
+        lock.lock();
+        try
+        {
+            return queuedCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of completed jobs
+     */
+    public long getExecutedCount()
+    {
+        lock.lock();
+        try
+        {
+            return executed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the priority of the threads
+     */
+    public int getThreadPriority()
+    {
+        return threadPriority;
+    }
+
+    /**
+     * @param threadPriority the priority of the threads
+     */
+    public void setThreadPriority(int threadPriority)
+    {
+        this.threadPriority = threadPriority;
+    }
+
+    /**
+     * @return true if the threads are daemon threads
+     */
+    public boolean isMakeThreadsDaemons()
+    {
+        return makeThreadsDaemons;
+    }
+
+    /**
+     * @param makeThreadsDaemons make the threads daemon threads
+     */
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons)
+    {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    /**
+     * @return the thread name prefix
+     */
+    public String getThreadNamePrefix()
+    {
+        if (threadNamePrefix == null)
+        {
+            return schedulerInstanceName != null
+                ? schedulerInstanceName + "_" + DEFAULT_THREAD_NAME_PREFIX
+                : DEFAULT_THREAD_NAME_PREFIX;
+        }
+
+        return threadNamePrefix;
+    }
+
+    /**
+     * @param threadNamePrefix the thread name prefix
+     */
+    public void setThreadNamePrefix(String threadNamePrefix)
+    {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * @return the number of lanes
+     */
+    public int getLanes()
+    {
+        return laneCount;
+    }
+
+    /**
+     * @param lanes the number of lanes
+     */
+    public void setLanes(int lanes)
+    {
+        this.laneCount = lanes;
+    }
+
+    /**
+     * @return the maximum number of jobs waiting for a thread
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    /**
+     * @param queueSize the maximum number of jobs waiting for a thread
+     */
+    public void setQueueSize(int queueSize)
+    {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @return the waiting time in ms raising a job by one lane, 0 if jobs do not age
+     */
+    public long getAgingInterval()
+    {
+        return agingInterval;
+    }
+
+    /**
+     * @param agingInterval the waiting time in ms raising a job by one lane, 0 if jobs do not age
+     */
+    public void setAgingInterval(long agingInterval)
+    {
+        this.agingInterval = agingInterval;
+    }
+
+    /**
+     * Run the jobs of a job group in a lane regardless of their trigger priority.
+     *
+     * @param group the job group
+     * @param lane the lane, 0 for the lowest priority
+     * @throws SchedulerConfigException the lane does not exist
+     */
+    public void setGroupLane(String group, int lane) throws SchedulerConfigException
+    {
+        if (lane < 0 || lane >= laneCount)
+        {
+            throw new SchedulerConfigException("Lane of job group '" + group + "' must be >= 0 and < " + laneCount);
+        }
+
+        lock.lock();
+        try
+        {
+            Map<String, Integer> newGroupLanes = new HashMap<>(groupLanes);
+            newGroupLanes.put(group, lane);
+            this.groupLanes = newGroupLanes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        log.info("Jobs of group {} will run in lane {}", group, lane);
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#getPoolSize()
+     */
+    @Override
+    public int getPoolSize()
+    {
+        return threadCount;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceId(java.lang.String)
+     */
+    @Override
+    public void setInstanceId(String schedInstId)
+    {
+        // not used
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceName(java.lang.String)
+     */
+    @Override
+    public void setInstanceName(String schedName)
+    {
+        this.schedulerInstanceName = schedName;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#initialize()
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initialize() throws SchedulerConfigException
+    {
+        if (threadCount <= 0)
+        {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY)
+        {
+            throw new SchedulerConfigException("Thread priority must be > 0 and <= 10");
+        }
+
+        if (laneCount <= 0 || queueSize < 0 || agingInterval < 0)
+        {
+            throw new SchedulerConfigException("Lanes must be > 0, queue size and aging interval must be >= 0");
+        }
+
+        if (!JobRunShells.isContextAccessible())
+        {
+            log.warn("The fired jobs can not be determined, all jobs will run in the middle lane");
+        }
+
+        lock.lock();
+        try
+        {
+            lanes = new ArrayDeque[laneCount];
+            for (int i = 0; i < laneCount; i++)
+            {
+                lanes[i] = new ArrayDeque<>();
+            }
+
+            while (workers < threadCount)
+            {
+                startWorker();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the queue has room and queues the runnable in the lane
+     * of its job. Once the pool is shut down the runnable is still executed
+     * on a new thread to let the scheduler complete its shutdown.
+     *
+     * @see org.quartz.spi.ThreadPool#runInThread(java.lang.Runnable)
+     */
+    @Override
+    public boolean runInThread(Runnable runnable)
+    {
+        if (runnable == null)
+        {
+            return false;
+        }
+
+        return runInLane(runnable, laneOf(runnable));
+    }
+
+    /**
+     * Blocks until the queue has room and queues the runnable in a lane.
+     *
+     * @param runnable the runnable
+     * @param lane the lane, 0 for the lowest priority
+     * @return true
+     */
+    boolean runInLane(Runnable runnable, int lane)
+    {
+        lock.lock();
+        try
+        {
+            while (getFree() <= 0 && !shutdown)
+            {
+                available.awaitUninterruptibly();
+            }
+
+            if (shutdown)
+            {
+                newThread(runnable).start();
+                return true;
+            }
+
+            lanes[lane].addLast(new Task(runnable, System.nanoTime()));
+            queuedCount++;
+            queued.signal();
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the threads or the queue have room.
+     *
+     * @see org.quartz.spi.ThreadPool#blockForAvailableThreads()
+     */
+    @Override
+    public int blockForAvailableThreads()
+    {
+        lock.lock();
+        try
+        {
+            int free = getFree();
+            while (free <= 0 && !shutdown)
+            {
+                available.awaitUninterruptibly();
+                free = getFree();
+            }
+
+            return Math.max(0, free);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queued jobs are still executed by the workers.
+     *
+     * @see org.quartz.spi.ThreadPool#shutdown(boolean)
+     */
+    @Override
+    public void shutdown(boolean waitForJobsToComplete)
+    {
+        lock.lock();
+        try
+        {
+            if (shutdown)
+            {
+                return;
+            }
+
+            shutdown = true;
+            queued.signalAll();
+            available.signalAll();
+
+            if (waitForJobsToComplete)
+            {
+                while (activeCount + queuedCount > 0)
+                {
+                    log.debug("Waiting for {} jobs to complete", activeCount + queuedCount);
+                    available.awaitUninterruptibly();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        log.debug("Shutdown of thread pool complete");
+    }
+
+    /**
+     * @param runnable the runnable passed by the scheduler
+     * @return the lane of its job
+     */
+    private int laneOf(Runnable runnable)
+    {
+        int middle = laneCount / 2;
+        JobExecutionContext context = JobRunShells.getContext(runnable);
+        if (context == null)
+        {
+            return middle;
+        }
+
+        Integer lane = groupLanes.get(context.getJobDetail().getKey().getGroup());
+        if (lane != null)
+        {
+            return lane;
+        }
+
+        long byPriority = (long) middle + context.getTrigger().getPriority() - Trigger.DEFAULT_PRIORITY;
+        return (int) Math.max(0, Math.min(laneCount - 1, byPriority));
+    }
+
+    /**
+     * Take the job with the highest lane including aging, requires the lock.
+     *
+     * @return the job or null if no job is waiting
+     */
+    private Task poll()
+    {
+        long now = System.nanoTime();
+        long agingNanos = TimeUnit.MILLISECONDS.toNanos(agingInterval);
+        ArrayDeque<Task> selected = null;
+        long selectedPriority = Long.MIN_VALUE;
+
+        // the oldest job of a lane has aged the most, higher lanes win ties
+        for (int lane = laneCount - 1; lane >= 0; lane--)
+        {
+            Task head = lanes[lane].peekFirst();
+            if (head != null)
+            {
+                long priority = agingNanos > 0 ? lane + (now - head.queued) / agingNanos : lane;
+                if (priority > selectedPriority)
+                {
+                    selected = lanes[lane];
+                    selectedPriority = priority;
+                }
+            }
+        }
+
+        return selected != null ? selected.pollFirst() : null;
+    }
+
+    /**
+     * @return the number of jobs the threads and the queue have room for, requires the lock
+     */
+    private int getFree()
+    {
+        return threadCount + queueSize - activeCount - queuedCount;
+    }
+
+    /**
+     * Start another worker, requires the lock.
+     */
+    private void startWorker()
+    {
+        workers++;
+        newThread(this::work).start();
+    }
+
+    private Thread newThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, getThreadNamePrefix() + "-" + threadCounter.getAndIncrement());
+        thread.setPriority(threadPriority);
+        thread.setDaemon(makeThreadsDaemons);
+        return thread;
+    }
+
+    /**
+     * The loop of a worker, running queued jobs until there are too many
+     * workers or the pool is shut down and no job is left.
+     */
+    private void work()
+    {
+        while (true)
+        {
+            Task task;
+
+            lock.lock();
+            try
+            {
+                while (true)
+                {
+                    if (workers > threadCount)
+                    {
+                        // pass on a signal this worker may have consumed
+                        workers--;
+                        queued.signal();
+                        return;
+                    }
+
+                    task = poll();
+                    if (task != null)
+                    {
+                        queuedCount--;
+                        activeCount++;
+                        break;
+                    }
+
+                    if (shutdown)
+                    {
+                        workers--;
+                        return;
+                    }
+
+                    queued.awaitUninterruptibly();
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            try
+            {
+                task.runnable.run();
+            }
+            catch (RuntimeException e)
+            {
+                log.error("Error while executing the job", e);
+            }
+            finally
+            {
+                lock.lock();
+                try
+                {
+                    activeCount--;
+                    executed++;
+                    available.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued job.
+     */
+    private static final class Task
+    {
+        final Runnable runnable;
+
+        /** The time in ns the job was queued */
+        final long queued;
+
+        Task(Runnable runnable, long queued)
+        {
+            this.runnable = runnable;
+            this.queued = queued;
+        }
+    }
+}
@@ -20,10 +20,30 @@ package org.apache.fulcrum.quartz.impl;
  */
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.avalon.framework.activity.Disposable;
 import org.apache.avalon.framework.activity.Initializable;
@@ -31,6 +51,7 @@ import org.apache.avalon.framework.activity.Startable;
 import org.apache.avalon.framework.configuration.Configurable;
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.avalon.framework.configuration.Reconfigurable;
 import org.apache.avalon.framework.logger.AbstractLogEnabled;
 import org.apache.avalon.framework.logger.LogEnabled;
 import org.apache.avalon.framework.parameters.Parameters;
@@ -38,7 +59,16 @@ import org.apache.avalon.framework.service.ServiceException;
 import org.apache.avalon.framework.service.ServiceManager;
 import org.apache.avalon.framework.service.Serviceable;
 import org.apache.avalon.framework.thread.ThreadSafe;
+import org.apache.fulcrum.quartz.BulkheadStatistics;
+import org.apache.fulcrum.quartz.JobMetrics;
+import org.apache.fulcrum.quartz.JobPipeline;
+import org.apache.fulcrum.quartz.MisfireStatistics;
+import org.apache.fulcrum.quartz.PipelineRun;
 import org.apache.fulcrum.quartz.QuartzScheduler;
+import org.apache.fulcrum.quartz.SchedulerClock;
+import org.quartz.Calendar;
+import org.quartz.InterruptableJob;
+import org.quartz.JobDataMap;
 import org.quartz.Job;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
@@ -47,17 +77,33 @@ import org.quartz.JobKey;
 import org.quartz.JobListener;
 import org.quartz.Matcher;
 import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
 import org.quartz.SchedulerException;
+import org.quartz.SchedulerListener;
 import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.UnableToInterruptJobException;
+import org.quartz.core.QuartzSchedulerResources;
+import org.quartz.impl.DirectSchedulerFactory;
+import org.quartz.impl.JobExecutionContextImpl;
 import org.quartz.impl.StdSchedulerFactory;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.quartz.simpl.PropertySettingJobFactory;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.ThreadPool;
+import org.quartz.spi.TriggerFiredBundle;
 
 /**
  * Avalon service  wrapping the QuartzScheduler.
  */
 public class QuartzSchedulerImpl
         extends AbstractLogEnabled
-        implements QuartzScheduler, Configurable, Serviceable, Disposable, Initializable, ThreadSafe, JobListener, Startable
+        implements QuartzScheduler, Configurable, Reconfigurable, Serviceable, Disposable, Initializable, ThreadSafe, JobListener, Startable
 {
     /** Configuration key */
     private static final String CONFIG_CONFIGURATION = "configuration";
@@ -68,6 +114,219 @@ public class QuartzSchedulerImpl
     /** Configuration key */
     private static final String CONFIG_PROPERTIES = "properties";
 
+    /** Configuration key */
+    private static final String CONFIG_JOB_FACTORY = "jobFactory";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_POOLED_INSTANCES = "maxPooledInstances";
+
+    /** Configuration key */
+    private static final String CONFIG_SCHEDULING_DATA = "schedulingData";
+
+    /** Configuration key */
+    private static final String CONFIG_FILE = "file";
+
+    /** Configuration key */
+    private static final String CONFIG_WATCH = "watch";
+
+    /** Configuration key */
+    private static final String CONFIG_BATCH_SIZE = "batchSize";
+
+    /** Configuration key */
+    private static final String CONFIG_QUIET_PERIOD = "quietPeriod";
+
+    /** Configuration key */
+    private static final String CONFIG_COMPILED_CRON = "compiledCron";
+
+    /** Configuration key */
+    private static final String CONFIG_CONFIGURATION_REPORT = "configurationReport";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_JOBS = "maxJobs";
+
+    /** Configuration key */
+    private static final String CONFIG_SHUTDOWN = "shutdown";
+
+    /** Configuration key */
+    private static final String CONFIG_DRAIN_TIMEOUT = "drainTimeout";
+
+    /** Configuration key */
+    private static final String CONFIG_INTERRUPT_TIMEOUT = "interruptTimeout";
+
+    /** Configuration key */
+    private static final String CONFIG_BULKHEADS = "bulkheads";
+
+    /** Configuration key */
+    private static final String CONFIG_BULKHEAD = "bulkhead";
+
+    /** Configuration key */
+    private static final String CONFIG_NAME = "name";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_CONCURRENCY = "maxConcurrency";
+
+    /** Configuration key */
+    private static final String CONFIG_QUEUE_SIZE = "queueSize";
+
+    /** Configuration key */
+    private static final String CONFIG_GROUP = "group";
+
+    /** Configuration key */
+    private static final String CONFIG_PRIORITY_LANES = "priorityLanes";
+
+    /** Configuration key */
+    private static final String CONFIG_LANE = "lane";
+
+    /** Configuration key */
+    private static final String CONFIG_INDEX = "index";
+
+    /** Configuration key */
+    private static final String CONFIG_ADAPTIVE_THREAD_POOL = "adaptiveThreadPool";
+
+    /** Configuration key */
+    private static final String CONFIG_MIN_THREADS = "minThreads";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_THREADS = "maxThreads";
+
+    /** Configuration key */
+    private static final String CONFIG_LAG_THRESHOLD = "lagThreshold";
+
+    /** Configuration key */
+    private static final String CONFIG_INTERVAL = "interval";
+
+    /** Configuration key */
+    private static final String CONFIG_SUBMISSION = "submission";
+
+    /** Configuration key */
+    private static final String CONFIG_POLICY = "policy";
+
+    /** Configuration key */
+    private static final String CONFIG_BLOCK_TIMEOUT = "blockTimeout";
+
+    /** Configuration key */
+    private static final String CONFIG_MISFIRE_CATCH_UP = "misfireCatchUp";
+
+    /** Configuration key */
+    private static final String CONFIG_WINDOW = "window";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_FIRES_PER_SECOND = "maxFiresPerSecond";
+
+    /** Configuration key */
+    private static final String CONFIG_SIMULATION = "simulation";
+
+    /** Configuration key */
+    private static final String CONFIG_START_TIME = "startTime";
+
+    /** Configuration key */
+    private static final String CONFIG_BATCHING = "batching";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_BATCH_SIZE = "maxBatchSize";
+
+    /** Configuration key */
+    private static final String CONFIG_MAX_WAIT = "maxWait";
+
+    /** Configuration key */
+    private static final String CONFIG_COALESCE_BY = "coalesceBy";
+
+    /** Configuration key */
+    private static final String CONFIG_SCHEDULERS = "schedulers";
+
+    /** Configuration key */
+    private static final String CONFIG_SCHEDULER = "scheduler";
+
+    /** Configuration key */
+    private static final String CONFIG_JOB_STORE = "jobStore";
+
+    /** Configuration key */
+    private static final String CONFIG_CLASS = "class";
+
+    /** Configuration key */
+    private static final String CONFIG_PARTITIONING = "partitioning";
+
+    /** Configuration key */
+    private static final String CONFIG_NODE_ID = "nodeId";
+
+    /** Configuration key */
+    private static final String CONFIG_DIRECTORY = "directory";
+
+    /** Configuration key */
+    private static final String CONFIG_HEARTBEAT_INTERVAL = "heartbeatInterval";
+
+    /** Configuration key */
+    private static final String CONFIG_EXPIRY = "expiry";
+
+    /** Configuration key */
+    private static final String CONFIG_VIRTUAL_NODES = "virtualNodes";
+
+    /** Coalesce the fires of batch jobs of the same class and group */
+    private static final String COALESCE_BY_GROUP = "group";
+
+    /** Coalesce the fires of batch jobs of the same class */
+    private static final String COALESCE_BY_CLASS = "class";
+
+    /** Quartz property defining a user-supplied job factory */
+    private static final String PROP_JOB_FACTORY_CLASS = "org.quartz.scheduler.jobFactory.class";
+
+    /** Quartz property defining the size of the thread pool */
+    private static final String PROP_THREAD_COUNT = StdSchedulerFactory.PROP_THREAD_POOL_PREFIX + ".threadCount";
+
+    /** Quartz property defining the misfire threshold of the job store */
+    private static final String PROP_MISFIRE_THRESHOLD = StdSchedulerFactory.PROP_JOB_STORE_PREFIX + ".misfireThreshold";
+
+    /** Default number of idle instances kept per reusable job class */
+    private static final int DEFAULT_MAX_POOLED_INSTANCES = 8;
+
+    /** Default number of scheduling data definitions stored at once */
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Default time in ms a changed scheduling data file has to be quiet before being reloaded */
+    private static final long DEFAULT_QUIET_PERIOD = 500L;
+
+    /** Default number of jobs listed individually by the configuration report */
+    private static final int DEFAULT_REPORT_MAX_JOBS = 100;
+
+    /** Default time in ms to wait for running jobs before interrupting them */
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30000L;
+
+    /** Default time in ms to wait for interrupted jobs */
+    private static final long DEFAULT_INTERRUPT_TIMEOUT = 5000L;
+
+    /** Interval in ms to check for running jobs while draining */
+    private static final long DRAIN_POLL_INTERVAL = 50L;
+
+    /** Default mean scheduling lag in ms to grow an adaptive thread pool */
+    private static final long DEFAULT_LAG_THRESHOLD = 1000L;
+
+    /** Default time in ms between samples of an adaptive thread pool */
+    private static final long DEFAULT_ADAPTIVE_INTERVAL = 5000L;
+
+    /** Default number of submitted jobs waiting for a thread */
+    private static final int DEFAULT_SUBMISSION_QUEUE_SIZE = 1000;
+
+    /** Default time in ms to wait for space in a full submission queue */
+    private static final long DEFAULT_BLOCK_TIMEOUT = 5000L;
+
+    /** Default time in ms the fires of misfired triggers are spread over */
+    private static final long DEFAULT_CATCH_UP_WINDOW = 60000L;
+
+    /** Default maximum number of fires coalesced into one batch */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /** Default time in ms the first fire of a batch waits for more fires */
+    private static final long DEFAULT_MAX_WAIT = 50L;
+
+    /** Default time in ms between the heartbeats of a partitioned node */
+    private static final long DEFAULT_HEARTBEAT_INTERVAL = 1000L;
+
+    /** Default time in ms after which a partitioned node without heartbeat is no member */
+    private static final long DEFAULT_EXPIRY = 5000L;
+
+    /** Default number of points per node on the hash ring */
+    private static final int DEFAULT_VIRTUAL_NODES = 100;
+
     /**
      * the Avalon service serviceManager
      */
@@ -88,205 +347,1666 @@ public class QuartzSchedulerImpl
      */
     private Properties quartzProperties;
 
-    // === Avalon Lifecycle =================================================
+    /**
+     * the execution statistics of the jobs
+     */
+    private final JobMetricsRegistry jobMetrics = new JobMetricsRegistry();
+
+    /**
+     * the maximum number of idle instances kept per reusable job class
+     */
+    private int maxPooledInstances;
+
+    /**
+     * the job factory injecting the Avalon infrastructure, null if a
+     * user-supplied job factory is configured
+     */
+    private AvalonJobFactory jobFactory;
+
+    /**
+     * the scheduling data file loaded incrementally, null if not configured
+     */
+    private Path schedulingDataFile;
+
+    /**
+     * whether the scheduling data file is watched for changes
+     */
+    private boolean watchSchedulingData;
+
+    /**
+     * the number of scheduling data definitions stored at once
+     */
+    private int schedulingDataBatchSize;
+
+    /**
+     * the time in ms a changed scheduling data file has to be quiet before being reloaded
+     */
+    private long schedulingDataQuietPeriod;
+
+    /**
+     * whether the cron triggers of the scheduling data file use compiled cron expressions
+     */
+    private boolean schedulingDataCompiledCron;
+
+    /**
+     * the loader of the scheduling data file
+     */
+    private SchedulingDataLoader schedulingDataLoader;
+
+    /**
+     * the watcher of the scheduling data file, only while started
+     */
+    private SchedulingDataWatcher schedulingDataWatcher;
+
+    /**
+     * the number of jobs listed individually by the configuration report
+     */
+    private int reportMaxJobs;
+
+    /**
+     * the time in ms to wait for running jobs on stop() and dispose()
+     */
+    private long drainTimeout;
+
+    /**
+     * set when stop() drained the schedulers, dispose() does not drain again
+     */
+    private volatile boolean drained;
+
+    /**
+     * the time in ms to wait for interrupted jobs
+     */
+    private long interruptTimeout;
+
+    /**
+     * the bulkhead configurations
+     */
+    private Configuration[] bulkheadConfigurations;
+
+    /**
+     * the thread pool of the scheduler, null if the scheduler was not created by this service
+     */
+    private ThreadPool threadPool;
+
+    /**
+     * the job store of the scheduler, null if the scheduler was not created by this service
+     */
+    private JobStore jobStore;
+
+    /**
+     * the lane configurations of the priority thread pool
+     */
+    private Configuration[] laneConfigurations;
+
+    /**
+     * the adaptive thread pool configuration, null if the pool has a fixed size
+     */
+    private Configuration adaptiveThreadPoolConfiguration;
+
+    /**
+     * resizes the thread pool while started, null if the pool has a fixed size
+     */
+    private volatile AdaptiveThreadPoolSizer threadPoolSizer;
+
+    /**
+     * the submission queue configuration
+     */
+    private Configuration submissionConfiguration;
+
+    /**
+     * the queue of jobs submitted for immediate execution, null if not initialized
+     */
+    private volatile JobSubmissionQueue submissionQueue;
+
+    /**
+     * the submitted jobs currently executing, invisible to the schedulers as they run outside a JobRunShell
+     */
+    private final Set<JobExecutionContext> submittedJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * the misfire catch-up configuration, null if misfired triggers fire immediately
+     */
+    private Configuration misfireCatchUpConfiguration;
+
+    /**
+     * whether triggers fire in simulated time instead of by the scheduler thread
+     */
+    private boolean simulated;
+
+    /**
+     * the initial time of the simulated clock, null to start at the current time
+     */
+    private Instant simulationStartTime;
+
+    /**
+     * the clock triggers are evaluated against
+     */
+    private SchedulerClock clock = SchedulerClock.SYSTEM;
+
+    /**
+     * fires the triggers in simulated time, null unless simulated
+     */
+    private SchedulerSimulation simulation;
+
+    /**
+     * the batching configuration, null if batch jobs execute every fire on its own
+     */
+    private Configuration batchingConfiguration;
+
+    /**
+     * the configurations of the named schedulers
+     */
+    private Configuration[] schedulerConfigurations;
+
+    /**
+     * the named schedulers sharing the thread pool of the default scheduler
+     */
+    private final Map<String, Scheduler> namedSchedulers = new LinkedHashMap<>();
+
+    /**
+     * the partitioning configuration, null if this node fires all triggers
+     */
+    private Configuration partitioningConfiguration;
+
+    /**
+     * tracks the member nodes while partitioned, null otherwise
+     */
+    private FileMembership membership;
+
+    /**
+     * assigns the jobs to the member nodes, null unless partitioned
+     */
+    private volatile ConsistentHashRing partitionRing;
+
+    /**
+     * runs the steps of the job pipelines, null if not initialized
+     */
+    private volatile PipelineCoordinator pipelineCoordinator;
+
+    /**
+     * the duration in ms of each startup phase in execution order
+     */
+    private final Map<String, Long> startupTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // === Avalon Lifecycle =================================================
+
+    /**
+     * @see org.apache.avalon.framework.configuration.Configurable#configure(org.apache.avalon.framework.configuration.Configuration)
+     */
+    @Override
+    public void configure(Configuration conf) throws ConfigurationException
+    {
+        Configuration quartzConf = conf.getChild(CONFIG_CONFIGURATION, true);
+
+        if(quartzConf.getChild(CONFIG_PROPERTIES, false) != null)
+        {
+            this.quartzProperties = Parameters.toProperties(Parameters.fromConfiguration(quartzConf.getChild(CONFIG_PROPERTIES)));
+        }
+        else if(quartzConf.getChild(CONFIG_PROPERTY_FILE, false) != null)
+        {
+            this.quartzPropertyFile = quartzConf.getChild(CONFIG_PROPERTY_FILE).getValue();
+        }
+
+        Configuration jobFactoryConf = conf.getChild(CONFIG_JOB_FACTORY, true);
+        this.maxPooledInstances = jobFactoryConf.getChild(CONFIG_MAX_POOLED_INSTANCES, true).getValueAsInteger(DEFAULT_MAX_POOLED_INSTANCES);
+
+        Configuration schedulingDataConf = conf.getChild(CONFIG_SCHEDULING_DATA, true);
+        String file = schedulingDataConf.getChild(CONFIG_FILE, true).getValue(null);
+        this.schedulingDataFile = file != null ? Paths.get(file) : null;
+        this.watchSchedulingData = schedulingDataConf.getChild(CONFIG_WATCH, true).getValueAsBoolean(true);
+        this.schedulingDataBatchSize = schedulingDataConf.getChild(CONFIG_BATCH_SIZE, true).getValueAsInteger(DEFAULT_BATCH_SIZE);
+        this.schedulingDataQuietPeriod = schedulingDataConf.getChild(CONFIG_QUIET_PERIOD, true).getValueAsLong(DEFAULT_QUIET_PERIOD);
+        this.schedulingDataCompiledCron = schedulingDataConf.getChild(CONFIG_COMPILED_CRON, true).getValueAsBoolean(false);
+
+        this.reportMaxJobs = conf.getChild(CONFIG_CONFIGURATION_REPORT, true).getChild(CONFIG_MAX_JOBS, true).getValueAsInteger(DEFAULT_REPORT_MAX_JOBS);
+
+        Configuration shutdownConf = conf.getChild(CONFIG_SHUTDOWN, true);
+        this.drainTimeout = shutdownConf.getChild(CONFIG_DRAIN_TIMEOUT, true).getValueAsLong(DEFAULT_DRAIN_TIMEOUT);
+        this.interruptTimeout = shutdownConf.getChild(CONFIG_INTERRUPT_TIMEOUT, true).getValueAsLong(DEFAULT_INTERRUPT_TIMEOUT);
+
+        this.bulkheadConfigurations = conf.getChild(CONFIG_BULKHEADS, true).getChildren(CONFIG_BULKHEAD);
+        for (Configuration bulkheadConf : this.bulkheadConfigurations)
+        {
+            // fail early on incomplete bulkheads, they are added once the thread pool exists
+            bulkheadConf.getAttribute(CONFIG_NAME);
+            bulkheadConf.getChild(CONFIG_MAX_CONCURRENCY).getValueAsInteger();
+            bulkheadConf.getChild(CONFIG_QUEUE_SIZE, true).getValueAsInteger(0);
+        }
+
+        this.laneConfigurations = conf.getChild(CONFIG_PRIORITY_LANES, true).getChildren(CONFIG_LANE);
+        for (Configuration laneConf : this.laneConfigurations)
+        {
+            // fail early on incomplete lanes, they are assigned once the thread pool exists
+            laneConf.getAttributeAsInteger(CONFIG_INDEX);
+        }
+
+        this.adaptiveThreadPoolConfiguration = conf.getChild(CONFIG_ADAPTIVE_THREAD_POOL, false);
+        if (this.adaptiveThreadPoolConfiguration != null)
+        {
+            int minThreads = this.adaptiveThreadPoolConfiguration.getChild(CONFIG_MIN_THREADS, true).getValueAsInteger(1);
+            int maxThreads = this.adaptiveThreadPoolConfiguration.getChild(CONFIG_MAX_THREADS).getValueAsInteger();
+            if (minThreads <= 0 || maxThreads < minThreads)
+            {
+                throw new ConfigurationException("The adaptive thread pool requires 0 < minThreads <= maxThreads",
+                    this.adaptiveThreadPoolConfiguration);
+            }
+        }
+
+        this.submissionConfiguration = conf.getChild(CONFIG_SUBMISSION, true);
+        String policy = this.submissionConfiguration.getChild(CONFIG_POLICY, true).getValue(JobSubmissionQueue.POLICY_REJECT);
+        if (this.submissionConfiguration.getChild(CONFIG_QUEUE_SIZE, true).getValueAsInteger(DEFAULT_SUBMISSION_QUEUE_SIZE) <= 0
+            || !(JobSubmissionQueue.POLICY_REJECT.equals(policy) || JobSubmissionQueue.POLICY_BLOCK.equals(policy)))
+        {
+            throw new ConfigurationException("The submission queue requires a queueSize > 0 and the policy '"
+                + JobSubmissionQueue.POLICY_REJECT + "' or '" + JobSubmissionQueue.POLICY_BLOCK + "'", this.submissionConfiguration);
+        }
+
+        this.misfireCatchUpConfiguration = conf.getChild(CONFIG_MISFIRE_CATCH_UP, false);
+        if (this.misfireCatchUpConfiguration != null
+            && (this.misfireCatchUpConfiguration.getChild(CONFIG_WINDOW, true).getValueAsLong(DEFAULT_CATCH_UP_WINDOW) < 0
+                || this.misfireCatchUpConfiguration.getChild(CONFIG_MAX_FIRES_PER_SECOND, true).getValueAsInteger(0) < 0))
+        {
+            throw new ConfigurationException("The misfire catch-up requires a window >= 0 and maxFiresPerSecond >= 0",
+                this.misfireCatchUpConfiguration);
+        }
+
+        this.batchingConfiguration = conf.getChild(CONFIG_BATCHING, false);
+        if (this.batchingConfiguration != null)
+        {
+            String coalesceBy = this.batchingConfiguration.getChild(CONFIG_COALESCE_BY, true).getValue(COALESCE_BY_GROUP);
+            if (this.batchingConfiguration.getChild(CONFIG_MAX_BATCH_SIZE, true).getValueAsInteger(DEFAULT_MAX_BATCH_SIZE) <= 0
+                || this.batchingConfiguration.getChild(CONFIG_MAX_WAIT, true).getValueAsLong(DEFAULT_MAX_WAIT) < 0
+                || !(COALESCE_BY_GROUP.equals(coalesceBy) || COALESCE_BY_CLASS.equals(coalesceBy)))
+            {
+                throw new ConfigurationException("Batching requires a maxBatchSize > 0, a maxWait >= 0 and coalesceBy to be '"
+                    + COALESCE_BY_GROUP + "' or '" + COALESCE_BY_CLASS + "'", this.batchingConfiguration);
+            }
+        }
+
+        this.schedulerConfigurations = conf.getChild(CONFIG_SCHEDULERS, true).getChildren(CONFIG_SCHEDULER);
+        Set<String> schedulerNames = new HashSet<>();
+        for(Configuration schedulerConf : this.schedulerConfigurations)
+        {
+            // fail early on missing or duplicate names
+            if(!schedulerNames.add(schedulerConf.getAttribute(CONFIG_NAME)))
+            {
+                throw new ConfigurationException("Duplicate scheduler name '" + schedulerConf.getAttribute(CONFIG_NAME) + "'",
+                    schedulerConf);
+            }
+        }
+
+        this.partitioningConfiguration = conf.getChild(CONFIG_PARTITIONING, false);
+        if (this.partitioningConfiguration != null)
+        {
+            String nodeId = this.partitioningConfiguration.getChild(CONFIG_NODE_ID).getValue();
+            long heartbeatInterval = this.partitioningConfiguration.getChild(CONFIG_HEARTBEAT_INTERVAL, true)
+                .getValueAsLong(DEFAULT_HEARTBEAT_INTERVAL);
+            this.partitioningConfiguration.getChild(CONFIG_DIRECTORY).getValue();
+            if (!nodeId.matches("[A-Za-z0-9_.-]+") || heartbeatInterval <= 0
+                || this.partitioningConfiguration.getChild(CONFIG_EXPIRY, true).getValueAsLong(DEFAULT_EXPIRY) <= heartbeatInterval
+                || this.partitioningConfiguration.getChild(CONFIG_VIRTUAL_NODES, true).getValueAsInteger(DEFAULT_VIRTUAL_NODES) <= 0)
+            {
+                throw new ConfigurationException("Partitioning requires a nodeId of letters, digits, '_', '.' and '-', "
+                    + "a heartbeatInterval > 0, an expiry > heartbeatInterval and virtualNodes > 0", this.partitioningConfiguration);
+            }
+        }
+
+        Configuration simulationConf = conf.getChild(CONFIG_SIMULATION, false);
+        this.simulated = simulationConf != null;
+        this.simulationStartTime = null;
+        if (simulationConf != null)
+        {
+            String startTime = simulationConf.getChild(CONFIG_START_TIME, true).getValue(null);
+            try
+            {
+                this.simulationStartTime = startTime != null ? Instant.parse(startTime.trim()) : null;
+            }
+            catch (DateTimeParseException e)
+            {
+                throw new ConfigurationException("The simulation start time must be an ISO-8601 instant such as "
+                    + "'2024-01-01T00:00:00Z'", simulationConf, e);
+            }
+        }
+    }
+
+    /**
+     * Applies the thread count and the misfire threshold of the Quartz
+     * properties to the running scheduler. Scheduled triggers and running
+     * jobs are not affected, a smaller thread pool only starts new jobs once
+     * enough jobs completed. Changes of any other setting require
+     * re-initializing the service.
+     *
+     * @see org.apache.avalon.framework.configuration.Reconfigurable#reconfigure(org.apache.avalon.framework.configuration.Configuration)
+     */
+    @Override
+    public void reconfigure(Configuration conf) throws ConfigurationException
+    {
+        Configuration quartzConf = conf.getChild(CONFIG_CONFIGURATION, true);
+        Properties properties = loadQuartzProperties(quartzConf);
+        // a scheduler taken from the SchedulerRepository leaves thread pool and job store unknown
+        if (properties == null || this.scheduler == null || this.threadPool == null || this.jobStore == null)
+        {
+            getLogger().warn("Ignoring the reconfiguration, only the properties of a scheduler created by this service can be changed");
+            return;
+        }
+
+        String threadCountValue = properties.getProperty(PROP_THREAD_COUNT);
+        String misfireThresholdValue = properties.getProperty(PROP_MISFIRE_THRESHOLD);
+        int threadCount = -1;
+        long misfireThreshold = -1;
+        Method setMisfireThreshold = null;
+
+        // validate everything before changing anything
+        try
+        {
+            if (threadCountValue != null)
+            {
+                threadCount = Integer.parseInt(threadCountValue.trim());
+                if (threadCount <= 0)
+                {
+                    throw new ConfigurationException("Property '" + PROP_THREAD_COUNT + "' must be > 0", quartzConf);
+                }
+                if (threadCount != this.threadPool.getPoolSize() && !(this.threadPool instanceof ResizableThreadPool))
+                {
+                    throw new ConfigurationException("Changing property '" + PROP_THREAD_COUNT + "' requires a thread pool implementing "
+                        + ResizableThreadPool.class.getName(), quartzConf);
+                }
+            }
+
+            if (misfireThresholdValue != null)
+            {
+                misfireThreshold = Long.parseLong(misfireThresholdValue.trim());
+                if (misfireThreshold <= 0)
+                {
+                    throw new ConfigurationException("Property '" + PROP_MISFIRE_THRESHOLD + "' must be > 0", quartzConf);
+                }
+                setMisfireThreshold = this.jobStore.getClass().getMethod("setMisfireThreshold", long.class);
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException("Invalid number in the Quartz properties", quartzConf, e);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ConfigurationException("The job store " + this.jobStore.getClass().getName()
+                + " does not support changing property '" + PROP_MISFIRE_THRESHOLD + "'", quartzConf, e);
+        }
+
+        if (threadCount > 0 && threadCount != this.threadPool.getPoolSize())
+        {
+            getLogger().info("Resizing the thread pool from " + this.threadPool.getPoolSize() + " to " + threadCount + " threads");
+            ((ResizableThreadPool) this.threadPool).setThreadCount(threadCount);
+        }
+
+        if (setMisfireThreshold != null)
+        {
+            try
+            {
+                setMisfireThreshold.invoke(this.jobStore, misfireThreshold);
+                getLogger().info("Changed the misfire threshold to " + misfireThreshold + " ms");
+            }
+            catch (ReflectiveOperationException e)
+            {
+                throw new ConfigurationException("Changing property '" + PROP_MISFIRE_THRESHOLD + "' failed", quartzConf, e);
+            }
+        }
+    }
+
+    /**
+     * @see org.apache.avalon.framework.service.Serviceable#service(org.apache.avalon.framework.service.ServiceManager)
+     */
+    @Override
+    public void service(ServiceManager manager) throws ServiceException
+    {
+        this.serviceManager = manager;
+    }
+
+    /**
+     * @see org.apache.avalon.framework.activity.Initializable#initialize()
+     */
+    @Override
+    public void initialize() throws Exception
+    {
+        // instantiating a specific scheduler from a property file or properties
+        long phaseStart = System.nanoTime();
+        ResourceCapturingSchedulerFactory schedulerFactory = new ResourceCapturingSchedulerFactory();
+        if(this.quartzProperties != null)
+        {
+            getLogger().info("Pulling quartz configuration from the container XML configuration");
+            schedulerFactory.initialize(this.quartzProperties);
+        }
+        else if(this.quartzPropertyFile != null)
+        {
+            getLogger().info("Pulling quartz configuration from the following property file : " + this.quartzPropertyFile);
+            schedulerFactory.initialize(this.quartzPropertyFile);
+        }
+        else
+        {
+            getLogger().info("Using Quartz default configuration since no user-supplied configuration was found");
+            schedulerFactory.initialize();
+        }
+        phaseStart = recordStartupPhase(STARTUP_PHASE_FACTORY_INIT, phaseStart);
+
+        this.scheduler = schedulerFactory.getScheduler();
+        this.threadPool = schedulerFactory.threadPool;
+        this.jobStore = schedulerFactory.jobStore;
+        recordStartupPhase(STARTUP_PHASE_SCHEDULER_CREATE, phaseStart);
+
+        // isolate the configured job groups before any trigger can fire
+        if(this.bulkheadConfigurations.length > 0)
+        {
+            if(!(this.threadPool instanceof BulkheadThreadPool))
+            {
+                throw new SchedulerConfigException("Bulkheads require 'org.quartz.threadPool.class' to be " + BulkheadThreadPool.class.getName());
+            }
+
+            for(Configuration bulkheadConf : this.bulkheadConfigurations)
+            {
+                List<String> groups = new ArrayList<>();
+                for(Configuration groupConf : bulkheadConf.getChildren(CONFIG_GROUP))
+                {
+                    groups.add(groupConf.getValue());
+                }
+
+                ((BulkheadThreadPool) this.threadPool).addBulkhead(bulkheadConf.getAttribute(CONFIG_NAME),
+                    bulkheadConf.getChild(CONFIG_MAX_CONCURRENCY).getValueAsInteger(),
+                    bulkheadConf.getChild(CONFIG_QUEUE_SIZE).getValueAsInteger(0), groups);
+            }
+        }
+
+        // route the configured job groups to their lanes before any trigger can fire
+        if(this.laneConfigurations.length > 0)
+        {
+            if(!(this.threadPool instanceof PriorityThreadPool))
+            {
+                throw new SchedulerConfigException("Priority lanes require 'org.quartz.threadPool.class' to be " + PriorityThreadPool.class.getName());
+            }
+
+            for(Configuration laneConf : this.laneConfigurations)
+            {
+                for(Configuration groupConf : laneConf.getChildren(CONFIG_GROUP))
+                {
+                    ((PriorityThreadPool) this.threadPool).setGroupLane(groupConf.getValue(), laneConf.getAttributeAsInteger(CONFIG_INDEX));
+                }
+            }
+        }
+
+        if(this.adaptiveThreadPoolConfiguration != null)
+        {
+            if(!(this.threadPool instanceof ResizableThreadPool))
+            {
+                throw new SchedulerConfigException("An adaptive thread pool requires 'org.quartz.threadPool.class' to implement "
+                    + ResizableThreadPool.class.getName());
+            }
+
+            Configuration adaptiveConf = this.adaptiveThreadPoolConfiguration;
+            this.threadPoolSizer = new AdaptiveThreadPoolSizer(getLogger(), (ResizableThreadPool) this.threadPool,
+                adaptiveConf.getChild(CONFIG_MIN_THREADS).getValueAsInteger(1),
+                adaptiveConf.getChild(CONFIG_MAX_THREADS).getValueAsInteger(),
+                adaptiveConf.getChild(CONFIG_LAG_THRESHOLD, true).getValueAsLong(DEFAULT_LAG_THRESHOLD),
+                adaptiveConf.getChild(CONFIG_INTERVAL, true).getValueAsLong(DEFAULT_ADAPTIVE_INTERVAL));
+        }
+
+        // spread the catch-up of triggers misfired while the scheduler was stopped
+        if(this.misfireCatchUpConfiguration != null)
+        {
+            if(!(this.jobStore instanceof ConcurrentRAMJobStore))
+            {
+                throw new SchedulerConfigException("The misfire catch-up requires 'org.quartz.jobStore.class' to be "
+                    + ConcurrentRAMJobStore.class.getName() + " or a subclass");
+            }
+
+            ((ConcurrentRAMJobStore) this.jobStore).setMisfireCatchUp(new MisfireCatchUp(
+                this.misfireCatchUpConfiguration.getChild(CONFIG_WINDOW).getValueAsLong(DEFAULT_CATCH_UP_WINDOW),
+                this.misfireCatchUpConfiguration.getChild(CONFIG_MAX_FIRES_PER_SECOND).getValueAsInteger(0)));
+        }
+
+        // replace the wall clock before any trigger is stored
+        if(this.simulated)
+        {
+            if(!(this.jobStore instanceof ConcurrentRAMJobStore))
+            {
+                throw new SchedulerConfigException("The simulation requires 'org.quartz.jobStore.class' to be "
+                    + ConcurrentRAMJobStore.class.getName() + " or a subclass");
+            }
+
+            SimulatedClock simulatedClock = new SimulatedClock(this.simulationStartTime != null
+                ? this.simulationStartTime.toEpochMilli() : System.currentTimeMillis());
+            ((ConcurrentRAMJobStore) this.jobStore).setClock(simulatedClock);
+            this.clock = simulatedClock;
+        }
+        else if(this.jobStore instanceof ConcurrentRAMJobStore)
+        {
+            this.clock = ((ConcurrentRAMJobStore) this.jobStore).getClock();
+        }
+
+        this.submissionQueue = new JobSubmissionQueue(getLogger(), this.threadPool,
+            this.submissionConfiguration.getChild(CONFIG_QUEUE_SIZE).getValueAsInteger(DEFAULT_SUBMISSION_QUEUE_SIZE),
+            this.submissionConfiguration.getChild(CONFIG_POLICY).getValue(JobSubmissionQueue.POLICY_REJECT),
+            this.submissionConfiguration.getChild(CONFIG_BLOCK_TIMEOUT, true).getValueAsLong(DEFAULT_BLOCK_TIMEOUT));
+        this.pipelineCoordinator = new PipelineCoordinator(getLogger(), getScheduler(), this::submitJob);
+
+        // inject the Avalon infrastructure when creating job instances unless the user brings a job factory
+        Properties effectiveProperties = this.quartzProperties != null ? this.quartzProperties
+            : this.quartzPropertyFile != null ? readPropertyFile(this.quartzPropertyFile) : null;
+        if(effectiveProperties != null && effectiveProperties.getProperty(PROP_JOB_FACTORY_CLASS) != null)
+        {
+            getLogger().info("Using the configured job factory, Avalon infrastructure is injected before every job execution");
+        }
+        else
+        {
+            this.jobFactory = new AvalonJobFactory(getLogger(), this.serviceManager, this.maxPooledInstances);
+            getScheduler().setJobFactory(this.jobFactory);
+        }
+
+        // coalesce the fires of batch jobs, the batcher is handed out by the job factory
+        if(this.batchingConfiguration != null)
+        {
+            if(this.jobFactory == null)
+            {
+                throw new SchedulerConfigException("Batching requires the job factory of the service, remove '"
+                    + PROP_JOB_FACTORY_CLASS + "' from the Quartz properties");
+            }
+
+            this.jobFactory.setBatcher(new JobBatcher(getLogger(), this.jobFactory,
+                this.batchingConfiguration.getChild(CONFIG_MAX_BATCH_SIZE).getValueAsInteger(DEFAULT_MAX_BATCH_SIZE),
+                this.batchingConfiguration.getChild(CONFIG_MAX_WAIT).getValueAsLong(DEFAULT_MAX_WAIT),
+                COALESCE_BY_CLASS.equals(this.batchingConfiguration.getChild(CONFIG_COALESCE_BY).getValue(COALESCE_BY_GROUP)),
+                this::jobCompleted));
+        }
+
+        if(this.simulated)
+        {
+            // jobs are created like fired jobs unless the user brings a job factory, which is not accessible
+            this.simulation = new SchedulerSimulation(getLogger(), getScheduler(), (ConcurrentRAMJobStore) this.jobStore,
+                getUnbatchedJobFactory(), (SimulatedClock) this.clock);
+        }
+
+        // add this service instance as JobListener to allow basic monitoring
+        getScheduler().getListenerManager().addJobListener(this, new ArrayList<Matcher<JobKey>>());
+        getScheduler().getListenerManager().addTriggerListener(new MisfireListener(), new ArrayList<Matcher<TriggerKey>>());
+        getScheduler().getListenerManager().addSchedulerListener(new JobDeletionListener());
+
+        // join the partitioned nodes before any trigger is queued for firing
+        if(this.partitioningConfiguration != null)
+        {
+            if(!(this.jobStore instanceof ConcurrentRAMJobStore))
+            {
+                throw new SchedulerConfigException("Partitioning requires 'org.quartz.jobStore.class' to be "
+                    + ConcurrentRAMJobStore.class.getName() + " or a subclass");
+            }
+
+            ConcurrentRAMJobStore partitionedStore = (ConcurrentRAMJobStore) this.jobStore;
+            String nodeId = this.partitioningConfiguration.getChild(CONFIG_NODE_ID).getValue();
+            int virtualNodes = this.partitioningConfiguration.getChild(CONFIG_VIRTUAL_NODES).getValueAsInteger(DEFAULT_VIRTUAL_NODES);
+            this.membership = new FileMembership(getLogger(),
+                Paths.get(this.partitioningConfiguration.getChild(CONFIG_DIRECTORY).getValue()), nodeId,
+                this.partitioningConfiguration.getChild(CONFIG_HEARTBEAT_INTERVAL).getValueAsLong(DEFAULT_HEARTBEAT_INTERVAL),
+                this.partitioningConfiguration.getChild(CONFIG_EXPIRY).getValueAsLong(DEFAULT_EXPIRY),
+                members -> {
+                    ConsistentHashRing ring = new ConsistentHashRing(members, virtualNodes);
+                    this.partitionRing = ring;
+                    partitionedStore.setPartition(ring.partitionOf(nodeId));
+                });
+            this.membership.refresh();
+        }
+
+        // load the scheduling data before any trigger can fire
+        if(this.schedulingDataFile != null)
+        {
+            phaseStart = System.nanoTime();
+            this.schedulingDataLoader = new SchedulingDataLoader(getLogger(), getScheduler(), this.schedulingDataFile,
+                this.schedulingDataBatchSize, this.schedulingDataCompiledCron, this.clock);
+            SchedulingDataLoader.Result result = this.schedulingDataLoader.load();
+            getLogger().info("Loaded scheduling data from " + this.schedulingDataFile + ": " + result);
+            recordStartupPhase(STARTUP_PHASE_SCHEDULING_DATA_LOAD, phaseStart);
+        }
+
+        // the named schedulers only bring their own job store and scheduler thread
+        if(this.schedulerConfigurations.length > 0)
+        {
+            if(this.threadPool == null || this.simulated)
+            {
+                throw new SchedulerConfigException("Named schedulers require the default scheduler to be created by the "
+                    + "service and are not supported in simulation mode");
+            }
+
+            for(Configuration schedulerConf : this.schedulerConfigurations)
+            {
+                Scheduler namedScheduler = createNamedScheduler(schedulerConf);
+                this.namedSchedulers.put(namedScheduler.getSchedulerName(), namedScheduler);
+            }
+        }
+    }
+
+    @Override
+    public void start() throws Exception
+    {
+        this.drained = false;
+
+        if(this.simulation != null)
+        {
+            // the scheduler thread would fire the triggers by the wall clock
+            getLogger().info("Simulation mode, triggers only fire when advancing the simulated clock starting at "
+                + Instant.ofEpochMilli(this.clock.currentTimeMillis()));
+        }
+        else
+        {
+            // the job store and the plugins are started between these notifications
+            PluginStartTimer pluginStartTimer = new PluginStartTimer();
+            getScheduler().getListenerManager().addSchedulerListener(pluginStartTimer);
+
+            long phaseStart = System.nanoTime();
+            try
+            {
+                getScheduler().start();
+            }
+            finally
+            {
+                getScheduler().getListenerManager().removeSchedulerListener(pluginStartTimer);
+            }
+            recordStartupPhase(STARTUP_PHASE_SCHEDULER_START, phaseStart);
+
+            for(Scheduler namedScheduler : this.namedSchedulers.values())
+            {
+                namedScheduler.start();
+            }
+
+            if(this.threadPoolSizer != null)
+            {
+                this.threadPoolSizer.start();
+            }
+        }
+
+        this.submissionQueue.start();
+
+        if(this.membership != null)
+        {
+            this.membership.start();
+        }
+
+        if(this.schedulingDataLoader != null && this.watchSchedulingData)
+        {
+            this.schedulingDataWatcher = new SchedulingDataWatcher(getLogger(), this.schedulingDataLoader, this.schedulingDataQuietPeriod);
+            this.schedulingDataWatcher.start();
+        }
+
+        if(getLogger().isInfoEnabled())
+        {
+            getLogger().info("Startup phases in ms: " + getStartupTimings());
+
+            // report the configuration without delaying the container startup
+            Scheduler reportedScheduler = getScheduler();
+            Thread reporter = new Thread(() -> logSchedulerConfiguration(reportedScheduler), "Quartz-Configuration-Report");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception
+    {
+        this.submissionQueue.stop();
+        stopSchedulingDataWatcher();
+        stopThreadPoolSizer();
+        stopMembership();
+        drain(this.drainTimeout);
+        this.drained = true;
+    }
+
+    /**
+     * @see org.apache.avalon.framework.activity.Disposable#dispose()
+     */
+    @Override
+    public void dispose()
+    {
+        if (this.submissionQueue != null)
+        {
+            this.submissionQueue.stop();
+        }
+        stopSchedulingDataWatcher();
+        stopThreadPoolSizer();
+        stopMembership();
+        this.membership = null;
+        this.partitionRing = null;
+
+        // only wait for executing jobs on shutdown() if they finished while draining
+        boolean waitForJobsToComplete = false;
+        try
+        {
+            List<JobExecutionContext> runningJobs = this.drained ? getCurrentlyExecutingJobs() : drain(this.drainTimeout);
+            waitForJobsToComplete = runningJobs.isEmpty();
+        }
+        catch (SchedulerException e)
+        {
+            this.getLogger().warn("Problem draining quartz scheduler ", e);
+        }
+
+        // the default scheduler shuts down the shared thread pool last
+        for (Scheduler namedScheduler : this.namedSchedulers.values())
+        {
+            try
+            {
+                namedScheduler.shutdown(waitForJobsToComplete);
+            }
+            catch (SchedulerException e)
+            {
+                this.getLogger().warn("Problem shutting down quartz scheduler " + namedScheduler, e);
+            }
+        }
+        this.namedSchedulers.clear();
+
+        try
+        {
+            this.scheduler.shutdown(waitForJobsToComplete);
+        }
+        catch (SchedulerException e)
+        {
+            this.getLogger().warn("Problem shutting down quartz scheduler ", e);
+        }
+
+        if (this.jobFactory != null)
+        {
+            this.jobFactory.clear();
+            this.jobFactory = null;
+        }
+
+        this.jobMetrics.clear();
+        this.schedulingDataLoader = null;
+        this.scheduler = null;
+        this.threadPool = null;
+        this.jobStore = null;
+        this.threadPoolSizer = null;
+        this.submissionQueue = null;
+        this.pipelineCoordinator = null;
+        this.simulation = null;
+        this.serviceManager = null;
+    }
+
+    // === Service Interface Implementation =================================
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getScheduler()
+     */
+    @Override
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getScheduler(java.lang.String)
+     */
+    @Override
+    public Scheduler getScheduler(String name)
+    {
+        try
+        {
+            if (scheduler != null && scheduler.getSchedulerName().equals(name))
+            {
+                return scheduler;
+            }
+        }
+        catch (SchedulerException e)
+        {
+            getLogger().warn("Getting the name of the default scheduler failed", e);
+        }
+        return namedSchedulers.get(name);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getSchedulerNames()
+     */
+    @Override
+    public Set<String> getSchedulerNames()
+    {
+        Set<String> names = new LinkedHashSet<>();
+        try
+        {
+            if (scheduler != null)
+            {
+                names.add(scheduler.getSchedulerName());
+            }
+        }
+        catch (SchedulerException e)
+        {
+            getLogger().warn("Getting the name of the default scheduler failed", e);
+        }
+        names.addAll(namedSchedulers.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getPartitionOwner(org.quartz.JobKey)
+     */
+    @Override
+    public String getPartitionOwner(JobKey jobKey)
+    {
+        ConsistentHashRing ring = partitionRing;
+        return ring != null ? ring.getOwner(jobKey) : null;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getJobMetrics()
+     */
+    @Override
+    public JobMetrics getJobMetrics()
+    {
+        return jobMetrics.snapshot();
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getBulkheadStatistics()
+     */
+    @Override
+    public Map<String, BulkheadStatistics> getBulkheadStatistics()
+    {
+        if (this.threadPool instanceof BulkheadThreadPool)
+        {
+            return ((BulkheadThreadPool) this.threadPool).getStatistics();
+        }
+
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getMisfireStatistics()
+     */
+    @Override
+    public MisfireStatistics getMisfireStatistics()
+    {
+        if (this.jobStore instanceof ConcurrentRAMJobStore)
+        {
+            MisfireCatchUp catchUp = ((ConcurrentRAMJobStore) this.jobStore).getMisfireCatchUp();
+            if (catchUp != null)
+            {
+                return catchUp.getStatistics();
+            }
+        }
+
+        return new MisfireStatistics(0, 0, 0);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getClock()
+     */
+    @Override
+    public SchedulerClock getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#advanceClock(long)
+     */
+    @Override
+    public long advanceClock(long duration) throws SchedulerException
+    {
+        SchedulerSimulation currentSimulation = this.simulation;
+        if (currentSimulation == null)
+        {
+            throw new SchedulerException("Advancing the clock requires the simulation mode");
+        }
+
+        return currentSimulation.advance(duration);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getStartupTimings()
+     */
+    @Override
+    public Map<String, Long> getStartupTimings()
+    {
+        synchronized (startupTimings)
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(startupTimings));
+        }
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#drain(long)
+     */
+    @Override
+    public List<JobExecutionContext> drain(long timeout) throws SchedulerException
+    {
+        getScheduler().standby();
+        for (Scheduler namedScheduler : this.namedSchedulers.values())
+        {
+            namedScheduler.standby();
+        }
+
+        List<JobExecutionContext> runningJobs = awaitRunningJobs(timeout);
+        if (runningJobs.isEmpty())
+        {
+            return runningJobs;
+        }
+
+        for (JobExecutionContext context : runningJobs)
+        {
+            if (context.getJobInstance() instanceof InterruptableJob)
+            {
+                getLogger().info("Interrupting job " + context.getJobDetail().getKey() + " still running after " + timeout + " ms");
+                try
+                {
+                    if (this.submittedJobs.contains(context))
+                    {
+                        ((InterruptableJob) context.getJobInstance()).interrupt();
+                    }
+                    else
+                    {
+                        context.getScheduler().interrupt(context.getFireInstanceId());
+                    }
+                }
+                catch (UnableToInterruptJobException e)
+                {
+                    getLogger().warn("Interrupting job " + context.getJobDetail().getKey() + " failed", e);
+                }
+            }
+        }
+
+        runningJobs = awaitRunningJobs(this.interruptTimeout);
+        for (JobExecutionContext context : runningJobs)
+        {
+            getLogger().warn("Job " + context.getJobDetail().getKey() + " fired at " + context.getFireTime()
+                + " by " + context.getTrigger().getKey() + " is still running after draining the scheduler");
+        }
+
+        return runningJobs;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#scheduleJobs(java.util.Map, boolean)
+     */
+    @Override
+    public void scheduleJobs(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace) throws SchedulerException
+    {
+        getScheduler().scheduleJobs(triggersAndJobs, replace);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#unscheduleJobs(java.util.Collection)
+     */
+    @Override
+    public boolean unscheduleJobs(Collection<TriggerKey> triggerKeys) throws SchedulerException
+    {
+        return getScheduler().unscheduleJobs(new ArrayList<>(triggerKeys));
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#rescheduleJobs(java.util.Map)
+     */
+    @Override
+    public boolean rescheduleJobs(Map<TriggerKey, ? extends Trigger> triggers) throws SchedulerException
+    {
+        if (!(this.jobStore instanceof ConcurrentRAMJobStore))
+        {
+            boolean allFound = true;
+            for (Map.Entry<TriggerKey, ? extends Trigger> entry : triggers.entrySet())
+            {
+                allFound &= getScheduler().rescheduleJob(entry.getKey(), entry.getValue()) != null;
+            }
+            return allFound;
+        }
+
+        // prepare the new triggers like Scheduler.rescheduleJob() does
+        Map<TriggerKey, OperableTrigger> newTriggers = new LinkedHashMap<>();
+        for (Map.Entry<TriggerKey, ? extends Trigger> entry : triggers.entrySet())
+        {
+            Trigger oldTrigger = getScheduler().getTrigger(entry.getKey());
+            if (oldTrigger == null)
+            {
+                continue;
+            }
+
+            OperableTrigger newTrigger = (OperableTrigger) entry.getValue();
+            newTrigger.setJobKey(oldTrigger.getJobKey());
+            newTrigger.validate();
+            Calendar calendar = newTrigger.getCalendarName() != null
+                ? getScheduler().getCalendar(newTrigger.getCalendarName()) : null;
+            if (newTrigger.computeFirstFireTime(calendar) == null)
+            {
+                throw new SchedulerException("Based on configured schedule, the given trigger '" + newTrigger.getKey() + "' will never fire.");
+            }
+            newTriggers.put(entry.getKey(), newTrigger);
+        }
+
+        Set<TriggerKey> replacedKeys = ((ConcurrentRAMJobStore) this.jobStore).replaceTriggers(newTriggers);
+        for (TriggerKey replacedKey : replacedKeys)
+        {
+            notifyRescheduled(replacedKey, newTriggers.get(replacedKey));
+        }
+
+        return replacedKeys.size() == triggers.size();
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#submitJob(org.quartz.JobDetail)
+     */
+    @Override
+    public CompletableFuture<Object> submitJob(JobDetail jobDetail) throws SchedulerException
+    {
+        JobSubmissionQueue queue = this.submissionQueue;
+        if (queue == null)
+        {
+            throw new SchedulerException("The scheduler service is not initialized");
+        }
+        if (jobDetail.getJobClass() == null)
+        {
+            throw new SchedulerException("The job " + jobDetail.getKey() + " has no job class");
+        }
+
+        // the job may change its data while the caller keeps using the job detail
+        JobDetail submittedJob = (JobDetail) jobDetail.clone();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        queue.submit(() -> executeSubmittedJob(submittedJob, future), future);
+        return future;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#addPipeline(org.apache.fulcrum.quartz.JobPipeline)
+     */
+    @Override
+    public void addPipeline(JobPipeline pipeline) throws SchedulerException
+    {
+        getPipelineCoordinator().addPipeline(pipeline);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#removePipeline(java.lang.String)
+     */
+    @Override
+    public boolean removePipeline(String name) throws SchedulerException
+    {
+        return getPipelineCoordinator().removePipeline(name);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#startPipeline(java.lang.String, org.quartz.JobDataMap)
+     */
+    @Override
+    public CompletableFuture<PipelineRun> startPipeline(String name, JobDataMap data) throws SchedulerException
+    {
+        return getPipelineCoordinator().start(name, data);
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.QuartzScheduler#getLastPipelineRun(java.lang.String)
+     */
+    @Override
+    public PipelineRun getLastPipelineRun(String name) throws SchedulerException
+    {
+        return getPipelineCoordinator().getLastRun(name);
+    }
+
+    /**
+     * Calls getName() on jobListener
+     *
+     * @see org.quartz.JobListener#getName()
+     */
+    @Override
+    public String getName()
+    {
+        return getClass().getName();
+    }
+
+    /**
+     * Hook to support jobs implementing Avalon interface such as
+     * LogEnabled and Serviceable if they were not created by the
+     * {@link AvalonJobFactory}.
+     *
+     * @see org.quartz.JobListener#jobToBeExecuted(org.quartz.JobExecutionContext)
+     */
+    @Override
+    public void jobToBeExecuted(JobExecutionContext context)
+    {
+        JobStartedEvent.emit(context);
+        JobCompletedEvent.begin(context);
+
+        AdaptiveThreadPoolSizer sizer = threadPoolSizer;
+        if (sizer != null)
+        {
+            sizer.recordLag(getSchedulingLag(context));
+        }
+
+        if (jobFactory != null)
+        {
+            // already done when the job instance was created
+            return;
+        }
+
+        Job job = context.getJobInstance();
+
+        // inject a logger instance
+        if(job instanceof LogEnabled)
+        {
+            ((LogEnabled) job).enableLogging(getLogger());
+        }
+
+        // inject a ServiceManager instance
+        if (job instanceof Serviceable)
+        {
+            try
+            {
+                ((Serviceable) job).service(serviceManager);
+            }
+            catch (ServiceException e)
+            {
+                getLogger().error("Error servicing Job[" + job + "]", e);
+            }
+        }
+    }
+
+    /**
+     * @see org.quartz.JobListener#jobWasExecuted(org.quartz.JobExecutionContext, org.quartz.JobExecutionException)
+     */
+    @Override
+    public void jobWasExecuted(JobExecutionContext context, JobExecutionException ex)
+    {
+        // batched fires are reported once their batch was executed
+        if (!JobBatcher.isDeferred(context))
+        {
+            jobCompleted(context, ex);
+        }
+    }
+
+    /**
+     * @see org.quartz.JobListener#jobExecutionVetoed(org.quartz.JobExecutionContext)
+     */
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext context)
+    {
+        JobVetoedEvent.emit(context);
+        jobMetrics.recordVeto(context.getJobDetail().getKey());
+
+        if (jobFactory != null)
+        {
+            jobFactory.release(context.getJobInstance());
+        }
+    }
+
+    // === Service Implementation ===========================================
+
+    /**
+     * Record the outcome of a job execution and start the pipeline steps
+     * waiting for it.
+     *
+     * @param context the execution context
+     * @param ex the failure of the execution, null if it succeeded
+     */
+    private void jobCompleted(JobExecutionContext context, JobExecutionException ex)
+    {
+        // the JFR events are committed before the statistics become visible
+        JobCompletedEvent.end(context, ex == null);
+        if (ex != null)
+        {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            JobFailedEvent.emit(context, cause.getClass().getName(), cause.getMessage(), ex.refireImmediately());
+        }
+        jobMetrics.recordExecution(context.getJobDetail().getKey(), context.getJobRunTime(), getSchedulingLag(context), ex != null);
+
+        if (ex != null)
+        {
+            String msg = "Executing the job '" + context.getJobDetail().getKey() + "' failed";
+            getLogger().error(msg, ex.getCause());
+        }
+        else
+        {
+            if (getLogger().isDebugEnabled())
+            {
+                getLogger().debug("Executing the job '" + context.getJobDetail().getKey() + "' took " + context.getJobRunTime() + " ms");
+            }
+        }
+
+        PipelineCoordinator coordinator = pipelineCoordinator;
+        if (coordinator != null)
+        {
+            coordinator.jobWasExecuted(context, ex);
+        }
+
+        // a job to be re-fired immediately keeps running with the same instance
+        if (jobFactory != null && (ex == null || !ex.refireImmediately()))
+        {
+            jobFactory.release(context.getJobInstance());
+        }
+    }
+
+    /**
+     * Load the Quartz properties of a configuration.
+     *
+     * @param quartzConf the 'configuration' element
+     * @return the properties, null if the Quartz default configuration is used
+     * @throws ConfigurationException the property file could not be read
+     */
+    private Properties loadQuartzProperties(Configuration quartzConf) throws ConfigurationException
+    {
+        if(quartzConf.getChild(CONFIG_PROPERTIES, false) != null)
+        {
+            return Parameters.toProperties(Parameters.fromConfiguration(quartzConf.getChild(CONFIG_PROPERTIES)));
+        }
+
+        if(quartzConf.getChild(CONFIG_PROPERTY_FILE, false) == null)
+        {
+            return null;
+        }
+
+        String file = quartzConf.getChild(CONFIG_PROPERTY_FILE).getValue();
+        Properties properties;
+        try
+        {
+            properties = readPropertyFile(file);
+        }
+        catch (IOException e)
+        {
+            throw new ConfigurationException("Reading the Quartz property file " + file + " failed", quartzConf, e);
+        }
+        if (properties == null)
+        {
+            throw new ConfigurationException("Quartz property file not found: " + file, quartzConf);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Read a Quartz property file, looked up like StdSchedulerFactory does,
+     * the file system first and the class path second.
+     *
+     * @param file the name of the property file
+     * @return the properties, null if the file was not found
+     * @throws IOException the property file could not be read
+     */
+    private static Properties readPropertyFile(String file) throws IOException
+    {
+        Path path = Paths.get(file);
+        try (InputStream in = Files.exists(path) ? Files.newInputStream(path)
+            : Thread.currentThread().getContextClassLoader().getResourceAsStream(file))
+        {
+            if (in == null)
+            {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        }
+    }
 
     /**
-     * @see org.apache.avalon.framework.configuration.Configurable#configure(org.apache.avalon.framework.configuration.Configuration)
+     * Execute a submitted job on the current thread like the scheduler
+     * executes a fired job, using a trigger which is never stored.
+     *
+     * @param jobDetail the submitted job
+     * @param future completed with the result or the failure of the job
      */
-    @Override
-    public void configure(Configuration conf) throws ConfigurationException
+    private void executeSubmittedJob(JobDetail jobDetail, CompletableFuture<Object> future)
     {
-        Configuration quartzConf = conf.getChild(CONFIG_CONFIGURATION, true);
+        JobExecutionContextImpl context = null;
+        try
+        {
+            Date now = new Date();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(jobDetail).startAt(now).build();
+            TriggerFiredBundle bundle = new TriggerFiredBundle(jobDetail, trigger, null, false, now, now, null, null);
 
-        if(quartzConf.getChild(CONFIG_PROPERTIES, false) != null)
+            Job job = getUnbatchedJobFactory().newJob(bundle, getScheduler());
+            context = new JobExecutionContextImpl(getScheduler(), bundle, job);
+            this.submittedJobs.add(context);
+
+            jobToBeExecuted(context);
+            long startTime = System.currentTimeMillis();
+            JobExecutionException failure = null;
+            try
+            {
+                job.execute(context);
+            }
+            catch (JobExecutionException e)
+            {
+                failure = e;
+            }
+            catch (Exception e)
+            {
+                failure = new JobExecutionException(e);
+            }
+            context.setJobRunTime(System.currentTimeMillis() - startTime);
+            jobWasExecuted(context, failure);
+
+            if (failure == null)
+            {
+                future.complete(context.getResult());
+            }
+            else
+            {
+                // submitted jobs are never re-fired, their instance is released in any case
+                if (failure.refireImmediately() && this.jobFactory != null)
+                {
+                    this.jobFactory.release(job);
+                }
+                future.completeExceptionally(failure);
+            }
+        }
+        catch (SchedulerException | RuntimeException e)
         {
-            this.quartzProperties = Parameters.toProperties(Parameters.fromConfiguration(quartzConf.getChild(CONFIG_PROPERTIES)));
+            getLogger().error("Executing the submitted job '" + jobDetail.getKey() + "' failed", e);
+            future.completeExceptionally(e);
         }
-        else if(quartzConf.getChild(CONFIG_PROPERTY_FILE, false) != null)
+        finally
         {
-            this.quartzPropertyFile = quartzConf.getChild(CONFIG_PROPERTY_FILE).getValue();
+            if (context != null)
+            {
+                this.submittedJobs.remove(context);
+            }
+            if (!future.isDone())
+            {
+                future.completeExceptionally(new SchedulerException("The submitted job '" + jobDetail.getKey() + "' did not complete"));
+            }
         }
     }
 
     /**
-     * @see org.apache.avalon.framework.service.Serviceable#service(org.apache.avalon.framework.service.ServiceManager)
+     * Notify the scheduler listeners of a trigger replaced in the job store
+     * like <code>Scheduler.rescheduleJob()</code> does.
+     *
+     * @param triggerKey the key of the replaced trigger
+     * @param newTrigger the new trigger
+     * @throws SchedulerException the listeners could not be retrieved
      */
-    @Override
-    public void service(ServiceManager manager) throws ServiceException
+    private void notifyRescheduled(TriggerKey triggerKey, Trigger newTrigger) throws SchedulerException
     {
-        this.serviceManager = manager;
+        for (SchedulerListener listener : getScheduler().getListenerManager().getSchedulerListeners())
+        {
+            try
+            {
+                listener.jobUnscheduled(triggerKey);
+                listener.jobScheduled(newTrigger);
+            }
+            catch (RuntimeException e)
+            {
+                getLogger().warn("Notifying the scheduler listener " + listener + " of rescheduling " + triggerKey + " failed", e);
+            }
+        }
     }
 
     /**
-     * @see org.apache.avalon.framework.activity.Initializable#initialize()
+     * Create a named scheduler with its own job store and scheduler thread,
+     * running its jobs on the shared thread pool with the job factory and
+     * the listeners of the default scheduler.
+     *
+     * @param schedulerConf the 'scheduler' element
+     * @return the scheduler, not started yet
+     * @throws SchedulerException the job store could not be created
+     * @throws ConfigurationException the configuration is invalid
      */
-    @Override
-    public void initialize() throws Exception
+    private Scheduler createNamedScheduler(Configuration schedulerConf) throws SchedulerException, ConfigurationException
     {
-        // instantiating a specific scheduler from a property file or properties
-        StdSchedulerFactory schedulerFactory = new StdSchedulerFactory();
-        if(this.quartzProperties != null)
+        String name = schedulerConf.getAttribute(CONFIG_NAME);
+        Configuration jobStoreConf = schedulerConf.getChild(CONFIG_JOB_STORE, true);
+        String jobStoreClass = jobStoreConf.getAttribute(CONFIG_CLASS, ConcurrentRAMJobStore.class.getName());
+
+        JobStore namedJobStore;
+        try
         {
-            getLogger().info("Pulling quartz configuration from the container XML configuration");
-            schedulerFactory.initialize(this.quartzProperties);
+            namedJobStore = (JobStore) Thread.currentThread().getContextClassLoader().loadClass(jobStoreClass)
+                .getDeclaredConstructor().newInstance();
         }
-        else if(this.quartzPropertyFile != null)
+        catch (ReflectiveOperationException | ClassCastException e)
         {
-            getLogger().info("Pulling quartz configuration from the following property file : " + this.quartzPropertyFile);
-            schedulerFactory.initialize(this.quartzPropertyFile);
+            throw new SchedulerConfigException("Creating the job store " + jobStoreClass + " of scheduler '" + name + "' failed", e);
         }
-        else
+        setProperties(namedJobStore, Parameters.fromConfiguration(jobStoreConf));
+
+        DirectSchedulerFactory.getInstance().createScheduler(name, getScheduler().getSchedulerInstanceId(),
+            new SharedThreadPool(this.threadPool), namedJobStore);
+        Scheduler namedScheduler = DirectSchedulerFactory.getInstance().getScheduler(name);
+
+        if (this.jobFactory != null)
         {
-            getLogger().info("Using Quartz default configuration since no user-supplied configuration was found");
-            schedulerFactory.initialize();
+            namedScheduler.setJobFactory(this.jobFactory);
         }
+        namedScheduler.getListenerManager().addJobListener(this, new ArrayList<Matcher<JobKey>>());
+        namedScheduler.getListenerManager().addTriggerListener(new MisfireListener(), new ArrayList<Matcher<TriggerKey>>());
+        namedScheduler.getListenerManager().addSchedulerListener(new JobDeletionListener());
 
-        this.scheduler = schedulerFactory.getScheduler();
-
-        // add this service instance as JobListener to allow basic monitoring
-        getScheduler().getListenerManager().addJobListener(this, new ArrayList<Matcher<JobKey>>());
+        getLogger().info("Created scheduler '" + name + "' using the job store " + jobStoreClass + " and the shared thread pool");
+        return namedScheduler;
     }
 
-    @Override
-    public void start() throws Exception
+    /**
+     * Apply parameters to the bean properties of an object like Quartz does
+     * for the properties of its job store.
+     *
+     * @param bean the object
+     * @param parameters the parameters
+     * @throws SchedulerConfigException a parameter does not match a setter of the object
+     */
+    private static void setProperties(Object bean, Parameters parameters) throws SchedulerConfigException
     {
-        getScheduler().start();
-
-        if(getLogger().isInfoEnabled())
+        for (String name : parameters.getNames())
         {
-            logSchedulerConfiguration();
-        }
+            String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String value = parameters.getParameter(name, null).trim();
+            Method method = null;
+            for (Method candidate : bean.getClass().getMethods())
+            {
+                if (candidate.getName().equals(setter) && candidate.getParameterCount() == 1)
+                {
+                    method = candidate;
+                    break;
+                }
+            }
+
+            if (method == null)
+            {
+                throw new SchedulerConfigException("No setter for property '" + name + "' of " + bean.getClass().getName());
+            }
 
+            try
+            {
+                Class<?> type = method.getParameterTypes()[0];
+                if (type == String.class)
+                {
+                    method.invoke(bean, value);
+                }
+                else if (type == int.class)
+                {
+                    method.invoke(bean, Integer.parseInt(value));
+                }
+                else if (type == long.class)
+                {
+                    method.invoke(bean, Long.parseLong(value));
+                }
+                else if (type == boolean.class)
+                {
+                    method.invoke(bean, Boolean.parseBoolean(value));
+                }
+                else
+                {
+                    throw new SchedulerConfigException("Unsupported type " + type.getName() + " of property '" + name + "'");
+                }
+            }
+            catch (NumberFormatException | ReflectiveOperationException e)
+            {
+                throw new SchedulerConfigException("Setting property '" + name + "' of " + bean.getClass().getName() + " failed", e);
+            }
+        }
     }
 
-    @Override
-    public void stop() throws Exception
+    /**
+     * Get the job factory creating jobs executed outside of the scheduler
+     * thread. Jobs are created like fired jobs unless the user brings a job
+     * factory, which is not accessible, but batch jobs execute every fire on
+     * their own.
+     *
+     * @return the job factory
+     */
+    private JobFactory getUnbatchedJobFactory()
     {
-        getScheduler().standby();
+        AvalonJobFactory factory = this.jobFactory;
+        return factory != null ? factory::createJob : new PropertySettingJobFactory();
     }
 
     /**
-     * @see org.apache.avalon.framework.activity.Disposable#dispose()
+     * Get the coordinator of the job pipelines.
+     *
+     * @return the coordinator
+     * @throws SchedulerException the service is not initialized
      */
-    @Override
-    public void dispose()
+    private PipelineCoordinator getPipelineCoordinator() throws SchedulerException
     {
-        try
-        {
-            // shutdown() does not return until executing Jobs complete execution
-            this.scheduler.shutdown(true);
-        }
-        catch (SchedulerException e)
+        PipelineCoordinator coordinator = this.pipelineCoordinator;
+        if (coordinator == null)
         {
-            this.getLogger().warn("Problem shutting down quartz scheduler ", e);
+            throw new SchedulerException("The scheduler service is not initialized");
         }
-
-        this.scheduler = null;
-        this.serviceManager = null;
+        return coordinator;
     }
 
-    // === Service Interface Implementation =================================
-
     /**
-     * @see org.apache.fulcrum.quartz.QuartzScheduler#getScheduler()
+     * Stop watching the scheduling data file if it is watched.
      */
-    @Override
-    public Scheduler getScheduler()
+    private void stopSchedulingDataWatcher()
     {
-        return scheduler;
+        if (this.schedulingDataWatcher != null)
+        {
+            this.schedulingDataWatcher.stop();
+            this.schedulingDataWatcher = null;
+        }
     }
 
     /**
-     * Calls getName() on jobListener
-     *
-     * @see org.quartz.JobListener#getName()
+     * Leave the partitioned nodes if partitioned.
      */
-    @Override
-    public String getName()
+    private void stopMembership()
     {
-        return getClass().getName();
+        if (this.membership != null)
+        {
+            this.membership.stop();
+        }
     }
 
     /**
-     * Hook to support jobs implementing Avalon interface such as
-     * LogEnabled and Serviceable.
-     *
-     * @see org.quartz.JobListener#jobToBeExecuted(org.quartz.JobExecutionContext)
+     * Stop resizing the thread pool if it is adaptive.
      */
-    @Override
-    public void jobToBeExecuted(JobExecutionContext context)
+    private void stopThreadPoolSizer()
     {
-        Job job = context.getJobInstance();
-
-        // inject a logger instance
-        if(job instanceof LogEnabled)
+        if (this.threadPoolSizer != null)
         {
-            ((LogEnabled) job).enableLogging(getLogger());
+            this.threadPoolSizer.stop();
         }
+    }
 
-        // inject a ServiceManager instance
-        if (job instanceof Serviceable)
+    /**
+     * @param context the context of a fired job
+     * @return the time in ms the job started after its scheduled fire time
+     */
+    private static long getSchedulingLag(JobExecutionContext context)
+    {
+        Date scheduledFireTime = context.getScheduledFireTime();
+        if (scheduledFireTime == null || context.getFireTime() == null)
         {
-            try
-            {
-                ((Serviceable) job).service(serviceManager);
-            }
-            catch (ServiceException e)
-            {
-                getLogger().error("Error servicing Job[" + job + "]", e);
-            }
+            return 0L;
         }
+
+        return Math.max(0L, context.getFireTime().getTime() - scheduledFireTime.getTime());
     }
 
     /**
-     * @see org.quartz.JobListener#jobWasExecuted(org.quartz.JobExecutionContext, org.quartz.JobExecutionException)
+     * Get the jobs executed by the default and the named schedulers and the
+     * submitted jobs.
+     *
+     * @return the running jobs
+     * @throws SchedulerException retrieving the running jobs failed
      */
-    @Override
-    public void jobWasExecuted(JobExecutionContext context, JobExecutionException ex)
+    private List<JobExecutionContext> getCurrentlyExecutingJobs() throws SchedulerException
     {
-        if (ex != null)
+        List<JobExecutionContext> runningJobs = new ArrayList<>(getScheduler().getCurrentlyExecutingJobs());
+        for (Scheduler namedScheduler : this.namedSchedulers.values())
         {
-            String msg = "Executing the job '" + context.getJobDetail().getKey() + "' failed";
-            getLogger().error(msg, ex.getCause());
+            runningJobs.addAll(namedScheduler.getCurrentlyExecutingJobs());
         }
-        else
+        runningJobs.addAll(this.submittedJobs);
+        return runningJobs;
+    }
+
+    /**
+     * Wait until no job is executed anymore by any scheduler.
+     *
+     * @param timeout the maximum time to wait in ms, negative to wait without limit
+     * @return the jobs still running
+     * @throws SchedulerException retrieving the running jobs failed
+     */
+    private List<JobExecutionContext> awaitRunningJobs(long timeout) throws SchedulerException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        List<JobExecutionContext> runningJobs = getCurrentlyExecutingJobs();
+
+        while (!runningJobs.isEmpty() && (timeout < 0 || System.currentTimeMillis() < deadline))
         {
-            if (getLogger().isDebugEnabled())
+            try
             {
-                getLogger().debug("Executing the job '" + context.getJobDetail().getKey() + "' took " + context.getJobRunTime() + " ms");
+                Thread.sleep(timeout < 0 ? DRAIN_POLL_INTERVAL : Math.max(1, Math.min(DRAIN_POLL_INTERVAL, deadline - System.currentTimeMillis())));
             }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            runningJobs = getCurrentlyExecutingJobs();
         }
+
+        return runningJobs;
     }
 
     /**
-     * @see org.quartz.JobListener#jobExecutionVetoed(org.quartz.JobExecutionContext)
+     * Record the duration of a startup phase.
+     *
+     * @param phase the name of the phase
+     * @param phaseStart the start of the phase in ns
+     * @return the end of the phase in ns
      */
-    @Override
-    public void jobExecutionVetoed(JobExecutionContext context)
+    private long recordStartupPhase(String phase, long phaseStart)
     {
-        // nothing to do
+        long now = System.nanoTime();
+        startupTimings.put(phase, (now - phaseStart) / 1000000L);
+        return now;
     }
 
-    // === Service Implementation ===========================================
     /**
-     * @throws SchedulerException generic exception
+     * Log the number of jobs per group and the trigger firing next of a
+     * limited number of jobs. The jobs and triggers are retrieved in bulk
+     * instead of one group and job at a time.
+     *
+     * @param scheduler the scheduler to report
      */
-    private void logSchedulerConfiguration() throws SchedulerException
+    private void logSchedulerConfiguration(Scheduler scheduler)
     {
-        for (String jobGroup : getScheduler().getJobGroupNames())
+        try
         {
-            Set<JobKey> jobsInGroup = getScheduler().getJobKeys(GroupMatcher.jobGroupEquals(jobGroup));
-            getLogger().info("Job Group: " + jobGroup + " contains the following number of jobs : " + jobsInGroup.size());
-            for (JobKey jobKey : jobsInGroup)
+            Set<JobKey> jobKeys = new TreeSet<>(scheduler.getJobKeys(GroupMatcher.anyJobGroup()));
+            int triggerCount = scheduler.getTriggerKeys(GroupMatcher.anyTriggerGroup()).size();
+
+            Map<String, Integer> jobsPerGroup = new TreeMap<>();
+            for (JobKey jobKey : jobKeys)
+            {
+                jobsPerGroup.merge(jobKey.getGroup(), 1, Integer::sum);
+            }
+
+            getLogger().info("Scheduler contains " + jobKeys.size() + " jobs in " + jobsPerGroup.size()
+                + " groups and " + triggerCount + " triggers");
+            for (Map.Entry<String, Integer> group : jobsPerGroup.entrySet())
+            {
+                getLogger().info("Job Group: " + group.getKey() + " contains the following number of jobs : " + group.getValue());
+            }
+
+            List<JobKey> listedJobs = new ArrayList<>(jobKeys).subList(0, Math.max(0, Math.min(jobKeys.size(), reportMaxJobs)));
+            Map<JobKey, Trigger> nextTriggers = getNextTriggers(scheduler, listedJobs);
+            for (JobKey jobKey : listedJobs)
             {
                 StringBuilder buffer = new StringBuilder();
-                JobDetail jobDetail = getScheduler().getJobDetail(jobKey);
-                List<? extends Trigger> jobTriggers = getScheduler().getTriggersOfJob(jobKey);
-                buffer.append(jobDetail.getKey());
+                Trigger jt = nextTriggers.get(jobKey);
+                buffer.append(jobKey);
                 buffer.append(" => ");
-                if(jobTriggers != null && !jobTriggers.isEmpty())
+                if(jt != null)
                 {
-                    Trigger jt = jobTriggers.get(0);
                     buffer.append(jt.getKey());
                     buffer.append(" (");
                     buffer.append(jt.getNextFireTime());
@@ -299,6 +2019,117 @@ public class QuartzSchedulerImpl
 
                 getLogger().info(buffer.toString());
             }
+            if (jobKeys.size() > listedJobs.size())
+            {
+                getLogger().info("... " + (jobKeys.size() - listedJobs.size()) + " more jobs not listed");
+            }
+        }
+        catch (SchedulerException e)
+        {
+            // the scheduler might have been shut down in the meantime
+            getLogger().warn("Reporting the scheduler configuration failed", e);
+        }
+    }
+
+    /**
+     * Get the trigger firing next of the listed jobs. The ConcurrentRAMJobStore
+     * of the service only copies the trigger firing next of each listed job,
+     * other job stores are asked for all triggers of one job at a time.
+     *
+     * @param scheduler the reported scheduler
+     * @param jobKeys the listed jobs
+     * @return the trigger firing next per job, jobs without triggers are missing
+     * @throws SchedulerException retrieving the triggers failed
+     */
+    private Map<JobKey, Trigger> getNextTriggers(Scheduler scheduler, List<JobKey> jobKeys) throws SchedulerException
+    {
+        if (jobKeys.isEmpty())
+        {
+            return Collections.emptyMap();
+        }
+        if (scheduler == this.scheduler && this.jobStore instanceof ConcurrentRAMJobStore)
+        {
+            return ((ConcurrentRAMJobStore) this.jobStore).getNextTriggerPerJob(jobKeys);
+        }
+
+        Map<JobKey, Trigger> nextTriggers = new HashMap<>();
+        for (JobKey jobKey : jobKeys)
+        {
+            scheduler.getTriggersOfJob(jobKey).stream().min(ConcurrentRAMJobStore.NEXT_FIRE_TIME_ORDER)
+                .ifPresent(trigger -> nextTriggers.put(jobKey, trigger));
+        }
+        return nextTriggers;
+    }
+
+    /**
+     * Records misfired triggers as JFR events.
+     */
+    private static final class MisfireListener extends TriggerListenerSupport
+    {
+        @Override
+        public String getName()
+        {
+            return MisfireListener.class.getName();
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger)
+        {
+            TriggerMisfiredEvent.emit(trigger);
+        }
+    }
+
+    /**
+     * Discards the statistics of deleted jobs, including jobs removed
+     * together with their last trigger, so the job metrics do not grow
+     * with every job ever executed.
+     */
+    private final class JobDeletionListener extends SchedulerListenerSupport
+    {
+        @Override
+        public void jobDeleted(JobKey jobKey)
+        {
+            jobMetrics.remove(jobKey);
+        }
+    }
+
+    /**
+     * Measures the time between the notifications of the scheduler being
+     * started, covering the start of the job store and of the plugins.
+     */
+    private final class PluginStartTimer extends SchedulerListenerSupport
+    {
+        private long phaseStart;
+
+        @Override
+        public void schedulerStarting()
+        {
+            phaseStart = System.nanoTime();
+        }
+
+        @Override
+        public void schedulerStarted()
+        {
+            recordStartupPhase(STARTUP_PHASE_PLUGIN_START, phaseStart);
+        }
+    }
+
+    /**
+     * Keeps the thread pool and the job store created for the scheduler,
+     * which are not accessible through the <code>Scheduler</code> interface.
+     */
+    private static final class ResourceCapturingSchedulerFactory extends StdSchedulerFactory
+    {
+        private ThreadPool threadPool;
+
+        private JobStore jobStore;
+
+        @Override
+        protected Scheduler instantiate(QuartzSchedulerResources rsrcs, org.quartz.core.QuartzScheduler qs)
+        {
+            this.threadPool = rsrcs.getThreadPool();
+            this.jobStore = rsrcs.getJobStore();
+            return super.instantiate(rsrcs, qs);
         }
     }
 }
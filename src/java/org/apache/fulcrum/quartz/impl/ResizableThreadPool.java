@@ -0,0 +1,48 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.spi.ThreadPool;
+
+/**
+ * A Quartz <code>ThreadPool</code> whose number of threads can be changed
+ * while the scheduler is running.
+ */
+public interface ResizableThreadPool extends ThreadPool
+{
+    /**
+     * @return the maximum number of concurrently running jobs
+     */
+    int getThreadCount();
+
+    /**
+     * Change the maximum number of concurrently running jobs. When shrinking,
+     * running jobs are not affected but no new job is started until the
+     * number of running jobs dropped below the new limit.
+     *
+     * @param threadCount the maximum number of concurrently running jobs
+     */
+    void setThreadCount(int threadCount);
+
+    /**
+     * @return the number of jobs currently running
+     */
+    int getActiveCount();
+}
@@ -0,0 +1,256 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.ListenerManager;
+import org.quartz.Matcher;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.quartz.utils.Key;
+
+/**
+ * Fires the triggers of a {@link ConcurrentRAMJobStore} in simulated time
+ * instead of the scheduler thread of Quartz waiting for the wall clock.
+ *
+ * <p>Advancing the simulation moves a {@link SimulatedClock} from one due
+ * trigger to the next and executes each fired job on the calling thread
+ * before acquiring the next trigger, so a day of triggers runs in the time
+ * needed to execute its jobs and always in the same order. Jobs are created
+ * by the job factory and the job and trigger listeners registered with the
+ * scheduler are notified like for jobs run by Quartz; scheduler listeners
+ * are only notified by the job store.</p>
+ */
+final class SchedulerSimulation
+{
+    private final Logger logger;
+
+    private final Scheduler scheduler;
+
+    private final ConcurrentRAMJobStore jobStore;
+
+    private final JobFactory jobFactory;
+
+    private final SimulatedClock clock;
+
+    /**
+     * @param logger the logger
+     * @param scheduler the scheduler, which must not be started
+     * @param jobStore the job store of the scheduler using the clock
+     * @param jobFactory creates the job instances
+     * @param clock the simulated clock
+     */
+    SchedulerSimulation(Logger logger, Scheduler scheduler, ConcurrentRAMJobStore jobStore, JobFactory jobFactory,
+        SimulatedClock clock)
+    {
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.jobStore = jobStore;
+        this.jobFactory = jobFactory;
+        this.clock = clock;
+    }
+
+    /**
+     * Advance the clock, firing the triggers due in between in the order of
+     * their fire times.
+     *
+     * @param duration the time in ms to advance the clock by
+     * @return the number of fired triggers
+     * @throws SchedulerException acquiring or firing a trigger failed
+     */
+    synchronized long advance(long duration) throws SchedulerException
+    {
+        if (duration < 0)
+        {
+            throw new IllegalArgumentException("The simulated clock cannot move backwards");
+        }
+
+        long end = clock.currentTimeMillis() + duration;
+        if (end < 0)
+        {
+            end = Long.MAX_VALUE;
+        }
+        long fired = 0;
+
+        while (true)
+        {
+            // one trigger at a time to pick up triggers scheduled by the jobs just executed
+            List<OperableTrigger> triggers = jobStore.acquireNextTriggers(end, 1, 0L);
+            if (triggers.isEmpty())
+            {
+                break;
+            }
+
+            OperableTrigger trigger = triggers.get(0);
+            clock.advanceTo(trigger.getNextFireTime().getTime());
+
+            TriggerFiredResult result = jobStore.triggersFired(triggers).get(0);
+            if (result.getException() != null)
+            {
+                jobStore.releaseAcquiredTrigger(trigger);
+                throw new SchedulerException("Firing trigger " + trigger.getKey() + " failed", result.getException());
+            }
+            if (result.getTriggerFiredBundle() == null)
+            {
+                jobStore.releaseAcquiredTrigger(trigger);
+                continue;
+            }
+
+            execute(result.getTriggerFiredBundle());
+            fired++;
+        }
+
+        clock.advanceTo(end);
+        return fired;
+    }
+
+    /**
+     * Execute a fired job like the <code>JobRunShell</code> of Quartz.
+     */
+    private void execute(TriggerFiredBundle bundle) throws SchedulerException
+    {
+        OperableTrigger trigger = bundle.getTrigger();
+        JobDetail jobDetail = bundle.getJobDetail();
+
+        Job job;
+        try
+        {
+            job = jobFactory.newJob(bundle, scheduler);
+        }
+        catch (SchedulerException e)
+        {
+            logger.error("Creating an instance of job " + jobDetail.getKey() + " failed", e);
+            jobStore.triggeredJobComplete(trigger, jobDetail, CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
+            return;
+        }
+
+        JobExecutionContextImpl context = new JobExecutionContextImpl(scheduler, bundle, job);
+        ListenerManager listeners = scheduler.getListenerManager();
+        CompletedExecutionInstruction instruction;
+
+        while (true)
+        {
+            boolean vetoed = false;
+            for (TriggerListener listener : listeners.getTriggerListeners())
+            {
+                if (matches(listeners.getTriggerListenerMatchers(listener.getName()), trigger.getKey()))
+                {
+                    listener.triggerFired(trigger, context);
+                    vetoed |= listener.vetoJobExecution(trigger, context);
+                }
+            }
+
+            if (vetoed)
+            {
+                for (JobListener listener : listeners.getJobListeners())
+                {
+                    if (matches(listeners.getJobListenerMatchers(listener.getName()), jobDetail.getKey()))
+                    {
+                        listener.jobExecutionVetoed(context);
+                    }
+                }
+                instruction = trigger.executionComplete(context, null);
+                break;
+            }
+
+            for (JobListener listener : listeners.getJobListeners())
+            {
+                if (matches(listeners.getJobListenerMatchers(listener.getName()), jobDetail.getKey()))
+                {
+                    listener.jobToBeExecuted(context);
+                }
+            }
+
+            long startTime = System.currentTimeMillis();
+            JobExecutionException failure = null;
+            try
+            {
+                job.execute(context);
+            }
+            catch (JobExecutionException e)
+            {
+                failure = e;
+            }
+            catch (Exception e)
+            {
+                failure = new JobExecutionException("Job threw an unhandled exception", e, false);
+            }
+            context.setJobRunTime(System.currentTimeMillis() - startTime);
+
+            for (JobListener listener : listeners.getJobListeners())
+            {
+                if (matches(listeners.getJobListenerMatchers(listener.getName()), jobDetail.getKey()))
+                {
+                    listener.jobWasExecuted(context, failure);
+                }
+            }
+
+            instruction = trigger.executionComplete(context, failure);
+            for (TriggerListener listener : listeners.getTriggerListeners())
+            {
+                if (matches(listeners.getTriggerListenerMatchers(listener.getName()), trigger.getKey()))
+                {
+                    listener.triggerComplete(trigger, context, instruction);
+                }
+            }
+
+            if (instruction != CompletedExecutionInstruction.RE_EXECUTE_JOB)
+            {
+                break;
+            }
+            context.incrementRefireCount();
+        }
+
+        jobStore.triggeredJobComplete(trigger, jobDetail, instruction);
+    }
+
+    /**
+     * A listener without matchers receives the notifications for all keys.
+     */
+    private static <K extends Key<K>> boolean matches(List<Matcher<K>> matchers, K key)
+    {
+        if (matchers == null)
+        {
+            return true;
+        }
+
+        for (Matcher<K> matcher : matchers)
+        {
+            if (matcher.isMatch(key))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,448 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.avalon.framework.logger.Logger;
+import org.apache.fulcrum.quartz.SchedulerClock;
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.simpl.CascadingClassLoadHelper;
+
+/**
+ * Loads a file using the Quartz 'job_scheduling_data_2_0' format into a
+ * scheduler by comparing its definitions with the jobs and triggers already
+ * scheduled. Only added and changed definitions are stored, using batches of
+ * a configurable size, and only jobs and triggers no longer defined are
+ * removed, so unchanged triggers keep their schedule. Changed triggers of
+ * unchanged jobs are stored one by one without storing their job again,
+ * so job data the job persisted in the meantime is kept.
+ *
+ * <p>Jobs and triggers are removed if they were defined by the previous load
+ * of the file, were explicitly deleted by the file or belong to a group the
+ * file deletes using 'delete-jobs-in-group' or 'delete-triggers-in-group',
+ * '*' standing for all groups.</p>
+ */
+final class SchedulingDataLoader
+{
+    /** the group name standing for all groups */
+    private static final String ALL_GROUPS = "*";
+
+    private final Logger logger;
+
+    private final Scheduler scheduler;
+
+    private final Path file;
+
+    private final int batchSize;
+
+    private final SchedulingDataParser parser;
+
+    /** the jobs defined by the previous load */
+    private Set<JobKey> loadedJobs = Collections.emptySet();
+
+    /** the triggers defined by the previous load */
+    private Set<TriggerKey> loadedTriggers = Collections.emptySet();
+
+    /**
+     * @param logger the logger
+     * @param scheduler the scheduler to load the file into
+     * @param file the file
+     * @param batchSize the number of definitions stored at once
+     * @param compiledCron create cron triggers using a {@link CompiledCronExpression}
+     */
+    SchedulingDataLoader(Logger logger, Scheduler scheduler, Path file, int batchSize, boolean compiledCron)
+    {
+        this(logger, scheduler, file, batchSize, compiledCron, SchedulerClock.SYSTEM);
+    }
+
+    /**
+     * @param logger the logger
+     * @param scheduler the scheduler to load the file into
+     * @param file the file
+     * @param batchSize the number of definitions stored at once
+     * @param compiledCron create cron triggers using a {@link CompiledCronExpression}
+     * @param clock the clock defining the start of triggers without a start time
+     */
+    SchedulingDataLoader(Logger logger, Scheduler scheduler, Path file, int batchSize, boolean compiledCron, SchedulerClock clock)
+    {
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.file = file;
+        this.batchSize = Math.max(1, batchSize);
+
+        CascadingClassLoadHelper classLoadHelper = new CascadingClassLoadHelper();
+        classLoadHelper.initialize();
+        this.parser = new SchedulingDataParser(classLoadHelper, compiledCron, clock);
+    }
+
+    /**
+     * @return the loaded file
+     */
+    Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Load the file and apply the differences to the scheduler.
+     *
+     * @return the number of changes applied
+     * @throws Exception reading the file or updating the scheduler failed
+     */
+    synchronized Result load() throws Exception
+    {
+        long start = System.nanoTime();
+        Diff diff = new Diff();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file)))
+        {
+            parser.parse(in, diff);
+        }
+        diff.finish();
+
+        loadedJobs = diff.seenJobs;
+        loadedTriggers = diff.seenTriggers;
+
+        Result result = diff.result;
+        result.time = (System.nanoTime() - start) / 1000000L;
+        return result;
+    }
+
+    /**
+     * The changes applied by loading the file.
+     */
+    static final class Result
+    {
+        int added;
+        int changed;
+        int unchanged;
+        int removed;
+        long time;
+
+        @Override
+        public String toString()
+        {
+            return added + " added, " + changed + " changed, " + unchanged + " unchanged, "
+                + removed + " removed in " + time + " ms";
+        }
+    }
+
+    /**
+     * Compares the definitions of the file with the scheduler and applies
+     * the differences in batches.
+     */
+    private final class Diff implements SchedulingDataParser.Handler
+    {
+        final Result result = new Result();
+
+        final Set<JobKey> seenJobs = new HashSet<>();
+
+        final Set<TriggerKey> seenTriggers = new HashSet<>();
+
+        final Set<String> deletedJobGroups = new HashSet<>();
+
+        final Set<String> deletedTriggerGroups = new HashSet<>();
+
+        final Set<JobKey> deletedJobs = new HashSet<>();
+
+        final Set<TriggerKey> deletedTriggers = new HashSet<>();
+
+        /** the added or changed jobs not stored yet */
+        final Map<JobKey, JobDetail> pendingJobs = new LinkedHashMap<>();
+
+        /** the added or changed triggers not stored yet */
+        final List<Trigger> pendingTriggers = new ArrayList<>();
+
+        boolean overwrite = true;
+
+        @Override
+        public void deleteJobsInGroup(String group)
+        {
+            deletedJobGroups.add(group);
+        }
+
+        @Override
+        public void deleteTriggersInGroup(String group)
+        {
+            deletedTriggerGroups.add(group);
+        }
+
+        @Override
+        public void deleteJob(JobKey jobKey)
+        {
+            deletedJobs.add(jobKey);
+        }
+
+        @Override
+        public void deleteTrigger(TriggerKey triggerKey)
+        {
+            deletedTriggers.add(triggerKey);
+        }
+
+        @Override
+        public void overwriteExistingData(boolean overwrite)
+        {
+            this.overwrite = overwrite;
+        }
+
+        @Override
+        public void job(JobDetail jobDetail) throws SchedulerException
+        {
+            seenJobs.add(jobDetail.getKey());
+
+            JobDetail existing = scheduler.getJobDetail(jobDetail.getKey());
+            if (existing == null)
+            {
+                result.added++;
+            }
+            else if (!overwrite || isSameJob(existing, jobDetail))
+            {
+                result.unchanged++;
+                return;
+            }
+            else
+            {
+                result.changed++;
+            }
+
+            pendingJobs.put(jobDetail.getKey(), jobDetail);
+            flushIfFull();
+        }
+
+        @Override
+        public void trigger(Trigger trigger, boolean explicitStartTime) throws SchedulerException
+        {
+            seenTriggers.add(trigger.getKey());
+
+            Trigger existing = scheduler.getTrigger(trigger.getKey());
+            if (existing == null)
+            {
+                result.added++;
+            }
+            else if (!overwrite || isSameTrigger(existing, trigger, explicitStartTime))
+            {
+                result.unchanged++;
+                return;
+            }
+            else
+            {
+                result.changed++;
+            }
+
+            pendingTriggers.add(trigger);
+            flushIfFull();
+        }
+
+        void finish() throws SchedulerException
+        {
+            flush(true);
+
+            Set<TriggerKey> removedTriggers = new HashSet<>(loadedTriggers);
+            removedTriggers.addAll(deletedTriggers);
+            for (String group : deletedTriggerGroups)
+            {
+                removedTriggers.addAll(scheduler.getTriggerKeys(ALL_GROUPS.equals(group)
+                    ? GroupMatcher.anyTriggerGroup()
+                    : GroupMatcher.triggerGroupEquals(group)));
+            }
+            removedTriggers.removeAll(seenTriggers);
+
+            Set<JobKey> removedJobs = new HashSet<>(loadedJobs);
+            removedJobs.addAll(deletedJobs);
+            for (String group : deletedJobGroups)
+            {
+                removedJobs.addAll(scheduler.getJobKeys(ALL_GROUPS.equals(group)
+                    ? GroupMatcher.anyJobGroup()
+                    : GroupMatcher.jobGroupEquals(group)));
+            }
+            removedJobs.removeAll(seenJobs);
+
+            if (!removedTriggers.isEmpty())
+            {
+                scheduler.unscheduleJobs(new ArrayList<>(removedTriggers));
+            }
+            if (!removedJobs.isEmpty())
+            {
+                scheduler.deleteJobs(new ArrayList<>(removedJobs));
+            }
+            result.removed = removedTriggers.size() + removedJobs.size();
+        }
+
+        private void flushIfFull() throws SchedulerException
+        {
+            if (pendingJobs.size() + pendingTriggers.size() >= batchSize)
+            {
+                flush(false);
+            }
+        }
+
+        /**
+         * Store the pending jobs together with their pending triggers and
+         * then the pending triggers of jobs which are already stored, without
+         * storing their jobs again.
+         *
+         * @param last true if all pending triggers have to be stored
+         */
+        private void flush(boolean last) throws SchedulerException
+        {
+            Map<JobDetail, Set<Trigger>> triggersByJob = new LinkedHashMap<>();
+            for (JobDetail jobDetail : pendingJobs.values())
+            {
+                triggersByJob.put(jobDetail, new HashSet<>());
+            }
+
+            List<Trigger> triggersOfStoredJobs = new ArrayList<>();
+            List<Trigger> deferred = new ArrayList<>();
+            for (Trigger trigger : pendingTriggers)
+            {
+                JobDetail pendingJob = pendingJobs.get(trigger.getJobKey());
+                if (pendingJob != null)
+                {
+                    triggersByJob.get(pendingJob).add(trigger);
+                }
+                else if (scheduler.checkExists(trigger.getJobKey()))
+                {
+                    triggersOfStoredJobs.add(trigger);
+                }
+                else if (last)
+                {
+                    throw new SchedulerException("The job (" + trigger.getJobKey()
+                        + ") referenced by the trigger " + trigger.getKey() + " does not exist.");
+                }
+                else
+                {
+                    // the job might be defined further down the file
+                    deferred.add(trigger);
+                }
+            }
+
+            if (!triggersByJob.isEmpty())
+            {
+                scheduler.scheduleJobs(new HashMap<JobDetail, Set<? extends Trigger>>(triggersByJob), true);
+            }
+
+            // the stored job may have persisted job data since it was compared
+            for (Trigger trigger : triggersOfStoredJobs)
+            {
+                Trigger existing = scheduler.getTrigger(trigger.getKey());
+                if (existing == null)
+                {
+                    scheduler.scheduleJob(trigger);
+                }
+                else if (existing.getJobKey().equals(trigger.getJobKey()))
+                {
+                    scheduler.rescheduleJob(trigger.getKey(), trigger);
+                }
+                else
+                {
+                    // moved to another job
+                    scheduler.unscheduleJob(trigger.getKey());
+                    scheduler.scheduleJob(trigger);
+                }
+            }
+
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Stored a batch of " + pendingJobs.size() + " jobs and "
+                    + (pendingTriggers.size() - deferred.size()) + " triggers from " + file);
+            }
+
+            pendingJobs.clear();
+            pendingTriggers.clear();
+            pendingTriggers.addAll(deferred);
+        }
+    }
+
+    private static boolean isSameJob(JobDetail existing, JobDetail jobDetail)
+    {
+        return existing.getJobClass().equals(jobDetail.getJobClass())
+            && Objects.equals(existing.getDescription(), jobDetail.getDescription())
+            && existing.isDurable() == jobDetail.isDurable()
+            && existing.requestsRecovery() == jobDetail.requestsRecovery()
+            && existing.getJobDataMap().equals(jobDetail.getJobDataMap());
+    }
+
+    private static boolean isSameTrigger(Trigger existing, Trigger trigger, boolean explicitStartTime)
+    {
+        if (existing.getClass() != trigger.getClass()
+            || !existing.getJobKey().equals(trigger.getJobKey())
+            || !Objects.equals(existing.getDescription(), trigger.getDescription())
+            || existing.getPriority() != trigger.getPriority()
+            || !Objects.equals(existing.getCalendarName(), trigger.getCalendarName())
+            || existing.getMisfireInstruction() != trigger.getMisfireInstruction()
+            || !Objects.equals(existing.getEndTime(), trigger.getEndTime())
+            || !existing.getJobDataMap().equals(trigger.getJobDataMap()))
+        {
+            return false;
+        }
+
+        // a relative start time changes with every load
+        if (explicitStartTime && !existing.getStartTime().equals(trigger.getStartTime()))
+        {
+            return false;
+        }
+
+        if (trigger instanceof CronTrigger)
+        {
+            CronTrigger c1 = (CronTrigger) existing;
+            CronTrigger c2 = (CronTrigger) trigger;
+            return c1.getCronExpression().equals(c2.getCronExpression())
+                && c1.getTimeZone().getID().equals(c2.getTimeZone().getID());
+        }
+        else if (trigger instanceof SimpleTrigger)
+        {
+            SimpleTrigger s1 = (SimpleTrigger) existing;
+            SimpleTrigger s2 = (SimpleTrigger) trigger;
+            return s1.getRepeatCount() == s2.getRepeatCount()
+                && s1.getRepeatInterval() == s2.getRepeatInterval();
+        }
+        else if (trigger instanceof CalendarIntervalTrigger)
+        {
+            CalendarIntervalTrigger i1 = (CalendarIntervalTrigger) existing;
+            CalendarIntervalTrigger i2 = (CalendarIntervalTrigger) trigger;
+            return i1.getRepeatInterval() == i2.getRepeatInterval()
+                && i1.getRepeatIntervalUnit() == i2.getRepeatIntervalUnit();
+        }
+
+        return false;
+    }
+}
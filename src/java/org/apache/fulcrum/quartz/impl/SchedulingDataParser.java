@@ -0,0 +1,374 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.InputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.fulcrum.quartz.SchedulerClock;
+import org.quartz.CalendarIntervalScheduleBuilder;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.spi.ClassLoadHelper;
+
+import jakarta.xml.bind.DatatypeConverter;
+
+/**
+ * Streaming parser for files using the Quartz 'job_scheduling_data_2_0'
+ * format as read by the <code>XMLSchedulingDataProcessor</code>. Every
+ * definition is passed to a {@link Handler} as soon as it is parsed, so the
+ * memory used does not depend on the size of the file.
+ */
+final class SchedulingDataParser
+{
+    /**
+     * Receives the definitions found in a file in document order.
+     */
+    interface Handler
+    {
+        void deleteJobsInGroup(String group) throws Exception;
+
+        void deleteTriggersInGroup(String group) throws Exception;
+
+        void deleteJob(JobKey jobKey) throws Exception;
+
+        void deleteTrigger(TriggerKey triggerKey) throws Exception;
+
+        void overwriteExistingData(boolean overwrite) throws Exception;
+
+        void job(JobDetail jobDetail) throws Exception;
+
+        /**
+         * @param trigger the trigger
+         * @param explicitStartTime true if the start time was given as absolute time
+         */
+        void trigger(Trigger trigger, boolean explicitStartTime) throws Exception;
+    }
+
+    private final XMLInputFactory inputFactory;
+
+    private final ClassLoadHelper classLoadHelper;
+
+    private final boolean compiledCron;
+
+    private final SchedulerClock clock;
+
+    /**
+     * @param classLoadHelper loads the job classes
+     * @param compiledCron create cron triggers using a {@link CompiledCronExpression}
+     * @param clock the clock defining the start of triggers without a start time
+     */
+    SchedulingDataParser(ClassLoadHelper classLoadHelper, boolean compiledCron, SchedulerClock clock)
+    {
+        this.classLoadHelper = classLoadHelper;
+        this.compiledCron = compiledCron;
+        this.clock = clock;
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Parse a file.
+     *
+     * @param in the content of the file
+     * @param handler receives the definitions
+     * @throws Exception parsing the file or handling a definition failed
+     */
+    void parse(InputStream in, Handler handler) throws Exception
+    {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                {
+                    continue;
+                }
+
+                switch (reader.getLocalName())
+                {
+                    case "delete-jobs-in-group":
+                        handler.deleteJobsInGroup(reader.getElementText().trim());
+                        break;
+                    case "delete-triggers-in-group":
+                        handler.deleteTriggersInGroup(reader.getElementText().trim());
+                        break;
+                    case "delete-job":
+                    {
+                        Definition definition = readDefinition(reader);
+                        handler.deleteJob(JobKey.jobKey(definition.get("name"), definition.get("group")));
+                        break;
+                    }
+                    case "delete-trigger":
+                    {
+                        Definition definition = readDefinition(reader);
+                        handler.deleteTrigger(TriggerKey.triggerKey(definition.get("name"), definition.get("group")));
+                        break;
+                    }
+                    case "overwrite-existing-data":
+                        handler.overwriteExistingData(Boolean.parseBoolean(reader.getElementText().trim()));
+                        break;
+                    case "job":
+                        handler.job(createJob(readDefinition(reader)));
+                        break;
+                    case "simple":
+                    case "cron":
+                    case "calendar-interval":
+                    {
+                        String type = reader.getLocalName();
+                        Definition definition = readDefinition(reader);
+                        handler.trigger(createTrigger(type, definition), definition.get("start-time") != null);
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private JobDetail createJob(Definition definition) throws ClassNotFoundException
+    {
+        Class<? extends Job> jobClass = classLoadHelper.loadClass(definition.get("job-class"), Job.class);
+
+        return JobBuilder.newJob(jobClass)
+            .withIdentity(definition.get("name"), definition.get("group"))
+            .withDescription(definition.get("description"))
+            .storeDurably("true".equals(definition.get("durability")))
+            .requestRecovery("true".equals(definition.get("recover")))
+            .usingJobData(definition.data)
+            .build();
+    }
+
+    private Trigger createTrigger(String type, Definition definition) throws XMLStreamException
+    {
+        String name = definition.get("name");
+        String misfireInstruction = definition.get("misfire-instruction");
+        ScheduleBuilder<? extends Trigger> schedule;
+
+        switch (type)
+        {
+            case "simple":
+            {
+                String repeatCount = definition.get("repeat-count");
+                String repeatInterval = definition.get("repeat-interval");
+                SimpleScheduleBuilder simple = SimpleScheduleBuilder.simpleSchedule()
+                    .withIntervalInMilliseconds(repeatInterval == null ? 0 : Long.parseLong(repeatInterval))
+                    .withRepeatCount(repeatCount == null ? 0 : Integer.parseInt(repeatCount));
+
+                if ("MISFIRE_INSTRUCTION_FIRE_NOW".equals(misfireInstruction))
+                {
+                    simple.withMisfireHandlingInstructionFireNow();
+                }
+                else if ("MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_EXISTING_COUNT".equals(misfireInstruction))
+                {
+                    simple.withMisfireHandlingInstructionNextWithExistingCount();
+                }
+                else if ("MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT".equals(misfireInstruction))
+                {
+                    simple.withMisfireHandlingInstructionNextWithRemainingCount();
+                }
+                else if ("MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_EXISTING_REPEAT_COUNT".equals(misfireInstruction))
+                {
+                    simple.withMisfireHandlingInstructionNowWithExistingCount();
+                }
+                else if ("MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_REMAINING_REPEAT_COUNT".equals(misfireInstruction))
+                {
+                    simple.withMisfireHandlingInstructionNowWithRemainingCount();
+                }
+                else
+                {
+                    checkSmartPolicy(misfireInstruction, name);
+                }
+                schedule = simple;
+                break;
+            }
+            case "cron":
+            {
+                String timeZone = definition.get("time-zone");
+                CronScheduleBuilder cron = CronScheduleBuilder.cronSchedule(definition.get("cron-expression"))
+                    .inTimeZone(timeZone == null ? null : TimeZone.getTimeZone(timeZone));
+
+                if ("MISFIRE_INSTRUCTION_DO_NOTHING".equals(misfireInstruction))
+                {
+                    cron.withMisfireHandlingInstructionDoNothing();
+                }
+                else if ("MISFIRE_INSTRUCTION_FIRE_ONCE_NOW".equals(misfireInstruction))
+                {
+                    cron.withMisfireHandlingInstructionFireAndProceed();
+                }
+                else
+                {
+                    checkSmartPolicy(misfireInstruction, name);
+                }
+                schedule = cron;
+                break;
+            }
+            default:
+            {
+                CalendarIntervalScheduleBuilder interval = CalendarIntervalScheduleBuilder.calendarIntervalSchedule()
+                    .withInterval(Integer.parseInt(definition.get("repeat-interval")),
+                        IntervalUnit.valueOf(definition.get("repeat-interval-unit")));
+
+                if ("MISFIRE_INSTRUCTION_DO_NOTHING".equals(misfireInstruction))
+                {
+                    interval.withMisfireHandlingInstructionDoNothing();
+                }
+                else if ("MISFIRE_INSTRUCTION_FIRE_ONCE_NOW".equals(misfireInstruction))
+                {
+                    interval.withMisfireHandlingInstructionFireAndProceed();
+                }
+                else
+                {
+                    checkSmartPolicy(misfireInstruction, name);
+                }
+                schedule = interval;
+                break;
+            }
+        }
+
+        String startTime = definition.get("start-time");
+        String startTimeSecondsInFuture = definition.get("start-time-seconds-in-future");
+        String endTime = definition.get("end-time");
+        String priority = definition.get("priority");
+
+        Date start;
+        if (startTimeSecondsInFuture != null)
+        {
+            start = new Date(clock.currentTimeMillis() + Long.parseLong(startTimeSecondsInFuture) * 1000L);
+        }
+        else
+        {
+            start = startTime == null ? new Date(clock.currentTimeMillis()) : DatatypeConverter.parseDateTime(startTime).getTime();
+        }
+
+        if (compiledCron && schedule instanceof CronScheduleBuilder)
+        {
+            // the builder does not expose its settings, take them from a trigger built with it
+            schedule = CompiledCronScheduleBuilder.from((CronTrigger) TriggerBuilder.newTrigger().withSchedule(schedule).build());
+        }
+
+        return TriggerBuilder.newTrigger()
+            .withIdentity(name, definition.get("group"))
+            .withDescription(definition.get("description"))
+            .forJob(definition.get("job-name"), definition.get("job-group"))
+            .startAt(start)
+            .endAt(endTime == null ? null : DatatypeConverter.parseDateTime(endTime).getTime())
+            .withPriority(priority == null ? Trigger.DEFAULT_PRIORITY : Integer.parseInt(priority))
+            .modifiedByCalendar(definition.get("calendar-name"))
+            .usingJobData(definition.data)
+            .withSchedule(schedule)
+            .build();
+    }
+
+    private static void checkSmartPolicy(String misfireInstruction, String triggerName) throws XMLStreamException
+    {
+        if (misfireInstruction != null && !"MISFIRE_INSTRUCTION_SMART_POLICY".equals(misfireInstruction))
+        {
+            throw new XMLStreamException("Unexpected misfire instruction '" + misfireInstruction
+                + "' for trigger: " + triggerName);
+        }
+    }
+
+    /**
+     * Read the child elements of the current element, which is consumed.
+     */
+    private static Definition readDefinition(XMLStreamReader reader) throws XMLStreamException
+    {
+        Definition definition = new Definition();
+        int depth = 1;
+        String key = null;
+
+        while (depth > 0)
+        {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT)
+            {
+                continue;
+            }
+
+            String name = reader.getLocalName();
+            if ("job-data-map".equals(name) || "entry".equals(name))
+            {
+                depth++;
+            }
+            else if ("key".equals(name))
+            {
+                key = reader.getElementText().trim();
+            }
+            else if ("value".equals(name))
+            {
+                definition.data.put(key, reader.getElementText().trim());
+            }
+            else
+            {
+                String text = reader.getElementText().trim();
+                definition.values.put(name, text.isEmpty() ? null : text);
+            }
+        }
+
+        return definition;
+    }
+
+    /**
+     * The child elements of a job or trigger definition.
+     */
+    private static final class Definition
+    {
+        final Map<String, String> values = new HashMap<>();
+
+        final JobDataMap data = new JobDataMap();
+
+        String get(String name)
+        {
+            return values.get(name);
+        }
+    }
+}
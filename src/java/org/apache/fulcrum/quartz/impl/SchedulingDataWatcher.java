@@ -0,0 +1,151 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avalon.framework.logger.Logger;
+
+/**
+ * Reloads the scheduling data whenever its file changes, using a NIO
+ * <code>WatchService</code> on the directory of the file instead of polling.
+ * Bursts of events caused by writing the file are coalesced into a single
+ * reload after the file has been quiet for a short delay.
+ */
+final class SchedulingDataWatcher implements Runnable
+{
+    private final Logger logger;
+
+    private final SchedulingDataLoader loader;
+
+    private final long quietPeriod;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    /**
+     * @param logger the logger
+     * @param loader the loader to invoke on changes
+     * @param quietPeriod the time in ms without further changes before reloading
+     * @throws IOException watching the directory failed
+     */
+    SchedulingDataWatcher(Logger logger, SchedulingDataLoader loader, long quietPeriod) throws IOException
+    {
+        this.logger = logger;
+        this.loader = loader;
+        this.quietPeriod = quietPeriod;
+
+        Path directory = loader.getFile().toAbsolutePath().getParent();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this, "Quartz-SchedulingData-Watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Start watching.
+     */
+    void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Stop watching and wait for a running reload to finish.
+     */
+    void stop()
+    {
+        try
+        {
+            watchService.close();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        catch (IOException e)
+        {
+            logger.warn("Closing the watch service failed", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        Path fileName = loader.getFile().getFileName();
+
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                // coalesce the events of writing the file
+                while (key != null)
+                {
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                    }
+                    key.reset();
+                    key = changed ? watchService.poll(quietPeriod, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (changed)
+                {
+                    reload();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            // stopped
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload()
+    {
+        try
+        {
+            SchedulingDataLoader.Result result = loader.load();
+            logger.info("Reloaded scheduling data from " + loader.getFile() + ": " + result);
+        }
+        catch (Exception e)
+        {
+            logger.error("Reloading scheduling data from " + loader.getFile() + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+
+/**
+ * Lends the thread pool of the default scheduler to a named scheduler.
+ * Jobs are run by the shared pool, but initializing and shutting down the
+ * named scheduler leaves the pool alone - it is shut down together with
+ * the default scheduler owning it. Public since Quartz accesses the pool
+ * reflectively.
+ */
+public final class SharedThreadPool implements ThreadPool
+{
+    /** the pool owned by the default scheduler */
+    private final ThreadPool threadPool;
+
+    /**
+     * Constructor.
+     *
+     * @param threadPool the pool owned by the default scheduler
+     */
+    SharedThreadPool(ThreadPool threadPool)
+    {
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#runInThread(java.lang.Runnable)
+     */
+    @Override
+    public boolean runInThread(Runnable runnable)
+    {
+        return threadPool.runInThread(runnable);
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#blockForAvailableThreads()
+     */
+    @Override
+    public int blockForAvailableThreads()
+    {
+        return threadPool.blockForAvailableThreads();
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#initialize()
+     */
+    @Override
+    public void initialize() throws SchedulerConfigException
+    {
+        // initialized by the default scheduler
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#shutdown(boolean)
+     */
+    @Override
+    public void shutdown(boolean waitForJobsToComplete)
+    {
+        // shut down by the default scheduler
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#getPoolSize()
+     */
+    @Override
+    public int getPoolSize()
+    {
+        return threadPool.getPoolSize();
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceId(java.lang.String)
+     */
+    @Override
+    public void setInstanceId(String schedInstId)
+    {
+        // keeps the identity of the default scheduler
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceName(java.lang.String)
+     */
+    @Override
+    public void setInstanceName(String schedName)
+    {
+        // keeps the identity of the default scheduler
+    }
+}
@@ -0,0 +1,56 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.fulcrum.quartz.SchedulerClock;
+
+/**
+ * A clock which only moves forward when being advanced explicitly.
+ */
+final class SimulatedClock implements SchedulerClock
+{
+    private final AtomicLong time;
+
+    /**
+     * @param startTime the initial time in ms since the epoch
+     */
+    SimulatedClock(long startTime)
+    {
+        this.time = new AtomicLong(startTime);
+    }
+
+    @Override
+    public long currentTimeMillis()
+    {
+        return time.get();
+    }
+
+    /**
+     * Move the clock forward, it never moves backwards.
+     *
+     * @param newTime the new time in ms since the epoch
+     */
+    void advanceTo(long newTime)
+    {
+        time.accumulateAndGet(newTime, Math::max);
+    }
+}
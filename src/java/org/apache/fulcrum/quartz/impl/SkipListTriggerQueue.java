@@ -0,0 +1,81 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Trigger queue based on a concurrent skip list, O(log n) for every
+ * operation and without a global lock.
+ */
+final class SkipListTriggerQueue implements TriggerQueue
+{
+    private final ConcurrentSkipListSet<TriggerEntry> entries = new ConcurrentSkipListSet<>(TriggerEntry.FIRE_TIME_ORDER);
+
+    @Override
+    public boolean add(TriggerEntry entry)
+    {
+        return entries.add(entry);
+    }
+
+    @Override
+    public boolean remove(TriggerEntry entry)
+    {
+        return entries.remove(entry);
+    }
+
+    @Override
+    public TriggerEntry pollFirst(long noLaterThan)
+    {
+        while (true)
+        {
+            Iterator<TriggerEntry> iterator = entries.iterator();
+            if (!iterator.hasNext())
+            {
+                return null;
+            }
+
+            TriggerEntry first = iterator.next();
+            if (first.indexedFireTime > noLaterThan)
+            {
+                return null;
+            }
+
+            // somebody else may have removed it in the meantime
+            if (entries.remove(first))
+            {
+                return first;
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        entries.clear();
+    }
+}
@@ -0,0 +1,365 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Trigger queue based on a hierarchical timing wheel.
+ *
+ * <p>The finest wheel has {@value #WHEEL_SIZE} slots of one tick each, every
+ * further wheel has the same number of slots covering a whole revolution of
+ * the wheel below. Triggers are put into the finest wheel able to hold them,
+ * triggers too far in the future for the coarsest wheel are kept in a sorted
+ * overflow set. While time advances the slots of the coarser wheels are
+ * cascaded into the finer ones, so every trigger is moved at most once per
+ * wheel and adding, removing and acquiring a trigger is amortized O(1).</p>
+ *
+ * <p>Only the slot of the current tick is kept sorted by fire time and
+ * priority, the order in which due triggers are returned is therefore the
+ * same as for the {@link SkipListTriggerQueue}. The wheels are guarded by a
+ * single lock held for a constant amount of work per call.</p>
+ */
+final class TimingWheelTriggerQueue implements TriggerQueue
+{
+    /** bits of a tick used per wheel */
+    private static final int WHEEL_BITS = 8;
+
+    /** the number of slots of a wheel */
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** the number of wheels, covering 2^32 ticks */
+    private static final int WHEELS = 4;
+
+    /** the duration of a tick in ms */
+    private final long tickMillis;
+
+    /** the slots of the finest wheel, kept in fire time order */
+    private final Slot[] fineSlots = new Slot[WHEEL_SIZE];
+
+    /** the slots of the wheels, index 0 being the finest */
+    private final Slot[][] wheels = new Slot[WHEELS][];
+
+    /** the number of entries per wheel */
+    private final int[] wheelCounts = new int[WHEELS];
+
+    /** the triggers beyond the coarsest wheel */
+    private final Slot overflow = new Slot(WHEELS, new TreeSet<>(TriggerEntry.FIRE_TIME_ORDER));
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** the earliest tick which might still hold entries */
+    private long cursor;
+
+    private int size;
+
+    /**
+     * @param tickMillis the duration of a tick of the finest wheel in ms
+     */
+    TimingWheelTriggerQueue(long tickMillis)
+    {
+        if (tickMillis < 1)
+        {
+            throw new IllegalArgumentException("Tick duration must be larger than 0");
+        }
+
+        this.tickMillis = tickMillis;
+        this.cursor = System.currentTimeMillis() / tickMillis;
+
+        for (int i = 0; i < WHEEL_SIZE; i++)
+        {
+            fineSlots[i] = new Slot(0, new TreeSet<>(TriggerEntry.FIRE_TIME_ORDER));
+        }
+        wheels[0] = fineSlots;
+
+        for (int level = 1; level < WHEELS; level++)
+        {
+            wheels[level] = new Slot[WHEEL_SIZE];
+            for (int i = 0; i < WHEEL_SIZE; i++)
+            {
+                wheels[level][i] = new Slot(level, new HashSet<>());
+            }
+        }
+    }
+
+    @Override
+    public boolean add(TriggerEntry entry)
+    {
+        lock.lock();
+        try
+        {
+            if (entry.queueSlot != null)
+            {
+                return false;
+            }
+
+            place(entry);
+            size++;
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(TriggerEntry entry)
+    {
+        lock.lock();
+        try
+        {
+            if (!(entry.queueSlot instanceof Slot))
+            {
+                return false;
+            }
+
+            Slot slot = (Slot) entry.queueSlot;
+            if (slot.remove(entry))
+            {
+                size--;
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TriggerEntry pollFirst(long noLaterThan)
+    {
+        lock.lock();
+        try
+        {
+            while (size > 0)
+            {
+                Slot current = fineSlots[(int) (cursor & WHEEL_MASK)];
+                if (!current.entries.isEmpty())
+                {
+                    TriggerEntry first = ((TreeSet<TriggerEntry>) current.entries).first();
+                    if (first.indexedFireTime > noLaterThan)
+                    {
+                        return null;
+                    }
+
+                    current.remove(first);
+                    size--;
+                    return first;
+                }
+
+                if (cursor * tickMillis > noLaterThan)
+                {
+                    return null;
+                }
+
+                advance();
+            }
+
+            return null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            for (Slot[] wheel : wheels)
+            {
+                for (Slot slot : wheel)
+                {
+                    slot.clear();
+                }
+            }
+            overflow.clear();
+            size = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move the cursor past the current, empty slot of the finest wheel,
+     * skipping whole revolutions of wheels without entries, and cascade the
+     * slots of the coarser wheels reached.
+     */
+    private void advance()
+    {
+        int level = 0;
+        while (level < WHEELS && wheelCounts[level] == 0)
+        {
+            level++;
+        }
+
+        // all entries are due at or after the next revolution of the empty wheels
+        int shift = level * WHEEL_BITS;
+        cursor = level == 0 ? cursor + 1 : ((cursor >>> shift) + 1) << shift;
+
+        if ((cursor & ((1L << (WHEELS * WHEEL_BITS)) - 1)) == 0)
+        {
+            cascade(overflow, true);
+        }
+
+        for (int l = WHEELS - 1; l > 0; l--)
+        {
+            if ((cursor & ((1L << (l * WHEEL_BITS)) - 1)) == 0)
+            {
+                cascade(wheels[l][(int) ((cursor >>> (l * WHEEL_BITS)) & WHEEL_MASK)], false);
+            }
+        }
+    }
+
+    /**
+     * Re-place the entries of a slot relative to the current cursor.
+     *
+     * @param slot the slot
+     * @param sorted true if the slot is sorted, only re-placing the entries
+     *        fitting into the wheels
+     */
+    private void cascade(Slot slot, boolean sorted)
+    {
+        List<TriggerEntry> entries = new ArrayList<>();
+        long limit = ((cursor >>> (WHEELS * WHEEL_BITS)) + 1) << (WHEELS * WHEEL_BITS);
+        for (TriggerEntry entry : slot.entries)
+        {
+            if (sorted && tickOf(entry) >= limit)
+            {
+                break;
+            }
+            entries.add(entry);
+        }
+
+        for (TriggerEntry entry : entries)
+        {
+            slot.remove(entry);
+            place(entry);
+        }
+    }
+
+    /**
+     * Put an entry into the finest wheel able to hold it.
+     */
+    private void place(TriggerEntry entry)
+    {
+        long tick = Math.max(tickOf(entry), cursor);
+
+        for (int level = 0; level < WHEELS; level++)
+        {
+            int shift = level * WHEEL_BITS;
+            if ((tick >>> shift) - (cursor >>> shift) < WHEEL_SIZE)
+            {
+                wheels[level][(int) ((tick >>> shift) & WHEEL_MASK)].add(entry);
+                return;
+            }
+        }
+
+        overflow.add(entry);
+    }
+
+    private long tickOf(TriggerEntry entry)
+    {
+        return entry.indexedFireTime / tickMillis;
+    }
+
+    /**
+     * A slot of a wheel keeping track of the number of entries per wheel.
+     */
+    private final class Slot
+    {
+        final int level;
+
+        final Set<TriggerEntry> entries;
+
+        Slot(int level, Set<TriggerEntry> entries)
+        {
+            this.level = level;
+            this.entries = entries;
+        }
+
+        void add(TriggerEntry entry)
+        {
+            entries.add(entry);
+            entry.queueSlot = this;
+            if (level < WHEELS)
+            {
+                wheelCounts[level]++;
+            }
+        }
+
+        boolean remove(TriggerEntry entry)
+        {
+            if (!entries.remove(entry))
+            {
+                return false;
+            }
+
+            entry.queueSlot = null;
+            if (level < WHEELS)
+            {
+                wheelCounts[level]--;
+            }
+            return true;
+        }
+
+        void clear()
+        {
+            for (TriggerEntry entry : entries)
+            {
+                entry.queueSlot = null;
+            }
+            entries.clear();
+            if (level < WHEELS)
+            {
+                wheelCounts[level] = 0;
+            }
+        }
+    }
+}
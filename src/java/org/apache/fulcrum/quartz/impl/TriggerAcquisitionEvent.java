@@ -0,0 +1,62 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * JFR event spanning the acquisition of the next triggers to fire by the
+ * {@link ConcurrentRAMJobStore}.
+ */
+@Name("org.apache.fulcrum.quartz.TriggerAcquisition")
+@Label("Trigger Acquisition")
+@Description("The scheduler acquired the next triggers to fire from the job store")
+@Category({"Fulcrum", "Quartz"})
+@StackTrace(false)
+final class TriggerAcquisitionEvent extends Event
+{
+    @Label("No Later Than")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long noLaterThan;
+
+    @Label("Max Count")
+    int maxCount;
+
+    @Label("Time Window")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeWindow;
+
+    @Label("Acquired")
+    int acquired;
+
+    @Label("First Trigger")
+    String firstTriggerKey;
+
+    @Label("First Fire Time")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long firstFireTime;
+}
@@ -0,0 +1,127 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Comparator;
+import java.util.Date;
+
+import org.quartz.JobKey;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * A trigger kept by the {@link ConcurrentRAMJobStore} together with its state
+ * and the fire time it is indexed by. The state and the trigger are guarded by
+ * the lock stripe of the job the trigger belongs to.
+ */
+final class TriggerEntry
+{
+    static final int STATE_WAITING = 0;
+    static final int STATE_ACQUIRED = 1;
+    static final int STATE_COMPLETE = 3;
+    static final int STATE_PAUSED = 4;
+    static final int STATE_BLOCKED = 5;
+    static final int STATE_PAUSED_BLOCKED = 6;
+    static final int STATE_ERROR = 7;
+
+    /** Orders entries by indexed fire time, priority and key */
+    static final Comparator<TriggerEntry> FIRE_TIME_ORDER = (e1, e2) -> {
+        int result = Long.compare(e1.indexedFireTime, e2.indexedFireTime);
+        if (result != 0)
+        {
+            return result;
+        }
+        result = Integer.compare(e2.indexedPriority, e1.indexedPriority);
+        if (result != 0)
+        {
+            return result;
+        }
+        return e1.key.compareTo(e2.key);
+    };
+
+    final TriggerKey key;
+
+    final JobKey jobKey;
+
+    final OperableTrigger trigger;
+
+    int state = STATE_WAITING;
+
+    /**
+     * the fire time the entry is sorted by, only changed while the entry is
+     * not part of a trigger queue
+     */
+    long indexedFireTime;
+
+    /**
+     * the priority the entry is sorted by, only changed while the entry is
+     * not part of a trigger queue
+     */
+    int indexedPriority;
+
+    /** the slot of the timing wheel holding the entry, guarded by the wheel */
+    Object queueSlot;
+
+    TriggerEntry(OperableTrigger trigger)
+    {
+        this.key = trigger.getKey();
+        this.jobKey = trigger.getJobKey();
+        this.trigger = trigger;
+        updateIndex();
+    }
+
+    /**
+     * Take over the next fire time and priority of the trigger as sort key.
+     */
+    void updateIndex()
+    {
+        Date nextFireTime = trigger.getNextFireTime();
+        this.indexedFireTime = nextFireTime != null ? nextFireTime.getTime() : Long.MAX_VALUE;
+        this.indexedPriority = trigger.getPriority();
+    }
+
+    /**
+     * @return the state as reported to the scheduler
+     */
+    TriggerState triggerState()
+    {
+        switch (state)
+        {
+            case STATE_COMPLETE:
+                return TriggerState.COMPLETE;
+            case STATE_PAUSED:
+            case STATE_PAUSED_BLOCKED:
+                return TriggerState.PAUSED;
+            case STATE_BLOCKED:
+                return TriggerState.BLOCKED;
+            case STATE_ERROR:
+                return TriggerState.ERROR;
+            default:
+                return TriggerState.NORMAL;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return key.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.Trigger;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * JFR event emitted when the job store detected a misfired trigger, before
+ * its misfire instruction is applied.
+ */
+@Name("org.apache.fulcrum.quartz.TriggerMisfired")
+@Label("Trigger Misfired")
+@Description("A trigger missed its fire time by more than the misfire threshold")
+@Category({"Fulcrum", "Quartz"})
+@StackTrace(false)
+final class TriggerMisfiredEvent extends Event
+{
+    @Label("Job")
+    String jobKey;
+
+    @Label("Trigger")
+    String triggerKey;
+
+    @Label("Scheduled Fire Time")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long scheduledFireTime;
+
+    @Label("Misfire Instruction")
+    int misfireInstruction;
+
+    /**
+     * Emit the event if it is enabled.
+     *
+     * @param trigger the misfired trigger
+     */
+    static void emit(Trigger trigger)
+    {
+        TriggerMisfiredEvent event = new TriggerMisfiredEvent();
+        if (event.isEnabled())
+        {
+            event.jobKey = trigger.getJobKey().toString();
+            event.triggerKey = trigger.getKey().toString();
+            event.scheduledFireTime = JobEvent.toMillis(trigger.getNextFireTime());
+            event.misfireInstruction = trigger.getMisfireInstruction();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The time-ordered index of waiting triggers used by the
+ * {@link ConcurrentRAMJobStore} to acquire the next triggers to fire.
+ * Implementations must be thread-safe; the sort key of an entry is only
+ * changed while the entry is not part of the queue.
+ */
+interface TriggerQueue
+{
+    /**
+     * Add an entry using its indexed fire time.
+     *
+     * @param entry the entry
+     * @return true if the entry was not yet part of the queue
+     */
+    boolean add(TriggerEntry entry);
+
+    /**
+     * Remove an entry.
+     *
+     * @param entry the entry
+     * @return true if the entry was part of the queue
+     */
+    boolean remove(TriggerEntry entry);
+
+    /**
+     * Remove and return the entry with the earliest fire time if it is due
+     * no later than the given time.
+     *
+     * @param noLaterThan the latest fire time in ms
+     * @return the entry or null if no entry is due
+     */
+    TriggerEntry pollFirst(long noLaterThan);
+
+    /**
+     * @return the number of entries
+     */
+    int size();
+
+    /**
+     * Remove all entries.
+     */
+    void clear();
+}
@@ -0,0 +1,475 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.Method;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.quartz.SchedulerConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Quartz <code>ThreadPool</code> running every fired job on its own
+ * virtual thread. The number of jobs executing concurrently is capped by
+ * <code>threadCount</code>, so the scheduler still stops acquiring triggers
+ * once the limit is reached.
+ *
+ * <p>Virtual threads are looked up reflectively since the component is
+ * compiled for Java 17. On a runtime without virtual threads the pool falls
+ * back to a fixed executor of <code>threadCount</code> platform threads,
+ * which are created on demand and discarded after being idle for a
+ * minute.</p>
+ *
+ * <p>Selected with <code>org.quartz.threadPool.class</code>; the properties
+ * understood by <code>SimpleThreadPool</code> for thread count, priority,
+ * name prefix and daemon threads are accepted as well, the latter two only
+ * being used by the platform thread fallback.</p>
+ */
+public class VirtualThreadPool implements ResizableThreadPool
+{
+    /** Default thread name prefix */
+    private static final String DEFAULT_THREAD_NAME_PREFIX = "QuartzVirtualWorker";
+
+    /** Keep-alive of idle fallback platform threads in seconds */
+    private static final long FALLBACK_KEEP_ALIVE = 60L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /** Guards the running job count */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled whenever a job completes or the pool is shut down */
+    private final Condition available = lock.newCondition();
+
+    /** Maximum number of concurrently running jobs */
+    private volatile int threadCount = 10;
+
+    /** Priority of fallback platform threads */
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    /** Daemon flag of fallback platform threads */
+    private boolean makeThreadsDaemons;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    /** Number of jobs currently running */
+    private int active;
+
+    private boolean shutdown;
+
+    /** Creates the threads running the jobs */
+    private ThreadFactory threadFactory;
+
+    /** Fallback executor reusing platform threads, null for virtual threads */
+    private ThreadPoolExecutor platformExecutor;
+
+    /**
+     * @see org.apache.fulcrum.quartz.impl.ResizableThreadPool#getThreadCount()
+     */
+    @Override
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.impl.ResizableThreadPool#setThreadCount(int)
+     */
+    @Override
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount <= 0)
+        {
+            throw new IllegalArgumentException("Thread count must be > 0");
+        }
+
+        lock.lock();
+        try
+        {
+            if (platformExecutor != null)
+            {
+                // the maximum pool size must never drop below the core pool size
+                if (threadCount > platformExecutor.getMaximumPoolSize())
+                {
+                    platformExecutor.setMaximumPoolSize(threadCount);
+                    platformExecutor.setCorePoolSize(threadCount);
+                }
+                else
+                {
+                    platformExecutor.setCorePoolSize(threadCount);
+                    platformExecutor.setMaximumPoolSize(threadCount);
+                }
+            }
+
+            this.threadCount = threadCount;
+            available.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the priority of fallback platform threads
+     */
+    public int getThreadPriority()
+    {
+        return threadPriority;
+    }
+
+    /**
+     * @param threadPriority the priority of fallback platform threads, ignored
+     *        for virtual threads
+     */
+    public void setThreadPriority(int threadPriority)
+    {
+        this.threadPriority = threadPriority;
+    }
+
+    /**
+     * @return true if fallback platform threads are daemon threads
+     */
+    public boolean isMakeThreadsDaemons()
+    {
+        return makeThreadsDaemons;
+    }
+
+    /**
+     * @param makeThreadsDaemons make fallback platform threads daemon threads,
+     *        virtual threads are always daemon threads
+     */
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons)
+    {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    /**
+     * @return the thread name prefix
+     */
+    public String getThreadNamePrefix()
+    {
+        if (threadNamePrefix == null)
+        {
+            return schedulerInstanceName != null
+                ? schedulerInstanceName + "_" + DEFAULT_THREAD_NAME_PREFIX
+                : DEFAULT_THREAD_NAME_PREFIX;
+        }
+
+        return threadNamePrefix;
+    }
+
+    /**
+     * @param threadNamePrefix the thread name prefix
+     */
+    public void setThreadNamePrefix(String threadNamePrefix)
+    {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * @return true if the jobs are executed on virtual threads
+     */
+    public boolean isVirtual()
+    {
+        return platformExecutor == null;
+    }
+
+    /**
+     * @see org.apache.fulcrum.quartz.impl.ResizableThreadPool#getActiveCount()
+     */
+    @Override
+    public int getActiveCount()
+    {
+        lock.lock();
+        try
+        {
+            return active;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#getPoolSize()
+     */
+    @Override
+    public int getPoolSize()
+    {
+        return threadCount;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceId(java.lang.String)
+     */
+    @Override
+    public void setInstanceId(String schedInstId)
+    {
+        // not used
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#setInstanceName(java.lang.String)
+     */
+    @Override
+    public void setInstanceName(String schedName)
+    {
+        this.schedulerInstanceName = schedName;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#initialize()
+     */
+    @Override
+    public void initialize() throws SchedulerConfigException
+    {
+        if (threadCount <= 0)
+        {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY)
+        {
+            throw new SchedulerConfigException("Thread priority must be > 0 and <= 10");
+        }
+
+        this.threadFactory = createVirtualThreadFactory(getThreadNamePrefix());
+
+        if (threadFactory == null)
+        {
+            log.info("Virtual threads are not available, falling back to platform threads");
+            this.threadFactory = new PlatformThreadFactory(getThreadNamePrefix(), threadPriority, makeThreadsDaemons);
+            // the job slots bound the queue, it only holds jobs whose worker is about to become idle
+            this.platformExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+                FALLBACK_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+            platformExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        log.info("Job execution threads will use at most {} concurrent {} threads",
+            threadCount, isVirtual() ? "virtual" : "platform");
+    }
+
+    /**
+     * Blocks until a job slot is free and executes the runnable on its own thread.
+     * Once the pool is shut down the runnable is still executed on a new thread
+     * to let the scheduler complete its shutdown.
+     *
+     * @see org.quartz.spi.ThreadPool#runInThread(java.lang.Runnable)
+     */
+    @Override
+    public boolean runInThread(Runnable runnable)
+    {
+        if (runnable == null)
+        {
+            return false;
+        }
+
+        lock.lock();
+        try
+        {
+            while (active >= threadCount && !shutdown)
+            {
+                available.awaitUninterruptibly();
+            }
+
+            if (shutdown)
+            {
+                threadFactory.newThread(runnable).start();
+                return true;
+            }
+
+            active++;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        Runnable task = () -> {
+            try
+            {
+                runnable.run();
+            }
+            finally
+            {
+                release();
+            }
+        };
+
+        try
+        {
+            if (platformExecutor != null)
+            {
+                platformExecutor.execute(task);
+            }
+            else
+            {
+                threadFactory.newThread(task).start();
+            }
+        }
+        catch (RejectedExecutionException | OutOfMemoryError e)
+        {
+            log.error("Unable to start a thread for the job", e);
+            release();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#blockForAvailableThreads()
+     */
+    @Override
+    public int blockForAvailableThreads()
+    {
+        lock.lock();
+        try
+        {
+            while (active >= threadCount && !shutdown)
+            {
+                available.awaitUninterruptibly();
+            }
+
+            return threadCount - active;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.quartz.spi.ThreadPool#shutdown(boolean)
+     */
+    @Override
+    public void shutdown(boolean waitForJobsToComplete)
+    {
+        lock.lock();
+        try
+        {
+            if (shutdown)
+            {
+                return;
+            }
+
+            shutdown = true;
+            available.signalAll();
+
+            if (waitForJobsToComplete)
+            {
+                while (active > 0)
+                {
+                    log.debug("Waiting for {} jobs to complete", active);
+                    available.awaitUninterruptibly();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (platformExecutor != null)
+        {
+            platformExecutor.shutdown();
+        }
+
+        log.debug("Shutdown of thread pool complete");
+    }
+
+    /**
+     * Frees the slot of a completed job.
+     */
+    private void release()
+    {
+        lock.lock();
+        try
+        {
+            active--;
+            available.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Builds a virtual thread factory using <code>Thread.ofVirtual()</code>.
+     *
+     * @param prefix the thread name prefix
+     * @return the thread factory or null if virtual threads are not supported
+     */
+    static ThreadFactory createVirtualThreadFactory(String prefix)
+    {
+        try
+        {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Creates named platform threads for runtimes without virtual threads.
+     */
+    private static final class PlatformThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+        private final int priority;
+        private final boolean daemon;
+
+        PlatformThreadFactory(String prefix, int priority, boolean daemon)
+        {
+            this.prefix = prefix;
+            this.priority = priority;
+            this.daemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setPriority(priority);
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.test.BatchRecordingJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Coalesces the fires of batch jobs.
+ */
+public class BatchingTest extends BaseQuartzTestCase
+{
+    public BatchingTest()
+    {
+        setConfigurationFileName("src/test/TestBatchingConfig.xml");
+    }
+
+    /**
+     * Fires of the same group at the same time are executed in a few
+     * batches, the outcome of every fire is recorded by the job metrics.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testCoalescedFires() throws Exception
+    {
+        BatchRecordingJob.reset();
+        Scheduler scheduler = quartz.getScheduler();
+        Date fireTime = new Date(System.currentTimeMillis() + 500);
+
+        for (int i = 0; i < 50; i++)
+        {
+            JobDetail job = JobBuilder.newJob(BatchRecordingJob.class).withIdentity("job" + i, "BATCH")
+                .usingJobData("fail", i % 10 == 0).build();
+            scheduler.scheduleJob(job, TriggerBuilder.newTrigger().withIdentity("trigger" + i, "BATCH").startAt(fireTime).build());
+        }
+
+        for (int i = 0; i < 100 && count("BATCH") < 50; i++)
+        {
+            Thread.sleep(50);
+        }
+
+        JobStatistics statistics = quartz.getJobMetrics().getGroupStatistics("BATCH");
+        assertEquals(50, statistics.getCount());
+        assertEquals(5, statistics.getFailures());
+        assertEquals(50, BatchRecordingJob.batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(BatchRecordingJob.batchSizes.size() < 10, "Batch sizes " + BatchRecordingJob.batchSizes);
+        assertTrue(BatchRecordingJob.batchSizes.stream().allMatch(size -> size <= 20));
+    }
+
+    /**
+     * Submitted batch jobs are executed as a batch of one.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSubmittedBatchJob() throws Exception
+    {
+        BatchRecordingJob.reset();
+        JobDetail job = JobBuilder.newJob(BatchRecordingJob.class).withIdentity(JobKey.jobKey("submitted", "BATCH")).build();
+
+        assertEquals("submitted", quartz.submitJob(job).get(10, TimeUnit.SECONDS));
+        assertEquals(1, BatchRecordingJob.batchSizes.get(0));
+    }
+
+    private long count(String group)
+    {
+        JobStatistics statistics = quartz.getJobMetrics().getGroupStatistics(group);
+        return statistics != null ? statistics.getCount() : 0;
+    }
+}
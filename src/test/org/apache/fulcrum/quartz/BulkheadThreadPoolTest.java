@@ -0,0 +1,155 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.impl.BulkheadThreadPool;
+import org.apache.fulcrum.quartz.test.SleepingJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Runs the scheduler on top of the {@link BulkheadThreadPool}.
+ */
+public class BulkheadThreadPoolTest extends BaseQuartzTestCase
+{
+    public BulkheadThreadPoolTest()
+    {
+        setConfigurationFileName("src/test/TestBulkheadThreadPoolConfig.xml");
+    }
+
+    /**
+     * Make sure the configured thread pool and bulkheads are used.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testThreadPool() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        assertEquals(BulkheadThreadPool.class, scheduler.getMetaData().getThreadPoolClass());
+        assertEquals(4, scheduler.getMetaData().getThreadPoolSize());
+
+        Map<String, BulkheadStatistics> statistics = quartz.getBulkheadStatistics();
+        assertEquals(Arrays.asList(BulkheadThreadPool.DEFAULT_BULKHEAD, "reports"), Arrays.asList(statistics.keySet().toArray()));
+        assertEquals(3, statistics.get(BulkheadThreadPool.DEFAULT_BULKHEAD).getMaxConcurrency());
+        assertEquals(Collections.singleton("REPORTS"), statistics.get("reports").getGroups());
+        assertEquals(5, statistics.get("reports").getQueueSize());
+    }
+
+    /**
+     * A burst of jobs in one group is limited to its bulkhead and does not
+     * delay the jobs of other groups.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testIsolation() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        for (int i = 0; i < 4; i++)
+        {
+            scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("report" + i, "REPORTS")
+                .usingJobData("sleep", 500L).build(), TriggerBuilder.newTrigger().startNow().build());
+        }
+
+        BulkheadStatistics reports = quartz.getBulkheadStatistics().get("reports");
+        for (int i = 0; i < 40 && reports.getActive() + reports.getQueued() < 4; i++)
+        {
+            Thread.sleep(50);
+            reports = quartz.getBulkheadStatistics().get("reports");
+        }
+        assertEquals(1, reports.getActive());
+        assertEquals(3, reports.getQueued());
+
+        scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("housekeeping", "HOUSEKEEPING")
+            .usingJobData("sleep", 0L).build(), TriggerBuilder.newTrigger().startNow().build());
+        for (int i = 0; i < 20 && quartz.getJobMetrics().getGroupStatistics("HOUSEKEEPING") == null; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertNotNull(quartz.getJobMetrics().getGroupStatistics("HOUSEKEEPING"), "HOUSEKEEPING job was delayed by the REPORTS jobs");
+        assertTrue(quartz.getBulkheadStatistics().get("reports").getExecuted() < 4);
+
+        for (int i = 0; i < 60 && quartz.getBulkheadStatistics().get("reports").getExecuted() < 4; i++)
+        {
+            Thread.sleep(50);
+        }
+        reports = quartz.getBulkheadStatistics().get("reports");
+        assertEquals(4, reports.getExecuted());
+        assertEquals(0.0, reports.getSaturation());
+    }
+
+    /**
+     * A burst exceeding the capacity of its bulkhead overflows into the
+     * queue of the bulkhead instead of blocking the scheduler, so the jobs
+     * of other groups still fire.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testOverflow() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        for (int i = 0; i < 10; i++)
+        {
+            scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("report" + i, "REPORTS")
+                .usingJobData("sleep", 300L).build(), TriggerBuilder.newTrigger().startNow().build());
+        }
+
+        BulkheadStatistics reports = quartz.getBulkheadStatistics().get("reports");
+        for (int i = 0; i < 40 && reports.getActive() + reports.getQueued() < 10; i++)
+        {
+            Thread.sleep(50);
+            reports = quartz.getBulkheadStatistics().get("reports");
+        }
+        assertEquals(1, reports.getActive());
+        assertEquals(9, reports.getQueued());
+        assertEquals(4, reports.getOverflows());
+        assertTrue(reports.getSaturation() > 1.0);
+
+        scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("housekeeping", "HOUSEKEEPING")
+            .usingJobData("sleep", 0L).build(), TriggerBuilder.newTrigger().startNow().build());
+        for (int i = 0; i < 20 && quartz.getJobMetrics().getGroupStatistics("HOUSEKEEPING") == null; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertNotNull(quartz.getJobMetrics().getGroupStatistics("HOUSEKEEPING"), "HOUSEKEEPING job was blocked by the full REPORTS bulkhead");
+        assertTrue(quartz.getBulkheadStatistics().get("reports").getExecuted() < 10);
+
+        for (int i = 0; i < 100 && quartz.getBulkheadStatistics().get("reports").getExecuted() < 10; i++)
+        {
+            Thread.sleep(50);
+        }
+        reports = quartz.getBulkheadStatistics().get("reports");
+        assertEquals(10, reports.getExecuted());
+        assertEquals(4, reports.getOverflows());
+        assertEquals(0.0, reports.getSaturation());
+    }
+}
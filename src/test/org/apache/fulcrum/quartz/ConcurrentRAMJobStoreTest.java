@@ -0,0 +1,292 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.impl.ConcurrentRAMJobStore;
+import org.apache.fulcrum.quartz.test.CountingJob;
+import org.apache.fulcrum.quartz.test.NotSoSimpleJob;
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.DateBuilder;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs the scheduler on top of the {@link ConcurrentRAMJobStore}.
+ */
+public class ConcurrentRAMJobStoreTest extends BaseQuartzTestCase
+{
+    public ConcurrentRAMJobStoreTest()
+    {
+        setConfigurationFileName("src/test/TestConcurrentRAMJobStoreConfig.xml");
+    }
+
+    /**
+     * Make sure the configured job store is used.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testJobStore() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        assertEquals(ConcurrentRAMJobStore.class, scheduler.getMetaData().getJobStoreClass());
+        assertEquals(2, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("TURBINE")).size());
+    }
+
+    /**
+     * Make sure that our two registered jobs are executed.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testJobExecution() throws Exception
+    {
+        Thread.sleep(2000);
+        assertTrue(SimpleJob.wasExecuted, "SimpleJob was not executed");
+        assertTrue(NotSoSimpleJob.wasExecuted, "NotSoSimpleJob was not executed");
+        assertTrue(NotSoSimpleJob.wasServiced, "NotSoSimpleJob was not serviced");
+    }
+
+    /**
+     * Make sure the acquisition of triggers is recorded by the Java Flight Recorder.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testFlightRecorderAcquisition() throws Exception
+    {
+        Path file = Files.createTempFile("quartz", ".jfr");
+        try (Recording recording = new Recording())
+        {
+            recording.enable("org.apache.fulcrum.quartz.TriggerAcquisition");
+            recording.start();
+
+            JobKey jobKey = JobKey.jobKey("acquired", "JFR");
+            quartz.getScheduler().scheduleJob(JobBuilder.newJob(SimpleJob.class).withIdentity(jobKey).build(),
+                TriggerBuilder.newTrigger().withIdentity("acquired", "JFR").startNow().build());
+            for (int i = 0; i < 40 && quartz.getJobMetrics().getGroupStatistics("JFR") == null; i++)
+            {
+                Thread.sleep(50);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        try
+        {
+            RecordedEvent acquisition = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> "org.apache.fulcrum.quartz.TriggerAcquisition".equals(event.getEventType().getName()))
+                .filter(event -> "JFR.acquired".equals(event.getString("firstTriggerKey")))
+                .findFirst().orElse(null);
+            assertNotNull(acquisition, "TriggerAcquisition was not recorded");
+            assertTrue(acquisition.getInt("acquired") >= 1);
+            assertTrue(acquisition.getInt("maxCount") >= 1);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Store and remove a larger number of triggers and pause and resume
+     * them by group.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testManyTriggers() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        Date date = DateBuilder.dateOf(0, 0, 0, 1, 1, 2099);
+        JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("manyTriggersJob", "TEST").storeDurably().build();
+        scheduler.addJob(job, false);
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            Trigger trigger = TriggerBuilder.newTrigger().withIdentity("trigger" + i, "GROUP" + (i % 10))
+                    .forJob(job).startAt(date)
+                    .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInHours(1).repeatForever())
+                    .build();
+            scheduler.scheduleJob(trigger);
+            triggerKeys.add(trigger.getKey());
+        }
+
+        assertEquals(500, scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("GROUP3")).size());
+        assertEquals(5000, scheduler.getTriggersOfJob(job.getKey()).size());
+
+        scheduler.pauseTriggers(GroupMatcher.triggerGroupEquals("GROUP3"));
+        assertEquals(TriggerState.PAUSED, scheduler.getTriggerState(TriggerKey.triggerKey("trigger3", "GROUP3")));
+        assertEquals(TriggerState.NORMAL, scheduler.getTriggerState(TriggerKey.triggerKey("trigger4", "GROUP4")));
+        assertTrue(scheduler.getPausedTriggerGroups().contains("GROUP3"));
+
+        scheduler.resumeTriggers(GroupMatcher.triggerGroupEquals("GROUP3"));
+        assertEquals(TriggerState.NORMAL, scheduler.getTriggerState(TriggerKey.triggerKey("trigger3", "GROUP3")));
+
+        assertTrue(scheduler.unscheduleJobs(triggerKeys));
+        assertEquals(0, scheduler.getTriggersOfJob(job.getKey()).size());
+        assertTrue(scheduler.checkExists(job.getKey()), "Durable job was removed");
+        assertTrue(scheduler.deleteJob(job.getKey()));
+    }
+
+    /**
+     * Rescheduling a batch replaces the triggers in the job store without
+     * storing the jobs again, so their persisted data is kept.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testRescheduleJobs() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        JobDetail counting = JobBuilder.newJob(CountingJob.class).withIdentity("rescheduled", "RESCHEDULE").build();
+        scheduler.scheduleJob(counting, TriggerBuilder.newTrigger().withIdentity("first", "RESCHEDULE")
+                .startAt(DateBuilder.dateOf(0, 0, 0, 1, 1, 2099)).build());
+        scheduler.triggerJob(counting.getKey());
+        for (int i = 0; i < 100 && !scheduler.getJobDetail(counting.getKey()).getJobDataMap().containsKey(CountingJob.COUNT); i++)
+        {
+            Thread.sleep(50);
+        }
+
+        List<TriggerKey> unscheduled = new ArrayList<>();
+        scheduler.getListenerManager().addSchedulerListener(new SchedulerListenerSupport()
+        {
+            @Override
+            public void jobUnscheduled(TriggerKey triggerKey)
+            {
+                unscheduled.add(triggerKey);
+            }
+        });
+
+        Date date = DateBuilder.dateOf(0, 0, 0, 1, 1, 2098);
+        Map<TriggerKey, Trigger> newTriggers = new HashMap<>();
+        newTriggers.put(TriggerKey.triggerKey("first", "RESCHEDULE"),
+                TriggerBuilder.newTrigger().withIdentity("second", "RESCHEDULE").startAt(date).build());
+        newTriggers.put(TriggerKey.triggerKey("unknown", "RESCHEDULE"), TriggerBuilder.newTrigger().startAt(date).build());
+        assertFalse(quartz.rescheduleJobs(newTriggers));
+
+        assertNull(scheduler.getTrigger(TriggerKey.triggerKey("first", "RESCHEDULE")));
+        Trigger rescheduled = scheduler.getTrigger(TriggerKey.triggerKey("second", "RESCHEDULE"));
+        assertEquals(counting.getKey(), rescheduled.getJobKey());
+        assertEquals(date, rescheduled.getNextFireTime());
+        assertEquals(1, scheduler.getJobDetail(counting.getKey()).getJobDataMap().getInt(CountingJob.COUNT));
+        assertEquals(List.of(TriggerKey.triggerKey("first", "RESCHEDULE")), unscheduled);
+    }
+
+    /**
+     * Jobs keep their data in compact form, changing the data of a retrieved
+     * job does not change the stored job while persistent job data is
+     * still updated after execution.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testCompactJobData() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        for (int i = 0; i < 100; i++)
+        {
+            scheduler.addJob(JobBuilder.newJob(SimpleJob.class).withIdentity("compact" + i, "COMPACT")
+                    .usingJobData("dressing", "mustard").usingJobData("size", i % 2).storeDurably().build(), false);
+        }
+
+        JobDetail retrieved = scheduler.getJobDetail(JobKey.jobKey("compact1", "COMPACT"));
+        retrieved.getJobDataMap().put("dressing", "ketchup");
+        assertEquals("mustard", scheduler.getJobDetail(JobKey.jobKey("compact1", "COMPACT")).getJobDataMap().getString("dressing"));
+        assertEquals("mustard", scheduler.getJobDetail(JobKey.jobKey("compact3", "COMPACT")).getJobDataMap().getString("dressing"));
+        assertEquals(1, scheduler.getJobDetail(JobKey.jobKey("compact3", "COMPACT")).getJobDataMap().getInt("size"));
+
+        JobDetail counting = JobBuilder.newJob(CountingJob.class).withIdentity("counting", "COMPACT").storeDurably().build();
+        scheduler.addJob(counting, false);
+        scheduler.triggerJob(counting.getKey());
+        scheduler.triggerJob(counting.getKey());
+        JobDataMap data = scheduler.getJobDetail(counting.getKey()).getJobDataMap();
+        for (int i = 0; i < 100 && (!data.containsKey(CountingJob.COUNT) || data.getInt(CountingJob.COUNT) < 2); i++)
+        {
+            Thread.sleep(50);
+            data = scheduler.getJobDetail(counting.getKey()).getJobDataMap();
+        }
+        assertEquals(2, scheduler.getJobDetail(counting.getKey()).getJobDataMap().getInt(CountingJob.COUNT));
+    }
+
+    /**
+     * A trigger which missed several fire times fires once within the
+     * catch-up window and the missed fire times are counted as coalesced.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testMisfireCatchUp() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        // wait for the catch-up of the trigger misfired since 2010 in quartz.xml
+        Thread.sleep(500);
+        MisfireStatistics before = quartz.getMisfireStatistics();
+
+        JobDetail counting = JobBuilder.newJob(CountingJob.class).withIdentity("catchUp", "MISFIRE").storeDurably().build();
+        scheduler.scheduleJob(counting, TriggerBuilder.newTrigger().withIdentity("catchUp", "MISFIRE")
+                .startAt(new Date(System.currentTimeMillis() - 10 * 60000L - 30000L))
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMinutes(1).repeatForever()
+                        .withMisfireHandlingInstructionNowWithExistingCount())
+                .build());
+
+        JobDataMap data = scheduler.getJobDetail(counting.getKey()).getJobDataMap();
+        for (int i = 0; i < 100 && !data.containsKey(CountingJob.COUNT); i++)
+        {
+            Thread.sleep(50);
+            data = scheduler.getJobDetail(counting.getKey()).getJobDataMap();
+        }
+        assertEquals(1, data.getInt(CountingJob.COUNT));
+
+        MisfireStatistics statistics = quartz.getMisfireStatistics();
+        assertEquals(1, statistics.getCatchUpFires() - before.getCatchUpFires());
+        assertEquals(10, statistics.getCoalescedFires() - before.getCoalescedFires());
+    }
+}
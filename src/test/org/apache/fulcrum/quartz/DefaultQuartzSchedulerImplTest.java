@@ -22,26 +22,56 @@ package org.apache.fulcrum.quartz;
  */
 
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.avalon.framework.configuration.DefaultConfiguration;
+import org.apache.avalon.framework.configuration.Reconfigurable;
+import org.apache.fulcrum.quartz.test.CountingJob;
+import org.apache.fulcrum.quartz.test.InterruptableSleepingJob;
 import org.apache.fulcrum.quartz.test.NotSoSimpleJob;
 import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.apache.fulcrum.quartz.test.SleepingJob;
+import org.apache.fulcrum.quartz.test.SummingJob;
+import org.apache.fulcrum.quartz.test.ThreadSafeJob;
 import org.junit.jupiter.api.Test;
 import org.quartz.DateBuilder;
+import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
 import org.quartz.SimpleScheduleBuilder;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.TriggerListenerSupport;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -156,4 +186,399 @@ public class DefaultQuartzSchedulerImplTest extends BaseQuartzTestCase
 		assertTrue(NotSoSimpleJob.wasExecuted, "NotSoSimpleJob was not executed");
 		assertTrue(NotSoSimpleJob.wasServiced, "NotSoSimpleJob was not serviced");
 	}
+
+	/**
+	 * Make sure the executions of our two registered jobs are recorded.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testJobMetrics() throws Exception {
+		Thread.sleep(2000);
+		JobMetrics metrics = quartz.getJobMetrics();
+		JobStatistics simpleJob = metrics.getJobStatistics(JobKey.jobKey("simpleJob", "TURBINE"));
+		JobStatistics notSoSimpleJob = metrics.getJobStatistics(JobKey.jobKey("notSoSimpleJob", "TURBINE"));
+		assertNotNull(simpleJob);
+		assertNotNull(notSoSimpleJob);
+		assertTrue(simpleJob.getCount() > 0, "SimpleJob executions were not recorded");
+		assertEquals(0, simpleJob.getFailures());
+		assertTrue(notSoSimpleJob.getMinRunTime() >= 100, "NotSoSimpleJob run time was not recorded");
+		assertTrue(notSoSimpleJob.getPercentile(99) >= notSoSimpleJob.getPercentile(50));
+
+		JobStatistics group = metrics.getGroupStatistics("TURBINE");
+		assertNotNull(group);
+		assertEquals(simpleJob.getCount() + notSoSimpleJob.getCount(), group.getCount());
+		assertEquals(notSoSimpleJob.getMaxRunTime(), group.getMaxRunTime());
+		assertTrue(group.getLagPercentile(50) <= group.getMaxLag());
+		assertTrue(group.getMeanLag() <= group.getMaxLag());
+	}
+
+	/**
+	 * Make sure the statistics of deleted jobs are discarded but kept as part of their group.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testJobMetricsOfDeletedJobs() throws Exception {
+		Scheduler scheduler = quartz.getScheduler();
+		JobKey durable = JobKey.jobKey("durable", "PRUNE");
+		scheduler.addJob(JobBuilder.newJob(SimpleJob.class).withIdentity(durable).storeDurably().build(), false);
+		scheduler.triggerJob(durable);
+		scheduler.scheduleJob(JobBuilder.newJob(SimpleJob.class).withIdentity("oneShot", "PRUNE").build(),
+				TriggerBuilder.newTrigger().startNow().build());
+
+		for (int i = 0; i < 40 && (quartz.getJobMetrics().getGroupStatistics("PRUNE") == null
+				|| quartz.getJobMetrics().getGroupStatistics("PRUNE").getCount() < 2); i++) {
+			Thread.sleep(50);
+		}
+		assertNotNull(quartz.getJobMetrics().getJobStatistics(durable));
+
+		// removed together with its last trigger right after its execution was recorded
+		JobKey oneShot = JobKey.jobKey("oneShot", "PRUNE");
+		for (int i = 0; i < 40 && quartz.getJobMetrics().getJobStatistics(oneShot) != null; i++) {
+			Thread.sleep(50);
+		}
+		assertNull(quartz.getJobMetrics().getJobStatistics(oneShot));
+
+		assertTrue(scheduler.deleteJob(durable));
+		JobMetrics metrics = quartz.getJobMetrics();
+		assertNull(metrics.getJobStatistics(durable));
+		assertEquals(2, metrics.getGroupStatistics("PRUNE").getCount());
+	}
+
+	/**
+	 * Make sure job executions, failures, vetoes and misfires are recorded by the Java Flight Recorder.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testFlightRecorderEvents() throws Exception {
+		Path file = Files.createTempFile("quartz", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("org.apache.fulcrum.quartz.JobStarted");
+			recording.enable("org.apache.fulcrum.quartz.JobCompleted");
+			recording.enable("org.apache.fulcrum.quartz.TriggerMisfired");
+			recording.enable("org.apache.fulcrum.quartz.JobFailed");
+			recording.enable("org.apache.fulcrum.quartz.JobVetoed");
+			recording.start();
+
+			Scheduler scheduler = quartz.getScheduler();
+			TriggerKey vetoedTrigger = TriggerKey.triggerKey("vetoed", "JFR");
+			TriggerListener veto = new TriggerListenerSupport() {
+				@Override
+				public String getName() {
+					return "JFR veto";
+				}
+
+				@Override
+				public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+					return vetoedTrigger.equals(trigger.getKey());
+				}
+			};
+			scheduler.getListenerManager().addTriggerListener(veto);
+			Date scheduledFireTime = new Date();
+			scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("recorded", "JFR")
+					.usingJobData("sleep", 20L).build(),
+					TriggerBuilder.newTrigger().withIdentity("recorded", "JFR").startAt(scheduledFireTime).build());
+			scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("misfired", "JFR")
+					.usingJobData("sleep", 0L).build(),
+					TriggerBuilder.newTrigger().withIdentity("misfired", "JFR")
+							.startAt(new Date(System.currentTimeMillis() - 120000))
+							.withSchedule(SimpleScheduleBuilder.repeatMinutelyForever()
+									.withMisfireHandlingInstructionNextWithRemainingCount())
+							.build());
+
+			scheduler.scheduleJob(JobBuilder.newJob(SummingJob.class).withIdentity("failed", "JFR")
+					.usingJobData("fail", true).build(),
+					TriggerBuilder.newTrigger().withIdentity("failed", "JFR").startNow().build());
+			scheduler.scheduleJob(JobBuilder.newJob(SimpleJob.class).withIdentity("vetoed", "JFR").build(),
+					TriggerBuilder.newTrigger().withIdentity(vetoedTrigger).startNow().build());
+
+			// the recorded and the failed job are executed, the vetoed one is not
+			for (int i = 0; i < 40; i++) {
+				JobStatistics group = quartz.getJobMetrics().getGroupStatistics("JFR");
+				if (group != null && group.getCount() >= 2 && group.getVetoes() >= 1) {
+					break;
+				}
+				Thread.sleep(50);
+			}
+			scheduler.getListenerManager().removeTriggerListener(veto.getName());
+			recording.stop();
+			recording.dump(file);
+		}
+
+		try {
+			Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+					.collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+			RecordedEvent started = events.get("org.apache.fulcrum.quartz.JobStarted").stream()
+					.filter(event -> "JFR.recorded".equals(event.getString("jobKey"))).findFirst().orElse(null);
+			assertNotNull(started, "JobStarted was not recorded");
+			assertEquals("JFR.recorded", started.getString("triggerKey"));
+
+			RecordedEvent completed = events.get("org.apache.fulcrum.quartz.JobCompleted").stream()
+					.filter(event -> "JFR.recorded".equals(event.getString("jobKey"))).findFirst().orElse(null);
+			assertNotNull(completed, "JobCompleted was not recorded");
+			assertTrue(completed.getBoolean("successful"));
+			assertTrue(completed.getDuration().toMillis() >= 20, "JobCompleted does not span the execution");
+			assertTrue(completed.getLong("fireTime") >= completed.getLong("scheduledFireTime"));
+
+			RecordedEvent misfired = events.get("org.apache.fulcrum.quartz.TriggerMisfired").stream()
+					.filter(event -> "JFR.misfired".equals(event.getString("triggerKey"))).findFirst().orElse(null);
+			assertNotNull(misfired, "TriggerMisfired was not recorded");
+			assertEquals("JFR.misfired", misfired.getString("jobKey"));
+
+			RecordedEvent jobFailed = events.getOrDefault("org.apache.fulcrum.quartz.JobFailed", Collections.emptyList()).stream()
+					.filter(event -> "JFR.failed".equals(event.getString("jobKey"))).findFirst().orElse(null);
+			assertNotNull(jobFailed, "JobFailed was not recorded");
+			assertEquals(JobExecutionException.class.getName(), jobFailed.getString("exception"));
+			assertEquals("Failing as requested", jobFailed.getString("message"));
+
+			RecordedEvent jobVetoed = events.getOrDefault("org.apache.fulcrum.quartz.JobVetoed", Collections.emptyList()).stream()
+					.filter(event -> "JFR.vetoed".equals(event.getString("jobKey"))).findFirst().orElse(null);
+			assertNotNull(jobVetoed, "JobVetoed was not recorded");
+			assertEquals("JFR.vetoed", jobVetoed.getString("triggerKey"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Make sure a thread-safe job is instantiated and serviced only once.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testThreadSafeJobIsReused() throws Exception {
+		ThreadSafeJob.reset();
+		JobDetail job = JobBuilder.newJob(ThreadSafeJob.class).withIdentity("threadSafeJob", "TEST").build();
+		Trigger trigger = TriggerBuilder.newTrigger().withIdentity("threadSafeTrigger", "TEST")
+				.withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(50).withRepeatCount(4))
+				.startNow().build();
+		quartz.getScheduler().scheduleJob(job, trigger);
+
+		for (int i = 0; i < 40 && ThreadSafeJob.executed.get() < 5; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(5, ThreadSafeJob.executed.get());
+		assertEquals(1, ThreadSafeJob.instances.get());
+		assertEquals(1, ThreadSafeJob.serviced.get());
+	}
+
+	/**
+	 * Make sure the startup phases are recorded in execution order.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testStartupTimings() throws Exception {
+		Map<String, Long> timings = quartz.getStartupTimings();
+		assertEquals(List.of(QuartzScheduler.STARTUP_PHASE_FACTORY_INIT, QuartzScheduler.STARTUP_PHASE_SCHEDULER_CREATE,
+				QuartzScheduler.STARTUP_PHASE_PLUGIN_START, QuartzScheduler.STARTUP_PHASE_SCHEDULER_START),
+				new ArrayList<>(timings.keySet()));
+		assertTrue(timings.get(QuartzScheduler.STARTUP_PHASE_SCHEDULER_START) >= timings.get(QuartzScheduler.STARTUP_PHASE_PLUGIN_START));
+	}
+
+	/**
+	 * Drain the scheduler while an interruptable and an uninterruptable job are running.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testDrain() throws Exception {
+		InterruptableSleepingJob.reset();
+		Scheduler scheduler = quartz.getScheduler();
+		scheduler.scheduleJob(JobBuilder.newJob(InterruptableSleepingJob.class).withIdentity("interruptable", "DRAIN")
+				.usingJobData("sleep", 10000L).build(), TriggerBuilder.newTrigger().startNow().build());
+		scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("uninterruptable", "DRAIN")
+				.usingJobData("sleep", 3000L).build(), TriggerBuilder.newTrigger().startNow().build());
+
+		for (int i = 0; i < 40 && countRunningJobs(scheduler, "DRAIN") < 2; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(2, countRunningJobs(scheduler, "DRAIN"));
+
+		List<JobExecutionContext> runningJobs = quartz.drain(100);
+		assertTrue(scheduler.isInStandbyMode());
+		assertTrue(InterruptableSleepingJob.wasInterrupted.get(), "InterruptableSleepingJob was not interrupted");
+		// jobs of other tests may still be running as well
+		List<JobKey> runningKeys = runningJobs.stream().map(context -> context.getJobDetail().getKey())
+				.filter(key -> "DRAIN".equals(key.getGroup())).collect(Collectors.toList());
+		assertEquals(List.of(JobKey.jobKey("uninterruptable", "DRAIN")), runningKeys);
+	}
+
+	/**
+	 * Drain waits for submitted jobs as well and interrupts them.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testDrainSubmittedJobs() throws Exception {
+		InterruptableSleepingJob.reset();
+		CompletableFuture<Object> interruptable = quartz.submitJob(JobBuilder.newJob(InterruptableSleepingJob.class)
+				.withIdentity("interruptable", "SUBMIT_DRAIN").usingJobData("sleep", 10000L).build());
+		quartz.submitJob(JobBuilder.newJob(SleepingJob.class).withIdentity("uninterruptable", "SUBMIT_DRAIN")
+				.usingJobData("sleep", 3000L).build());
+
+		List<JobExecutionContext> runningJobs = quartz.drain(500);
+		assertTrue(InterruptableSleepingJob.wasInterrupted.get(), "submitted InterruptableSleepingJob was not interrupted");
+		interruptable.get(10, TimeUnit.SECONDS);
+		List<JobKey> runningKeys = runningJobs.stream().map(context -> context.getJobDetail().getKey())
+				.filter(key -> "SUBMIT_DRAIN".equals(key.getGroup())).collect(Collectors.toList());
+		assertEquals(List.of(JobKey.jobKey("uninterruptable", "SUBMIT_DRAIN")), runningKeys);
+	}
+
+	private static long countRunningJobs(Scheduler scheduler, String group) throws Exception {
+		return scheduler.getCurrentlyExecutingJobs().stream()
+				.filter(context -> group.equals(context.getJobDetail().getKey().getGroup())).count();
+	}
+
+	/**
+	 * Schedule, reschedule and unschedule a batch of jobs.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testBatchScheduling() throws Exception {
+		Scheduler scheduler = quartz.getScheduler();
+		Date date = DateBuilder.dateOf(0, 0, 0, 1, 1, 2099);
+		Map<JobDetail, Set<? extends Trigger>> triggersAndJobs = new HashMap<>();
+		List<TriggerKey> triggerKeys = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("batchJob" + i, "BATCH").build();
+			Trigger trigger = TriggerBuilder.newTrigger().withIdentity("batchTrigger" + i, "BATCH").startAt(date).build();
+			triggersAndJobs.put(job, Collections.singleton(trigger));
+			triggerKeys.add(trigger.getKey());
+		}
+
+		quartz.scheduleJobs(triggersAndJobs, false);
+		assertEquals(100, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("BATCH")).size());
+
+		Map<TriggerKey, Trigger> newTriggers = new HashMap<>();
+		for (int i = 0; i < 10; i++) {
+			newTriggers.put(triggerKeys.get(i), TriggerBuilder.newTrigger().withIdentity("newBatchTrigger" + i, "BATCH")
+					.startAt(DateBuilder.dateOf(0, 0, 0, 1, 1, 2098)).build());
+		}
+		newTriggers.put(TriggerKey.triggerKey("unknown", "BATCH"), TriggerBuilder.newTrigger().startAt(date).build());
+
+		assertFalse(quartz.rescheduleJobs(newTriggers));
+		assertNull(scheduler.getTrigger(triggerKeys.get(0)));
+		Trigger rescheduled = scheduler.getTrigger(TriggerKey.triggerKey("newBatchTrigger0", "BATCH"));
+		assertNotNull(rescheduled);
+		assertEquals(JobKey.jobKey("batchJob0", "BATCH"), rescheduled.getJobKey());
+		assertEquals(100, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("BATCH")).size());
+
+		assertTrue(quartz.unscheduleJobs(scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("BATCH"))));
+		assertEquals(0, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("BATCH")).size());
+	}
+
+	/**
+	 * Execute submitted jobs immediately without storing them.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testSubmitJob() throws Exception {
+		JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("submittedJob", "SUBMIT")
+				.usingJobData(CountingJob.COUNT, 41).build();
+		assertEquals(42, quartz.submitJob(job).get(10, TimeUnit.SECONDS));
+		assertEquals(41, job.getJobDataMap().getInt(CountingJob.COUNT));
+		assertFalse(quartz.getScheduler().checkExists(job.getKey()));
+		assertEquals(1, quartz.getJobMetrics().getJobStatistics(job.getKey()).getCount());
+
+		ThreadSafeJob.reset();
+		JobDetail threadSafeJob = JobBuilder.newJob(ThreadSafeJob.class).withIdentity("submittedThreadSafeJob", "SUBMIT").build();
+		quartz.submitJob(threadSafeJob).get(10, TimeUnit.SECONDS);
+		assertEquals(1, ThreadSafeJob.executed.get());
+		assertEquals(1, ThreadSafeJob.serviced.get());
+	}
+
+	/**
+	 * Change the misfire threshold of the running scheduler, invalid settings
+	 * do not change anything.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testReconfigure() throws Exception {
+		Scheduler scheduler = quartz.getScheduler();
+		Set<TriggerKey> fired = ConcurrentHashMap.newKeySet();
+		Set<TriggerKey> misfired = ConcurrentHashMap.newKeySet();
+		scheduler.getListenerManager().addTriggerListener(new TriggerListenerSupport() {
+			@Override
+			public String getName() {
+				return "reconfigure";
+			}
+
+			@Override
+			public void triggerFired(Trigger trigger, JobExecutionContext context) {
+				fired.add(trigger.getKey());
+			}
+
+			@Override
+			public void triggerMisfired(Trigger trigger) {
+				misfired.add(trigger.getKey());
+			}
+		}, GroupMatcher.triggerGroupEquals("RECONFIGURE"));
+
+		// 5 s late is within the configured threshold of 60 s
+		assertFalse(fireLate(scheduler, "before", fired, misfired));
+
+		((Reconfigurable) quartz).reconfigure(createConfiguration("3", "1000"));
+		assertTrue(scheduler.isStarted());
+		assertTrue(fireLate(scheduler, "after", fired, misfired), "The misfire threshold was not changed");
+
+		assertThrows(ConfigurationException.class, () -> ((Reconfigurable) quartz).reconfigure(createConfiguration("3", "0")));
+		assertThrows(ConfigurationException.class, () -> ((Reconfigurable) quartz).reconfigure(createConfiguration("5", "60000")),
+				"The SimpleThreadPool cannot be resized");
+		assertEquals(3, scheduler.getMetaData().getThreadPoolSize());
+		assertTrue(fireLate(scheduler, "invalid", fired, misfired), "The misfire threshold was changed by an invalid configuration");
+	}
+
+	private static boolean fireLate(Scheduler scheduler, String name, Set<TriggerKey> fired, Set<TriggerKey> misfired)
+			throws Exception {
+		TriggerKey triggerKey = TriggerKey.triggerKey(name, "RECONFIGURE");
+		scheduler.scheduleJob(JobBuilder.newJob(SimpleJob.class).withIdentity(name, "RECONFIGURE").build(),
+				TriggerBuilder.newTrigger().withIdentity(triggerKey).startAt(new Date(System.currentTimeMillis() - 5000)).build());
+		for (int i = 0; i < 40 && !fired.contains(triggerKey); i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(fired.contains(triggerKey), triggerKey + " did not fire");
+		return misfired.contains(triggerKey);
+	}
+
+	static DefaultConfiguration createConfiguration(String threadCount, String misfireThreshold) {
+		DefaultConfiguration properties = new DefaultConfiguration("properties");
+		if (threadCount != null) {
+			properties.addChild(createParameter("org.quartz.threadPool.threadCount", threadCount));
+		}
+		if (misfireThreshold != null) {
+			properties.addChild(createParameter("org.quartz.jobStore.misfireThreshold", misfireThreshold));
+		}
+
+		DefaultConfiguration configuration = new DefaultConfiguration("configuration");
+		configuration.addChild(properties);
+		DefaultConfiguration quartzConf = new DefaultConfiguration("quartz");
+		quartzConf.addChild(configuration);
+		return quartzConf;
+	}
+
+	private static DefaultConfiguration createParameter(String name, String value) {
+		DefaultConfiguration parameter = new DefaultConfiguration("parameter");
+		parameter.setAttribute("name", name);
+		parameter.setAttribute("value", value);
+		return parameter;
+	}
+
+	/**
+	 * The wall clock cannot be advanced outside of the simulation mode.
+	 * 
+	 * @throws Exception generic exception
+	 */
+	@Test
+	public void testClock() throws Exception {
+		long now = System.currentTimeMillis();
+		assertTrue(Math.abs(quartz.getClock().currentTimeMillis() - now) < 1000);
+		assertThrows(SchedulerException.class, () -> quartz.advanceClock(1000));
+	}
 }
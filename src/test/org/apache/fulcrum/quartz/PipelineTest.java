@@ -0,0 +1,137 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.quartz.test.SummingJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+
+/**
+ * Runs pipelines of jobs passing their results to the jobs depending on them.
+ */
+public class PipelineTest extends BaseQuartzTestCase
+{
+    private final JobKey a = JobKey.jobKey("a", "PIPELINE");
+    private final JobKey b = JobKey.jobKey("b", "PIPELINE");
+    private final JobKey c = JobKey.jobKey("c", "PIPELINE");
+    private final JobKey d = JobKey.jobKey("d", "PIPELINE");
+
+    /**
+     * A diamond of jobs fans out after the first job and in before the last
+     * one, the slower branch is the critical path.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testFanOutFanIn() throws Exception
+    {
+        addJobs(0, 200);
+        quartz.addPipeline(diamond());
+
+        PipelineRun run = quartz.startPipeline("diamond", null).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, run.getResults().get(a));
+        assertEquals(11, run.getResults().get(b));
+        assertEquals(101, run.getResults().get(c));
+        assertEquals(1112, run.getResults().get(d));
+        assertEquals(Arrays.asList(a, c, d), run.getCriticalPath());
+        assertTrue(run.getRunTimes().get(c) >= 200);
+        assertTrue(run.getDuration() >= run.getRunTimes().get(c));
+        assertEquals(run.getRunId(), quartz.getLastPipelineRun("diamond").getRunId());
+        assertEquals(4, quartz.getJobMetrics().getGroupStatistics("PIPELINE").getCount());
+    }
+
+    /**
+     * Executing the root job by a trigger starts a run.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testTriggeredRoot() throws Exception
+    {
+        addJobs(0, 0);
+        quartz.addPipeline(diamond());
+        assertNull(quartz.getLastPipelineRun("diamond"));
+
+        quartz.getScheduler().triggerJob(a);
+        for (int i = 0; i < 200 && quartz.getLastPipelineRun("diamond") == null; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(1112, quartz.getLastPipelineRun("diamond").getResults().get(d));
+    }
+
+    /**
+     * A failed step fails the run and the steps depending on it are not run.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testFailedStep() throws Exception
+    {
+        addJobs(0, 0);
+        quartz.addPipeline(diamond());
+
+        JobDataMap input = new JobDataMap();
+        input.put("fail", true);
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> quartz.startPipeline("diamond", input).get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof SchedulerException);
+        assertNull(quartz.getLastPipelineRun("diamond"));
+
+        assertTrue(quartz.removePipeline("diamond"));
+        assertThrows(SchedulerException.class, () -> quartz.startPipeline("diamond", null));
+        assertThrows(IllegalArgumentException.class, () -> JobPipeline.newPipeline("cycle").step(b, a));
+    }
+
+    private JobPipeline diamond()
+    {
+        return JobPipeline.newPipeline("diamond")
+            .step(a)
+            .step(b, a)
+            .step(c, a)
+            .step(d, b, c)
+            .build();
+    }
+
+    private void addJobs(long sleepB, long sleepC) throws SchedulerException
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        scheduler.addJob(JobBuilder.newJob(SummingJob.class).withIdentity(a).usingJobData("value", 1).storeDurably().build(), true);
+        scheduler.addJob(JobBuilder.newJob(SummingJob.class).withIdentity(b).usingJobData("value", 10)
+            .usingJobData("sleep", sleepB).storeDurably().build(), true);
+        scheduler.addJob(JobBuilder.newJob(SummingJob.class).withIdentity(c).usingJobData("value", 100)
+            .usingJobData("sleep", sleepC).storeDurably().build(), true);
+        scheduler.addJob(JobBuilder.newJob(SummingJob.class).withIdentity(d).usingJobData("value", 1000).storeDurably().build(), true);
+    }
+}
@@ -0,0 +1,97 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.fulcrum.quartz.impl.PriorityThreadPool;
+import org.apache.fulcrum.quartz.test.RecordingJob;
+import org.apache.fulcrum.quartz.test.SleepingJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Runs the scheduler on top of the {@link PriorityThreadPool}.
+ */
+public class PriorityThreadPoolTest extends BaseQuartzTestCase
+{
+    public PriorityThreadPoolTest()
+    {
+        setConfigurationFileName("src/test/TestPriorityThreadPoolConfig.xml");
+    }
+
+    /**
+     * Make sure the configured thread pool is used.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testThreadPool() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        assertEquals(PriorityThreadPool.class, scheduler.getMetaData().getThreadPoolClass());
+        assertEquals(1, scheduler.getMetaData().getThreadPoolSize());
+    }
+
+    /**
+     * Jobs waiting for the only thread run by the lane of their group or
+     * the priority of their trigger.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testLanes() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        RecordingJob.reset();
+        scheduler.scheduleJob(JobBuilder.newJob(SleepingJob.class).withIdentity("blocker", "TEST")
+            .usingJobData("sleep", 1000L).build(), TriggerBuilder.newTrigger().startNow().build());
+        for (int i = 0; i < 40 && scheduler.getCurrentlyExecutingJobs().stream()
+            .noneMatch(context -> "blocker".equals(context.getJobDetail().getKey().getName())); i++)
+        {
+            Thread.sleep(25);
+        }
+
+        schedule(scheduler, "report", "REPORTS", 5);
+        schedule(scheduler, "normal", "TEST", 5);
+        schedule(scheduler, "urgent", "TEST", 10);
+        schedule(scheduler, "alert", "ALERTS", 1);
+
+        for (int i = 0; i < 100 && RecordingJob.executed.size() < 4; i++)
+        {
+            Thread.sleep(50);
+        }
+        List<String> executed = new ArrayList<>(RecordingJob.executed);
+        assertEquals(Arrays.asList("urgent", "alert", "normal", "report"), executed);
+    }
+
+    private static void schedule(Scheduler scheduler, String name, String group, int priority) throws Exception
+    {
+        JobDetail job = JobBuilder.newJob(RecordingJob.class).withIdentity(name, group).build();
+        scheduler.scheduleJob(job, TriggerBuilder.newTrigger().withPriority(priority).startNow().build());
+    }
+}
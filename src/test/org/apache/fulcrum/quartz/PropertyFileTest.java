@@ -0,0 +1,67 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.apache.fulcrum.quartz.test.ThreadSafeJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+
+/**
+ * A job factory configured in the Quartz property file replaces the one of
+ * the service.
+ */
+public class PropertyFileTest extends BaseQuartzTestCase
+{
+    public PropertyFileTest()
+    {
+        setConfigurationFileName("src/test/TestPropertyFileConfig.xml");
+    }
+
+    /**
+     * The configured job factory creates a new instance for every execution,
+     * the Avalon infrastructure is injected before each of them.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testConfiguredJobFactory() throws Exception
+    {
+        assertEquals("PropertyFileScheduler", quartz.getScheduler().getSchedulerName());
+
+        ThreadSafeJob.reset();
+        quartz.getScheduler().scheduleJob(
+            JobBuilder.newJob(ThreadSafeJob.class).withIdentity("threadSafeJob", "TEST").build(),
+            TriggerBuilder.newTrigger().withIdentity("threadSafeTrigger", "TEST")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(50).withRepeatCount(2))
+                .startNow().build());
+
+        for (int i = 0; i < 40 && ThreadSafeJob.executed.get() < 3; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(3, ThreadSafeJob.executed.get());
+        assertEquals(3, ThreadSafeJob.instances.get());
+        assertEquals(3, ThreadSafeJob.serviced.get());
+    }
+}
@@ -0,0 +1,134 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.fulcrum.quartz.test.InterruptableSleepingJob;
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Named schedulers keep their own jobs but share the thread pool.
+ */
+public class SchedulersTest extends BaseQuartzTestCase
+{
+    public SchedulersTest()
+    {
+        setConfigurationFileName("src/test/TestSchedulersConfig.xml");
+    }
+
+    /**
+     * The schedulers are looked up by name and store their jobs separately.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testLookup() throws Exception
+    {
+        assertEquals(Arrays.asList("DefaultTenantScheduler", "tenantA", "tenantB"), new ArrayList<>(quartz.getSchedulerNames()));
+        assertSame(quartz.getScheduler(), quartz.getScheduler("DefaultTenantScheduler"));
+        assertNull(quartz.getScheduler("unknown"));
+
+        Scheduler tenantA = quartz.getScheduler("tenantA");
+        Scheduler tenantB = quartz.getScheduler("tenantB");
+        assertNotSame(tenantA, tenantB);
+        assertTrue(tenantA.isStarted());
+        assertEquals(2, tenantA.getMetaData().getThreadPoolSize());
+
+        JobKey jobKey = JobKey.jobKey("shared", "TENANT");
+        tenantA.addJob(JobBuilder.newJob(SimpleJob.class).withIdentity(jobKey).storeDurably().build(), false);
+        assertTrue(tenantA.checkExists(jobKey));
+        assertFalse(tenantB.checkExists(jobKey));
+        assertFalse(quartz.getScheduler().checkExists(jobKey));
+    }
+
+    /**
+     * Jobs of all schedulers run on the worker threads of the default
+     * scheduler and are recorded by the job metrics.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSharedThreadPool() throws Exception
+    {
+        for (String name : quartz.getSchedulerNames())
+        {
+            quartz.getScheduler(name).scheduleJob(JobBuilder.newJob(SimpleJob.class).withIdentity(name, "SHARED").build(),
+                TriggerBuilder.newTrigger().startNow().build());
+        }
+
+        for (int i = 0; i < 100 && count("SHARED") < 3; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(3, count("SHARED"));
+
+        long workers = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().contains("_Worker-")).count();
+        assertEquals(2, workers);
+    }
+
+    /**
+     * Draining the service covers the jobs of the named schedulers.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testDrain() throws Exception
+    {
+        InterruptableSleepingJob.reset();
+        Scheduler tenantA = quartz.getScheduler("tenantA");
+        tenantA.scheduleJob(JobBuilder.newJob(InterruptableSleepingJob.class).withIdentity("interruptable", "DRAIN")
+            .usingJobData("sleep", 10000L).build(), TriggerBuilder.newTrigger().startNow().build());
+
+        for (int i = 0; i < 40 && tenantA.getCurrentlyExecutingJobs().isEmpty(); i++)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(1, tenantA.getCurrentlyExecutingJobs().size());
+
+        List<JobExecutionContext> runningJobs = quartz.drain(100);
+        assertTrue(tenantA.isInStandbyMode());
+        assertTrue(quartz.getScheduler("tenantB").isInStandbyMode());
+        assertTrue(InterruptableSleepingJob.wasInterrupted.get(), "InterruptableSleepingJob was not interrupted");
+        assertTrue(runningJobs.isEmpty());
+    }
+
+    private long count(String group)
+    {
+        JobStatistics statistics = quartz.getJobMetrics().getGroupStatistics(group);
+        return statistics != null ? statistics.getCount() : 0;
+    }
+}
@@ -0,0 +1,94 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.fulcrum.quartz.test.CountingJob;
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Fires triggers in simulated time.
+ */
+public class SimulationTest extends BaseQuartzTestCase
+{
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    public SimulationTest()
+    {
+        setConfigurationFileName("src/test/TestSimulationConfig.xml");
+    }
+
+    /**
+     * A day of cron and simple triggers fires in the order of their fire
+     * times without waiting and is recorded by the job metrics.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSimulatedDay() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        long start = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        assertEquals(start, quartz.getClock().currentTimeMillis());
+        assertFalse(scheduler.isStarted());
+
+        JobDetail cron = JobBuilder.newJob(CountingJob.class).withIdentity("cron", "SIMULATION").build();
+        scheduler.scheduleJob(cron, TriggerBuilder.newTrigger().withIdentity("cron", "SIMULATION")
+            .startAt(new Date(start))
+            .withSchedule(CronScheduleBuilder.cronSchedule("0 0/15 * * * ?").inTimeZone(TimeZone.getTimeZone("UTC")))
+            .build());
+
+        JobDetail simple = JobBuilder.newJob(SimpleJob.class).withIdentity("simple", "SIMULATION").build();
+        scheduler.scheduleJob(simple, TriggerBuilder.newTrigger().withIdentity("simple", "SIMULATION")
+            .startAt(new Date(start + 5000))
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInSeconds(10).repeatForever())
+            .build());
+
+        // nothing is due before the first fire time of the simple trigger
+        assertEquals(1, quartz.advanceClock(4999));
+        assertEquals(start + 4999, quartz.getClock().currentTimeMillis());
+
+        assertEquals(96 + 8640 - 1, quartz.advanceClock(DAY - 5000));
+        assertEquals(start + DAY - 1, quartz.getClock().currentTimeMillis());
+
+        JobDataMap data = scheduler.getJobDetail(cron.getKey()).getJobDataMap();
+        assertEquals(96, data.getInt(CountingJob.COUNT));
+
+        JobMetrics metrics = quartz.getJobMetrics();
+        assertEquals(96, metrics.getJobStatistics(cron.getKey()).getCount());
+        assertEquals(8640, metrics.getJobStatistics(JobKey.jobKey("simple", "SIMULATION")).getCount());
+        assertEquals(0, metrics.getGroupStatistics("SIMULATION").getMaxLag());
+    }
+}
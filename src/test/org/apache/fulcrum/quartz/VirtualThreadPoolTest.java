@@ -0,0 +1,124 @@
+package org.apache.fulcrum.quartz;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.avalon.framework.configuration.Reconfigurable;
+import org.apache.fulcrum.quartz.impl.VirtualThreadPool;
+import org.apache.fulcrum.quartz.test.NotSoSimpleJob;
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.listeners.JobListenerSupport;
+
+/**
+ * Runs the scheduler on top of the {@link VirtualThreadPool}.
+ */
+public class VirtualThreadPoolTest extends BaseQuartzTestCase
+{
+    public VirtualThreadPoolTest()
+    {
+        setConfigurationFileName("src/test/TestVirtualThreadPoolConfig.xml");
+    }
+
+    /**
+     * Make sure the configured thread pool is used.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testThreadPool() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        assertEquals(VirtualThreadPool.class, scheduler.getMetaData().getThreadPoolClass());
+        assertEquals(3, scheduler.getMetaData().getThreadPoolSize());
+    }
+
+    /**
+     * Make sure that our two registered jobs are executed.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testJobExecution() throws Exception
+    {
+        JobKey simpleJob = JobKey.jobKey("simpleJob", "TURBINE");
+        JobKey notSoSimpleJob = JobKey.jobKey("notSoSimpleJob", "TURBINE");
+        Map<JobKey, Job> executed = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        JobListener listener = new JobListenerSupport()
+        {
+            @Override
+            public String getName()
+            {
+                return "executed";
+            }
+
+            @Override
+            public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException)
+            {
+                JobKey jobKey = context.getJobDetail().getKey();
+                if ((simpleJob.equals(jobKey) || notSoSimpleJob.equals(jobKey))
+                    && executed.putIfAbsent(jobKey, context.getJobInstance()) == null)
+                {
+                    latch.countDown();
+                }
+            }
+        };
+        quartz.getScheduler().getListenerManager().addJobListener(listener);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "The jobs were not executed");
+        assertTrue(executed.get(simpleJob) instanceof SimpleJob);
+        assertNotNull(((NotSoSimpleJob) executed.get(notSoSimpleJob)).getServiceManager(), "NotSoSimpleJob was not serviced");
+    }
+
+    /**
+     * Resize the thread pool of the running scheduler.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testResize() throws Exception
+    {
+        Scheduler scheduler = quartz.getScheduler();
+        ((Reconfigurable) quartz).reconfigure(DefaultQuartzSchedulerImplTest.createConfiguration("5", null));
+        assertEquals(5, scheduler.getMetaData().getThreadPoolSize());
+        assertTrue(scheduler.isStarted());
+
+        assertThrows(ConfigurationException.class,
+            () -> ((Reconfigurable) quartz).reconfigure(DefaultQuartzSchedulerImplTest.createConfiguration("0", null)));
+        assertEquals(5, scheduler.getMetaData().getThreadPoolSize());
+    }
+}
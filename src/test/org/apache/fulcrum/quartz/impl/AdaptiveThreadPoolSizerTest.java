@@ -0,0 +1,116 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.avalon.framework.logger.ConsoleLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Resizes a {@link VirtualThreadPool} based on the recorded scheduling lag.
+ */
+public class AdaptiveThreadPoolSizerTest
+{
+    private VirtualThreadPool threadPool;
+
+    private AdaptiveThreadPoolSizer sizer;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        threadPool = new VirtualThreadPool();
+        threadPool.setThreadCount(2);
+        threadPool.initialize();
+        sizer = new AdaptiveThreadPoolSizer(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), threadPool, 2, 3, 100, 60000);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        threadPool.shutdown(false);
+    }
+
+    /**
+     * The pool grows while jobs start late and all threads are busy, and
+     * shrinks after several samples without lag.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testResize() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable job = () -> {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        };
+        threadPool.runInThread(job);
+        threadPool.runInThread(job);
+        awaitActiveCount(2);
+
+        // no lag, no reason to grow although all threads are busy
+        sizer.recordLag(0);
+        assertEquals(2, sizer.adjust());
+
+        sizer.recordLag(5000);
+        assertEquals(3, sizer.adjust());
+        assertEquals(3, threadPool.getPoolSize());
+        assertEquals(1, threadPool.blockForAvailableThreads());
+
+        // bounded by the maximum
+        threadPool.runInThread(job);
+        awaitActiveCount(3);
+        sizer.recordLag(5000);
+        assertEquals(3, sizer.adjust());
+
+        release.countDown();
+        awaitActiveCount(0);
+
+        // shrinks after consecutive idle samples only, bounded by the minimum
+        assertEquals(3, sizer.adjust());
+        assertEquals(3, sizer.adjust());
+        assertEquals(2, sizer.adjust());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(2, sizer.adjust());
+        }
+        assertEquals(2, threadPool.getPoolSize());
+    }
+
+    private void awaitActiveCount(int activeCount) throws InterruptedException
+    {
+        for (int i = 0; i < 200 && threadPool.getActiveCount() != activeCount; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(activeCount, threadPool.getActiveCount());
+    }
+}
@@ -0,0 +1,107 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+
+/**
+ * Sharing and copy-on-write of {@link CompactJobData}.
+ */
+public class CompactJobDataTest
+{
+    /**
+     * Maps with the same immutable content are shared, maps with mutable
+     * values are not.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSharing() throws Exception
+    {
+        Map<String, Object> first = new HashMap<>();
+        first.put(new String("dressing"), new String("mustard"));
+        first.put("count", 3);
+        Map<String, Object> second = new HashMap<>(first);
+
+        CompactJobData compact = CompactJobData.of(first);
+        assertSame(compact, CompactJobData.of(second));
+        assertSame(CompactJobData.EMPTY, CompactJobData.of(new HashMap<String, Object>()));
+        assertEquals(2, compact.size());
+
+        second.put("count", 4);
+        assertNotSame(compact, CompactJobData.of(second));
+
+        Map<String, Object> mutable = new HashMap<>();
+        mutable.put("list", new ArrayList<String>());
+        assertNotSame(CompactJobData.of(mutable), CompactJobData.of(mutable));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(compact);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            assertSame(compact, in.readObject());
+        }
+    }
+
+    /**
+     * Changing the data of a copy affects neither the original nor other copies.
+     */
+    @Test
+    public void testCopyOnWrite()
+    {
+        JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("job", "TEST")
+            .usingJobData("dressing", "mustard").build();
+        CompactJobDetail stored = CompactJobDetail.of(job);
+        assertEquals(job.getKey(), stored.getKey());
+        assertEquals(SimpleJob.class, stored.getJobClass());
+
+        JobDetail first = (JobDetail) stored.clone();
+        JobDetail second = (JobDetail) stored.clone();
+        JobDataMap data = first.getJobDataMap();
+        assertFalse(data.isDirty());
+        data.put("dressing", "ketchup");
+
+        assertEquals("ketchup", first.getJobDataMap().getString("dressing"));
+        assertEquals("mustard", second.getJobDataMap().getString("dressing"));
+        assertEquals("mustard", ((JobDetail) stored.clone()).getJobDataMap().getString("dressing"));
+        assertTrue(CompactJobDetail.of(stored, data).getJobDataMap().containsValue("ketchup"));
+    }
+}
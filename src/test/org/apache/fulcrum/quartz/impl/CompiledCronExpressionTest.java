@@ -0,0 +1,154 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.jupiter.api.Test;
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Compares the {@link CompiledCronExpression} with Quartz's <code>CronExpression</code>.
+ */
+public class CompiledCronExpressionTest
+{
+    private static final String[] EXPRESSIONS = {
+        "* * * * * ?",
+        "0 * * * * ?",
+        "0 0/5 * * * ?",
+        "0 0 23 ? * MON-FRI",
+        "0 15 10 ? * *",
+        "0 0 12 * * ?",
+        "0 15 10 * * ? 2030",
+        "0 0-5 14 * * ?",
+        "0 10,44 14 ? 3 WED",
+        "0 15 10 15 * ?",
+        "0 0 12 1/5 * ?",
+        "0 11 11 11 11 ?",
+        "15/20 3/7 22-2 * * ?",
+        "0 30 2 ? * SAT-TUE",
+        "0 0 0 29 2 ?",
+        "0 0 0 31 * ?",
+        "0 0 6 ? JAN/3 2/2 2025-2040/3",
+        "0 15 10 L * ?",
+        "0 15 10 ? * 6L",
+        "0 15 10 ? * 6#3",
+        "0 0 12 LW * ?",
+    };
+
+    private static final String[] TIME_ZONES = { "UTC", "Europe/Berlin", "America/New_York", "Australia/Lord_Howe" };
+
+    /**
+     * Random start times give the same next fire times.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSameAsCronExpression() throws Exception
+    {
+        Random random = new Random(4711);
+        long now = System.currentTimeMillis();
+
+        for (String timeZoneId : TIME_ZONES)
+        {
+            TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+            for (String expression : EXPRESSIONS)
+            {
+                CronExpression cronExpression = new CronExpression(expression);
+                cronExpression.setTimeZone(timeZone);
+                CompiledCronExpression compiled = CompiledCronExpression.compile(expression, timeZone);
+                assertEquals(!expression.contains("L") && !expression.contains("#"), compiled.isCompiled(), expression);
+
+                for (int i = 0; i < 500; i++)
+                {
+                    Date afterTime = new Date(now + (long) (random.nextDouble() * 20 * 365 * 24 * 3600 * 1000L));
+                    assertEquals(cronExpression.getTimeAfter(afterTime), compiled.getTimeAfter(afterTime),
+                        expression + " in " + timeZoneId + " after " + afterTime);
+                }
+
+                // consecutive fire times as computed by a trigger, across daylight saving transitions
+                Date expected = new Date(now);
+                Date actual = new Date(now);
+                for (int i = 0; i < 2000 && expected != null; i++)
+                {
+                    expected = cronExpression.getTimeAfter(expected);
+                    actual = compiled.getTimeAfter(actual);
+                    assertEquals(expected, actual, expression + " in " + timeZoneId + " fire time " + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Triggers with the same expression and time zone share the compiled expression.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testTrigger() throws Exception
+    {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+        assertSame(CompiledCronExpression.compile("0 0/5 * * * ?", timeZone),
+            CompiledCronExpression.compile("0 0/5 * * * ?", TimeZone.getTimeZone("Europe/Berlin")));
+        assertFalse(CompiledCronExpression.compile("0 0/5 * * * ?", timeZone)
+            == CompiledCronExpression.compile("0 0/5 * * * ?", TimeZone.getTimeZone("UTC")));
+
+        CronTrigger trigger = (CronTrigger) TriggerBuilder.newTrigger().withIdentity("compiled", "TEST")
+            .withSchedule(CompiledCronScheduleBuilder.cronSchedule("0 0 12 ? * MON-FRI").inTimeZone(timeZone)
+                .withMisfireHandlingInstructionDoNothing())
+            .build();
+        assertTrue(trigger instanceof CompiledCronTriggerImpl);
+        assertEquals(CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING, trigger.getMisfireInstruction());
+        assertEquals(timeZone, trigger.getTimeZone());
+
+        CronTrigger reference = (CronTrigger) TriggerBuilder.newTrigger().withIdentity("reference", "TEST")
+            .withSchedule(org.quartz.CronScheduleBuilder.cronSchedule("0 0 12 ? * MON-FRI").inTimeZone(timeZone))
+            .build();
+        Date time = new Date();
+        for (int i = 0; i < 20; i++)
+        {
+            Date next = reference.getFireTimeAfter(time);
+            assertEquals(next, trigger.getFireTimeAfter(time));
+            time = next;
+        }
+
+        // changing the expression by string discards the compiled expression
+        ((CompiledCronTriggerImpl) trigger).setCronExpression("0 30 8 ? * SAT");
+        ((org.quartz.impl.triggers.CronTriggerImpl) reference).setCronExpression("0 30 8 ? * SAT");
+        time = new Date();
+        assertEquals(reference.getFireTimeAfter(time), trigger.getFireTimeAfter(time));
+
+        // the job stores clone triggers, the trigger builder recreates them
+        assertTrue(((CompiledCronTriggerImpl) trigger).clone() instanceof CompiledCronTriggerImpl);
+        Trigger rebuilt = trigger.getTriggerBuilder().build();
+        assertTrue(rebuilt instanceof CompiledCronTriggerImpl);
+        assertEquals(CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING, rebuilt.getMisfireInstruction());
+    }
+}
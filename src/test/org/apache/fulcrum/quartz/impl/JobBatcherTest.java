@@ -0,0 +1,102 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avalon.framework.logger.ConsoleLogger;
+import org.apache.fulcrum.quartz.test.BatchRecordingJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Coalesces fires using the {@link JobBatcher} directly.
+ */
+public class JobBatcherTest
+{
+    private Scheduler scheduler;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "JobBatcherTest");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        scheduler.shutdown();
+    }
+
+    /**
+     * With a maximum batch size of one every fire is executed at once
+     * instead of waiting for more fires.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testSingleFireBatches() throws Exception
+    {
+        BatchRecordingJob.reset();
+        ConsoleLogger logger = new ConsoleLogger(ConsoleLogger.LEVEL_WARN);
+        JobBatcher batcher = new JobBatcher(logger, new AvalonJobFactory(logger, null, 0), 1, 10000L, false,
+            (context, failure) -> { });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+        {
+            batcher.execute(createContext("job" + i));
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000, "The fires waited for more fires");
+        assertEquals(List.of(1, 1, 1), BatchRecordingJob.batchSizes);
+        assertEquals(3, batcher.getBatchCount());
+    }
+
+    private JobExecutionContext createContext(String name)
+    {
+        JobDetail jobDetail = JobBuilder.newJob(BatchRecordingJob.class).withIdentity(name, "BATCH").build();
+        Date now = new Date();
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(jobDetail).startAt(now).build();
+        TriggerFiredBundle bundle = new TriggerFiredBundle(jobDetail, trigger, null, false, now, now, null, null);
+        return new JobExecutionContextImpl(scheduler, bundle, null);
+    }
+}
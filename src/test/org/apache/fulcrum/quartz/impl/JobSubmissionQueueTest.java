@@ -0,0 +1,156 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avalon.framework.logger.ConsoleLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.quartz.SchedulerException;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Backpressure of the {@link JobSubmissionQueue}.
+ */
+public class JobSubmissionQueueTest
+{
+    private SimpleThreadPool threadPool;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        threadPool = new SimpleThreadPool(1, Thread.NORM_PRIORITY);
+        threadPool.initialize();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        threadPool.shutdown(true);
+    }
+
+    /**
+     * A full queue rejects submissions until the dispatcher makes room,
+     * jobs still queued when stopping fail.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testReject() throws Exception
+    {
+        JobSubmissionQueue queue = new JobSubmissionQueue(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), threadPool, 2,
+            JobSubmissionQueue.POLICY_REJECT, 0);
+        CompletableFuture<Object> first = submit(queue, "first");
+        CompletableFuture<Object> second = submit(queue, "second");
+        assertThrows(SchedulerException.class, () -> submit(queue, "rejected"));
+        assertEquals(2, queue.size());
+
+        queue.start();
+        assertEquals("first", first.get(10, TimeUnit.SECONDS));
+        assertEquals("second", second.get(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> blocker = new CompletableFuture<>();
+        queue.submit(() -> blocker.join(), new CompletableFuture<>());
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        for (int i = 0; i < 100 && queue.size() > 0; i++)
+        {
+            Thread.sleep(10);
+        }
+        queue.submit(() -> pending.complete("pending"), pending);
+
+        queue.stop();
+        blocker.complete(null);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pending.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof SchedulerException);
+        assertThrows(SchedulerException.class, () -> submit(queue, "stopped"));
+    }
+
+    /**
+     * Submitting to a full queue waits for room up to the timeout.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testBlock() throws Exception
+    {
+        JobSubmissionQueue queue = new JobSubmissionQueue(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), threadPool, 1,
+            JobSubmissionQueue.POLICY_BLOCK, 100);
+        submit(queue, "first");
+
+        long start = System.nanoTime();
+        assertThrows(SchedulerException.class, () -> submit(queue, "timeout"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+
+        // room is made while waiting
+        new Thread(() -> queue.start()).start();
+        assertEquals("second", submit(queue, "second").get(10, TimeUnit.SECONDS));
+        queue.stop();
+    }
+
+    /**
+     * Without a thread pool submissions fail at once, when the dispatcher
+     * fails the pending jobs fail instead of waiting forever.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        JobSubmissionQueue unpooled = new JobSubmissionQueue(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), null, 1,
+            JobSubmissionQueue.POLICY_REJECT, 0);
+        assertThrows(SchedulerException.class, () -> submit(unpooled, "unpooled"));
+
+        SimpleThreadPool brokenPool = new SimpleThreadPool(1, Thread.NORM_PRIORITY)
+        {
+            @Override
+            public int blockForAvailableThreads()
+            {
+                throw new IllegalStateException("broken thread pool");
+            }
+        };
+        JobSubmissionQueue queue = new JobSubmissionQueue(new ConsoleLogger(ConsoleLogger.LEVEL_DISABLED), brokenPool, 2,
+            JobSubmissionQueue.POLICY_REJECT, 0);
+        CompletableFuture<Object> first = submit(queue, "first");
+        CompletableFuture<Object> second = submit(queue, "second");
+
+        queue.start();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof SchedulerException);
+        e = assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof SchedulerException);
+        assertThrows(SchedulerException.class, () -> submit(queue, "failed"));
+        queue.stop();
+    }
+
+    private static CompletableFuture<Object> submit(JobSubmissionQueue queue, String result) throws SchedulerException
+    {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        queue.submit(() -> future.complete(result), future);
+        return future;
+    }
+}
@@ -0,0 +1,248 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.fulcrum.quartz.test.CountingJob;
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.calendar.WeeklyCalendar;
+import org.quartz.impl.matchers.GroupMatcher;
+
+/**
+ * Restarts schedulers using the {@link JournalingJobStore} on the same journal.
+ */
+public class JournalingJobStoreTest
+{
+    private static final String NEVER = "0 0 0 1 1 ? 2099";
+
+    @TempDir
+    Path directory;
+
+    private Scheduler scheduler;
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdown(true);
+        }
+    }
+
+    /**
+     * Jobs, triggers, their states, calendars and job data survive a restart.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testRestart() throws Exception
+    {
+        scheduler = createScheduler(new Properties());
+
+        JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("job", "TEST").usingJobData("value", "a")
+            .storeDurably().build();
+        scheduler.addJob(job, false);
+        scheduler.addCalendar("weekdays", new WeeklyCalendar(), false, false);
+        scheduler.scheduleJob(cronTrigger("paused", "TEST", job.getKey()).modifiedByCalendar("weekdays").build());
+        scheduler.scheduleJob(cronTrigger("normal", "TEST", job.getKey()).build());
+        scheduler.scheduleJob(cronTrigger("grouped", "PAUSED", job.getKey()).build());
+        scheduler.pauseTrigger(TriggerKey.triggerKey("paused", "TEST"));
+        scheduler.pauseTriggers(GroupMatcher.triggerGroupEquals("PAUSED"));
+
+        JobDetail removed = JobBuilder.newJob(SimpleJob.class).withIdentity("removed", "TEST").build();
+        scheduler.scheduleJob(removed, cronTrigger("removed", "TEST", removed.getKey()).build());
+        scheduler.unscheduleJob(TriggerKey.triggerKey("removed", "TEST"));
+
+        JobDetail counting = JobBuilder.newJob(CountingJob.class).withIdentity("counting", "TEST").storeDurably().build();
+        scheduler.scheduleJob(counting, TriggerBuilder.newTrigger().withIdentity("counting", "TEST").startNow()
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(50).withRepeatCount(1)).build());
+        scheduler.start();
+        awaitCount(counting.getKey(), 2);
+        scheduler.shutdown(true);
+
+        scheduler = createScheduler(new Properties());
+        assertEquals("a", scheduler.getJobDetail(job.getKey()).getJobDataMap().getString("value"));
+        assertEquals(2, scheduler.getJobDetail(counting.getKey()).getJobDataMap().getInt(CountingJob.COUNT));
+        assertFalse(scheduler.checkExists(removed.getKey()));
+        assertFalse(scheduler.checkExists(TriggerKey.triggerKey("counting", "TEST")));
+        assertNotNull(scheduler.getCalendar("weekdays"));
+        assertEquals("weekdays", scheduler.getTrigger(TriggerKey.triggerKey("paused", "TEST")).getCalendarName());
+        assertEquals(TriggerState.PAUSED, scheduler.getTriggerState(TriggerKey.triggerKey("paused", "TEST")));
+        assertEquals(TriggerState.NORMAL, scheduler.getTriggerState(TriggerKey.triggerKey("normal", "TEST")));
+        assertEquals(TriggerState.PAUSED, scheduler.getTriggerState(TriggerKey.triggerKey("grouped", "PAUSED")));
+        assertTrue(scheduler.getPausedTriggerGroups().contains("PAUSED"));
+
+        // the paused group still applies to new triggers
+        scheduler.scheduleJob(cronTrigger("added", "PAUSED", job.getKey()).build());
+        assertEquals(TriggerState.PAUSED, scheduler.getTriggerState(TriggerKey.triggerKey("added", "PAUSED")));
+    }
+
+    /**
+     * A trigger which should have fired while the scheduler was stopped is
+     * handled according to its misfire instruction after the restart.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testMisfire() throws Exception
+    {
+        scheduler = createScheduler(new Properties());
+        JobDetail counting = JobBuilder.newJob(CountingJob.class).withIdentity("counting", "TEST").storeDurably().build();
+        scheduler.scheduleJob(counting, TriggerBuilder.newTrigger().withIdentity("counting", "TEST")
+            .startAt(DateBuilder.futureDate(200, DateBuilder.IntervalUnit.MILLISECOND))
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withMisfireHandlingInstructionFireNow()).build());
+        scheduler.shutdown(true);
+
+        Thread.sleep(500);
+        scheduler = createScheduler(new Properties());
+        scheduler.start();
+        awaitCount(counting.getKey(), 1);
+    }
+
+    /**
+     * The journal is compacted and a torn record at its end is ignored.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testCompaction() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.jobStore.compactionThreshold", "4096");
+        properties.setProperty("org.quartz.jobStore.forceWrites", "false");
+        properties.setProperty("org.quartz.jobStore.flushInterval", "1");
+
+        scheduler = createScheduler(properties);
+        for (int i = 0; i < 500; i++)
+        {
+            JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("job" + i, "TEST").build();
+            scheduler.scheduleJob(job, cronTrigger("trigger" + i, "TEST", job.getKey()).build());
+        }
+        for (int i = 0; i < 500; i += 2)
+        {
+            scheduler.deleteJob(JobKey.jobKey("job" + i, "TEST"));
+        }
+        scheduler.shutdown(true);
+
+        List<Path> files = files();
+        assertTrue(files.size() <= 3, files.toString());
+        assertFalse(files.contains(directory.resolve("journal-1.dat")), files.toString());
+
+        // a record torn by a crash
+        Path segment = files.stream().filter(file -> file.getFileName().toString().startsWith("journal-"))
+            .max(Path::compareTo).get();
+        Files.write(segment, new byte[] { 0, 0, 1, 0, 42, 42 }, StandardOpenOption.APPEND);
+
+        scheduler = createScheduler(properties);
+        assertEquals(250, scheduler.getJobKeys(GroupMatcher.jobGroupEquals("TEST")).size());
+        assertEquals(250, scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals("TEST")).size());
+        assertTrue(scheduler.checkExists(TriggerKey.triggerKey("trigger499", "TEST")));
+        assertFalse(scheduler.checkExists(TriggerKey.triggerKey("trigger498", "TEST")));
+    }
+
+    /**
+     * Job data which cannot be journaled is rejected.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testNotSerializable() throws Exception
+    {
+        scheduler = createScheduler(new Properties());
+        JobDataMap data = new JobDataMap();
+        data.put("value", new Object());
+        JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("job", "TEST").usingJobData(data)
+            .storeDurably().build();
+
+        assertThrows(JobPersistenceException.class, () -> scheduler.addJob(job, false));
+        assertFalse(scheduler.checkExists(job.getKey()));
+    }
+
+    private Scheduler createScheduler(Properties extra) throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "JournalingJobStoreTest");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.threadPool.threadCount", "2");
+        properties.setProperty("org.quartz.jobStore.class", JournalingJobStore.class.getName());
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "100");
+        properties.setProperty("org.quartz.jobStore.journalDirectory", directory.toString());
+        properties.putAll(extra);
+        return new StdSchedulerFactory(properties).getScheduler();
+    }
+
+    private void awaitCount(JobKey jobKey, int count) throws Exception
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            JobDataMap data = scheduler.getJobDetail(jobKey).getJobDataMap();
+            if (data.containsKey(CountingJob.COUNT) && data.getInt(CountingJob.COUNT) >= count)
+            {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError(jobKey + " was not executed " + count + " times");
+    }
+
+    private List<Path> files() throws Exception
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static TriggerBuilder<CronTrigger> cronTrigger(String name, String group, JobKey jobKey)
+    {
+        return TriggerBuilder.newTrigger().withIdentity(name, group).forJob(jobKey)
+            .withSchedule(CronScheduleBuilder.cronSchedule(NEVER));
+    }
+}
@@ -0,0 +1,181 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.MisfireStatistics;
+import org.junit.jupiter.api.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.calendar.CronCalendar;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * Spreads misfired triggers with the {@link MisfireCatchUp}.
+ */
+public class MisfireCatchUpTest
+{
+    /**
+     * Catch-up fires are placed within the window while there is room and
+     * never exceed the maximum fires per second.
+     */
+    @Test
+    public void testRateLimit()
+    {
+        long now = System.currentTimeMillis();
+        MisfireCatchUp catchUp = new MisfireCatchUp(5000, 10);
+        Map<Long, Integer> firesBySecond = new HashMap<>();
+
+        for (int i = 0; i < 200; i++)
+        {
+            OperableTrigger trigger = misfire(simpleTrigger(now - 1000));
+            assertTrue(catchUp.reschedule(trigger, simpleTrigger(now - 1000), null, System.currentTimeMillis()));
+
+            long fireTime = trigger.getNextFireTime().getTime();
+            assertTrue(fireTime >= now);
+            firesBySecond.merge(fireTime / 1000, 1, Integer::sum);
+        }
+
+        for (int fires : firesBySecond.values())
+        {
+            assertTrue(fires <= 10, "More than 10 fires per second");
+        }
+        // at most 6 seconds are touched by the window, the remaining fires are throttled
+        MisfireStatistics statistics = catchUp.getStatistics();
+        assertEquals(200, statistics.getCatchUpFires());
+        assertEquals(0, statistics.getCoalescedFires());
+        assertTrue(statistics.getThrottledFires() >= 140);
+        assertTrue(firesBySecond.size() >= 20);
+    }
+
+    /**
+     * Without a rate limit the fires are spread over the window only.
+     */
+    @Test
+    public void testWindow()
+    {
+        MisfireCatchUp catchUp = new MisfireCatchUp(2000, 0);
+
+        long first = Long.MAX_VALUE;
+        long last = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            long now = System.currentTimeMillis();
+            OperableTrigger trigger = misfire(simpleTrigger(now - 1000));
+            now = System.currentTimeMillis();
+            catchUp.reschedule(trigger, simpleTrigger(now - 1000), null, now);
+
+            long delay = trigger.getNextFireTime().getTime() - now;
+            assertTrue(delay >= 0 && delay < 2000);
+            first = Math.min(first, delay);
+            last = Math.max(last, delay);
+        }
+
+        assertTrue(first < 500);
+        assertTrue(last > 1500);
+        assertEquals(0, catchUp.getStatistics().getThrottledFires());
+    }
+
+    /**
+     * The missed fire times of a trigger are coalesced into one catch-up
+     * fire, times excluded by its calendar are not counted.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testCoalesce() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        MisfireCatchUp catchUp = new MisfireCatchUp(1000, 0);
+
+        // missed 10 fire times, one per minute
+        OperableTrigger trigger = misfire(simpleTrigger(now - 9 * 60000L - 30000L));
+        assertTrue(catchUp.reschedule(trigger, simpleTrigger(now - 9 * 60000L - 30000L), null, System.currentTimeMillis()));
+        assertEquals(9, catchUp.getStatistics().getCoalescedFires());
+
+        // missed 18 fire times of a cron trigger, the 9 in odd minutes are excluded
+        OperableTrigger cron = cronTrigger(now);
+        OperableTrigger misfired = (OperableTrigger) cron.clone();
+        cron.updateAfterMisfire(null);
+        assertTrue(catchUp.reschedule(cron, misfired, new CronCalendar("* 1/2 * * * ?"), System.currentTimeMillis()));
+        assertEquals(9 + 8, catchUp.getStatistics().getCoalescedFires());
+        assertEquals(2, catchUp.getStatistics().getCatchUpFires());
+    }
+
+    /**
+     * Triggers skipping to their regular schedule are left alone.
+     */
+    @Test
+    public void testRegularSchedule()
+    {
+        long now = System.currentTimeMillis();
+        MisfireCatchUp catchUp = new MisfireCatchUp(1000, 1);
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("next", "TEST")
+            .startAt(new Date(now - 90000L))
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMinutes(1).repeatForever()
+                .withMisfireHandlingInstructionNextWithRemainingCount())
+            .build();
+        trigger.computeFirstFireTime(null);
+        OperableTrigger misfired = (OperableTrigger) trigger.clone();
+        trigger.updateAfterMisfire(null);
+        Date nextFireTime = trigger.getNextFireTime();
+
+        assertFalse(catchUp.reschedule(trigger, misfired, null, now));
+        assertEquals(nextFireTime, trigger.getNextFireTime());
+        assertEquals(0, catchUp.getStatistics().getCatchUpFires());
+    }
+
+    private static OperableTrigger simpleTrigger(long startTime)
+    {
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("simple", "TEST")
+            .startAt(new Date(startTime))
+            .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMinutes(1).repeatForever()
+                .withMisfireHandlingInstructionNowWithExistingCount())
+            .build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private static OperableTrigger cronTrigger(long now)
+    {
+        // fires every minute, missed the last 18 full minutes
+        long minute = now / 60000L * 60000L;
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("cron", "TEST")
+            .startAt(new Date(minute - 17 * 60000L - 30000L))
+            .withSchedule(CronScheduleBuilder.cronSchedule("0 * * * * ?").withMisfireHandlingInstructionFireAndProceed())
+            .build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private static OperableTrigger misfire(OperableTrigger trigger)
+    {
+        trigger.updateAfterMisfire(null);
+        return trigger;
+    }
+}
@@ -0,0 +1,86 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.test.SimpleJob;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * Snapshot of the triggers of the {@link ConcurrentRAMJobStore} used by the
+ * configuration report.
+ */
+public class NextTriggerSnapshotTest
+{
+    /**
+     * Every listed job with a trigger is mapped to a copy of its trigger firing next.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testNextTriggerPerJob() throws Exception
+    {
+        ConcurrentRAMJobStore jobStore = new ConcurrentRAMJobStore();
+        jobStore.initialize(null, null);
+
+        long now = System.currentTimeMillis();
+        JobDetail job = JobBuilder.newJob(SimpleJob.class).withIdentity("job", "REPORT").build();
+        jobStore.storeJobAndTrigger(job, trigger("late", job, now + 60000));
+        jobStore.storeTrigger(trigger("early", job, now + 30000), false);
+        jobStore.storeTrigger(trigger("later", job, now + 90000), false);
+
+        JobDetail other = JobBuilder.newJob(SimpleJob.class).withIdentity("other", "REPORT").build();
+        jobStore.storeJobAndTrigger(other, trigger("other", other, now + 10000));
+        jobStore.storeJob(JobBuilder.newJob(SimpleJob.class).withIdentity("durable", "REPORT").storeDurably().build(), false);
+
+        JobDetail unlisted = JobBuilder.newJob(SimpleJob.class).withIdentity("unlisted", "REPORT").build();
+        jobStore.storeJobAndTrigger(unlisted, trigger("unlisted", unlisted, now + 10000));
+
+        Map<JobKey, Trigger> nextTriggers = jobStore.getNextTriggerPerJob(List.of(job.getKey(), other.getKey(),
+            JobKey.jobKey("durable", "REPORT"), JobKey.jobKey("unknown", "REPORT")));
+        assertEquals(2, nextTriggers.size());
+        assertEquals(TriggerKey.triggerKey("early", "REPORT"), nextTriggers.get(job.getKey()).getKey());
+        assertEquals(TriggerKey.triggerKey("other", "REPORT"), nextTriggers.get(other.getKey()).getKey());
+        assertFalse(nextTriggers.containsKey(JobKey.jobKey("durable", "REPORT")));
+        assertNotSame(jobStore.retrieveTrigger(TriggerKey.triggerKey("early", "REPORT")), nextTriggers.get(job.getKey()));
+    }
+
+    private static OperableTrigger trigger(String name, JobDetail job, long startTime)
+    {
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity(name, "REPORT")
+            .forJob(job).startAt(new Date(startTime)).build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+}
@@ -0,0 +1,193 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avalon.framework.logger.ConsoleLogger;
+import org.apache.fulcrum.quartz.test.RecordingJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quartz.JobBuilder;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.DirectSchedulerFactory;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * Partitions the jobs between several schedulers in one JVM sharing a
+ * membership directory.
+ */
+public class PartitioningTest
+{
+    @TempDir
+    Path directory;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        for (Node node : nodes)
+        {
+            node.membership.stop();
+            node.scheduler.shutdown(true);
+        }
+    }
+
+    /**
+     * A joining node only takes over keys from the existing nodes, its
+     * share is about the share of a single node.
+     */
+    @Test
+    public void testMinimalMovement()
+    {
+        List<JobKey> jobKeys = new ArrayList<>();
+        for (int i = 0; i < 10000; i++)
+        {
+            jobKeys.add(JobKey.jobKey("job" + i, "GROUP" + (i % 7)));
+        }
+
+        ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"), 100);
+        ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("node4", "node3", "node2", "node1"), 100);
+        Map<String, Integer> shares = new HashMap<>();
+        int moved = 0;
+        for (JobKey jobKey : jobKeys)
+        {
+            String before = three.getOwner(jobKey);
+            String after = four.getOwner(jobKey);
+            shares.merge(before, 1, Integer::sum);
+            if (!before.equals(after))
+            {
+                assertEquals("node4", after);
+                moved++;
+            }
+        }
+
+        // 2500 expected, the virtual nodes keep the deviation small
+        assertTrue(moved > 1800 && moved < 3200, "Moved " + moved);
+        for (int share : shares.values())
+        {
+            assertTrue(share > 2500 && share < 4200, "Shares " + shares);
+        }
+    }
+
+    /**
+     * Every job stored on all nodes is executed once, also after a node
+     * left and its jobs were taken over.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testPartitionedFiring() throws Exception
+    {
+        RecordingJob.reset();
+        for (int i = 1; i <= 3; i++)
+        {
+            nodes.add(new Node("node" + i));
+        }
+        for (Node node : nodes)
+        {
+            node.membership.refresh();
+            assertEquals(new HashSet<>(Arrays.asList("node1", "node2", "node3")), node.membership.getMembers());
+        }
+
+        long now = System.currentTimeMillis();
+        schedule("first", 30, now + 300);
+        schedule("second", 30, now + 1500);
+        awaitExecutions(30);
+        assertEquals(30, new HashSet<>(RecordingJob.executed).size());
+
+        // node3 leaves before the second round fires
+        Node leaving = nodes.remove(2);
+        leaving.membership.stop();
+        leaving.scheduler.shutdown(true);
+        for (Node node : nodes)
+        {
+            node.membership.refresh();
+            assertEquals(new HashSet<>(Arrays.asList("node1", "node2")), node.membership.getMembers());
+        }
+
+        awaitExecutions(60);
+        Thread.sleep(200);
+        assertEquals(60, RecordingJob.executed.size());
+        assertEquals(60, new HashSet<>(RecordingJob.executed).size());
+
+        // some of the jobs were taken over from node3
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"), 100);
+        assertTrue(RecordingJob.executed.stream()
+            .anyMatch(name -> name.startsWith("second") && "node3".equals(ring.getOwner(JobKey.jobKey(name, "PARTITIONED")))));
+    }
+
+    private void schedule(String round, int count, long fireTime) throws Exception
+    {
+        for (Node node : nodes)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                node.scheduler.scheduleJob(JobBuilder.newJob(RecordingJob.class).withIdentity(round + i, "PARTITIONED").build(),
+                    TriggerBuilder.newTrigger().withIdentity(round + i, "PARTITIONED").startAt(new Date(fireTime)).build());
+            }
+        }
+    }
+
+    private static void awaitExecutions(int count) throws InterruptedException
+    {
+        for (int i = 0; i < 100 && RecordingJob.executed.size() < count; i++)
+        {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * A scheduler with its own job store and heartbeat file.
+     */
+    private final class Node
+    {
+        final Scheduler scheduler;
+
+        final ConcurrentRAMJobStore jobStore = new ConcurrentRAMJobStore();
+
+        final FileMembership membership;
+
+        Node(String nodeId) throws Exception
+        {
+            DirectSchedulerFactory.getInstance().createScheduler("Partitioned-" + nodeId, nodeId,
+                new SimpleThreadPool(2, Thread.NORM_PRIORITY), jobStore);
+            this.scheduler = DirectSchedulerFactory.getInstance().getScheduler("Partitioned-" + nodeId);
+            this.membership = new FileMembership(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), directory, nodeId, 100, 60000,
+                members -> jobStore.setPartition(new ConsistentHashRing(members, 100).partitionOf(nodeId)));
+            membership.refresh();
+            scheduler.start();
+        }
+    }
+}
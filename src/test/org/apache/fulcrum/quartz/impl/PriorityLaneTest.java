@@ -0,0 +1,139 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lane order and aging of the {@link PriorityThreadPool}.
+ */
+public class PriorityLaneTest
+{
+    private PriorityThreadPool threadPool;
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    private final CountDownLatch blocker = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        threadPool = new PriorityThreadPool();
+        threadPool.setThreadCount(1);
+        threadPool.setLanes(3);
+        threadPool.setQueueSize(10);
+        threadPool.setMakeThreadsDaemons(true);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        blocker.countDown();
+        threadPool.shutdown(true);
+    }
+
+    /**
+     * Without aging higher lanes run first, each lane in queueing order.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testLaneOrder() throws Exception
+    {
+        threadPool.setAgingInterval(0);
+        threadPool.initialize();
+        block();
+
+        threadPool.runInLane(record("low"), 0);
+        threadPool.runInLane(record("normal"), 1);
+        threadPool.runInLane(record("high1"), 2);
+        threadPool.runInLane(record("high2"), 2);
+        assertEquals(6, threadPool.blockForAvailableThreads());
+
+        awaitExecuted(4);
+        assertEquals(Arrays.asList("high1", "high2", "normal", "low"), executed);
+    }
+
+    /**
+     * Waiting jobs overtake higher lanes once they waited long enough.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testAging() throws Exception
+    {
+        threadPool.setAgingInterval(50);
+        threadPool.initialize();
+        block();
+
+        threadPool.runInLane(record("aged"), 0);
+        Thread.sleep(200);
+        threadPool.runInLane(record("high"), 2);
+        threadPool.runInLane(record("normal"), 1);
+
+        awaitExecuted(3);
+        assertEquals(Arrays.asList("aged", "high", "normal"), executed);
+    }
+
+    /**
+     * Occupy the only thread until the test ends.
+     */
+    private void block() throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        threadPool.runInLane(() -> {
+            started.countDown();
+            try
+            {
+                blocker.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, 0);
+        started.await(10, TimeUnit.SECONDS);
+    }
+
+    private Runnable record(String name)
+    {
+        return () -> executed.add(name);
+    }
+
+    private void awaitExecuted(int count) throws InterruptedException
+    {
+        blocker.countDown();
+        for (int i = 0; i < 100 && executed.size() < count; i++)
+        {
+            Thread.sleep(20);
+        }
+    }
+}
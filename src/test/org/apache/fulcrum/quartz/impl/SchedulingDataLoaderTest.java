@@ -0,0 +1,231 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.avalon.framework.logger.ConsoleLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.listeners.SchedulerListenerSupport;
+
+/**
+ * Loads scheduling data incrementally into a scheduler which is not started.
+ */
+public class SchedulingDataLoaderTest
+{
+    @TempDir
+    Path directory;
+
+    private Scheduler scheduler;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "SchedulingDataLoaderTest");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Only added, changed and removed definitions are applied.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testIncrementalReload() throws Exception
+    {
+        Path file = directory.resolve("quartz.xml");
+        write(file, job("job1", "a") + job("job2", "b") + trigger("trigger1", "job1", "0 0 * * * ?")
+            + trigger("trigger2", "job2", "0 0 * * * ?"));
+
+        SchedulingDataLoader loader = new SchedulingDataLoader(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), scheduler, file, 1, false);
+        SchedulingDataLoader.Result result = loader.load();
+        assertEquals(4, result.added);
+        Date startTime = scheduler.getTrigger(TriggerKey.triggerKey("trigger1", "TEST")).getStartTime();
+
+        Thread.sleep(20);
+        write(file, job("job1", "a") + job("job3", "c") + trigger("trigger1", "job1", "0 0 * * * ?")
+            + trigger("trigger3", "job3", "0 30 * * * ?") + job("job1b", "changed"));
+        result = loader.load();
+        assertEquals(3, result.added);
+        assertEquals(2, result.unchanged);
+        assertEquals(2, result.removed);
+
+        // the unchanged trigger kept its schedule
+        assertEquals(startTime, scheduler.getTrigger(TriggerKey.triggerKey("trigger1", "TEST")).getStartTime());
+        assertFalse(scheduler.checkExists(JobKey.jobKey("job2", "TEST")));
+        assertFalse(scheduler.checkExists(TriggerKey.triggerKey("trigger2", "TEST")));
+        assertTrue(scheduler.checkExists(JobKey.jobKey("job3", "TEST")));
+
+        write(file, job("job1", "changed") + job("job3", "c") + trigger("trigger1", "job1", "0 0 * * * ?")
+            + trigger("trigger3", "job3", "0 15 * * * ?"));
+        result = loader.load();
+        assertEquals(2, result.changed);
+        assertEquals(1, result.removed);
+        assertEquals("changed", scheduler.getJobDetail(JobKey.jobKey("job1", "TEST")).getJobDataMap().getString("value"));
+    }
+
+    /**
+     * A changed trigger of an unchanged job is stored without storing its
+     * job again, which would overwrite job data persisted in the meantime.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testChangedTriggerOfUnchangedJob() throws Exception
+    {
+        Path file = directory.resolve("quartz.xml");
+        write(file, job("job1", "a") + trigger("trigger1", "job1", "0 0 * * * ?"));
+
+        SchedulingDataLoader loader = new SchedulingDataLoader(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), scheduler, file, 100, false);
+        loader.load();
+
+        List<JobKey> addedJobs = new ArrayList<>();
+        scheduler.getListenerManager().addSchedulerListener(new SchedulerListenerSupport()
+        {
+            @Override
+            public void jobAdded(JobDetail jobDetail)
+            {
+                addedJobs.add(jobDetail.getKey());
+            }
+        });
+
+        write(file, job("job1", "a") + trigger("trigger1", "job1", "0 30 * * * ?") + trigger("trigger2", "job1", "0 45 * * * ?"));
+        SchedulingDataLoader.Result result = loader.load();
+        assertEquals(1, result.changed);
+        assertEquals(1, result.added);
+        assertEquals(1, result.unchanged);
+        assertTrue(addedJobs.isEmpty(), "The unchanged job was stored again");
+        assertEquals("0 30 * * * ?", ((CronTrigger) scheduler.getTrigger(TriggerKey.triggerKey("trigger1", "TEST"))).getCronExpression());
+        assertEquals(JobKey.jobKey("job1", "TEST"), scheduler.getTrigger(TriggerKey.triggerKey("trigger2", "TEST")).getJobKey());
+    }
+
+    /**
+     * Changes of the file are picked up by the watcher.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testWatcher() throws Exception
+    {
+        Path file = directory.resolve("quartz.xml");
+        write(file, job("job1", "a") + trigger("trigger1", "job1", "0 0 * * * ?"));
+
+        SchedulingDataLoader loader = new SchedulingDataLoader(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), scheduler, file, 100, false);
+        loader.load();
+
+        SchedulingDataWatcher watcher = new SchedulingDataWatcher(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), loader, 100);
+        watcher.start();
+        try
+        {
+            write(file, job("job1", "a") + trigger("trigger1", "job1", "0 0 * * * ?")
+                + job("job2", "b") + trigger("trigger2", "job2", "0 0 * * * ?"));
+
+            for (int i = 0; i < 100 && !scheduler.checkExists(TriggerKey.triggerKey("trigger2", "TEST")); i++)
+            {
+                Thread.sleep(100);
+            }
+        }
+        finally
+        {
+            watcher.stop();
+        }
+
+        Trigger trigger = scheduler.getTrigger(TriggerKey.triggerKey("trigger2", "TEST"));
+        assertNotNull(trigger);
+        assertEquals(JobKey.jobKey("job2", "TEST"), trigger.getJobKey());
+    }
+
+    /**
+     * Cron triggers use compiled cron expressions if requested.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testCompiledCron() throws Exception
+    {
+        Path file = directory.resolve("quartz.xml");
+        write(file, job("job1", "a") + trigger("trigger1", "job1", "0 0/5 * * * ?"));
+
+        new SchedulingDataLoader(new ConsoleLogger(ConsoleLogger.LEVEL_WARN), scheduler, file, 1, true).load();
+        Trigger trigger = scheduler.getTrigger(TriggerKey.triggerKey("trigger1", "TEST"));
+        assertTrue(trigger instanceof CompiledCronTriggerImpl);
+        assertEquals("0 0/5 * * * ?", ((CronTrigger) trigger).getCronExpression());
+
+        // switching back replaces the trigger
+        SchedulingDataLoader.Result result = new SchedulingDataLoader(new ConsoleLogger(ConsoleLogger.LEVEL_WARN),
+            scheduler, file, 1, false).load();
+        assertEquals(1, result.changed);
+        assertFalse(scheduler.getTrigger(TriggerKey.triggerKey("trigger1", "TEST")) instanceof CompiledCronTriggerImpl);
+    }
+
+    private static void write(Path file, String schedule) throws Exception
+    {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<job-scheduling-data xmlns=\"http://www.quartz-scheduler.org/xml/JobSchedulingData\" version=\"2.0\">\n"
+            + "<pre-processing-commands><delete-jobs-in-group>TEST</delete-jobs-in-group></pre-processing-commands>\n"
+            + "<schedule>\n" + schedule + "</schedule>\n</job-scheduling-data>\n";
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String job(String name, String value)
+    {
+        return "<job><name>" + name + "</name><group>TEST</group>"
+            + "<job-class>org.apache.fulcrum.quartz.test.SimpleJob</job-class><durability>true</durability>"
+            + "<job-data-map><entry><key>value</key><value>" + value + "</value></entry></job-data-map></job>\n";
+    }
+
+    private static String trigger(String name, String job, String cronExpression)
+    {
+        return "<trigger><cron><name>" + name + "</name><group>TEST</group>"
+            + "<job-name>" + job + "</job-name><job-group>TEST</job-group>"
+            + "<cron-expression>" + cronExpression + "</cron-expression></cron></trigger>\n";
+    }
+}
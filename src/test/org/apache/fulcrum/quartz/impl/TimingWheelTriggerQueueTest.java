@@ -0,0 +1,136 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.quartz.TriggerBuilder;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * Compares the {@link TimingWheelTriggerQueue} with the {@link SkipListTriggerQueue}.
+ */
+public class TimingWheelTriggerQueueTest
+{
+    private static final long TICK = 10L;
+
+    /**
+     * Due entries are returned in fire time and priority order.
+     */
+    @Test
+    public void testOrder()
+    {
+        long now = System.currentTimeMillis();
+        TimingWheelTriggerQueue queue = new TimingWheelTriggerQueue(TICK);
+        TriggerEntry late = entry("late", now + 5, 5);
+        TriggerEntry important = entry("important", now + 5, 10);
+        TriggerEntry past = entry("past", now - 60000, 5);
+        TriggerEntry far = entry("far", now + 365L * 24 * 3600 * 1000 * 10, 5);
+
+        assertTrue(queue.add(late));
+        assertTrue(queue.add(important));
+        assertTrue(queue.add(past));
+        assertTrue(queue.add(far));
+        assertEquals(4, queue.size());
+
+        assertSame(past, queue.pollFirst(now + 100));
+        assertSame(important, queue.pollFirst(now + 100));
+        assertSame(late, queue.pollFirst(now + 100));
+        assertNull(queue.pollFirst(now + 100));
+        assertSame(far, queue.pollFirst(Long.MAX_VALUE - 1));
+        assertEquals(0, queue.size());
+    }
+
+    /**
+     * Random additions, removals and polls over several wheel revolutions
+     * give the same results as the skip list.
+     */
+    @Test
+    public void testSameAsSkipList()
+    {
+        Random random = new Random(4711);
+        long start = System.currentTimeMillis();
+        TimingWheelTriggerQueue wheel = new TimingWheelTriggerQueue(TICK);
+        SkipListTriggerQueue skipList = new SkipListTriggerQueue();
+        List<TriggerEntry> queued = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++)
+        {
+            long now = start + i * 50L;
+            int operation = random.nextInt(10);
+
+            if (operation < 5)
+            {
+                // mostly near term, some beyond the coarser wheels
+                long offset = random.nextInt(4) == 0
+                    ? (long) (random.nextDouble() * 3600L * 24 * 400 * 1000)
+                    : random.nextInt(120000) - 10000;
+                TriggerEntry entry = entry("t" + i, now + offset, random.nextInt(3) * 5);
+                assertEquals(skipList.add(entry), wheel.add(entry));
+                queued.add(entry);
+            }
+            else if (operation < 7 && !queued.isEmpty())
+            {
+                TriggerEntry entry = queued.remove(random.nextInt(queued.size()));
+                assertEquals(skipList.remove(entry), wheel.remove(entry));
+            }
+            else
+            {
+                long noLaterThan = now + random.nextInt(30000);
+                TriggerEntry expected;
+                do
+                {
+                    expected = skipList.pollFirst(noLaterThan);
+                    assertSame(expected, wheel.pollFirst(noLaterThan));
+                    queued.remove(expected);
+                }
+                while (expected != null);
+            }
+
+            assertEquals(skipList.size(), wheel.size());
+        }
+
+        TriggerEntry expected;
+        do
+        {
+            expected = skipList.pollFirst(Long.MAX_VALUE - 1);
+            assertSame(expected, wheel.pollFirst(Long.MAX_VALUE - 1));
+        }
+        while (expected != null);
+        assertEquals(0, wheel.size());
+    }
+
+    private static TriggerEntry entry(String name, long fireTime, int priority)
+    {
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity(name, "TEST")
+            .forJob("job", "TEST").withPriority(priority).startAt(new Date(fireTime)).build();
+        trigger.setNextFireTime(new Date(fireTime));
+        return new TriggerEntry(trigger);
+    }
+}
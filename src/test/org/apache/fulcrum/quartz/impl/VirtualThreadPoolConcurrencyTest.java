@@ -0,0 +1,156 @@
+package org.apache.fulcrum.quartz.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Concurrency limit of the {@link VirtualThreadPool}.
+ */
+public class VirtualThreadPoolConcurrencyTest
+{
+    private static final int THREAD_COUNT = 2;
+
+    private VirtualThreadPool threadPool;
+
+    private final CountDownLatch blocker = new CountDownLatch(1);
+
+    private final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        threadPool = new VirtualThreadPool();
+        threadPool.setThreadCount(THREAD_COUNT);
+        threadPool.setMakeThreadsDaemons(true);
+        threadPool.initialize();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        blocker.countDown();
+        threadPool.shutdown(true);
+    }
+
+    /**
+     * Once <code>threadCount</code> jobs are running, further jobs and the
+     * scheduler asking for available threads wait until a job completes.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testConcurrencyIsCapped() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++)
+        {
+            assertTrue(threadPool.runInThread(block(started)));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(THREAD_COUNT, threadPool.getActiveCount());
+
+        CompletableFuture<Integer> available = CompletableFuture.supplyAsync(threadPool::blockForAvailableThreads);
+        CountDownLatch overflowStarted = new CountDownLatch(1);
+        CompletableFuture<Boolean> overflow = CompletableFuture.supplyAsync(() -> threadPool.runInThread(block(overflowStarted)));
+        assertThrows(TimeoutException.class, () -> available.get(200, TimeUnit.MILLISECONDS));
+        assertThrows(TimeoutException.class, () -> overflow.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(THREAD_COUNT, threadPool.getActiveCount());
+
+        blocker.countDown();
+        assertTrue(available.get(5, TimeUnit.SECONDS) > 0);
+        assertTrue(overflow.get(5, TimeUnit.SECONDS));
+        assertTrue(overflowStarted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The jobs run on virtual threads if the runtime supports them and on
+     * at most <code>threadCount</code> reused platform threads otherwise.
+     *
+     * @throws Exception generic exception
+     */
+    @Test
+    public void testThreads() throws Exception
+    {
+        boolean virtualThreads = Runtime.version().feature() >= 21;
+        assertEquals(virtualThreads, threadPool.isVirtual());
+
+        blocker.countDown();
+        for (int i = 0; i < 10; i++)
+        {
+            CountDownLatch started = new CountDownLatch(1);
+            assertTrue(threadPool.runInThread(block(started)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        assertFalse(threads.isEmpty());
+        for (Thread thread : threads)
+        {
+            assertEquals(virtualThreads, isVirtual(thread));
+        }
+        if (!virtualThreads)
+        {
+            assertTrue(threads.size() <= THREAD_COUNT, threads.size() + " platform threads were started");
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception
+    {
+        try
+        {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+    private Runnable block(CountDownLatch started)
+    {
+        return () -> {
+            threads.add(Thread.currentThread());
+            started.countDown();
+            try
+            {
+                blocker.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+}
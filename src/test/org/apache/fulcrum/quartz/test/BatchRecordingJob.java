@@ -0,0 +1,70 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fulcrum.quartz.BatchJob;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * A batch job recording the size of its batches. Every fire results in the
+ * name of its job, fires whose job data 'fail' is true fail.
+ */
+public class BatchRecordingJob
+        implements BatchJob
+{
+    /** The sizes of the executed batches in execution order */
+    public static final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    /**
+     * @see org.apache.fulcrum.quartz.BatchJob#executeBatch(java.util.List)
+     */
+    @Override
+    public Map<JobExecutionContext, JobExecutionException> executeBatch(List<JobExecutionContext> contexts)
+            throws JobExecutionException
+    {
+        batchSizes.add(contexts.size());
+
+        Map<JobExecutionContext, JobExecutionException> failures = new HashMap<>();
+        for (JobExecutionContext context : contexts)
+        {
+            if (context.getMergedJobDataMap().getBooleanValue("fail"))
+            {
+                failures.put(context, new JobExecutionException("Failing as requested"));
+            }
+            else
+            {
+                context.setResult(context.getJobDetail().getKey().getName());
+            }
+        }
+        return failures;
+    }
+
+    public static void reset()
+    {
+        batchSizes.clear();
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.PersistJobDataAfterExecution;
+
+/**
+ * A job counting its executions in its persistent job data, the new count
+ * is the result of the execution.
+ */
+@PersistJobDataAfterExecution
+@DisallowConcurrentExecution
+public class CountingJob
+        implements Job
+{
+    /** The key of the execution count in the job data */
+    public static final String COUNT = "count";
+
+    /**
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    @Override
+    public void execute(JobExecutionContext context)
+            throws JobExecutionException
+    {
+        JobDataMap data = context.getJobDetail().getJobDataMap();
+        int count = data.containsKey(COUNT) ? data.getInt(COUNT) + 1 : 1;
+        data.put(COUNT, count);
+        context.setResult(count);
+    }
+}
@@ -0,0 +1,57 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.quartz.InterruptableJob;
+import org.quartz.UnableToInterruptJobException;
+
+/**
+ * A sleeping job stopping early when interrupted by the scheduler.
+ */
+public class InterruptableSleepingJob
+        extends SleepingJob implements InterruptableJob
+{
+    public static final AtomicBoolean wasInterrupted = new AtomicBoolean();
+
+    private volatile boolean interrupted;
+
+    /**
+     * @see org.quartz.InterruptableJob#interrupt()
+     */
+    public void interrupt()
+            throws UnableToInterruptJobException
+    {
+        interrupted = true;
+        wasInterrupted.set(true);
+    }
+
+    @Override
+    protected boolean isInterrupted()
+    {
+        return interrupted;
+    }
+
+    public static void reset()
+    {
+        wasInterrupted.set(false);
+    }
+}
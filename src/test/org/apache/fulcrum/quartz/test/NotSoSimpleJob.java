@@ -76,6 +76,14 @@ public class NotSoSimpleJob
 		wasServiced = true;
     }
 
+    /**
+     * @return the service manager injected before the execution
+     */
+    public ServiceManager getServiceManager()
+    {
+        return manager;
+    }
+
     public static void reset()
     {
         wasExecuted = false;
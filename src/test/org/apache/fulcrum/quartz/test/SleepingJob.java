@@ -0,0 +1,60 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * A job sleeping for the number of milliseconds given by the job data
+ * 'sleep', ignoring interrupts.
+ */
+public class SleepingJob
+        implements Job
+{
+    /**
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    public void execute(JobExecutionContext context)
+            throws JobExecutionException
+    {
+        long end = System.currentTimeMillis() + context.getMergedJobDataMap().getLong("sleep");
+        while (System.currentTimeMillis() < end && !isInterrupted())
+        {
+            try
+            {
+                Thread.sleep(Math.min(50, Math.max(1, end - System.currentTimeMillis())));
+            }
+            catch (InterruptedException e)
+            {
+                // keep on sleeping unless interrupted by the scheduler
+            }
+        }
+    }
+
+    /**
+     * @return true if the job was asked to stop
+     */
+    protected boolean isInterrupted()
+    {
+        return false;
+    }
+}
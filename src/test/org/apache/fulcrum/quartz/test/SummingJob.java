@@ -0,0 +1,65 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.quartz.JobPipeline;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * A pipeline step adding the job data 'value' to the results of the steps
+ * it depends on after sleeping for the job data 'sleep' ms, failing if the
+ * job data 'fail' is true.
+ */
+public class SummingJob
+        implements Job
+{
+    /**
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    @Override
+    public void execute(JobExecutionContext context)
+            throws JobExecutionException
+    {
+        JobDataMap data = context.getMergedJobDataMap();
+        if (data.containsKey("fail") && data.getBoolean("fail"))
+        {
+            throw new JobExecutionException("Failing as requested");
+        }
+
+        try
+        {
+            Thread.sleep(data.containsKey("sleep") ? data.getLong("sleep") : 0);
+        }
+        catch (InterruptedException e)
+        {
+            throw new JobExecutionException(e);
+        }
+
+        int sum = data.getInt("value");
+        for (Object result : JobPipeline.getResults(context).values())
+        {
+            sum += (Integer) result;
+        }
+        context.setResult(sum);
+    }
+}
@@ -0,0 +1,74 @@
+package org.apache.fulcrum.quartz.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avalon.framework.service.ServiceException;
+import org.apache.avalon.framework.service.ServiceManager;
+import org.apache.avalon.framework.service.Serviceable;
+import org.apache.avalon.framework.thread.ThreadSafe;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * A thread-safe job keeping track of how often it was instantiated,
+ * serviced and executed.
+ */
+public class ThreadSafeJob
+        implements Job, Serviceable, ThreadSafe
+{
+    public static final AtomicInteger instances = new AtomicInteger();
+
+    public static final AtomicInteger serviced = new AtomicInteger();
+
+    public static final AtomicInteger executed = new AtomicInteger();
+
+    public ThreadSafeJob()
+    {
+        instances.incrementAndGet();
+    }
+
+    /**
+     * @see org.quartz.Job#execute(org.quartz.JobExecutionContext)
+     */
+    public void execute(JobExecutionContext context)
+            throws JobExecutionException
+    {
+        executed.incrementAndGet();
+    }
+
+    /**
+     * @see org.apache.avalon.framework.service.Serviceable#service(org.apache.avalon.framework.service.ServiceManager)
+     */
+    public void service(ServiceManager manager)
+            throws ServiceException
+    {
+        serviced.incrementAndGet();
+    }
+
+    public static void reset()
+    {
+        instances.set(0);
+        serviced.set(0);
+        executed.set(0);
+    }
+}